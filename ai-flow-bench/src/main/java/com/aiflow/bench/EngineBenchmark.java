@@ -0,0 +1,85 @@
+package com.aiflow.bench;
+
+import com.aiflow.server.dto.FlowDtos.FlowGraph;
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.engine.Engine;
+import com.aiflow.server.engine.ExecutionPlan;
+import com.aiflow.server.engine.LlmNodeExecutor;
+import com.aiflow.server.engine.NodeExecutorRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Whole-run cost of {@link Engine#run} per graph shape and size: on the caller's thread (the engine's
+ * scheduling overhead alone) and on a pool with parallel dispatch. {@code compile} measures turning a
+ * graph into a plan, which a cached plan saves on every run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class EngineBenchmark {
+
+    @Param({"chain", "fanout", "diamond"})
+    public String shape;
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    private Engine direct;
+    private Engine pooled;
+    private ExecutorService pool;
+    private FlowGraph graph;
+    private ExecutionPlan plan;
+    private Map<String, Object> inputs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        NodeExecutorRegistry registry = new NodeExecutorRegistry(List.of(new LlmNodeExecutor()));
+        direct = new Engine(registry, null, 1);
+        pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        pooled = new Engine(registry, pool, Runtime.getRuntime().availableProcessors());
+        graph = Graphs.of(shape, size);
+        plan = direct.compile("bench", 1, graph);
+        inputs = Graphs.inputs();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public FlowRunResult runDirect() {
+        return direct.run(plan, inputs);
+    }
+
+    @Benchmark
+    public FlowRunResult runPooled() {
+        return pooled.run(plan, inputs);
+    }
+
+    @Benchmark
+    public ExecutionPlan compile() {
+        return direct.compile("bench", 1, graph);
+    }
+}
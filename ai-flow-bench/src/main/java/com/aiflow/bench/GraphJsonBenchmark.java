@@ -0,0 +1,59 @@
+package com.aiflow.bench;
+
+import com.aiflow.server.dto.FlowDtos.FlowGraph;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jackson (de)serialization of {@link FlowGraph}, as done when a flow is saved to or loaded from
+ * {@code t_flow.graph_json}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphJsonBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private FlowGraph graph;
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        graph = Graphs.of("diamond", size);
+        json = objectMapper.writeValueAsString(graph);
+    }
+
+    @Benchmark
+    public String serialize() throws Exception {
+        return objectMapper.writeValueAsString(graph);
+    }
+
+    @Benchmark
+    public FlowGraph deserialize() throws Exception {
+        return objectMapper.readValue(json, FlowGraph.class);
+    }
+
+    @Benchmark
+    public FlowGraph roundTrip() throws Exception {
+        return objectMapper.readValue(objectMapper.writeValueAsString(graph), FlowGraph.class);
+    }
+}
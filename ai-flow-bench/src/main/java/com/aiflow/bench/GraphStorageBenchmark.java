@@ -0,0 +1,78 @@
+package com.aiflow.bench;
+
+import com.aiflow.server.dto.FlowDtos.FlowGraph;
+import com.aiflow.server.service.FlowGraphCodec;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stored flow graph formats: the JSON text formerly kept in {@code t_flow.graph_json} against the Smile
+ * execution part ({@code graph_data}) and canvas layout ({@code layout_data}) of {@link FlowGraphCodec}.
+ * {@code decodeExecution} is what a run loads, {@code decodeFull} what opening the graph in the editor loads.
+ * The stored sizes are printed once per trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphStorageBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    public int size;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final FlowGraphCodec codec = new FlowGraphCodec(objectMapper);
+    private FlowGraph graph;
+    private String json;
+    private FlowGraphCodec.Encoded encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        graph = Graphs.of("diamond", size);
+        json = objectMapper.writeValueAsString(graph);
+        encoded = codec.encode(graph);
+        System.out.printf("%n[size=%d] json %d B, smile graph_data %d B + layout_data %d B%n", size,
+                json.getBytes(StandardCharsets.UTF_8).length, encoded.graph().length, encoded.layout().length);
+    }
+
+    @Benchmark
+    public FlowGraph jsonDecode() throws Exception {
+        return objectMapper.readValue(json, FlowGraph.class);
+    }
+
+    @Benchmark
+    public FlowGraph decodeExecution() {
+        return codec.decodeExecution(encoded.graph());
+    }
+
+    @Benchmark
+    public FlowGraph decodeFull() {
+        return codec.decode(encoded.graph(), encoded.layout());
+    }
+
+    @Benchmark
+    public String jsonEncode() throws Exception {
+        return objectMapper.writeValueAsString(graph);
+    }
+
+    @Benchmark
+    public FlowGraphCodec.Encoded encode() {
+        return codec.encode(graph);
+    }
+}
@@ -0,0 +1,80 @@
+package com.aiflow.bench;
+
+import com.aiflow.server.dto.FlowDtos.FlowGraph;
+import com.aiflow.server.dto.FlowDtos.GraphEdge;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Synthetic flow graphs of {@code llm} nodes. The simulated LLM executor is pure CPU, so the engine's
+ * own scheduling and variable handling dominate the measurements.
+ */
+final class Graphs {
+
+    private Graphs() {}
+
+    /**
+     * @param shape {@code chain} (n0 -> n1 -> ...), {@code fanout} (one root feeding every other node)
+     *              or {@code diamond} (a root, n - 2 parallel nodes and one node joining them)
+     */
+    static FlowGraph of(String shape, int size) {
+        FlowGraph g = new FlowGraph();
+        g.nodes = new ArrayList<>(size);
+        g.edges = new ArrayList<>();
+        for (int i = 0; i < size; i++) {
+            g.nodes.add(node(i));
+        }
+        switch (shape) {
+            case "chain" -> {
+                for (int i = 1; i < size; i++) g.edges.add(edge(i - 1, i));
+            }
+            case "fanout" -> {
+                for (int i = 1; i < size; i++) g.edges.add(edge(0, i));
+            }
+            case "diamond" -> {
+                for (int i = 1; i < size - 1; i++) {
+                    g.edges.add(edge(0, i));
+                    g.edges.add(edge(i, size - 1));
+                }
+            }
+            default -> throw new IllegalArgumentException("Unknown graph shape: " + shape);
+        }
+        return g;
+    }
+
+    private static GraphNode node(int i) {
+        GraphNode n = new GraphNode();
+        n.id = "n" + i;
+        n.type = "llm";
+        n.x = (double) (i % 50) * 120;
+        n.y = (double) (i / 50) * 80;
+        n.text = "LLM " + i;
+        Map<String, Object> props = new LinkedHashMap<>();
+        props.put("model", "gpt-4o-mini");
+        // reads a run input rather than the predecessor's output, so chains do not grow their prompts
+        props.put("input", "Step " + i + ": ${question} for ${user.name}");
+        props.put("output", "out" + i);
+        n.properties = props;
+        return n;
+    }
+
+    private static GraphEdge edge(int from, int to) {
+        GraphEdge e = new GraphEdge();
+        e.id = "e" + from + "_" + to;
+        e.sourceNodeId = "n" + from;
+        e.targetNodeId = "n" + to;
+        return e;
+    }
+
+    static Map<String, Object> inputs() {
+        return Map.of("question", "What is the weather like?", "user", Map.of("name", "bench"));
+    }
+
+    static List<String> shapes() {
+        return List.of("chain", "fanout", "diamond");
+    }
+}
@@ -0,0 +1,77 @@
+package com.aiflow.bench;
+
+import com.aiflow.server.dto.KbDtos.DocumentUploadRequest;
+import com.aiflow.server.dto.KbDtos.KnowledgeBaseUpsertRequest;
+import com.aiflow.server.dto.KbDtos.TestQueryRequest;
+import com.aiflow.server.dto.KbDtos.TestQueryResponse;
+import com.aiflow.server.service.KbService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Knowledge-base hit testing ({@link KbService#testQuery}) against an in-memory KB of growing size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KbQueryBenchmark {
+
+    private static final String[] WORDS = {
+            "flow", "engine", "node", "model", "vector", "search", "prompt", "token", "graph", "branch",
+            "latency", "cache", "index", "query", "answer", "context", "document", "score", "limit", "retry"
+    };
+
+    @Param({"10", "100", "1000"})
+    public int documents;
+
+    private KbService kbService;
+    private String kbId;
+    private TestQueryRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        kbService = new KbService();
+        KnowledgeBaseUpsertRequest kb = new KnowledgeBaseUpsertRequest();
+        kb.name = "bench";
+        kbId = kbService.create(kb).id;
+
+        Random random = new Random(42);
+        for (int i = 0; i < documents; i++) {
+            StringBuilder content = new StringBuilder();
+            for (int w = 0; w < 200; w++) {
+                content.append(WORDS[random.nextInt(WORDS.length)]).append(' ');
+            }
+            DocumentUploadRequest doc = new DocumentUploadRequest();
+            doc.title = "doc-" + i;
+            doc.content = content.toString();
+            kbService.addDocument(kbId, doc);
+        }
+
+        request = new TestQueryRequest();
+        request.query = "engine cache latency for vector search";
+        request.topK = 5;
+        // score every document so sorting and top-k selection are part of the measurement
+        request.scoreThreshold = 0.0;
+    }
+
+    @Benchmark
+    public TestQueryResponse testQuery() {
+        return kbService.testQuery(kbId, request);
+    }
+}
@@ -0,0 +1,105 @@
+package com.aiflow.bench;
+
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.engine.Engine;
+import com.aiflow.server.engine.ExecutionPlan;
+import com.aiflow.server.engine.LlmNodeExecutor;
+import com.aiflow.server.engine.NodeExecutorRegistry;
+import com.aiflow.server.engine.RunOptions;
+import com.aiflow.server.liteflow.FlowBranchComponent;
+import com.aiflow.server.liteflow.FlowChainRunner;
+import com.aiflow.server.liteflow.FlowElCompiler;
+import com.aiflow.server.liteflow.FlowNodeComponent;
+import com.yomahub.liteflow.builder.LiteFlowNodeBuilder;
+import com.yomahub.liteflow.core.FlowExecutor;
+import com.yomahub.liteflow.core.FlowExecutorHolder;
+import com.yomahub.liteflow.property.LiteflowConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The same plan run by the engine's scheduler and as a LiteFlow chain compiled by {@link FlowElCompiler}, both
+ * with as many threads as there are processors. {@code register} measures compiling the plan into EL and
+ * building the chain, which happens once per saved version.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LiteFlowBenchmark {
+
+    @Param({"chain", "fanout", "diamond"})
+    public String shape;
+
+    @Param({"10", "100", "1000"})
+    public int size;
+
+    private ExecutorService pool;
+    private Engine engine;
+    private FlowChainRunner runner;
+    private ExecutionPlan plan;
+    private Map<String, Object> inputs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        int threads = Runtime.getRuntime().availableProcessors();
+        LiteflowConfig config = new LiteflowConfig();
+        config.setPrintBanner(false);
+        config.setPrintExecutionLog(false);
+        config.setWhenMaxWorkers(threads);
+        // a WHEN submits all its branches at once; the default queue of 512 rejects wider fan-outs
+        config.setWhenQueueLimit(100_000);
+        FlowExecutor flowExecutor = FlowExecutorHolder.loadInstance(config);
+        LiteFlowNodeBuilder.createCommonNode().setId(FlowElCompiler.NODE).setName(FlowElCompiler.NODE)
+                .setClazz(FlowNodeComponent.class).build();
+        LiteFlowNodeBuilder.createBooleanNode().setId(FlowElCompiler.BRANCH).setName(FlowElCompiler.BRANCH)
+                .setClazz(FlowBranchComponent.class).build();
+
+        pool = Executors.newFixedThreadPool(threads);
+        engine = new Engine(new NodeExecutorRegistry(List.of(new LlmNodeExecutor())), pool, threads);
+        runner = new FlowChainRunner(flowExecutor, engine, null);
+        plan = engine.compile("bench", 1, Graphs.of(shape, size));
+        runner.register(plan);
+        inputs = Graphs.inputs();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        runner.shutdown();
+        pool.shutdownNow();
+    }
+
+    @Benchmark
+    public FlowRunResult engine() {
+        return engine.runAsync(plan, inputs, RunOptions.DEFAULT).join();
+    }
+
+    @Benchmark
+    public FlowRunResult liteflow() {
+        return runner.runAsync(plan, inputs, RunOptions.DEFAULT).join();
+    }
+
+    @Benchmark
+    public String register() {
+        return runner.register(plan);
+    }
+}
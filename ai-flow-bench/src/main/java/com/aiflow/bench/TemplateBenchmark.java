@@ -0,0 +1,66 @@
+package com.aiflow.bench;
+
+import com.aiflow.server.engine.LlmNodeExecutor;
+import com.aiflow.server.engine.PromptTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt rendering as the variable count grows. {@code renderTemplate} parses on every call (the ad-hoc
+ * path); {@code renderParsed} reuses the template parsed once per plan, as LLM nodes do.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TemplateBenchmark {
+
+    @Param({"1", "10", "100", "1000"})
+    public int variables;
+
+    private String source;
+    private PromptTemplate template;
+    private Map<String, Object> vars;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        StringBuilder sb = new StringBuilder("Answer the question using the context.\n");
+        vars = new HashMap<>();
+        for (int i = 0; i < variables; i++) {
+            sb.append("v").append(i).append(" = ${v").append(i).append("}");
+            // every tenth placeholder is a nested path
+            if (i % 10 == 0) sb.append(" (${ctx").append(i).append(".user.name})");
+            sb.append('\n');
+            vars.put("v" + i, "value-" + i);
+            if (i % 10 == 0) vars.put("ctx" + i, Map.of("user", Map.of("name", "user-" + i)));
+        }
+        source = sb.toString();
+        template = PromptTemplate.parse(source);
+    }
+
+    @Benchmark
+    public String renderTemplate() {
+        return LlmNodeExecutor.renderTemplate(source, vars);
+    }
+
+    @Benchmark
+    public String renderParsed() {
+        return template.render(vars, PromptTemplate.MissingPolicy.KEEP);
+    }
+}
@@ -0,0 +1,66 @@
+package com.aiflow.bench;
+
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.engine.Engine;
+import com.aiflow.server.engine.ExecutionPlan;
+import com.aiflow.server.engine.LlmNodeExecutor;
+import com.aiflow.server.engine.NodeExecutorRegistry;
+import com.aiflow.server.engine.RunOptions;
+import com.aiflow.server.engine.TraceLevel;
+import com.aiflow.server.engine.TraceOptions;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of recording the trace: the same run on the caller's thread at every trace level. Run with
+ * {@code -prof gc} to compare the bytes allocated per run ({@code gc.alloc.rate.norm}).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TraceBenchmark {
+
+    @Param({"full", "summary", "off"})
+    public String trace;
+
+    @Param({"chain", "fanout"})
+    public String shape;
+
+    @Param({"100", "1000"})
+    public int size;
+
+    private Engine engine;
+    private ExecutionPlan plan;
+    private Map<String, Object> inputs;
+    private RunOptions options;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        engine = new Engine(new NodeExecutorRegistry(List.of(new LlmNodeExecutor())), null, 1);
+        plan = engine.compile("bench", 1, Graphs.of(shape, size));
+        inputs = Graphs.inputs();
+        options = RunOptions.DEFAULT.withTrace(new TraceOptions(TraceLevel.of(trace), 0, 64));
+    }
+
+    @Benchmark
+    public FlowRunResult run() {
+        return engine.runAsync(plan, inputs, options).join();
+    }
+}
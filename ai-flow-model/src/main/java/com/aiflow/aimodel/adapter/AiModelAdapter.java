@@ -48,6 +48,36 @@ public interface AiModelAdapter {
     CompletableFuture<String> generateTextAsync(AiModelConfig config, String prompt,
                                               Integer maxTokens, Double temperature, Double topP);
     
+    /**
+     * 生成文本并返回用量（同步）。默认不含 token 用量，能拿到用量的适配器应覆盖此方法
+     */
+    default Generation generate(AiModelConfig config, String prompt) {
+        return Generation.of(generateText(config, prompt));
+    }
+    
+    /**
+     * 生成文本并返回用量（带参数）
+     */
+    default Generation generate(AiModelConfig config, String prompt,
+                                Integer maxTokens, Double temperature, Double topP) {
+        return Generation.of(generateText(config, prompt, maxTokens, temperature, topP));
+    }
+    
+    /**
+     * 生成文本并返回用量（异步）
+     */
+    default CompletableFuture<Generation> generateAsync(AiModelConfig config, String prompt) {
+        return generateTextAsync(config, prompt).thenApply(Generation::of);
+    }
+    
+    /**
+     * 生成文本并返回用量（带参数，异步）
+     */
+    default CompletableFuture<Generation> generateAsync(AiModelConfig config, String prompt,
+                                                        Integer maxTokens, Double temperature, Double topP) {
+        return generateTextAsync(config, prompt, maxTokens, temperature, topP).thenApply(Generation::of);
+    }
+    
     /**
      * 流式生成文本
      */
@@ -86,6 +116,19 @@ public interface AiModelAdapter {
         java.time.LocalDateTime lastUpdated
     ) {}
     
+    /**
+     * 一次生成的结果，token 数在模型未返回用量时为空
+     */
+    record Generation(
+        String text,
+        Integer inputTokens,
+        Integer outputTokens
+    ) {
+        public static Generation of(String text) {
+            return new Generation(text, null, null);
+        }
+    }
+    
     /**
      * 模型状态
      */
@@ -3,15 +3,19 @@ package com.aiflow.aimodel.adapter.impl;
 import com.aiflow.aimodel.adapter.AiModelAdapter;
 import com.aiflow.aimodel.model.AiModelConfig;
 import com.aiflow.aimodel.model.AiModelType;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.openai.OpenAiChatModel;
 import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 /**
@@ -52,13 +56,7 @@ public class OpenAiAdapter implements AiModelAdapter {
     
     @Override
     public String generateText(AiModelConfig config, String prompt) {
-        try {
-            ChatLanguageModel model = createModel(config);
-            return model.generate(prompt);
-        } catch (Exception e) {
-            log.error("OpenAI文本生成失败", e);
-            throw new RuntimeException("OpenAI文本生成失败: " + e.getMessage(), e);
-        }
+        return generate(config, prompt).text();
     }
     
     @Override
@@ -69,13 +67,7 @@ public class OpenAiAdapter implements AiModelAdapter {
     @Override
     public String generateText(AiModelConfig config, String prompt, 
                              Integer maxTokens, Double temperature, Double topP) {
-        try {
-            ChatLanguageModel model = createModelWithParams(config, maxTokens, temperature, topP);
-            return model.generate(prompt);
-        } catch (Exception e) {
-            log.error("OpenAI文本生成失败", e);
-            throw new RuntimeException("OpenAI文本生成失败: " + e.getMessage(), e);
-        }
+        return generate(config, prompt, maxTokens, temperature, topP).text();
     }
     
     @Override
@@ -85,6 +77,44 @@ public class OpenAiAdapter implements AiModelAdapter {
             generateText(config, prompt, maxTokens, temperature, topP));
     }
     
+    @Override
+    public Generation generate(AiModelConfig config, String prompt) {
+        return generate(() -> createModel(config), prompt);
+    }
+    
+    @Override
+    public Generation generate(AiModelConfig config, String prompt,
+                               Integer maxTokens, Double temperature, Double topP) {
+        return generate(() -> createModelWithParams(config, maxTokens, temperature, topP), prompt);
+    }
+    
+    @Override
+    public CompletableFuture<Generation> generateAsync(AiModelConfig config, String prompt) {
+        return CompletableFuture.supplyAsync(() -> generate(config, prompt));
+    }
+    
+    @Override
+    public CompletableFuture<Generation> generateAsync(AiModelConfig config, String prompt,
+                                                       Integer maxTokens, Double temperature, Double topP) {
+        return CompletableFuture.supplyAsync(() -> generate(config, prompt, maxTokens, temperature, topP));
+    }
+    
+    /**
+     * 调用模型并带回 token 用量
+     */
+    private Generation generate(Supplier<ChatLanguageModel> model, String prompt) {
+        try {
+            Response<AiMessage> response = model.get().generate(UserMessage.from(prompt));
+            TokenUsage usage = response.tokenUsage();
+            return new Generation(response.content().text(),
+                    usage != null ? usage.inputTokenCount() : null,
+                    usage != null ? usage.outputTokenCount() : null);
+        } catch (Exception e) {
+            log.error("OpenAI文本生成失败", e);
+            throw new RuntimeException("OpenAI文本生成失败: " + e.getMessage(), e);
+        }
+    }
+    
     @Override
     public Stream<String> generateTextStream(AiModelConfig config, String prompt) {
         try {
@@ -3,6 +3,8 @@ package com.aiflow.aimodel.config;
 import com.aiflow.aimodel.adapter.AiModelAdapter;
 import com.aiflow.aimodel.factory.AiModelFactory;
 import com.aiflow.aimodel.service.AiModelService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -33,7 +35,7 @@ public class AiModelAutoConfiguration {
      */
     @Bean
     @ConditionalOnMissingBean
-    public AiModelService aiModelService(AiModelFactory modelFactory) {
-        return new AiModelService(modelFactory);
+    public AiModelService aiModelService(AiModelFactory modelFactory, ObjectProvider<MeterRegistry> meterRegistry) {
+        return new AiModelService(modelFactory, meterRegistry);
     }
 } 
\ No newline at end of file
@@ -14,7 +14,7 @@ import jakarta.validation.constraints.Max;
  * AI模型配置
  */
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class AiModelConfig {
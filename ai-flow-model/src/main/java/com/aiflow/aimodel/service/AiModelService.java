@@ -4,27 +4,52 @@ import com.aiflow.aimodel.adapter.AiModelAdapter;
 import com.aiflow.aimodel.factory.AiModelFactory;
 import com.aiflow.aimodel.model.AiModelConfig;
 import com.aiflow.aimodel.model.AiModelType;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.io.InterruptedIOException;
+import java.time.Duration;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Stream;
 
 /**
  * AI模型服务类
  * 提供AI模型的高级服务接口
+ *
+ * 非流式调用记录指标：ai.model.call（耗时，按模型类型与结果 success|error|timeout 分组）、
+ * ai.model.tokens（每次调用的 token 数，按模型类型与方向 input|output 分组，仅在模型返回用量时记录）
  */
 @Slf4j
 @Service
 public class AiModelService {
     
     private final AiModelFactory modelFactory;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ModelMeters> meters = new ConcurrentHashMap<>();
     
-    @Autowired
     public AiModelService(AiModelFactory modelFactory) {
+        this(modelFactory, Metrics.globalRegistry);
+    }
+    
+    @Autowired
+    public AiModelService(AiModelFactory modelFactory, ObjectProvider<MeterRegistry> meterRegistry) {
+        this(modelFactory, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+    
+    public AiModelService(AiModelFactory modelFactory, MeterRegistry meterRegistry) {
         this.modelFactory = modelFactory;
+        this.meterRegistry = meterRegistry;
     }
     
     /**
@@ -33,7 +58,15 @@ public class AiModelService {
     public String generateText(AiModelConfig config, String prompt) {
         log.info("使用模型 {} 生成文本", config.getName());
         AiModelAdapter adapter = modelFactory.getAdapter(config);
-        return adapter.generateText(config, prompt);
+        long start = System.nanoTime();
+        try {
+            AiModelAdapter.Generation generation = adapter.generate(config, prompt);
+            record(config, start, generation, null);
+            return generation.text();
+        } catch (RuntimeException e) {
+            record(config, start, null, e);
+            throw e;
+        }
     }
     
     /**
@@ -42,7 +75,46 @@ public class AiModelService {
     public CompletableFuture<String> generateTextAsync(AiModelConfig config, String prompt) {
         log.info("异步使用模型 {} 生成文本", config.getName());
         AiModelAdapter adapter = modelFactory.getAdapter(config);
-        return adapter.generateTextAsync(config, prompt);
+        return timed(config, adapter.generateAsync(config, prompt), null);
+    }
+    
+    /**
+     * 在剩余时间预算内生成文本（流程节点传入 ExecutionContext 的剩余时限）。
+     * 单次调用超时取配置超时与预算的较小值，重试次数减到所有尝试都能在预算内结束。
+     */
+    public String generateText(AiModelConfig config, String prompt, Duration budget) {
+        return generateText(withinBudget(config, budget), prompt);
+    }
+
+    /**
+     * 在剩余时间预算内异步生成文本，预算耗尽时返回的 Future 以 TimeoutException 失败
+     */
+    public CompletableFuture<String> generateTextAsync(AiModelConfig config, String prompt, Duration budget) {
+        AiModelConfig bounded = withinBudget(config, budget);
+        log.info("异步使用模型 {} 生成文本", bounded.getName());
+        AiModelAdapter adapter = modelFactory.getAdapter(bounded);
+        return timed(bounded, adapter.generateAsync(bounded, prompt), budget);
+    }
+
+    /**
+     * 按时间预算收紧配置的超时与重试次数，使所有尝试加起来不超过预算；预算为空时原样返回
+     */
+    private AiModelConfig withinBudget(AiModelConfig config, Duration budget) {
+        if (budget == null) {
+            return config;
+        }
+        long budgetMs = Math.max(1, budget.toMillis());
+        long timeoutMs = config.getTimeout() != null ? config.getTimeout() : budgetMs;
+        int retries = config.getMaxRetries() != null ? config.getMaxRetries() : 0;
+        long callMs = Math.min(timeoutMs, budgetMs);
+        int affordableRetries = (int) Math.min(retries, budgetMs / callMs - 1);
+        if (callMs == timeoutMs && affordableRetries == retries) {
+            return config;
+        }
+        return config.toBuilder()
+                .timeout(callMs)
+                .maxRetries(affordableRetries)
+                .build();
     }
     
     /**
@@ -53,7 +125,15 @@ public class AiModelService {
         log.info("使用模型 {} 生成文本，参数: maxTokens={}, temperature={}, topP={}", 
                 config.getName(), maxTokens, temperature, topP);
         AiModelAdapter adapter = modelFactory.getAdapter(config);
-        return adapter.generateText(config, prompt, maxTokens, temperature, topP);
+        long start = System.nanoTime();
+        try {
+            AiModelAdapter.Generation generation = adapter.generate(config, prompt, maxTokens, temperature, topP);
+            record(config, start, generation, null);
+            return generation.text();
+        } catch (RuntimeException e) {
+            record(config, start, null, e);
+            throw e;
+        }
     }
     
     /**
@@ -64,7 +144,7 @@ public class AiModelService {
         log.info("异步使用模型 {} 生成文本，参数: maxTokens={}, temperature={}, topP={}", 
                 config.getName(), maxTokens, temperature, topP);
         AiModelAdapter adapter = modelFactory.getAdapter(config);
-        return adapter.generateTextAsync(config, prompt, maxTokens, temperature, topP);
+        return timed(config, adapter.generateAsync(config, prompt, maxTokens, temperature, topP), null);
     }
     
     /**
@@ -76,6 +156,23 @@ public class AiModelService {
         return adapter.generateTextStream(config, prompt);
     }
     
+    /**
+     * 在剩余时间预算内流式生成文本，超时与重试次数同 {@link #generateText(AiModelConfig, String, Duration)} 收紧；
+     * 预算为空时不限。调用失败时记录指标，成功的调用在流关闭时记录耗时
+     */
+    public Stream<String> generateTextStream(AiModelConfig config, String prompt, Duration budget) {
+        AiModelConfig bounded = withinBudget(config, budget);
+        log.info("使用模型 {} 流式生成文本", bounded.getName());
+        AiModelAdapter adapter = modelFactory.getAdapter(bounded);
+        long start = System.nanoTime();
+        try {
+            return adapter.generateTextStream(bounded, prompt).onClose(() -> record(bounded, start, null, null));
+        } catch (RuntimeException e) {
+            record(bounded, start, null, e);
+            throw e;
+        }
+    }
+
     /**
      * 带参数流式生成文本
      */
@@ -156,4 +253,79 @@ public class AiModelService {
     public boolean isModelTypeSupported(String modelTypeCode) {
         return modelFactory.isModelTypeSupported(modelTypeCode);
     }
-} 
\ No newline at end of file
+
+    /**
+     * 给异步调用加上预算超时并记录指标，返回生成的文本
+     */
+    private CompletableFuture<String> timed(AiModelConfig config, CompletableFuture<AiModelAdapter.Generation> call,
+                                            Duration budget) {
+        long start = System.nanoTime();
+        if (budget != null) {
+            call = call.orTimeout(Math.max(1, budget.toMillis()), TimeUnit.MILLISECONDS);
+        }
+        return call.whenComplete((generation, error) -> record(config, start, generation, error))
+                .thenApply(AiModelAdapter.Generation::text);
+    }
+
+    /**
+     * 记录一次非流式调用的耗时与 token 用量
+     */
+    private void record(AiModelConfig config, long start, AiModelAdapter.Generation generation, Throwable error) {
+        try {
+            ModelMeters m = meters.computeIfAbsent(
+                    config.getType() != null ? config.getType().getCode() : "unknown", this::createMeters);
+            long nanos = System.nanoTime() - start;
+            if (error == null) {
+                m.success().record(nanos, TimeUnit.NANOSECONDS);
+                if (generation != null && generation.inputTokens() != null) m.inputTokens().record(generation.inputTokens());
+                if (generation != null && generation.outputTokens() != null) m.outputTokens().record(generation.outputTokens());
+            } else {
+                (isTimeout(error) ? m.timeout() : m.error()).record(nanos, TimeUnit.NANOSECONDS);
+            }
+        } catch (RuntimeException e) {
+            log.debug("记录模型调用指标失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 预算超时或底层 HTTP 超时（被适配器包装在 RuntimeException 中）都算超时
+     */
+    private static boolean isTimeout(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause() == t ? null : t.getCause()) {
+            if (t instanceof TimeoutException || t instanceof InterruptedIOException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private ModelMeters createMeters(String tag) {
+        return new ModelMeters(
+                callTimer(tag, "success"),
+                callTimer(tag, "error"),
+                callTimer(tag, "timeout"),
+                tokenSummary(tag, "input"),
+                tokenSummary(tag, "output"));
+    }
+
+    private Timer callTimer(String type, String outcome) {
+        return Timer.builder("ai.model.call")
+                .description("Latency of non-streaming model calls")
+                .tag("type", type)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary tokenSummary(String type, String direction) {
+        return DistributionSummary.builder("ai.model.tokens")
+                .description("Tokens per model call, as reported by the provider")
+                .baseUnit("tokens")
+                .tag("type", type)
+                .tag("direction", direction)
+                .register(meterRegistry);
+    }
+
+    private record ModelMeters(Timer success, Timer error, Timer timeout,
+                               DistributionSummary inputTokens, DistributionSummary outputTokens) {}
+}
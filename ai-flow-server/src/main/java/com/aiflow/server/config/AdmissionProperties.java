@@ -0,0 +1,55 @@
+package com.aiflow.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 流程运行准入控制配置
+ *
+ * 运行数超过全局或单流程上限时进入有界等待队列，排队超时或队列已满时返回 429。
+ * 上限小于等于 0 表示不限制。子流程属于父流程的一次运行，不单独占用名额。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai-flow.admission")
+public class AdmissionProperties {
+
+    /**
+     * 是否启用准入控制
+     */
+    private boolean enabled = true;
+
+    /**
+     * 全局最大并发运行数
+     */
+    private int maxConcurrentRuns = 64;
+
+    /**
+     * 单个流程默认最大并发运行数
+     */
+    private int maxConcurrentRunsPerFlow = 8;
+
+    /**
+     * 按流程ID单独设置的并发上限，覆盖默认值
+     */
+    private Map<String, Integer> flowLimits = new HashMap<>();
+
+    /**
+     * 等待队列容量，满时直接拒绝
+     */
+    private int queueCapacity = 256;
+
+    /**
+     * 排队最长等待时间（毫秒），超时拒绝
+     */
+    private long queueTimeoutMs = 10000;
+
+    /**
+     * 拒绝时返回的 Retry-After（秒）
+     */
+    private int retryAfterSeconds = 2;
+}
@@ -0,0 +1,37 @@
+package com.aiflow.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 批量运行配置
+ *
+ * 每条输入仍是一次普通运行，同样经过准入控制并写入运行历史；并发数不宜超过单流程准入上限，
+ * 超出部分只会在准入队列中等待。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai-flow.batch")
+public class BatchProperties {
+
+    /**
+     * 请求未指定 concurrency 时的并发运行数
+     */
+    private int defaultConcurrency = 4;
+
+    /**
+     * 单个批次允许的最大并发运行数
+     */
+    private int maxConcurrency = 8;
+
+    /**
+     * 同时进行的批次数上限，超出时返回 429
+     */
+    private int maxActiveBatches = 4;
+
+    /**
+     * 单个批次的响应时限（毫秒），到期后不再提交新的输入
+     */
+    private long timeoutMs = 3_600_000;
+}
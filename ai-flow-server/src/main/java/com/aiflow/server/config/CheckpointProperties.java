@@ -0,0 +1,53 @@
+package com.aiflow.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 运行检查点配置
+ *
+ * 节点完成后把其写入的变量和分支选择追加到 t_flow_checkpoint_node（gzip 压缩的 JSON），
+ * 运行失败或服务重启后可按 runId 从检查点续跑，已完成的节点不再重复执行。
+ * 写入走有界队列 + 后台批量落库，运行成功后检查点即被删除。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai-flow.checkpoint")
+public class CheckpointProperties {
+
+    /**
+     * 是否启用检查点
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每完成多少个节点写一次检查点；小于等于 0 表示只在运行失败时写（服务重启时无法续跑）
+     */
+    private int interval = 1;
+
+    /**
+     * 可执行节点数少于该值的流程不写检查点，短流程重跑比写检查点更便宜
+     */
+    private int minNodes = 3;
+
+    /**
+     * 内存队列容量（待写操作数），超出后该运行不再写检查点
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 单批写入的最大操作数
+     */
+    private int batchSize = 500;
+
+    /**
+     * 未攒满一批时的最长等待时间（毫秒）
+     */
+    private long flushIntervalMs = 200;
+
+    /**
+     * 未完成运行的检查点保留时长（小时），小于等于 0 表示不清理
+     */
+    private int retentionHours = 72;
+}
@@ -1,20 +1,116 @@
 package com.aiflow.server.config;
 
 import com.aiflow.server.engine.Engine;
-import com.aiflow.server.engine.LlmNodeExecutor;
+import com.aiflow.server.engine.EngineMetrics;
+import com.aiflow.server.engine.MicrometerEngineMetrics;
 import com.aiflow.server.engine.NodeExecutor;
+import com.aiflow.server.engine.NodeExecutorRegistry;
+import com.aiflow.server.engine.NodeResultCache;
+import com.aiflow.server.engine.PlanCache;
+import com.aiflow.server.engine.ScriptSandbox;
+import com.aiflow.server.entity.NodeTypeEntity;
+import com.aiflow.server.service.NodeTypeService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationRunner;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+@Slf4j
 @Configuration
 public class EngineConfig {
+
+    /**
+     * Every NodeExecutor bean is registered; duplicate type codes fail startup.
+     */
+    @Bean
+    public NodeExecutorRegistry nodeExecutorRegistry(List<NodeExecutor> executors) {
+        return new NodeExecutorRegistry(executors);
+    }
+
+    // the node pool is owned by the engine rather than exposed as an Executor bean,
+    // which would otherwise replace Spring Boot's applicationTaskExecutor
+    @Bean(destroyMethod = "shutdown")
+    public Engine engine(NodeExecutorRegistry registry, EngineProperties properties, EngineMetrics engineMetrics,
+                         MeterRegistry meterRegistry) {
+        NodeResultCache nodeCache = new NodeResultCache(properties.getNodeCacheMaxNodes());
+        // read from the cache's own counters when scraped, nothing is recorded per lookup
+        FunctionCounter.builder("flow.node.cache.requests", nodeCache, c -> c.stats().hits)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("flow.node.cache.requests", nodeCache, c -> c.stats().misses)
+                .tag("result", "miss").register(meterRegistry);
+        FunctionCounter.builder("flow.node.cache.evictions", nodeCache, c -> c.stats().evictions)
+                .register(meterRegistry);
+        Engine engine = new Engine(registry, createNodePool(properties), properties.getMaxParallelism(), nodeCache);
+        engine.setMetrics(engineMetrics);
+        return engine;
+    }
+
+    @Bean
+    public EngineMetrics engineMetrics(MeterRegistry meterRegistry, EngineProperties properties) {
+        return new MicrometerEngineMetrics(meterRegistry, properties.getMetricsMaxFlows());
+    }
+
+    @Bean
+    public PlanCache planCache(EngineProperties properties, MeterRegistry meterRegistry) {
+        PlanCache planCache = new PlanCache(properties.getPlanCacheSize(), properties.getPlanCacheRevalidateMs());
+        FunctionCounter.builder("flow.plan.cache.requests", planCache, c -> c.stats().hits)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("flow.plan.cache.requests", planCache, c -> c.stats().misses)
+                .tag("result", "miss").register(meterRegistry);
+        return planCache;
+    }
+
+    @Bean(destroyMethod = "shutdown")
+    public ScriptSandbox scriptSandbox(EngineProperties properties, MeterRegistry meterRegistry) {
+        ScriptSandbox sandbox = new ScriptSandbox(properties.getScriptPoolSize(), properties.getScriptCacheSize());
+        FunctionCounter.builder("flow.script.cache.requests", sandbox, ScriptSandbox::cacheHits)
+                .tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("flow.script.cache.requests", sandbox, ScriptSandbox::cacheMisses)
+                .tag("result", "miss").register(meterRegistry);
+        return sandbox;
+    }
+
+    /**
+     * Reports node types enabled in t_node_type that no executor can run.
+     */
     @Bean
-    public Engine engine() {
-        List<NodeExecutor> executors = List.of(
-                new LlmNodeExecutor()
-        );
-        return new Engine(executors);
+    public ApplicationRunner nodeExecutorCoverageCheck(NodeExecutorRegistry registry, NodeTypeService nodeTypeService) {
+        return args -> {
+            try {
+                List<String> codes = nodeTypeService.listAllNodeTypes().stream()
+                        .map(NodeTypeEntity::getTypeCode)
+                        .toList();
+                List<String> missing = registry.findMissing(codes);
+                if (missing.isEmpty()) {
+                    log.info("所有已启用节点类型均有对应执行器");
+                } else {
+                    log.warn("以下已启用节点类型没有对应执行器，运行时将被跳过: {}", missing);
+                }
+            } catch (Exception e) {
+                log.warn("无法检查节点执行器覆盖情况: {}", e.getMessage());
+            }
+        };
+    }
+
+    private ExecutorService createNodePool(EngineProperties properties) {
+        if (properties.isVirtualThreads()) {
+            try {
+                // looked up reflectively so the server still builds and runs on JDK 17
+                ExecutorService pool = (ExecutorService) Executors.class
+                        .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+                log.info("流程引擎使用虚拟线程执行节点");
+                return pool;
+            } catch (ReflectiveOperationException e) {
+                log.info("当前JDK不支持虚拟线程，流程引擎使用固定线程池: {}", properties.getPoolSize());
+            }
+        }
+        return Executors.newFixedThreadPool(properties.getPoolSize(), new CustomizableThreadFactory("flow-engine-"));
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,127 @@
+package com.aiflow.server.config;
+
+import com.aiflow.server.engine.TraceLevel;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 流程引擎配置属性
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai-flow.engine")
+public class EngineProperties {
+
+    /**
+     * 流程运行时：engine（内置调度器，支持检查点与节点结果缓存）或 liteflow（保存流程图时编译为 LiteFlow EL 链并按链执行）
+     */
+    private RuntimeType runtime = RuntimeType.ENGINE;
+
+    /**
+     * 节点执行线程池大小（所有运行共享，未启用虚拟线程时生效）
+     */
+    private int poolSize = 16;
+
+    /**
+     * 运行时支持时（JDK 21+）使用虚拟线程执行节点，否则回退到固定线程池
+     */
+    private boolean virtualThreads = true;
+
+    /**
+     * 单次运行最多同时执行的节点数
+     */
+    private int maxParallelism = 4;
+
+    /**
+     * 编译后执行计划的缓存容量（按流程数）
+     */
+    private int planCacheSize = 256;
+
+    /**
+     * 缓存的执行计划超过该时间（毫秒）未核对时，使用前先查询数据库中的版本号，
+     * 其他实例保存的流程图最迟在此时间后生效；0 表示每次使用都核对
+     */
+    private long planCacheRevalidateMs = 1000;
+
+    /**
+     * 子流程最大嵌套层数（含顶层流程），超出时子流程节点直接失败
+     */
+    private int maxSubprocessDepth = 8;
+
+    /**
+     * map 节点未配置 concurrency 时同时执行的元素数
+     */
+    private int mapConcurrency = 4;
+
+    /**
+     * map 节点 concurrency 的上限
+     */
+    private int mapMaxConcurrency = 16;
+
+    /**
+     * map 节点单次最多处理的元素数，超出时节点失败
+     */
+    private int mapMaxItems = 10_000;
+
+    /**
+     * 节点结果缓存最多保存多少种节点配置（每种配置的条目数与过期时间由节点的 cache 属性决定）
+     */
+    private int nodeCacheMaxNodes = 1024;
+
+    /**
+     * 运行的默认时限（毫秒），从请求到达时开始计算，排队等待也计入；开始节点的 runTimeout 属性可覆盖，0 表示不限
+     */
+    private long runTimeoutMs = 300_000;
+
+    /**
+     * 请求参数 timeoutMs 与开始节点 runTimeout 允许的最大时限（毫秒），0 表示不限
+     */
+    private long maxRunTimeoutMs = 600_000;
+
+    /**
+     * 运行耗时指标按 flowId 打标签，超过该数量的流程合并记为 _other，避免标签无限增长
+     */
+    private int metricsMaxFlows = 500;
+
+    /**
+     * 默认轨迹级别：off（不记录）/ summary（截断长字符串）/ sampled（按比例完整记录，其余为 summary）/ full；
+     * 开始节点的 trace 属性与请求参数 trace 可覆盖
+     */
+    private TraceLevel traceLevel = TraceLevel.FULL;
+
+    /**
+     * sampled 级别下完整记录轨迹的运行比例（百分比），开始节点的 traceSamplePercent 属性可覆盖
+     */
+    private double traceSamplePercent = 10;
+
+    /**
+     * summary 级别下轨迹中字符串的最大长度，超出部分截断
+     */
+    private int traceMaxValueLength = 256;
+
+    /**
+     * 执行脚本节点的线程数，也是同时执行的脚本数与预先准备的脚本上下文数
+     */
+    private int scriptPoolSize = 4;
+
+    /**
+     * 按内容哈希缓存的已编译脚本数
+     */
+    private int scriptCacheSize = 512;
+
+    /**
+     * 单次脚本执行的 CPU 时间上限（毫秒），节点的 maxCpuMs 只能调低，0 表示不限
+     */
+    private long scriptMaxCpuMs = 1_000;
+
+    /**
+     * 单次脚本执行最多分配的内存（字节），节点的 maxMemoryBytes 只能调低，0 表示不限
+     */
+    private long scriptMaxMemoryBytes = 64L * 1024 * 1024;
+
+    public enum RuntimeType {
+        ENGINE,
+        LITEFLOW
+    }
+}
@@ -0,0 +1,27 @@
+package com.aiflow.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 流程图存储配置
+ *
+ * 流程图以 Smile 二进制分两列存储：执行部分 t_flow.graph_data 与画布布局 t_flow.layout_data。
+ * 旧版本写入 t_flow.graph_json 的流程在启动后由后台线程分批转换，转换前照常按 JSON 读取。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai-flow.flow-storage")
+public class FlowStorageProperties {
+
+    /**
+     * 启动后是否把仍为 graph_json 的流程转换为二进制格式
+     */
+    private boolean migrateOnStartup = true;
+
+    /**
+     * 转换时每批处理的流程数
+     */
+    private int migrationBatchSize = 100;
+}
@@ -0,0 +1,24 @@
+package com.aiflow.server.config;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.net.http.HttpClient;
+import java.time.Duration;
+
+@Configuration
+public class HttpClientConfig {
+
+    /**
+     * One client for every HTTP call made by flows: it keeps connections alive and multiplexes HTTP/2 streams,
+     * which a client per call would throw away. Thread-safe.
+     */
+    @Bean
+    public HttpClient flowHttpClient(HttpClientProperties properties) {
+        return HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(properties.getConnectTimeoutMs()))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+}
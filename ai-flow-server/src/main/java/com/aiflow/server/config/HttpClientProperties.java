@@ -0,0 +1,34 @@
+package com.aiflow.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 节点发起 HTTP 请求所用的共享客户端配置
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai-flow.http")
+public class HttpClientProperties {
+
+    /**
+     * 建立连接的超时时间（毫秒）
+     */
+    private long connectTimeoutMs = 5_000;
+
+    /**
+     * 节点未配置 requestTimeout 时单个请求的超时时间（毫秒）
+     */
+    private long requestTimeoutMs = 30_000;
+
+    /**
+     * 节点未配置 maxBytes 时响应体的大小上限（字节），超出则节点失败
+     */
+    private long maxResponseBytes = 10L * 1024 * 1024;
+
+    /**
+     * 开启 httpCache 的 GET 节点共用的响应缓存条目上限
+     */
+    private int cacheMaxEntries = 256;
+}
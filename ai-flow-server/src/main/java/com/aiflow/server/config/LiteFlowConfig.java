@@ -1,11 +1,31 @@
 package com.aiflow.server.config;
 
+import com.yomahub.liteflow.property.LiteflowConfig;
+import jakarta.annotation.PostConstruct;
 import lombok.RequiredArgsConstructor;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.TimeUnit;
+
 @Configuration
 @RequiredArgsConstructor
 public class LiteFlowConfig {
     // LiteFlow Spring Boot Starter will auto-configure FlowExecutor
     // No manual bean creation needed
-} 
\ No newline at end of file
+
+    private final LiteflowConfig liteflowConfig;
+    private final EngineProperties engineProperties;
+
+    /**
+     * WHEN 的等待时间取运行时限的上限 max-run-timeout-ms（0 表示不限），不再使用 LiteFlow 默认的 15 秒；
+     * 各节点在运行自身的时限到达时失败，WHEN 随之结束
+     */
+    @PostConstruct
+    public void applyRunDeadline() {
+        long maxRunTimeoutMs = engineProperties.getMaxRunTimeoutMs();
+        // 已弃用的 liteflow.when-max-wait-seconds 不可配置，否则它优先于这里的设置
+        liteflowConfig.setWhenMaxWaitTime(maxRunTimeoutMs > 0
+                ? (int) Math.min(maxRunTimeoutMs, Integer.MAX_VALUE) : Integer.MAX_VALUE);
+        liteflowConfig.setWhenMaxWaitTimeUnit(TimeUnit.MILLISECONDS);
+    }
+}
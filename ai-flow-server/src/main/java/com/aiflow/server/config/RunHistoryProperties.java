@@ -0,0 +1,37 @@
+package com.aiflow.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 运行历史异步落库配置
+ *
+ * 运行结果先进入有界内存队列，由后台线程按数量或时间批量写入 t_flow_run / t_flow_run_step。
+ * 队列写满（MySQL 变慢或不可用）时直接丢弃新的运行记录并计数，绝不阻塞或失败流程运行本身。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai-flow.run-history")
+public class RunHistoryProperties {
+
+    /**
+     * 是否记录运行历史
+     */
+    private boolean enabled = true;
+
+    /**
+     * 内存队列容量（运行记录条数），超出后丢弃新记录
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 单批写入的最大运行记录数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 未攒满一批时的最长等待时间（毫秒）
+     */
+    private long flushIntervalMs = 1000;
+}
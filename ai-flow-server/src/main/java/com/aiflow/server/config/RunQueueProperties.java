@@ -0,0 +1,68 @@
+package com.aiflow.server.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 分布式运行队列配置
+ *
+ * 提交的运行写入 MySQL 表 t_run_queue，所有实例的工作线程用 SELECT ... FOR UPDATE SKIP LOCKED 认领，
+ * 互不阻塞也不会重复认领。认领即获得一段租约，执行期间定时心跳续租；实例崩溃后租约过期，
+ * 运行由其他实例重新认领（有检查点时从检查点续跑），超过 maxAttempts 次则标记为失败。
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "ai-flow.run-queue")
+public class RunQueueProperties {
+
+    /**
+     * 本实例是否认领并执行队列中的运行；关闭后仍可提交和查询
+     */
+    private boolean workerEnabled = true;
+
+    /**
+     * 本实例同时执行的队列运行数
+     */
+    private int workerConcurrency = 4;
+
+    /**
+     * 实例 ID，为空时取主机名 + 进程号 + 随机后缀
+     */
+    private String instanceId;
+
+    /**
+     * 队列为空时的轮询间隔（毫秒）；本实例提交的运行会立即唤醒轮询
+     */
+    private long pollIntervalMs = 1000;
+
+    /**
+     * 租约时长（毫秒），实例失联超过该时长后运行可被重新认领
+     */
+    private long leaseMs = 30_000;
+
+    /**
+     * 心跳续租间隔（毫秒），应明显小于 leaseMs
+     */
+    private long heartbeatIntervalMs = 10_000;
+
+    /**
+     * 每个运行最多被认领的次数，租约过期时已达上限则标记为失败
+     */
+    private int maxAttempts = 3;
+
+    /**
+     * 查询结果时长轮询的最长等待时间（毫秒）
+     */
+    private long maxWaitMs = 60_000;
+
+    /**
+     * 长轮询期间检查其他实例执行结果的间隔（毫秒）
+     */
+    private long resultPollIntervalMs = 500;
+
+    /**
+     * 已结束运行在队列表中的保留时长（小时），小于等于 0 表示不清理
+     */
+    private int retentionHours = 72;
+}
@@ -20,5 +20,7 @@ public class ServiceConfig {
     public void configureServices() {
         // Set engine for FlowService after dependency injection
         flowService.setEngine(engine);
+        // subprocess nodes load child flows through the same plan cache
+        engine.setPlanResolver(flowService::getPlan);
     }
 } 
\ No newline at end of file
@@ -14,6 +14,7 @@ public class WebConfig implements WebMvcConfigurer {
                                "http://localhost:5174", "http://127.0.0.1:5174")
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders("Retry-After")
                 .allowCredentials(true);
     }
 } 
\ No newline at end of file
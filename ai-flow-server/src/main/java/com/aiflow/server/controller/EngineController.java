@@ -0,0 +1,76 @@
+package com.aiflow.server.controller;
+
+import com.aiflow.server.dto.FlowDtos.FlowBatchSummary;
+import com.aiflow.server.engine.Engine;
+import com.aiflow.server.engine.NodeResultCache;
+import com.aiflow.server.engine.PlanCache;
+import com.aiflow.server.service.FlowAdmissionService;
+import com.aiflow.server.service.FlowBatchService;
+import com.aiflow.server.service.FlowCheckpointService;
+import com.aiflow.server.service.FlowRunHistoryService;
+import com.aiflow.server.service.FlowRunQueueService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/engine")
+@Tag(name = "Engine", description = "流程引擎运行状态")
+@RequiredArgsConstructor
+public class EngineController {
+
+    private final PlanCache planCache;
+    private final Engine engine;
+    private final FlowRunHistoryService runHistoryService;
+    private final FlowAdmissionService admissionService;
+    private final FlowCheckpointService checkpointService;
+    private final FlowBatchService batchService;
+    private final FlowRunQueueService runQueueService;
+
+    @GetMapping("/plan-cache")
+    @Operation(summary = "执行计划缓存统计")
+    public PlanCache.Stats planCacheStats() {
+        return planCache.stats();
+    }
+
+    @GetMapping("/node-cache")
+    @Operation(summary = "节点结果缓存统计")
+    public NodeResultCache.Stats nodeCacheStats() {
+        return engine.getNodeCache().stats();
+    }
+
+    @GetMapping("/run-history")
+    @Operation(summary = "运行历史写入队列统计")
+    public FlowRunHistoryService.Stats runHistoryStats() {
+        return runHistoryService.stats();
+    }
+
+    @GetMapping("/checkpoints")
+    @Operation(summary = "运行检查点写入队列统计")
+    public FlowCheckpointService.Stats checkpointStats() {
+        return checkpointService.stats();
+    }
+
+    @GetMapping("/batches")
+    @Operation(summary = "进行中的批量运行及其进度")
+    public List<FlowBatchSummary> batches() {
+        return batchService.stats();
+    }
+
+    @GetMapping("/admission")
+    @Operation(summary = "运行准入控制统计（并发数、排队数、等待时间、拒绝数）")
+    public FlowAdmissionService.Stats admissionStats() {
+        return admissionService.stats();
+    }
+
+    @GetMapping("/run-queue")
+    @Operation(summary = "分布式运行队列统计（本实例认领、完成、租约丢失数及队列各状态行数）")
+    public FlowRunQueueService.Stats runQueueStats() {
+        return runQueueService.stats();
+    }
+}
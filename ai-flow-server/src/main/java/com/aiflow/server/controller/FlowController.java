@@ -1,30 +1,62 @@
 package com.aiflow.server.controller;
 
 import com.aiflow.server.dto.FlowDtos.FlowGraph;
+import com.aiflow.server.dto.FlowDtos.FlowQueuedRun;
+import com.aiflow.server.dto.FlowDtos.FlowRunDetail;
+import com.aiflow.server.dto.FlowDtos.FlowRunPageResponse;
 import com.aiflow.server.dto.FlowDtos.FlowRunRequest;
 import com.aiflow.server.dto.FlowDtos.FlowRunResult;
 import com.aiflow.server.dto.FlowDtos.FlowSummary;
 import com.aiflow.server.dto.FlowDtos.FlowUpsertRequest;
 import com.aiflow.server.dto.FlowDtos.FlowWithGraphResponse;
+import com.aiflow.server.engine.RunListener;
+import com.aiflow.server.exception.TooManyRunsException;
+import com.aiflow.server.service.FlowBatchService;
+import com.aiflow.server.service.FlowRunQueueService;
 import com.aiflow.server.service.FlowService;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
+@Slf4j
 @RestController
 @RequestMapping("/api/flows")
 @Tag(name = "Flow", description = "流程管理")
 public class FlowController {
 
+    private static final long STREAM_TIMEOUT_MS = 300_000L;
+    private static final MediaType NDJSON = new MediaType("application", "x-ndjson", StandardCharsets.UTF_8);
+
     private final FlowService flowService;
+    private final FlowBatchService batchService;
+    private final FlowRunQueueService runQueueService;
+    private final ObjectMapper objectMapper;
 
-    public FlowController(FlowService flowService) {
+    public FlowController(FlowService flowService, FlowBatchService batchService, FlowRunQueueService runQueueService,
+                          ObjectMapper objectMapper) {
         this.flowService = flowService;
+        this.batchService = batchService;
+        this.runQueueService = runQueueService;
+        this.objectMapper = objectMapper;
     }
 
     @GetMapping
@@ -75,7 +107,157 @@ public class FlowController {
 
     @PostMapping("/{id}/run")
     @Operation(summary = "运行流程（调试）")
-    public FlowRunResult run(@PathVariable("id") String id, @RequestBody FlowRunRequest req) {
-        return flowService.run(id, req);
+    public CompletableFuture<FlowRunResult> run(@PathVariable("id") String id, @RequestBody FlowRunRequest req) {
+        // the servlet thread is released here; the response is written when the run completes
+        return flowService.runAsync(id, req);
+    }
+
+    @PostMapping(value = "/{id}/run-batch", produces = "application/x-ndjson")
+    @Operation(summary = "批量运行流程（NDJSON）",
+            description = "请求体为 inputs 对象的 JSON 数组或 NDJSON；共用同一执行计划按 concurrency 并发运行，"
+                    + "每完成一条输出一行结果（index 对应输入顺序），最后一行为汇总")
+    public ResponseEntity<ResponseBodyEmitter> runBatch(
+            @PathVariable("id") String id,
+            @Parameter(description = "并发运行数") @RequestParam(name = "concurrency", required = false) Integer concurrency,
+            @Parameter(description = "每条输入的运行时限（毫秒）") @RequestParam(name = "timeoutMs", required = false) Long timeoutMs,
+            @Parameter(description = "结果中是否包含节点轨迹") @RequestParam(name = "trace", defaultValue = "false") boolean trace,
+            HttpServletRequest request) throws IOException {
+        ResponseBodyEmitter emitter = new ResponseBodyEmitter(batchService.getTimeoutMs());
+        // the driver thread reads the request body as it goes; results are written one JSON document per line
+        FlowBatchService.Batch batch = batchService.start(id, request.getInputStream(), concurrency, timeoutMs, trace,
+                line -> emitter.send(objectMapper.writeValueAsString(line) + "\n", NDJSON));
+        emitter.onTimeout(() -> batch.cancel("Batch timed out"));
+        emitter.onError(e -> batch.cancel("Client disconnected: " + e.getMessage()));
+        batch.getDone().whenComplete((summary, err) -> emitter.complete());
+        return ResponseEntity.ok()
+                .header("X-Batch-Id", batch.getId())
+                .contentType(NDJSON)
+                .body(emitter);
+    }
+
+    @GetMapping("/{id}/runs")
+    @Operation(summary = "查询流程运行历史")
+    public FlowRunPageResponse listRuns(
+            @PathVariable("id") String id,
+            @Parameter(description = "页码，从1开始") @RequestParam(name = "page", defaultValue = "1") int page,
+            @Parameter(description = "每页条数，最大100") @RequestParam(name = "size", defaultValue = "20") int size
+    ) {
+        return flowService.listRuns(id, page, size);
+    }
+
+    @PostMapping("/{id}/runs")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    @Operation(summary = "提交运行到分布式队列", description = "立即返回 runId，由任一实例认领执行；结果通过 /runs/{runId}/status 查询")
+    public FlowQueuedRun submitRun(@PathVariable("id") String id, @RequestBody(required = false) FlowRunRequest req) {
+        return runQueueService.submit(id, req);
+    }
+
+    @GetMapping("/{id}/runs/{runId}/status")
+    @Operation(summary = "查询队列运行的状态与结果", description = "waitMs 大于 0 时长轮询，运行结束或等待超时时返回")
+    public CompletableFuture<FlowQueuedRun> queuedRunStatus(
+            @PathVariable("id") String id,
+            @PathVariable("runId") String runId,
+            @Parameter(description = "最长等待时间（毫秒），0 表示立即返回") @RequestParam(name = "waitMs", defaultValue = "0") long waitMs
+    ) {
+        return runQueueService.await(id, runId, waitMs);
+    }
+
+    @GetMapping("/{id}/runs/{runId}")
+    @Operation(summary = "获取运行详情（含节点轨迹）")
+    public FlowRunDetail getRun(@PathVariable("id") String id, @PathVariable("runId") String runId) {
+        return flowService.getRun(id, runId);
+    }
+
+    @PostMapping("/{id}/runs/{runId}/resume")
+    @Operation(summary = "从检查点续跑运行", description = "失败或因服务重启中断的运行从最后完成的节点继续，沿用原 runId，已完成节点不再执行")
+    public CompletableFuture<FlowRunResult> resume(@PathVariable("id") String id, @PathVariable("runId") String runId) {
+        return flowService.resume(id, runId, RunListener.NOOP);
+    }
+
+    @PostMapping(value = "/{id}/run/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "流式运行流程（SSE）", description = "每个节点完成即推送 step 事件，LLM输出推送 token 事件，最后推送 result 事件")
+    public SseEmitter runStream(@PathVariable("id") String id, @RequestBody(required = false) FlowRunRequest req) {
+        return stream(id, req != null ? req : new FlowRunRequest());
+    }
+
+    @GetMapping(value = "/{id}/run/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "流式运行流程（SSE，查询参数作为输入）")
+    public SseEmitter runStreamGet(@PathVariable("id") String id,
+                                   @Parameter(description = "流程输入") @RequestParam Map<String, String> inputs) {
+        FlowRunRequest req = new FlowRunRequest();
+        req.inputs = new HashMap<>(inputs);
+        return stream(id, req);
+    }
+
+    private SseEmitter stream(String id, FlowRunRequest req) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MS);
+        SseRunListener listener = new SseRunListener(emitter);
+        CompletableFuture<FlowRunResult> run = flowService.runAsync(id, req, listener);
+        if (run.isCompletedExceptionally()) {
+            // rejected by admission control before anything was streamed: answer with a plain 429
+            try {
+                run.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof TooManyRunsException rejected) throw rejected;
+            }
+        }
+        run.whenComplete((result, err) -> {
+            if (err != null) {
+                Throwable cause = err.getCause() != null ? err.getCause() : err;
+                listener.send("error", Map.of("message", String.valueOf(cause.getMessage())));
+            } else {
+                listener.send("result", result);
+            }
+            emitter.complete();
+        });
+        return emitter;
+    }
+
+    /**
+     * Forwards run progress to the SSE client; once the client has gone away further events are dropped.
+     */
+    private static class SseRunListener implements RunListener {
+        private final SseEmitter emitter;
+        private volatile boolean closed;
+
+        SseRunListener(SseEmitter emitter) {
+            this.emitter = emitter;
+            emitter.onCompletion(() -> closed = true);
+            emitter.onTimeout(() -> closed = true);
+            emitter.onError(e -> closed = true);
+        }
+
+        @Override
+        public void onStep(Map<String, Object> step) {
+            send("step", step);
+        }
+
+        @Override
+        public void onToken(String nodeId, String token) {
+            if (nodeId == null || token == null) return;
+            send("token", Map.of("nodeId", nodeId, "token", token));
+        }
+
+        @Override
+        public void onItem(String nodeId, int index, Object result, String error) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("nodeId", nodeId);
+            item.put("index", index);
+            if (error != null) item.put("error", error);
+            else item.put("result", result);
+            send("item", item);
+        }
+
+        void send(String name, Object data) {
+            if (closed) return;
+            try {
+                synchronized (this) {
+                    emitter.send(SseEmitter.event().name(name).data(data, MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                closed = true;
+                log.debug("SSE client disconnected: {}", e.getMessage());
+            }
+        }
     }
-} 
\ No newline at end of file
+}
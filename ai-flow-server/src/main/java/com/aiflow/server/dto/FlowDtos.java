@@ -1,5 +1,6 @@
 package com.aiflow.server.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 
@@ -57,6 +58,10 @@ public class FlowDtos {
 
     public static class FlowRunRequest {
         public Map<String, Object> inputs;
+        /** 本次运行的时限（毫秒），为空时取开始节点的 runTimeout 或全局默认值 */
+        public Long timeoutMs;
+        /** 本次运行的轨迹级别 off|summary|sampled|full，为空时取开始节点的 trace 或全局默认值 */
+        public String trace;
     }
 
     public static class FlowRunResult {
@@ -65,4 +70,84 @@ public class FlowDtos {
         public Map<String, Object> outputs;
         public List<Map<String, Object>> trace;
     }
-} 
\ No newline at end of file
+
+    public static class FlowRunSummary {
+        public String runId;
+        public String flowId;
+        public String status; // success|failed|timeout
+        public String errorMessage;
+        public Integer stepCount;
+        public Instant startedAt;
+        public Instant finishedAt;
+        public Long durationMs;
+    }
+
+    public static class FlowRunDetail extends FlowRunSummary {
+        public Map<String, Object> inputs;
+        public Map<String, Object> outputs;
+        public List<Map<String, Object>> trace;
+    }
+
+    public static class FlowRunPageResponse {
+        public List<FlowRunSummary> records;
+        public Long total;
+        public Integer page;
+        public Integer size;
+    }
+
+    /**
+     * 批量运行中一条输入的结果，按完成顺序逐行返回（NDJSON），用 index 对应输入顺序
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class FlowBatchItemResult {
+        public final String type = "result";
+        public long index;
+        public String runId;
+        public String status; // success|failed|timeout|rejected
+        public Map<String, Object> outputs;
+        public List<Map<String, Object>> trace;
+        public String error;
+        public String nodeId;
+        public long durationMs;
+    }
+
+    /**
+     * 批量运行进度；作为响应最后一行返回，运行中的批次可通过 GET /api/engine/batches 查询
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class FlowBatchSummary {
+        public final String type = "summary";
+        public String batchId;
+        public String flowId;
+        public Long version;
+        public int concurrency;
+        public long submitted;
+        public long running;
+        public long succeeded;
+        public long failed;
+        public Instant startedAt;
+        public long durationMs;
+        /** 读取输入失败或客户端断开时的原因；为空表示所有输入均已处理 */
+        public String error;
+    }
+
+    /**
+     * 运行队列中的一次运行；提交后立即返回（status 为 queued），之后按 runId 轮询，结束后带 outputs 与 trace
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class FlowQueuedRun {
+        public String runId;
+        public String flowId;
+        public String status; // queued|running|success|failed|timeout
+        /** 已被认领执行的次数，实例崩溃后重新认领时递增 */
+        public int attempts;
+        /** 正在执行该运行的实例 */
+        public String owner;
+        public String errorMessage;
+        public Instant createdAt;
+        public Instant startedAt;
+        public Instant finishedAt;
+        public Map<String, Object> outputs;
+        public List<Map<String, Object>> trace;
+    }
+}
@@ -0,0 +1,28 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+
+import java.util.concurrent.CompletionException;
+
+/**
+ * Executors with a prepared configuration. Override {@link #execute(GraphNode, Object, ExecutionContext)} for
+ * blocking work or {@link #executeAsync} for asynchronous work; the other then follows.
+ */
+public abstract class BaseNodeExecutor implements NodeExecutor {
+
+    @Override
+    public StepResult execute(GraphNode node, ExecutionContext context) {
+        return execute(node, prepare(node), context);
+    }
+
+    /** runs {@link #executeAsync} on the calling thread and waits for it */
+    @Override
+    public StepResult execute(GraphNode node, Object prepared, ExecutionContext context) {
+        try {
+            return executeAsync(node, prepared, context, Runnable::run).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+}
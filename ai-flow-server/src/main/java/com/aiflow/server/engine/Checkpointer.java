@@ -0,0 +1,39 @@
+package com.aiflow.server.engine;
+
+import java.util.List;
+
+/**
+ * Persists the progress of a run so it can be resumed. Called from the engine's scheduler; must not block.
+ */
+public interface Checkpointer {
+
+    Checkpointer NONE = new Checkpointer() {
+        @Override
+        public int interval() {
+            return 0;
+        }
+
+        @Override
+        public void save(String runId, List<RunCheckpoint.NodeState> nodes) {}
+    };
+
+    /**
+     * Finished nodes to collect before {@link #save}; 0 or less saves only when the run fails.
+     */
+    int interval();
+
+    /**
+     * Nodes that finished since the previous call, in completion order.
+     */
+    void save(String runId, List<RunCheckpoint.NodeState> nodes);
+
+    /**
+     * The run succeeded; its checkpoint is no longer needed.
+     */
+    default void completed(String runId) {}
+
+    /**
+     * The run failed after everything it finished has been passed to {@link #save}.
+     */
+    default void failed(String runId, Throwable error) {}
+}
@@ -0,0 +1,166 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import org.springframework.expression.AccessException;
+import org.springframework.expression.EvaluationContext;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ParseException;
+import org.springframework.expression.PropertyAccessor;
+import org.springframework.expression.TypedValue;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.SimpleEvaluationContext;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * condition node: follows the outgoing edges whose label matches the first true SpEL expression (property access
+ * and operators only).
+ */
+@Component
+public class ConditionNodeExecutor extends BaseNodeExecutor {
+
+    private static final SpelExpressionParser PARSER = new SpelExpressionParser();
+    private static final EvaluationContext EVALUATION_CONTEXT = SimpleEvaluationContext
+            .forPropertyAccessors(new LenientMapAccessor())
+            .build();
+
+    @Override
+    public String getType() {
+        return "condition";
+    }
+
+    @Override
+    public Config prepare(GraphNode node) {
+        Map<String, Object> props = node.properties != null ? node.properties : Map.of();
+        List<Branch> branches;
+        String error = null;
+        try {
+            branches = branches(node, props);
+        } catch (IllegalArgumentException e) {
+            // reported when the node runs, so a flow with an unfinished condition can still be saved
+            branches = List.of();
+            error = e.getMessage();
+        }
+        Object defaultLabel = props.get("default");
+        Object output = props.get("output");
+        return new Config(branches,
+                defaultLabel != null && !String.valueOf(defaultLabel).isBlank() ? String.valueOf(defaultLabel).trim() : null,
+                output != null && !String.valueOf(output).isBlank() ? String.valueOf(output) : null,
+                error);
+    }
+
+    private static List<Branch> branches(GraphNode node, Map<String, Object> props) {
+        List<Branch> branches = new ArrayList<>();
+        if (props.get("branches") instanceof List<?> list) {
+            for (Object item : list) {
+                if (!(item instanceof Map<?, ?> m)) continue;
+                Object label = m.get("label");
+                Object expr = m.get("expression");
+                if (label == null || expr == null || String.valueOf(expr).isBlank()) {
+                    throw new IllegalArgumentException("Condition node " + node.id + ": every branch needs a label and an expression");
+                }
+                branches.add(new Branch(String.valueOf(label).trim(), String.valueOf(expr), parse(node, expr)));
+            }
+        } else if (props.get("expression") != null) {
+            Object expr = props.get("expression");
+            Expression parsed = parse(node, expr);
+            branches.add(new Branch("true", String.valueOf(expr), parsed));
+            branches.add(new Branch("false", "!(" + expr + ")", null));
+        }
+        return List.copyOf(branches);
+    }
+
+    @Override
+    public StepResult execute(GraphNode node, Object prepared, ExecutionContext context) {
+        Config cfg = prepared instanceof Config c ? c : prepare(node);
+        if (cfg.error() != null) {
+            throw new IllegalArgumentException(cfg.error());
+        }
+
+        String selected = cfg.defaultLabel();
+        String matched = null;
+        for (Branch b : cfg.branches()) {
+            // a null expression is the implicit "false" branch of a single-expression condition
+            if (b.expression() == null || test(node, b, context.variables)) {
+                selected = b.label();
+                matched = b.source();
+                break;
+            }
+        }
+
+        if (cfg.outputVar() != null) {
+            context.setVar(cfg.outputVar(), selected);
+        }
+
+        StepResult r = new StepResult();
+        r.nodeId = node.id;
+        r.type = node.type;
+        r.outputs = cfg.outputVar() != null && selected != null ? Map.of(cfg.outputVar(), selected) : Map.of();
+        r.branches = selected != null ? Set.of(selected) : Set.of();
+        if (context.isTracing()) {
+            Map<String, Object> trace = new LinkedHashMap<>();
+            trace.put("branch", selected);
+            trace.put("expression", matched);
+            r.trace = trace;
+        }
+        return r;
+    }
+
+    private static boolean test(GraphNode node, Branch branch, Map<String, Object> variables) {
+        try {
+            return Boolean.TRUE.equals(branch.expression().getValue(EVALUATION_CONTEXT, variables, Boolean.class));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Condition node " + node.id + ": cannot evaluate '"
+                    + branch.source() + "': " + e.getMessage(), e);
+        }
+    }
+
+    private static Expression parse(GraphNode node, Object expr) {
+        try {
+            return PARSER.parseExpression(String.valueOf(expr));
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("Condition node " + node.id + ": invalid expression '" + expr + "'", e);
+        }
+    }
+
+    /**
+     * Condition configuration parsed once per plan; {@code error} is set, and {@code branches} empty, when a branch
+     * is incomplete or its expression does not parse.
+     */
+    public record Config(List<Branch> branches, String defaultLabel, String outputVar, String error) {}
+
+    public record Branch(String label, String source, Expression expression) {}
+
+    /** Reads map entries as properties; a missing key is null rather than an error. */
+    private static class LenientMapAccessor implements PropertyAccessor {
+        @Override
+        public Class<?>[] getSpecificTargetClasses() {
+            return new Class<?>[]{Map.class};
+        }
+
+        @Override
+        public boolean canRead(EvaluationContext context, Object target, String name) {
+            return target instanceof Map;
+        }
+
+        @Override
+        public TypedValue read(EvaluationContext context, Object target, String name) throws AccessException {
+            return new TypedValue(((Map<?, ?>) target).get(name));
+        }
+
+        @Override
+        public boolean canWrite(EvaluationContext context, Object target, String name) {
+            return false;
+        }
+
+        @Override
+        public void write(EvaluationContext context, Object target, String name, Object newValue) throws AccessException {
+            throw new AccessException("Condition expressions are read-only");
+        }
+    }
+}
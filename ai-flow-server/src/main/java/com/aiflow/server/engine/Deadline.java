@@ -0,0 +1,83 @@
+package com.aiflow.server.engine;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The {@link System#nanoTime()} instant by which a run or node must finish; a node's timeout only shortens it.
+ */
+public final class Deadline {
+
+    public static final Deadline NONE = new Deadline(0, false);
+
+    private static final ScheduledThreadPoolExecutor TIMER = new ScheduledThreadPoolExecutor(1, r -> {
+        Thread t = new Thread(r, "flow-deadline-timer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    static {
+        // cancelled timers of nodes that finished in time must not pile up until they would have fired
+        TIMER.setRemoveOnCancelPolicy(true);
+    }
+
+    private final long at;
+    private final boolean finite;
+
+    private Deadline(long at, boolean finite) {
+        this.at = at;
+        this.finite = finite;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return afterNanos(timeout.toNanos());
+    }
+
+    public static Deadline afterMillis(long millis) {
+        return afterNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    static Deadline afterNanos(long nanos) {
+        return new Deadline(System.nanoTime() + nanos, true);
+    }
+
+    public boolean isFinite() {
+        return finite;
+    }
+
+    public boolean isExpired() {
+        return finite && System.nanoTime() - at >= 0;
+    }
+
+    /**
+     * @return nanoseconds left, zero or negative once expired; {@link Long#MAX_VALUE} when unbounded
+     */
+    public long remainingNanos() {
+        return finite ? at - System.nanoTime() : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return milliseconds left, never negative; {@link Long#MAX_VALUE} when unbounded
+     */
+    public long remainingMillis() {
+        return finite ? Math.max(0, TimeUnit.NANOSECONDS.toMillis(remainingNanos())) : Long.MAX_VALUE;
+    }
+
+    /**
+     * @return whichever of the two deadlines comes first
+     */
+    public Deadline min(Deadline other) {
+        if (!other.finite) return this;
+        if (!finite) return other;
+        return at - other.at <= 0 ? this : other;
+    }
+
+    /**
+     * Runs {@code task} on the shared timer thread when this deadline expires; the task must be quick.
+     */
+    ScheduledFuture<?> schedule(Runnable task) {
+        return TIMER.schedule(task, Math.max(0, remainingNanos()), TimeUnit.NANOSECONDS);
+    }
+}
@@ -0,0 +1,30 @@
+package com.aiflow.server.engine;
+
+/**
+ * A node ran past its own {@code timeout} or the run ran past its deadline.
+ */
+public class DeadlineExceededException extends RuntimeException {
+
+    private final String nodeId;
+    private final boolean runDeadline;
+
+    public DeadlineExceededException(String message, String nodeId, boolean runDeadline) {
+        super(message);
+        this.nodeId = nodeId;
+        this.runDeadline = runDeadline;
+    }
+
+    /**
+     * @return the node that was running or about to start, null when unknown
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * @return true when the run's deadline expired, false when only the node's own timeout did
+     */
+    public boolean isRunDeadline() {
+        return runDeadline;
+    }
+}
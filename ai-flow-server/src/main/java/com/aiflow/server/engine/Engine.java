@@ -2,64 +2,578 @@ package com.aiflow.server.engine;
 
 import com.aiflow.server.dto.FlowDtos.FlowGraph;
 import com.aiflow.server.dto.FlowDtos.FlowRunResult;
-import com.aiflow.server.dto.FlowDtos.GraphNode;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.Predicate;
 
 public class Engine {
-    private final List<NodeExecutor> executors;
+    private static final Executor DIRECT = Runnable::run;
+
+    private final NodeExecutorRegistry registry;
+    private final ExecutorService pool;
+    private final int maxParallelism;
+    private final NodeResultCache nodeCache;
+    private volatile Function<String, ExecutionPlan> planResolver;
+    private volatile EngineMetrics metrics = EngineMetrics.NONE;
 
     public Engine(List<NodeExecutor> executors) {
-        this.executors = executors;
+        this(new NodeExecutorRegistry(executors), null, 1);
+    }
+
+    public Engine(NodeExecutorRegistry registry, ExecutorService pool, int maxParallelism) {
+        this(registry, pool, maxParallelism, new NodeResultCache(1024));
+    }
+
+    public Engine(NodeExecutorRegistry registry, ExecutorService pool, int maxParallelism, NodeResultCache nodeCache) {
+        this.registry = registry;
+        this.pool = pool;
+        this.maxParallelism = Math.max(1, maxParallelism);
+        this.nodeCache = nodeCache;
     }
 
     public FlowRunResult run(String flowId, FlowGraph graph, Map<String, Object> inputs) {
-        Map<String, Object> variables = new HashMap<>();
-        if (inputs != null) variables.putAll(inputs);
-        NodeExecutor.ExecutionContext ctx = new NodeExecutor.ExecutionContext(variables);
+        return run(compile(flowId, 0, graph), inputs);
+    }
 
-        List<Map<String, Object>> trace = new ArrayList<>();
+    public FlowRunResult run(ExecutionPlan plan, Map<String, Object> inputs) {
+        return run(plan, inputs, maxParallelism);
+    }
 
-        List<GraphNode> nodes = graph != null && graph.nodes != null ? graph.nodes : List.of();
-        Map<String, GraphNode> id2node = nodes.stream().collect(Collectors.toMap(n -> n.id, n -> n, (a,b)->a));
+    public FlowRunResult run(ExecutionPlan plan, Map<String, Object> inputs, int parallelism) {
+        try {
+            return runAsync(plan, inputs, parallelism).join();
+        } catch (CompletionException e) {
+            throw asRuntime(e.getCause() != null ? e.getCause() : e);
+        }
+    }
 
-        // naive order: try to start at node with properties.role == start, then others by appearance
-        List<GraphNode> ordered = new ArrayList<>();
-        for (GraphNode n : nodes) {
-            if (n.properties != null && Objects.equals(String.valueOf(n.properties.get("role")), "start")) {
-                ordered.add(n);
-            }
+    public CompletableFuture<FlowRunResult> runAsync(ExecutionPlan plan, Map<String, Object> inputs) {
+        return runAsync(plan, inputs, RunOptions.DEFAULT);
+    }
+
+    /** Starts a run without blocking the caller. */
+    public CompletableFuture<FlowRunResult> runAsync(ExecutionPlan plan, Map<String, Object> inputs, int parallelism) {
+        return runAsync(plan, inputs, RunOptions.DEFAULT.withParallelism(parallelism));
+    }
+
+    /** Like {@link #runAsync(ExecutionPlan, Map, int)}, reporting steps and partial outputs to {@code listener}. */
+    public CompletableFuture<FlowRunResult> runAsync(ExecutionPlan plan, Map<String, Object> inputs, int parallelism,
+                                                     RunListener listener) {
+        return runAsync(plan, inputs, RunOptions.DEFAULT.withParallelism(parallelism).withListener(listener));
+    }
+
+    /**
+     * Starts a run with the given options; see {@link RunOptions}.
+     */
+    public CompletableFuture<FlowRunResult> runAsync(ExecutionPlan plan, Map<String, Object> inputs, RunOptions options) {
+        return start(plan, inputs, options, List.of(plan.getFlowId()), null, null);
+    }
+
+    /**
+     * Continues a run from its checkpoint; finished nodes are replayed, not executed again.
+     */
+    public CompletableFuture<FlowRunResult> resume(ExecutionPlan plan, RunCheckpoint checkpoint, RunOptions options) {
+        if (!plan.getFlowId().equals(checkpoint.flowId) || plan.getVersion() != checkpoint.version) {
+            throw new IllegalArgumentException("Checkpoint of run " + checkpoint.runId + " was taken on "
+                    + checkpoint.flowId + " v" + checkpoint.version + ", not " + plan.getFlowId() + " v" + plan.getVersion());
+        }
+        Map<String, RunCheckpoint.NodeState> restored = new HashMap<>();
+        if (checkpoint.nodes != null) {
+            for (RunCheckpoint.NodeState n : checkpoint.nodes) restored.put(n.nodeId, n);
         }
-        for (GraphNode n : nodes) {
-            if (!ordered.contains(n)) ordered.add(n);
+        return start(plan, checkpoint.inputs, options.withRunId(checkpoint.runId), List.of(plan.getFlowId()),
+                restored, null);
+    }
+
+    /**
+     * Runs another flow as a step of {@code parent}'s run, inheriting its deadline and call stack.
+     */
+    public CompletableFuture<FlowRunResult> runSubflow(ExecutionPlan plan, Map<String, Object> inputs,
+                                                       NodeExecutor.ExecutionContext parent) {
+        List<String> callStack = new ArrayList<>(parent.callStack);
+        callStack.add(plan.getFlowId());
+        RunOptions options = RunOptions.DEFAULT.withDeadline(parent.deadline)
+                .withTrace(new TraceOptions(parent.traceLevel, 0,
+                        parent.traceOptions != null ? parent.traceOptions.maxValueLength() : 0));
+        return start(plan, inputs, options, callStack, null, parent);
+    }
+
+    /**
+     * Loads the compiled plan of a flow through the resolver installed by the service layer.
+     */
+    public ExecutionPlan resolvePlan(String flowId) {
+        Function<String, ExecutionPlan> resolver = planResolver;
+        if (resolver == null) {
+            throw new IllegalStateException("No plan resolver configured; cannot load flow " + flowId);
         }
+        return resolver.apply(flowId);
+    }
+
+    public void setPlanResolver(Function<String, ExecutionPlan> planResolver) {
+        this.planResolver = planResolver;
+    }
+
+    public void setMetrics(EngineMetrics metrics) {
+        this.metrics = metrics != null ? metrics : EngineMetrics.NONE;
+    }
+
+    private CompletableFuture<FlowRunResult> start(ExecutionPlan plan, Map<String, Object> inputs, RunOptions options,
+                                                   List<String> callStack,
+                                                   Map<String, RunCheckpoint.NodeState> restored,
+                                                   NodeExecutor.ExecutionContext parent) {
+        Run run = new Run(plan, VariableScope.of(inputs), options, callStack,
+                restored != null ? restored : Map.of(), parent);
+        run.start();
+        return run.result.thenApply(this::toResult);
+    }
+
+    /**
+     * Compiles a graph into a reusable plan, resolving each node's executor once.
+     */
+    public ExecutionPlan compile(String flowId, long version, FlowGraph graph) {
+        return ExecutionPlan.compile(flowId, version, graph, registry::find);
+    }
+
+    /**
+     * Checks the structure of a graph about to be saved, see {@link ExecutionPlan#validate}. Types with an executor,
+     * start/end and {@code otherTypes} (types the editor offers that runs skip) are known.
+     */
+    public void validate(FlowGraph graph, Predicate<String> otherTypes) {
+        ExecutionPlan.validate(graph, type -> type != null && (registry.find(type) != null
+                || NodeExecutorRegistry.STRUCTURAL_TYPES.contains(type.trim().toLowerCase(Locale.ROOT))
+                || otherTypes.test(type)));
+    }
+
+    public NodeResultCache getNodeCache() {
+        return nodeCache;
+    }
+
+    public int getMaxParallelism() {
+        return maxParallelism;
+    }
 
-        for (GraphNode n : ordered) {
-            NodeExecutor exec = findExecutor(n.type);
-            if (exec == null) continue; // skip unsupported types
-            NodeExecutor.StepResult step = exec.execute(n, ctx);
-            if (step != null && step.trace != null) {
-                Map<String, Object> stepTrace = new LinkedHashMap<>();
-                stepTrace.put("nodeId", step.nodeId);
-                stepTrace.put("type", step.type);
-                stepTrace.putAll(step.trace);
-                trace.add(stepTrace);
+    public void shutdown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    private FlowRunResult toResult(Run run) {
+        ExecutionPlan plan = run.plan;
+        List<Map<String, Object>> trace = run.traceLevel == TraceLevel.OFF ? List.of() : new ArrayList<>(plan.size());
+        // outputs are the inputs overlaid with every executed node's own writes, in topological order
+        Map<String, Object> outputs = run.root.flatten();
+        for (int i : plan.order) {
+            if (run.traces[i] != null) trace.add(run.traces[i]);
+            if (run.scopes[i] != null) {
+                run.scopes[i].localWrites().forEach((k, v) -> {
+                    if (v == null) outputs.remove(k);
+                    else outputs.put(k, v);
+                });
             }
         }
 
         FlowRunResult r = new FlowRunResult();
-        r.flowId = flowId;
-        r.runId = "r_" + UUID.randomUUID();
-        r.outputs = new LinkedHashMap<>(variables);
+        r.flowId = plan.getFlowId();
+        r.runId = run.runId;
+        r.outputs = outputs;
         r.trace = trace;
         return r;
     }
 
-    private NodeExecutor findExecutor(String type) {
-        for (NodeExecutor e : executors) {
-            if (e.supports(type)) return e;
+    private static Map<String, Object> traceEntry(NodeExecutor.StepResult step, TraceLevel level, TraceOptions options) {
+        if (step == null || step.trace == null) return null;
+        Map<String, Object> stepTrace = new LinkedHashMap<>();
+        stepTrace.put("nodeId", step.nodeId);
+        stepTrace.put("type", step.type);
+        if (level == TraceLevel.SUMMARY) {
+            step.trace.forEach((k, v) -> stepTrace.put(k, options.summarize(v)));
+        } else {
+            stepTrace.putAll(step.trace);
+        }
+        return stepTrace;
+    }
+
+    private static NodeExecutor.StepResult cachedStep(PlanNode node, NodeExecutor.StepResult stored, boolean tracing) {
+        NodeExecutor.StepResult step = new NodeExecutor.StepResult();
+        step.nodeId = node.id;
+        step.type = stored.type;
+        step.outputs = stored.outputs;
+        step.branches = stored.branches;
+        if (tracing) {
+            // a result stored by an untraced run still shows up as a cached step
+            step.trace = stored.trace != null ? new LinkedHashMap<>(stored.trace) : new LinkedHashMap<>();
+            step.trace.put("cached", true);
+        }
+        return step;
+    }
+
+    private static NodeExecutor.StepResult restoredStep(PlanNode node, RunCheckpoint.NodeState state) {
+        NodeExecutor.StepResult step = new NodeExecutor.StepResult();
+        step.nodeId = node.id;
+        step.type = state.type != null ? state.type : node.type;
+        step.outputs = state.writes;
+        step.branches = state.branches;
+        step.trace = state.trace != null ? new LinkedHashMap<>(state.trace) : new LinkedHashMap<>();
+        step.trace.put("restored", true);
+        return step;
+    }
+
+    private static Map<String, Object> timedOutEntry(PlanNode node, DeadlineExceededException e) {
+        Map<String, Object> stepTrace = new LinkedHashMap<>();
+        stepTrace.put("nodeId", node.id);
+        stepTrace.put("type", node.type);
+        stepTrace.put("timedOut", true);
+        if (e.isRunDeadline()) stepTrace.put("runDeadline", true);
+        else stepTrace.put("timeoutMs", TimeUnit.NANOSECONDS.toMillis(node.timeoutNanos));
+        return stepTrace;
+    }
+
+    private static Map<String, Object> skippedEntry(PlanNode node) {
+        Map<String, Object> stepTrace = new LinkedHashMap<>();
+        stepTrace.put("nodeId", node.id);
+        stepTrace.put("type", node.type);
+        stepTrace.put("skipped", true);
+        return stepTrace;
+    }
+
+    private static RuntimeException asRuntime(Throwable t) {
+        if (t instanceof RuntimeException re) return re;
+        if (t instanceof Error err) throw err;
+        return new RuntimeException(t);
+    }
+
+    private record Completion(int index, NodeExecutor.StepResult step, Throwable error) {}
+
+    /**
+     * Scheduling state of one run: ready nodes are launched up to {@code parallelism}, and completions are drained
+     * by whichever thread wins {@code wip}.
+     */
+    private final class Run {
+        final ExecutionPlan plan;
+        final VariableScope root;
+        final RunListener listener;
+        final List<String> callStack;
+        final int parallelism;
+        final String runId;
+        final Checkpointer checkpointer;
+        final Deadline deadline;
+        final TraceOptions traceOptions;
+        /** the level this run records at, with sampling already decided */
+        final TraceLevel traceLevel;
+        /** the subprocess node this run executes for; null for top-level runs */
+        final NodeExecutor.ExecutionContext parent;
+        /** finished nodes of the checkpoint this run resumes, by node id */
+        final Map<String, RunCheckpoint.NodeState> restored;
+        /** finished nodes not yet passed to the checkpointer */
+        final List<RunCheckpoint.NodeState> unsaved = new ArrayList<>();
+        final Executor executor = pool != null ? pool : DIRECT;
+        final EngineMetrics metrics = Engine.this.metrics;
+        final long startedAt = System.nanoTime();
+        final Map<String, Object>[] traces;
+        /** variables of every launched node; null for nodes that were skipped or never reached */
+        final VariableScope[] scopes;
+        /** contexts of the nodes in flight, cancelled when the run fails */
+        final NodeExecutor.ExecutionContext[] contexts;
+        final int[] pending;
+        /** number of taken edges into each node */
+        final int[] live;
+        final Deque<Integer> ready = new ArrayDeque<>();
+        final Deque<Integer> skipped = new ArrayDeque<>();
+        final Queue<Completion> completions = new ConcurrentLinkedQueue<>();
+        final AtomicInteger wip = new AtomicInteger();
+        final CompletableFuture<Run> result = new CompletableFuture<>();
+        int running;
+        Throwable failure;
+
+        Run(ExecutionPlan plan, VariableScope root, RunOptions options, List<String> callStack,
+            Map<String, RunCheckpoint.NodeState> restored, NodeExecutor.ExecutionContext parent) {
+            this.plan = plan;
+            this.root = root;
+            this.listener = options.listener();
+            this.callStack = List.copyOf(callStack);
+            this.parallelism = options.parallelism() > 0 ? options.parallelism() : maxParallelism;
+            this.runId = options.runId() != null ? options.runId() : "r_" + UUID.randomUUID();
+            this.checkpointer = options.checkpointer();
+            this.deadline = options.deadline();
+            this.traceOptions = options.trace();
+            this.traceLevel = traceOptions.resolve();
+            this.parent = parent;
+            this.restored = restored;
+            @SuppressWarnings("unchecked")
+            Map<String, Object>[] traces = new Map[plan.size()];
+            this.traces = traces;
+            this.scopes = new VariableScope[plan.size()];
+            this.contexts = new NodeExecutor.ExecutionContext[plan.size()];
+            this.pending = plan.inDegree.clone();
+            this.live = new int[plan.size()];
+        }
+
+        void start() {
+            for (int r : plan.roots) ready.add(r);
+            drain();
+        }
+
+        void complete(Completion c) {
+            completions.add(c);
+            drain();
+        }
+
+        private void drain() {
+            if (wip.getAndIncrement() != 0) return;
+            do {
+                Completion c;
+                while ((c = completions.poll()) != null) {
+                    running--;
+                    Throwable error = c.error;
+                    NodeExecutor.ExecutionContext ctx = contexts[c.index];
+                    if (ctx != null) {
+                        contexts[c.index] = null;
+                        recordNode(plan.nodes[c.index], ctx, error);
+                    }
+                    if (error instanceof DeadlineExceededException e) {
+                        PlanNode node = plan.nodes[c.index];
+                        // an executor giving up through checkCancelled() does not know which deadline passed
+                        DeadlineExceededException timeout = e.getNodeId() != null ? e : timeout(node, true);
+                        if (traceLevel != TraceLevel.OFF) {
+                            Map<String, Object> entry = timedOutEntry(node, timeout);
+                            traces[c.index] = entry;
+                            notifyStep(entry);
+                        }
+                        // a node that gave up contributes no variables, whatever it wrote before
+                        scopes[c.index] = null;
+                        if (failure == null && node.continueOnTimeout && !timeout.isRunDeadline()) {
+                            release(c.index, true, null);
+                            continue;
+                        }
+                        error = timeout;
+                    }
+                    if (error != null) {
+                        // stop dispatching and cancel the nodes in flight, but let them drain before
+                        // surfacing the error
+                        if (failure == null) fail(error);
+                        continue;
+                    }
+                    Map<String, Object> entry = traceLevel != TraceLevel.OFF ? traceEntry(c.step, traceLevel, traceOptions) : null;
+                    if (entry != null) {
+                        traces[c.index] = entry;
+                        notifyStep(entry);
+                    }
+                    if (c.step != null && checkpointer != Checkpointer.NONE && !restored.containsKey(plan.nodes[c.index].id)) {
+                        unsaved.add(nodeState(c.index, c.step));
+                    }
+                    release(c.index, true, c.step != null ? c.step.branches : null);
+                }
+                if (checkpointer.interval() > 0 && unsaved.size() >= checkpointer.interval()) {
+                    saveCheckpoint();
+                }
+                Integer dead;
+                while ((dead = skipped.poll()) != null) {
+                    // nodes without an executor never appear in the trace, skipped or not
+                    if (plan.nodes[dead].executor != null) {
+                        metrics.nodeSkipped(plan.nodes[dead].type);
+                        if (traceLevel != TraceLevel.OFF) {
+                            Map<String, Object> entry = skippedEntry(plan.nodes[dead]);
+                            traces[dead] = entry;
+                            notifyStep(entry);
+                        }
+                    }
+                    release(dead, false, null);
+                }
+                if (failure == null && parent != null && parent.isCancelled() && !ready.isEmpty()) {
+                    // the subprocess node was given up on; nobody waits for the rest of this run
+                    fail(timeout(plan.nodes[ready.peek()], false));
+                }
+                while (failure == null && running < parallelism && !ready.isEmpty()) {
+                    running++;
+                    launch(ready.poll());
+                }
+                if (running == 0 && !result.isDone()) {
+                    if (parent == null) metrics.runFinished(plan.getFlowId(), System.nanoTime() - startedAt, failure);
+                    if (failure != null) {
+                        // whatever finished before the failure is what a resume will skip
+                        saveCheckpoint();
+                        notifyCheckpointer(() -> checkpointer.failed(runId, failure));
+                        result.completeExceptionally(failure);
+                    } else {
+                        notifyCheckpointer(() -> checkpointer.completed(runId));
+                        result.complete(this);
+                    }
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        /** Resolves a finished or skipped node's edges; successors with no taken incoming edge are skipped. */
+        private void release(int idx, boolean alive, Set<String> branches) {
+            int[] succs = plan.successors[idx];
+            String[][] labels = plan.successorLabels[idx];
+            for (int k = 0; k < succs.length; k++) {
+                int succ = succs[k];
+                if (alive && taken(labels[k], branches)) live[succ]++;
+                if (--pending[succ] == 0) {
+                    if (live[succ] > 0) ready.add(succ);
+                    else skipped.add(succ);
+                }
+            }
+        }
+
+        private boolean taken(String[] edgeLabels, Set<String> branches) {
+            if (branches == null || edgeLabels == null) return true;
+            for (String label : edgeLabels) {
+                for (String b : branches) {
+                    if (label.equalsIgnoreCase(b)) return true;
+                }
+            }
+            return false;
+        }
+
+        private void launch(int idx) {
+            PlanNode node = plan.nodes[idx];
+            VariableScope scope = scopeFor(idx);
+            scopes[idx] = scope;
+            CompletionStage<NodeExecutor.StepResult> stage;
+            RunCheckpoint.NodeState state = restored.isEmpty() ? null : restored.get(node.id);
+            try {
+                if (state != null) {
+                    if (state.writes != null) state.writes.forEach(scope::put);
+                    stage = CompletableFuture.completedFuture(restoredStep(node, state));
+                } else if (node.executor == null) {
+                    stage = CompletableFuture.completedFuture(null); // skip unsupported types
+                } else {
+                    stage = execute(idx, node, scope);
+                }
+            } catch (Throwable t) {
+                stage = CompletableFuture.failedFuture(t);
+            }
+            stage.whenComplete((step, err) -> complete(new Completion(idx, step, unwrap(err))));
+        }
+
+        /** Executes a node under its deadline, replaying a memoized result when its inputs are unchanged. */
+        private CompletionStage<NodeExecutor.StepResult> execute(int idx, PlanNode node, VariableScope scope) {
+            if (node.cache != null) {
+                NodeResultCache.Hit hit = nodeCache.lookup(node.cache, scope);
+                if (hit != null) {
+                    metrics.nodeCached(node.type);
+                    hit.writes().forEach(scope::put);
+                    return CompletableFuture.completedFuture(cachedStep(node, hit.step(), traceLevel != TraceLevel.OFF));
+                }
+            }
+            Deadline nodeDeadline = node.timeoutNanos > 0 ? deadline.min(Deadline.afterNanos(node.timeoutNanos)) : deadline;
+            if (nodeDeadline.isExpired()) {
+                return CompletableFuture.failedFuture(timeout(node, false));
+            }
+            ReadRecordingMap recorder = node.cache != null ? new ReadRecordingMap(scope) : null;
+            NodeExecutor.ExecutionContext ctx = new NodeExecutor.ExecutionContext(
+                    recorder != null ? recorder : scope, listener, Engine.this, callStack, nodeDeadline, traceLevel);
+            ctx.traceOptions = traceOptions;
+            ctx.launchedAt = System.nanoTime();
+            contexts[idx] = ctx;
+            CompletionStage<NodeExecutor.StepResult> stage = node.executor.executeAsync(node.graphNode, node.prepared, ctx, executor);
+            if (recorder != null) {
+                stage = stage.thenApply(step -> {
+                    Map<String, Object> reads = recorder.reads();
+                    if (step != null && reads != null && !ctx.isCancelled()) {
+                        nodeCache.store(node.cache, reads, new NodeResultCache.Hit(scope.localWrites(), step));
+                    }
+                    return step;
+                });
+            }
+            return nodeDeadline.isFinite() ? withDeadline(stage, node, ctx) : stage;
+        }
+
+        /** Fails the node once its deadline passes; its late result is ignored. */
+        private CompletionStage<NodeExecutor.StepResult> withDeadline(CompletionStage<NodeExecutor.StepResult> stage,
+                                                                      PlanNode node, NodeExecutor.ExecutionContext ctx) {
+            CompletableFuture<NodeExecutor.StepResult> guarded = new CompletableFuture<>();
+            ScheduledFuture<?> timer = ctx.deadline.schedule(() -> {
+                if (guarded.completeExceptionally(timeout(node, true))) ctx.cancel();
+            });
+            stage.whenComplete((step, err) -> {
+                timer.cancel(false);
+                if (err != null) guarded.completeExceptionally(err);
+                else guarded.complete(step);
+            });
+            return guarded;
+        }
+
+        /**
+         * The node's own {@code timeout} is to blame unless the run's deadline has passed as well.
+         */
+        private DeadlineExceededException timeout(PlanNode node, boolean started) {
+            boolean runDeadline = node.timeoutNanos == 0 || deadline.isExpired();
+            String message = runDeadline
+                    ? "Run deadline exceeded " + (started ? "while node " + node.id + " was running" : "before node " + node.id + " started")
+                    : "Node " + node.id + " timed out after " + TimeUnit.NANOSECONDS.toMillis(node.timeoutNanos) + " ms";
+            return new DeadlineExceededException(message, node.id, runDeadline);
+        }
+
+        private void recordNode(PlanNode node, NodeExecutor.ExecutionContext ctx, Throwable error) {
+            long now = System.nanoTime();
+            metrics.nodeFinished(node.type, now - ctx.launchedAt, error);
+            long started = ctx.startedAt;
+            if (started != 0 && executor != DIRECT) metrics.nodeQueued(started - ctx.launchedAt);
+        }
+
+        private void fail(Throwable error) {
+            failure = error;
+            for (NodeExecutor.ExecutionContext ctx : contexts) {
+                if (ctx != null) ctx.cancel();
+            }
+        }
+
+        /** Variables of the predecessors that ran, or the run inputs for a start node. */
+        private VariableScope scopeFor(int idx) {
+            int[] preds = plan.predecessors[idx];
+            List<VariableScope> parents = new ArrayList<>(preds.length);
+            for (int p : preds) {
+                if (scopes[p] != null) parents.add(scopes[p]);
+            }
+            return VariableScope.derive(parents.isEmpty() ? List.of(root) : parents, plan.rank[idx]);
+        }
+
+        private RunCheckpoint.NodeState nodeState(int idx, NodeExecutor.StepResult step) {
+            RunCheckpoint.NodeState state = new RunCheckpoint.NodeState();
+            state.nodeId = plan.nodes[idx].id;
+            state.type = step.type;
+            state.writes = scopes[idx] != null ? scopes[idx].localWrites() : Map.of();
+            state.branches = step.branches;
+            state.trace = step.trace;
+            return state;
+        }
+
+        private void saveCheckpoint() {
+            if (unsaved.isEmpty()) return;
+            List<RunCheckpoint.NodeState> batch = List.copyOf(unsaved);
+            unsaved.clear();
+            notifyCheckpointer(() -> checkpointer.save(runId, batch));
+        }
+
+        private void notifyCheckpointer(Runnable call) {
+            try {
+                call.run();
+            } catch (RuntimeException ignored) {
+                // losing a checkpoint costs a re-execution on resume, never the run itself
+            }
+        }
+
+        private void notifyStep(Map<String, Object> entry) {
+            try {
+                listener.onStep(entry);
+            } catch (RuntimeException ignored) {
+                // a failing observer must not break the run
+            }
+        }
+
+        private Throwable unwrap(Throwable t) {
+            return t instanceof CompletionException && t.getCause() != null ? t.getCause() : t;
         }
-        return null;
     }
-} 
\ No newline at end of file
+}
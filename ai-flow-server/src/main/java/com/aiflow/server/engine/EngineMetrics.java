@@ -0,0 +1,30 @@
+package com.aiflow.server.engine;
+
+/**
+ * Receives timings and counts from the engine's scheduler; implementations must be cheap and non-blocking.
+ */
+public interface EngineMetrics {
+
+    EngineMetrics NONE = new EngineMetrics() {};
+
+    /** A top-level run finished; {@code error} is null on success. */
+    default void runFinished(String flowId, long nanos, Throwable error) {}
+
+    /** A node finished, counted from launch; {@code error} is null on success. */
+    default void nodeFinished(String type, long nanos, Throwable error) {}
+
+    /**
+     * A node waited {@code nanos} for a thread of the engine's node pool before it started executing.
+     */
+    default void nodeQueued(long nanos) {}
+
+    /**
+     * A memoized node was answered from the node result cache instead of executing.
+     */
+    default void nodeCached(String type) {}
+
+    /**
+     * A node was skipped because none of its incoming edges was taken.
+     */
+    default void nodeSkipped(String type) {}
+}
@@ -0,0 +1,241 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.dto.FlowDtos.FlowGraph;
+import com.aiflow.server.dto.FlowDtos.GraphEdge;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Compiled, immutable form of a {@link FlowGraph}, shared by concurrent runs.
+ */
+public final class ExecutionPlan {
+    private final String flowId;
+    private final long version;
+    final PlanNode[] nodes;
+    final int[][] successors;
+    /** labels of the edges behind {@code successors[i][k]}; null when one of them is unlabelled */
+    final String[][][] successorLabels;
+    final int[] inDegree;
+    /** predecessors of every node, earliest in topological order first */
+    final int[][] predecessors;
+    /** zero in-degree nodes, role=start first, then graph order */
+    final int[] roots;
+    /** topological order, used for the trace */
+    final int[] order;
+    /** position of every node in {@link #order} */
+    final int[] rank;
+    /** nodes grouped by longest distance from a root; every level only depends on earlier ones */
+    final int[][] levels;
+    /** the {@code runTimeout} set on the start node; 0 when the flow does not configure one */
+    private final long runTimeoutNanos;
+    /** the {@code trace} level set on the start node; null when the flow does not configure one */
+    private final TraceLevel traceLevel;
+    /** the start node's {@code traceSamplePercent}; negative when not configured */
+    private final double traceSamplePercent;
+
+    private ExecutionPlan(String flowId, long version, PlanNode[] nodes, int[][] successors,
+                          String[][][] successorLabels, int[] inDegree, int[][] predecessors, int[] roots,
+                          int[] order, int[] rank, int[][] levels) {
+        this.flowId = flowId;
+        this.version = version;
+        this.nodes = nodes;
+        this.successors = successors;
+        this.successorLabels = successorLabels;
+        this.inDegree = inDegree;
+        this.predecessors = predecessors;
+        this.roots = roots;
+        this.order = order;
+        this.rank = rank;
+        this.levels = levels;
+        long runTimeout = 0;
+        TraceLevel trace = null;
+        double samplePercent = -1;
+        for (PlanNode node : nodes) {
+            if (!isStart(node)) continue;
+            runTimeout = Math.max(runTimeout, PlanNode.durationNanos(node.properties.get("runTimeout")));
+            if (trace == null) trace = TraceLevel.of(node.properties.get("trace"));
+            Object percent = node.properties.get("traceSamplePercent");
+            if (samplePercent < 0 && percent != null && !String.valueOf(percent).isBlank()) {
+                samplePercent = percent instanceof Number n ? n.doubleValue() : Double.parseDouble(String.valueOf(percent).trim());
+            }
+        }
+        this.runTimeoutNanos = runTimeout;
+        this.traceLevel = trace;
+        this.traceSamplePercent = samplePercent;
+    }
+
+    public String getFlowId() { return flowId; }
+
+    public long getVersion() { return version; }
+
+    public int size() { return nodes.length; }
+
+    /** @return the flow's own run timeout in milliseconds, 0 when not configured */
+    public long getRunTimeoutMillis() { return TimeUnit.NANOSECONDS.toMillis(runTimeoutNanos); }
+
+    /** @return the flow's own trace level, null when not configured */
+    public TraceLevel getTraceLevel() { return traceLevel; }
+
+    /** @return the share of sampled runs the flow traces in full, negative when not configured */
+    public double getTraceSamplePercent() { return traceSamplePercent; }
+
+    public int levelCount() { return levels.length; }
+
+    public PlanNode node(int index) { return nodes[index]; }
+
+    // read-only views for schedulers outside this package (e.g. the LiteFlow runtime); callers must not modify them
+
+    /** @return indexes of the nodes {@code index} has edges to */
+    public int[] successors(int index) { return successors[index]; }
+
+    /** @return labels of the edges behind {@link #successors(int)}, null entries for edges taken on every branch */
+    public String[][] successorLabels(int index) { return successorLabels[index]; }
+
+    /** @return indexes of the nodes with edges to {@code index}, earliest in topological order first */
+    public int[] predecessors(int index) { return predecessors[index]; }
+
+    /** @return zero in-degree nodes, role=start first */
+    public int[] roots() { return roots; }
+
+    /** @return node indexes in topological order */
+    public int[] order() { return order; }
+
+    /** @return position of {@code index} in {@link #order()} */
+    public int rank(int index) { return rank[index]; }
+
+    /** @return nodes of level {@code level}, see {@link #levelCount()} */
+    public int[] level(int level) { return levels[level]; }
+
+    /**
+     * Checks only the structure of a graph about to be saved: known node types, edges between existing nodes, no
+     * cycles. Node settings are left to {@link NodeExecutor#prepare} and fail the node when it runs.
+     *
+     * @throws IllegalArgumentException naming the first problem found
+     */
+    public static void validate(FlowGraph graph, Predicate<String> knownType) {
+        List<GraphNode> nodes = graph != null && graph.nodes != null ? graph.nodes : List.of();
+        Set<String> ids = new HashSet<>();
+        for (GraphNode n : nodes) {
+            if (n == null) continue;
+            if (!knownType.test(n.type)) {
+                throw new IllegalArgumentException("Unknown node type '" + n.type + "' on node: " + n.id);
+            }
+            ids.add(n.id);
+        }
+        if (graph != null && graph.edges != null) {
+            for (GraphEdge e : graph.edges) {
+                if (e != null && (!ids.contains(e.sourceNodeId) || !ids.contains(e.targetNodeId))) {
+                    throw new IllegalArgumentException(
+                            "Edge " + e.sourceNodeId + " -> " + e.targetNodeId + " refers to a missing node");
+                }
+            }
+        }
+        // without executors nothing is prepared, the self-loop and cycle checks still run
+        compile(null, 0, graph, type -> null);
+    }
+
+    public static ExecutionPlan compile(String flowId, long version, FlowGraph graph,
+                                        Function<String, NodeExecutor> executorResolver) {
+        List<GraphNode> allNodes = graph != null && graph.nodes != null ? graph.nodes : List.of();
+        List<GraphEdge> edges = graph != null && graph.edges != null ? graph.edges : List.of();
+
+        // duplicate ids keep the first occurrence
+        Map<String, Integer> id2idx = new HashMap<>();
+        List<PlanNode> planNodes = new ArrayList<>();
+        for (GraphNode n : allNodes) {
+            if (n != null && id2idx.putIfAbsent(n.id, planNodes.size()) == null) {
+                planNodes.add(new PlanNode(planNodes.size(), n, executorResolver.apply(n.type)));
+            }
+        }
+        PlanNode[] nodes = planNodes.toArray(new PlanNode[0]);
+        int n = nodes.length;
+
+        // target -> labels of the parallel edges to it; a null set marks an unlabelled edge
+        List<Map<Integer, Set<String>>> succ = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) succ.add(new LinkedHashMap<>());
+        int[] inDegree = new int[n];
+        for (GraphEdge e : edges) {
+            if (e == null) continue;
+            Integer s = id2idx.get(e.sourceNodeId);
+            Integer t = id2idx.get(e.targetNodeId);
+            if (s == null || t == null) continue; // dangling edge
+            if (s.equals(t)) throw new IllegalArgumentException("Flow graph has a self-loop on node: " + e.sourceNodeId);
+            Map<Integer, Set<String>> out = succ.get(s);
+            String label = e.label != null && !e.label.isBlank() ? e.label.trim() : null;
+            if (!out.containsKey(t)) {
+                inDegree[t]++;
+                out.put(t, label != null ? new LinkedHashSet<>(List.of(label)) : null);
+            } else if (out.get(t) != null) {
+                if (label != null) out.get(t).add(label);
+                else out.put(t, null);
+            }
+        }
+        int[][] successors = new int[n][];
+        String[][][] successorLabels = new String[n][][];
+        for (int i = 0; i < n; i++) {
+            Map<Integer, Set<String>> out = succ.get(i);
+            successors[i] = out.keySet().stream().mapToInt(Integer::intValue).toArray();
+            successorLabels[i] = out.values().stream()
+                    .map(labels -> labels != null ? labels.toArray(new String[0]) : null)
+                    .toArray(String[][]::new);
+        }
+
+        int[] roots = new int[n];
+        int rootCount = 0;
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0 && isStart(nodes[i])) roots[rootCount++] = i;
+        }
+        for (int i = 0; i < n; i++) {
+            if (inDegree[i] == 0 && !isStart(nodes[i])) roots[rootCount++] = i;
+        }
+        roots = Arrays.copyOf(roots, rootCount);
+
+        int[] order = new int[n];
+        int[] level = new int[n];
+        int[] pending = inDegree.clone();
+        Deque<Integer> queue = new ArrayDeque<>();
+        for (int r : roots) queue.add(r);
+        int count = 0;
+        int maxLevel = -1;
+        while (!queue.isEmpty()) {
+            int i = queue.poll();
+            order[count++] = i;
+            maxLevel = Math.max(maxLevel, level[i]);
+            for (int t : successors[i]) {
+                level[t] = Math.max(level[t], level[i] + 1);
+                if (--pending[t] == 0) queue.add(t);
+            }
+        }
+        if (count != n) {
+            throw new IllegalArgumentException("Flow graph contains a cycle");
+        }
+
+        int[] rank = new int[n];
+        for (int r = 0; r < n; r++) rank[order[r]] = r;
+        // filled while walking the topological order, so each list is already sorted by it
+        int[][] predecessors = new int[n][];
+        int[] fillPred = new int[n];
+        for (int i = 0; i < n; i++) predecessors[i] = new int[inDegree[i]];
+        for (int i : order) {
+            for (int t : successors[i]) predecessors[t][fillPred[t]++] = i;
+        }
+
+        int[] levelSizes = new int[maxLevel + 1];
+        for (int i = 0; i < n; i++) levelSizes[level[i]]++;
+        int[][] levels = new int[maxLevel + 1][];
+        for (int l = 0; l <= maxLevel; l++) levels[l] = new int[levelSizes[l]];
+        int[] fill = new int[maxLevel + 1];
+        for (int i : order) levels[level[i]][fill[level[i]]++] = i;
+
+        return new ExecutionPlan(flowId, version, nodes, successors, successorLabels, inDegree, predecessors,
+                roots, order, rank, levels);
+    }
+
+    private static boolean isStart(PlanNode n) {
+        return Objects.equals(String.valueOf(n.properties.get("role")), "start");
+    }
+}
@@ -0,0 +1,388 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.config.HttpClientProperties;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * http_request node: calls the url through the shared {@code flowHttpClient} without holding an engine thread.
+ */
+@Component
+public class HttpRequestNodeExecutor extends BaseNodeExecutor {
+
+    private final HttpClient client;
+    private final HttpClientProperties properties;
+    private final ObjectMapper objectMapper;
+    private final HttpResponseCache cache;
+
+    @Autowired
+    public HttpRequestNodeExecutor(HttpClient flowHttpClient, HttpClientProperties properties, ObjectMapper objectMapper) {
+        this.client = flowHttpClient;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.cache = new HttpResponseCache(properties.getCacheMaxEntries());
+    }
+
+    @Override
+    public String getType() {
+        return "http_request";
+    }
+
+    @Override
+    public Config prepare(GraphNode node) {
+        Map<String, Object> props = node.properties != null ? node.properties : Map.of();
+        Object url = props.get("url");
+        Map<String, PromptTemplate> headers = new LinkedHashMap<>();
+        if (props.get("headers") instanceof Map<?, ?> h) {
+            h.forEach((k, v) -> headers.put(String.valueOf(k).trim(), PromptTemplate.parse(v == null ? "" : String.valueOf(v))));
+        }
+        Object body = props.get("body");
+        boolean jsonBody = body instanceof Map<?, ?> || body instanceof List<?>;
+        if (jsonBody && headers.keySet().stream().noneMatch("content-type"::equalsIgnoreCase)) {
+            headers.put("Content-Type", PromptTemplate.parse("application/json"));
+        }
+        long requestTimeout = PlanNode.durationNanos(props.get("requestTimeout"));
+        Object maxBytes = props.get("maxBytes");
+        return new Config(
+                String.valueOf(props.getOrDefault("method", "GET")).trim().toUpperCase(Locale.ROOT),
+                url != null && !String.valueOf(url).isBlank() ? PromptTemplate.parse(String.valueOf(url).trim()) : null,
+                Collections.unmodifiableMap(headers),
+                body == null || jsonBody ? null : PromptTemplate.parse(String.valueOf(body)),
+                jsonBody ? compileJson(body) : null,
+                String.valueOf(props.getOrDefault("output", "response")),
+                requestTimeout > 0 ? TimeUnit.NANOSECONDS.toMillis(requestTimeout) : properties.getRequestTimeoutMs(),
+                maxBytes instanceof Number n ? n.longValue()
+                        : maxBytes != null && !String.valueOf(maxBytes).isBlank()
+                        ? Long.parseLong(String.valueOf(maxBytes).trim()) : properties.getMaxResponseBytes(),
+                String.valueOf(props.getOrDefault("responseType", "auto")).trim().toLowerCase(Locale.ROOT),
+                !"false".equalsIgnoreCase(String.valueOf(props.get("failOnError"))),
+                "true".equalsIgnoreCase(String.valueOf(props.get("stream"))),
+                "true".equalsIgnoreCase(String.valueOf(props.get("httpCache"))),
+                PromptTemplate.MissingPolicy.of(props.get("missingVariables"))
+        );
+    }
+
+    @Override
+    public CompletionStage<StepResult> executeAsync(GraphNode node, Object prepared, ExecutionContext context,
+                                                    Executor executor) {
+        Config cfg = prepared instanceof Config c ? c : prepare(node);
+        try {
+            return send(node, cfg, context);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletionStage<StepResult> send(GraphNode node, Config cfg, ExecutionContext context) {
+        if (cfg.url() == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("HTTP node " + node.id + " has no url"));
+        }
+        String url = cfg.url().render(context.variables, cfg.missingPolicy(), HttpRequestNodeExecutor::encodeUrlValue);
+        Map<String, String> headers = new LinkedHashMap<>();
+        cfg.headers().forEach((name, value) -> headers.put(name, value.render(context.variables, cfg.missingPolicy())));
+        String body = cfg.jsonBody() != null ? toJson(renderJson(cfg.jsonBody(), context.variables, cfg.missingPolicy()))
+                : cfg.body() != null ? cfg.body().render(context.variables, cfg.missingPolicy()) : null;
+        long timeoutMs = context.deadline.isFinite()
+                ? Math.max(1, Math.min(cfg.timeoutMs(), context.remainingMillis())) : cfg.timeoutMs();
+
+        boolean cacheable = cfg.httpCache() && "GET".equals(cfg.method());
+        String key = cacheable ? HttpResponseCache.key(url, headers) : null;
+        HttpResponseCache.Entry cached = cacheable ? cache.get(key) : null;
+        if (cached != null && cached.isFresh(System.nanoTime())) {
+            return CompletableFuture.completedFuture(
+                    toStep(node, cfg, context, url, cached.status(), cached.headers(), cached.body(), "hit", 0));
+        }
+
+        context.checkCancelled();
+        HttpRequest request;
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                    .timeout(Duration.ofMillis(timeoutMs))
+                    .method(cfg.method(), body != null ? HttpRequest.BodyPublishers.ofString(body) : HttpRequest.BodyPublishers.noBody());
+            headers.forEach(builder::header);
+            if (cached != null) {
+                if (cached.etag() != null) builder.header("If-None-Match", cached.etag());
+                if (cached.lastModified() != null) builder.header("If-Modified-Since", cached.lastModified());
+            }
+            request = builder.build();
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("HTTP node " + node.id + ": invalid request to " + url + ": " + e.getMessage(), e);
+        }
+
+        Consumer<String> chunks = cfg.stream() ? chunk -> context.emitToken(node.id, chunk) : null;
+        long startedAt = System.nanoTime();
+        return client.sendAsync(request, info -> new LimitedTextSubscriber(info, cfg.maxBytes(), chunks))
+                .handle((response, error) -> {
+                    long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAt);
+                    if (error != null) throw failure(node, cfg, url, timeoutMs, context, error);
+                    if (cached != null && response.statusCode() == 304) {
+                        HttpResponseCache.Entry renewed = cache.renew(key, cached, response.headers());
+                        return toStep(node, cfg, context, url, renewed.status(), renewed.headers(), renewed.body(),
+                                "revalidated", elapsedMs);
+                    }
+                    Map<String, String> responseHeaders = flatten(response.headers());
+                    if (cacheable) cache.store(key, response.statusCode(), response.headers(), responseHeaders, response.body());
+                    return toStep(node, cfg, context, url, response.statusCode(), responseHeaders, response.body(),
+                            cacheable ? "miss" : null, elapsedMs);
+                });
+    }
+
+    private StepResult toStep(GraphNode node, Config cfg, ExecutionContext context, String url, int status,
+                              Map<String, String> headers, String body, String cacheState, long elapsedMs) {
+        if (status >= 400 && cfg.failOnError()) {
+            throw new IllegalStateException("HTTP node " + node.id + ": " + cfg.method() + " " + url + " returned " + status);
+        }
+        Map<String, Object> response = new LinkedHashMap<>(4);
+        response.put("status", status);
+        response.put("headers", headers);
+        response.put("body", parseBody(node, cfg, headers.get("content-type"), body));
+        context.setVar(cfg.outputVar(), response);
+
+        StepResult r = new StepResult();
+        r.nodeId = node.id;
+        r.type = node.type;
+        r.outputs = Map.of(cfg.outputVar(), response);
+        if (context.isTracing()) {
+            Map<String, Object> trace = new HashMap<>(8);
+            trace.put("method", cfg.method());
+            trace.put("url", url);
+            trace.put("status", status);
+            trace.put("elapsedMs", elapsedMs);
+            if (cacheState != null) trace.put("cache", cacheState);
+            trace.put("outputVar", cfg.outputVar());
+            r.trace = trace;
+        }
+        return r;
+    }
+
+    private Object parseBody(GraphNode node, Config cfg, String contentType, String body) {
+        boolean json = "json".equals(cfg.responseType())
+                || "auto".equals(cfg.responseType()) && contentType != null && contentType.toLowerCase(Locale.ROOT).contains("json");
+        if (!json || body == null || body.isBlank()) return body;
+        try {
+            return objectMapper.readValue(body, Object.class);
+        } catch (JsonProcessingException e) {
+            if ("json".equals(cfg.responseType())) {
+                throw new IllegalStateException("HTTP node " + node.id + ": response is not valid JSON", e);
+            }
+            return body;
+        }
+    }
+
+    private static RuntimeException failure(GraphNode node, Config cfg, String url, long timeoutMs,
+                                            ExecutionContext context, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (context.isCancelled()) {
+            return new DeadlineExceededException("Node cancelled during " + cfg.method() + " " + url, null,
+                    context.deadline.isExpired());
+        }
+        if (cause instanceof HttpTimeoutException) {
+            return new IllegalStateException("HTTP node " + node.id + ": " + cfg.method() + " " + url
+                    + " timed out after " + timeoutMs + " ms", cause);
+        }
+        if (cause instanceof RuntimeException re && !(cause instanceof ResponseTooLargeException)) return re;
+        return new IllegalStateException("HTTP node " + node.id + ": " + cfg.method() + " " + url + " failed: "
+                + (cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName()), cause);
+    }
+
+    /**
+     * Response headers with one value per name (repeated values joined by ", "), names in lower case.
+     */
+    private static Map<String, String> flatten(HttpHeaders headers) {
+        Map<String, String> flat = new LinkedHashMap<>();
+        headers.map().forEach((name, values) -> {
+            if (!name.startsWith(":")) flat.put(name.toLowerCase(Locale.ROOT), String.join(", ", values));
+        });
+        return flat;
+    }
+
+    /** a substituted value is one path segment or query value: reserved characters are encoded, spaces as %20 */
+    static String encodeUrlValue(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    /** replaces every string in a JSON body (keys included) with its template */
+    private static Object compileJson(Object value) {
+        if (value instanceof Map<?, ?> map) {
+            Map<PromptTemplate, Object> compiled = new LinkedHashMap<>();
+            map.forEach((k, v) -> compiled.put(PromptTemplate.parse(String.valueOf(k)), compileJson(v)));
+            return compiled;
+        }
+        if (value instanceof List<?> list) {
+            List<Object> compiled = new ArrayList<>(list.size());
+            for (Object item : list) compiled.add(compileJson(item));
+            return compiled;
+        }
+        return value instanceof String text ? PromptTemplate.parse(text) : value;
+    }
+
+    private static Object renderJson(Object compiled, Map<String, Object> vars, PromptTemplate.MissingPolicy policy) {
+        if (compiled instanceof Map<?, ?> map) {
+            Map<String, Object> rendered = new LinkedHashMap<>();
+            map.forEach((k, v) -> rendered.put(((PromptTemplate) k).render(vars, policy), renderJson(v, vars, policy)));
+            return rendered;
+        }
+        if (compiled instanceof List<?> list) {
+            List<Object> rendered = new ArrayList<>(list.size());
+            for (Object item : list) rendered.add(renderJson(item, vars, policy));
+            return rendered;
+        }
+        return compiled instanceof PromptTemplate t ? t.render(vars, policy) : compiled;
+    }
+
+    private String toJson(Object body) {
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("HTTP node body cannot be written as JSON", e);
+        }
+    }
+
+    /**
+     * HTTP node configuration parsed once per plan.
+     */
+    public record Config(String method, PromptTemplate url, Map<String, PromptTemplate> headers, PromptTemplate body,
+                         Object jsonBody, String outputVar, long timeoutMs, long maxBytes, String responseType,
+                         boolean failOnError, boolean stream, boolean httpCache, PromptTemplate.MissingPolicy missingPolicy) {}
+
+    private static final class ResponseTooLargeException extends IllegalStateException {
+        ResponseTooLargeException(long maxBytes) {
+            super("response body exceeds " + maxBytes + " bytes");
+        }
+    }
+
+    /** Decodes the body as it arrives and gives up once more than {@code maxBytes} were received. */
+    private static final class LimitedTextSubscriber implements HttpResponse.BodySubscriber<String> {
+
+        private final CompletableFuture<String> result = new CompletableFuture<>();
+        private final long maxBytes;
+        private final Consumer<String> chunks;
+        private final CharsetDecoder decoder;
+        private final StringBuilder text = new StringBuilder();
+        private final boolean tooLarge;
+        private Flow.Subscription subscription;
+        private ByteBuffer pending;
+        private long received;
+
+        LimitedTextSubscriber(HttpResponse.ResponseInfo info, long maxBytes, Consumer<String> chunks) {
+            this.maxBytes = maxBytes;
+            this.chunks = chunks;
+            this.decoder = charset(info.headers()).newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.tooLarge = info.headers().firstValueAsLong("content-length").orElse(-1) > maxBytes;
+        }
+
+        @Override
+        public CompletionStage<String> getBody() {
+            return result;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            this.subscription = subscription;
+            if (tooLarge) {
+                subscription.cancel();
+                result.completeExceptionally(new ResponseTooLargeException(maxBytes));
+                return;
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onNext(List<ByteBuffer> buffers) {
+            if (result.isDone()) return;
+            for (ByteBuffer buffer : buffers) {
+                received += buffer.remaining();
+                if (received > maxBytes) {
+                    subscription.cancel();
+                    result.completeExceptionally(new ResponseTooLargeException(maxBytes));
+                    return;
+                }
+                decode(buffer, false);
+            }
+            subscription.request(1);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            result.completeExceptionally(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (result.isDone()) return;
+            decode(ByteBuffer.allocate(0), true);
+            CharBuffer tail = CharBuffer.allocate(8);
+            decoder.flush(tail);
+            append(tail.flip());
+            result.complete(text.toString());
+        }
+
+        /** decodes whole characters and keeps the bytes of one split across buffers for the next call */
+        private void decode(ByteBuffer buffer, boolean last) {
+            ByteBuffer in = buffer;
+            if (pending != null && pending.hasRemaining()) {
+                in = ByteBuffer.allocate(pending.remaining() + buffer.remaining()).put(pending).put(buffer).flip();
+            }
+            CharBuffer out = CharBuffer.allocate((int) (in.remaining() * (double) decoder.maxCharsPerByte()) + 1);
+            decoder.decode(in, out, last);
+            pending = in.hasRemaining() ? ByteBuffer.allocate(in.remaining()).put(in).flip() : null;
+            append(out.flip());
+        }
+
+        private void append(CharBuffer chars) {
+            if (!chars.hasRemaining()) return;
+            String chunk = chars.toString();
+            text.append(chunk);
+            if (chunks != null) chunks.accept(chunk);
+        }
+
+        private static Charset charset(HttpHeaders headers) {
+            String contentType = headers.firstValue("content-type").orElse("");
+            for (String param : contentType.split(";")) {
+                String p = param.trim();
+                if (p.regionMatches(true, 0, "charset=", 0, 8)) {
+                    try {
+                        return Charset.forName(p.substring(8).replace("\"", "").trim());
+                    } catch (RuntimeException ignored) {
+                        // unknown charset: fall back to UTF-8
+                    }
+                }
+            }
+            return StandardCharsets.UTF_8;
+        }
+    }
+}
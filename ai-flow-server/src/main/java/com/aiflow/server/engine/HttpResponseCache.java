@@ -0,0 +1,143 @@
+package com.aiflow.server.engine;
+
+import java.net.http.HttpHeaders;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * LRU cache of GET responses for nodes with {@code "httpCache": true}, honouring {@code Cache-Control},
+ * {@code Expires} and revalidating stale entries by {@code ETag} / {@code Last-Modified}.
+ */
+class HttpResponseCache {
+
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+
+    HttpResponseCache(int maxEntries) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > HttpResponseCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * A stored response. {@code freshUntil} is a {@link System#nanoTime()} value; entries past it need revalidation.
+     */
+    record Entry(int status, Map<String, String> headers, String body, String etag, String lastModified,
+                 long freshUntil) {
+
+        boolean isFresh(long now) {
+            return now - freshUntil < 0;
+        }
+
+        boolean canRevalidate() {
+            return etag != null || lastModified != null;
+        }
+    }
+
+    static String key(String url, Map<String, String> requestHeaders) {
+        return requestHeaders.isEmpty() ? url : url + " " + requestHeaders;
+    }
+
+    /**
+     * @return the stored response, fresh or not; null when there is none or it cannot be revalidated
+     */
+    Entry get(String key) {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            if (e != null && !e.isFresh(now) && !e.canRevalidate()) {
+                entries.remove(key);
+                e = null;
+            }
+            return e;
+        }
+    }
+
+    /** Stores a {@code 200} response if its headers allow it; null when they do not. */
+    Entry store(String key, int status, HttpHeaders headers, Map<String, String> flatHeaders, String body) {
+        CacheControl cc = CacheControl.of(headers);
+        String etag = headers.firstValue("etag").orElse(null);
+        String lastModified = headers.firstValue("last-modified").orElse(null);
+        long lifetime = cc.noCache ? 0 : cc.lifetimeNanos(headers);
+        if (status != 200 || cc.noStore || (lifetime <= 0 && etag == null && lastModified == null)) {
+            synchronized (entries) {
+                entries.remove(key);
+            }
+            return null;
+        }
+        Entry e = new Entry(status, flatHeaders, body, etag, lastModified, System.nanoTime() + Math.max(0, lifetime));
+        synchronized (entries) {
+            entries.put(key, e);
+        }
+        return e;
+    }
+
+    /**
+     * Renews a stored response after the server answered {@code 304 Not Modified}.
+     */
+    Entry renew(String key, Entry stale, HttpHeaders notModified) {
+        CacheControl cc = CacheControl.of(notModified);
+        if (cc.noStore) {
+            synchronized (entries) {
+                entries.remove(key);
+            }
+            return stale;
+        }
+        long lifetime = cc.noCache ? 0 : cc.lifetimeNanos(notModified);
+        Entry e = new Entry(stale.status(), stale.headers(), stale.body(),
+                notModified.firstValue("etag").orElse(stale.etag()),
+                notModified.firstValue("last-modified").orElse(stale.lastModified()),
+                System.nanoTime() + Math.max(0, lifetime));
+        synchronized (entries) {
+            entries.put(key, e);
+        }
+        return e;
+    }
+
+    private record CacheControl(boolean noStore, boolean noCache, long maxAgeSeconds) {
+
+        static CacheControl of(HttpHeaders headers) {
+            boolean noStore = false;
+            boolean noCache = false;
+            long maxAge = -1;
+            for (String value : headers.allValues("cache-control")) {
+                for (String directive : value.split(",")) {
+                    String d = directive.trim().toLowerCase(Locale.ROOT);
+                    if (d.equals("no-store")) noStore = true;
+                    else if (d.equals("no-cache") || d.startsWith("no-cache=")) noCache = true;
+                    else if (d.startsWith("max-age=")) {
+                        try {
+                            maxAge = Long.parseLong(d.substring(8).replace("\"", "").trim());
+                        } catch (NumberFormatException ignored) {
+                            maxAge = 0; // a malformed max-age means stale
+                        }
+                    }
+                }
+            }
+            return new CacheControl(noStore, noCache, maxAge);
+        }
+
+        /** freshness lifetime: max-age, else Expires relative to now; 0 when neither is given */
+        long lifetimeNanos(HttpHeaders headers) {
+            if (maxAgeSeconds >= 0) return maxAgeSeconds * 1_000_000_000L;
+            Optional<String> expires = headers.firstValue("expires");
+            if (expires.isEmpty()) return 0;
+            try {
+                long millis = ZonedDateTime.parse(expires.get().trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+                        .toInstant().toEpochMilli() - System.currentTimeMillis();
+                return Math.max(0, millis) * 1_000_000L;
+            } catch (DateTimeParseException e) {
+                return 0; // invalid dates, like "0", mean already expired
+            }
+        }
+    }
+}
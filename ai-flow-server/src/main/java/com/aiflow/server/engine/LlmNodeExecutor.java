@@ -1,49 +1,120 @@
 package com.aiflow.server.engine;
 
+import com.aiflow.aimodel.model.AiModelConfig;
+import com.aiflow.aimodel.service.AiModelService;
 import com.aiflow.server.dto.FlowDtos.GraphNode;
+import com.aiflow.server.service.ModelService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
 
+import java.time.Duration;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.stream.Stream;
 
-public class LlmNodeExecutor implements NodeExecutor {
+@Component
+public class LlmNodeExecutor extends BaseNodeExecutor {
+
+    private final AiModelService aiModelService;
+    private final ModelService modelService;
+
+    /**
+     * Answers "[model] -> prompt" without calling a model; for benchmarks and tests of the engine itself.
+     */
+    public LlmNodeExecutor() {
+        this(null, null);
+    }
+
+    @Autowired
+    public LlmNodeExecutor(AiModelService aiModelService, ModelService modelService) {
+        this.aiModelService = aiModelService;
+        this.modelService = modelService;
+    }
 
     @Override
-    public boolean supports(String type) {
-        return "llm".equalsIgnoreCase(type);
+    public String getType() {
+        return "llm";
     }
 
     @Override
-    public StepResult execute(GraphNode node, ExecutionContext context) {
+    public Config prepare(GraphNode node) {
         Map<String, Object> props = node.properties != null ? node.properties : Map.of();
-        String model = String.valueOf(props.getOrDefault("model", "gpt-4o-mini"));
-        String input = String.valueOf(props.getOrDefault("input", ""));
-        String outputVar = String.valueOf(props.getOrDefault("output", "result"));
+        Object modelId = props.get("modelId");
+        return new Config(
+                String.valueOf(props.getOrDefault("model", "gpt-4o-mini")),
+                modelId != null && !String.valueOf(modelId).isBlank() ? Long.valueOf(String.valueOf(modelId).trim()) : null,
+                props.get("maxTokens") instanceof Number n ? n.intValue() : null,
+                props.get("temperature") instanceof Number t ? t.doubleValue() : null,
+                PromptTemplate.parse(String.valueOf(props.getOrDefault("input", ""))),
+                String.valueOf(props.getOrDefault("output", "result")),
+                PromptTemplate.MissingPolicy.of(props.get("missingVariables"))
+        );
+    }
 
-        String resolvedPrompt = renderTemplate(input, context.variables);
-        String fakeAnswer = "[" + model + "] -> " + resolvedPrompt; // simulate
+    @Override
+    public StepResult execute(GraphNode node, Object prepared, ExecutionContext context) {
+        Config cfg = prepared instanceof Config c ? c : prepare(node);
 
-        context.setVar(outputVar, fakeAnswer);
+        String resolvedPrompt = cfg.template().render(context.variables, cfg.missingPolicy());
+        context.checkCancelled();
+        String answer = generate(node, cfg, resolvedPrompt, context);
+
+        context.setVar(cfg.outputVar(), answer);
 
         NodeExecutor.StepResult r = new NodeExecutor.StepResult();
         r.nodeId = node.id;
         r.type = node.type;
-        r.outputs = Map.of(outputVar, fakeAnswer);
-        Map<String, Object> trace = new HashMap<>();
-        trace.put("model", model);
-        trace.put("input", resolvedPrompt);
-        trace.put("outputVar", outputVar);
-        r.trace = trace;
+        r.outputs = Map.of(cfg.outputVar(), answer);
+        if (context.isTracing()) {
+            Map<String, Object> trace = new HashMap<>(4);
+            trace.put("model", cfg.model());
+            trace.put("input", resolvedPrompt);
+            trace.put("outputVar", cfg.outputVar());
+            r.trace = trace;
+        }
         return r;
     }
 
-    private String renderTemplate(String tpl, Map<String, Object> vars) {
-        if (tpl == null) return "";
-        String s = tpl;
-        for (Map.Entry<String, Object> e : vars.entrySet()) {
-            String k = e.getKey();
-            Object v = e.getValue();
-            s = s.replace("${" + k + "}", v == null ? "" : String.valueOf(v));
+    /**
+     * Forwards the answer to the run's listener chunk by chunk as the model produces it.
+     */
+    private String generate(GraphNode node, Config cfg, String prompt, ExecutionContext context) {
+        Object modelId = cfg.modelId() != null ? cfg.modelId() : context.getVar("modelId");
+        if (aiModelService == null || modelId == null || String.valueOf(modelId).isBlank()) {
+            // no saved model picked yet: the simulated answer lets the rest of the flow be tried
+            String simulated = "[" + cfg.model() + "] -> " + prompt;
+            context.emitToken(node.id, simulated);
+            return simulated;
+        }
+        AiModelConfig config = modelService.getAiModelConfig(Long.valueOf(String.valueOf(modelId).trim()),
+                cfg.maxTokens(), cfg.temperature());
+        // the model call, retries included, must end within the node's remaining time
+        Duration budget = context.deadline.isFinite() ? Duration.ofMillis(context.remainingMillis()) : null;
+        StringBuilder answer = new StringBuilder();
+        try (Stream<String> chunks = aiModelService.generateTextStream(config, prompt, budget)) {
+            Iterator<String> it = chunks.iterator();
+            while (it.hasNext()) {
+                String chunk = it.next();
+                context.checkCancelled();
+                if (chunk == null || chunk.isEmpty()) continue;
+                answer.append(chunk);
+                context.emitToken(node.id, chunk);
+            }
         }
-        return s;
+        return answer.toString();
     }
-} 
\ No newline at end of file
+
+    /**
+     * Renders an ad-hoc template; nodes inside a plan use the template parsed by {@link #prepare}.
+     */
+    public static String renderTemplate(String tpl, Map<String, Object> vars) {
+        return PromptTemplate.parse(tpl).render(vars, PromptTemplate.MissingPolicy.KEEP);
+    }
+
+    /**
+     * LLM node configuration parsed once per plan.
+     */
+    public record Config(String model, Long modelId, Integer maxTokens, Double temperature, PromptTemplate template,
+                         String outputVar, PromptTemplate.MissingPolicy missingPolicy) {}
+}
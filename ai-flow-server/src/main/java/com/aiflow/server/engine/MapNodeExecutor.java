@@ -0,0 +1,304 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.config.EngineProperties;
+import com.aiflow.server.dto.FlowDtos.FlowGraph;
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * map node: runs a flow or inline graph once per element of a list variable, as subflows of this node, and
+ * gathers the results in list order.
+ */
+@Component
+@RequiredArgsConstructor
+public class MapNodeExecutor extends BaseNodeExecutor {
+
+    private final EngineProperties properties;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public String getType() {
+        return "map";
+    }
+
+    @Override
+    public Config prepare(GraphNode node) {
+        Map<String, Object> props = node.properties != null ? node.properties : Map.of();
+        Object flowId = props.get("flowId");
+        Object body = props.get("body");
+        Object concurrency = props.get("concurrency");
+        return new Config(
+                text(props.get("items")),
+                flowId != null && !String.valueOf(flowId).isBlank() ? String.valueOf(flowId).trim() : null,
+                body instanceof Map<?, ?> ? objectMapper.convertValue(body, FlowGraph.class) : null,
+                stringMap(props.get("inputs")),
+                String.valueOf(props.getOrDefault("item", "item")),
+                String.valueOf(props.getOrDefault("index", "index")),
+                String.valueOf(props.getOrDefault("result", "result")),
+                String.valueOf(props.getOrDefault("output", "results")),
+                text(props.get("errors")),
+                concurrency instanceof Number n ? n.intValue()
+                        : concurrency != null && !String.valueOf(concurrency).isBlank()
+                        ? Integer.parseInt(String.valueOf(concurrency).trim()) : 0,
+                "continue".equalsIgnoreCase(String.valueOf(props.get("onError"))),
+                new AtomicReference<>()
+        );
+    }
+
+    @Override
+    public CompletionStage<StepResult> executeAsync(GraphNode node, Object prepared, ExecutionContext context,
+                                                    Executor executor) {
+        Config cfg = prepared instanceof Config c ? c : prepare(node);
+        Engine engine = context.engine;
+        if (engine == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Map node " + node.id + " must run inside an engine"));
+        }
+        MapRun run;
+        try {
+            if (cfg.items() == null) {
+                throw new IllegalArgumentException("Map node " + node.id + " has no items variable");
+            }
+            List<?> items = asList(node, cfg.items(), PromptTemplate.lookup(context.variables, cfg.items()));
+            if (items.size() > properties.getMapMaxItems()) {
+                throw new IllegalArgumentException("Map node " + node.id + ": " + items.size()
+                        + " items exceed the limit of " + properties.getMapMaxItems());
+            }
+            ExecutionPlan body = items.isEmpty() ? null : bodyPlan(node, cfg, engine, context);
+            int limit = cfg.concurrency() > 0 ? cfg.concurrency() : properties.getMapConcurrency();
+            run = new MapRun(node, cfg, context, engine, body, items,
+                    Math.max(1, Math.min(limit, properties.getMapMaxConcurrency())));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        run.drain();
+        return run.result;
+    }
+
+    /**
+     * The body's plan: the cached plan of {@code flowId}, or the inline graph compiled once per node configuration.
+     */
+    private ExecutionPlan bodyPlan(GraphNode node, Config cfg, Engine engine, ExecutionContext context) {
+        ExecutionPlan plan;
+        if (cfg.flowId() != null) {
+            plan = engine.resolvePlan(cfg.flowId());
+        } else if (cfg.body() != null) {
+            plan = cfg.compiled().get();
+            if (plan == null) {
+                plan = engine.compile("map:" + node.id, 0, cfg.body());
+                cfg.compiled().compareAndSet(null, plan);
+            }
+        } else {
+            throw new IllegalArgumentException("Map node " + node.id + " has neither flowId nor body");
+        }
+        int maxDepth = Math.max(1, properties.getMaxSubprocessDepth());
+        if (context.callStack.contains(plan.getFlowId())) {
+            List<String> cycle = new ArrayList<>(context.callStack.subList(context.callStack.indexOf(plan.getFlowId()),
+                    context.callStack.size()));
+            cycle.add(plan.getFlowId());
+            throw new IllegalArgumentException("Subprocess cycle: " + String.join(" -> ", cycle));
+        }
+        if (context.callStack.size() >= maxDepth) {
+            throw new IllegalArgumentException("Subprocess nesting exceeds " + maxDepth + " levels: "
+                    + String.join(" -> ", context.callStack) + " -> " + plan.getFlowId());
+        }
+        return plan;
+    }
+
+    private static List<?> asList(GraphNode node, String name, Object value) {
+        if (value == null) return List.of();
+        if (value instanceof List<?> list) return list;
+        if (value instanceof Collection<?> c) return new ArrayList<>(c);
+        if (value.getClass().isArray()) {
+            Object[] copy = new Object[Array.getLength(value)];
+            for (int i = 0; i < copy.length; i++) copy[i] = Array.get(value, i);
+            return Arrays.asList(copy);
+        }
+        throw new IllegalArgumentException("Map node " + node.id + ": variable '" + name + "' is not a list");
+    }
+
+    private static String text(Object value) {
+        return value != null && !String.valueOf(value).isBlank() ? String.valueOf(value).trim() : null;
+    }
+
+    private static Map<String, String> stringMap(Object value) {
+        if (!(value instanceof Map<?, ?> m)) return Map.of();
+        Map<String, String> result = new LinkedHashMap<>();
+        m.forEach((k, v) -> {
+            if (k != null && v != null) result.put(String.valueOf(k), String.valueOf(v));
+        });
+        return Collections.unmodifiableMap(result);
+    }
+
+    private record Done(int index, FlowRunResult result, Throwable error) {}
+
+    /** One execution of a map node, drained by whichever thread wins {@code wip} as in the engine's scheduler. */
+    private static final class MapRun {
+        final GraphNode node;
+        final Config cfg;
+        final ExecutionContext context;
+        final Engine engine;
+        final ExecutionPlan body;
+        final List<?> items;
+        final int concurrency;
+        final Object[] results;
+        final List<Map<String, Object>> errors = new ArrayList<>();
+        final Queue<Done> completions = new ConcurrentLinkedQueue<>();
+        final AtomicInteger wip = new AtomicInteger();
+        final CompletableFuture<StepResult> result = new CompletableFuture<>();
+        int next;
+        int running;
+        Throwable failure;
+
+        MapRun(GraphNode node, Config cfg, ExecutionContext context, Engine engine, ExecutionPlan body, List<?> items,
+               int concurrency) {
+            this.node = node;
+            this.cfg = cfg;
+            this.context = context;
+            this.engine = engine;
+            this.body = body;
+            this.items = items;
+            this.concurrency = concurrency;
+            this.results = new Object[items.size()];
+        }
+
+        void drain() {
+            if (wip.getAndIncrement() != 0) return;
+            do {
+                Done d;
+                while ((d = completions.poll()) != null) {
+                    running--;
+                    gather(d);
+                }
+                if (failure == null && next < items.size() && context.isCancelled()) {
+                    failure = new DeadlineExceededException("Node cancelled", null, context.deadline.isExpired());
+                }
+                while (failure == null && running < concurrency && next < items.size()) {
+                    running++;
+                    launch(next++);
+                }
+                if (running == 0 && (failure != null || next == items.size()) && !result.isDone()) {
+                    finish();
+                }
+            } while (wip.decrementAndGet() != 0);
+        }
+
+        private void launch(int index) {
+            CompletableFuture<FlowRunResult> run;
+            try {
+                run = engine.runSubflow(body, inputs(index), context);
+            } catch (RuntimeException e) {
+                run = CompletableFuture.failedFuture(e);
+            }
+            run.whenComplete((r, err) -> {
+                completions.add(new Done(index, r, err instanceof CompletionException && err.getCause() != null
+                        ? err.getCause() : err));
+                drain();
+            });
+        }
+
+        /**
+         * The body reads the parent's variables in place, with the element and its index layered on top.
+         */
+        private Map<String, Object> inputs(int index) {
+            Map<String, Object> vars;
+            if (cfg.inputs().isEmpty()) {
+                vars = VariableScope.derive(List.of(VariableScope.of(context.variables)), 0);
+            } else {
+                vars = new HashMap<>();
+                cfg.inputs().forEach((childVar, parentPath) ->
+                        vars.put(childVar, PromptTemplate.lookup(context.variables, parentPath)));
+            }
+            Object item = items.get(index);
+            if (item != null) vars.put(cfg.itemVar(), item);
+            vars.put(cfg.indexVar(), index);
+            return vars;
+        }
+
+        private void gather(Done d) {
+            if (d.error == null) {
+                Object value = PromptTemplate.lookup(d.result.outputs, cfg.resultVar());
+                results[d.index] = value;
+                notifyItem(d.index, value, null);
+                return;
+            }
+            notifyItem(d.index, null, String.valueOf(d.error.getMessage()));
+            if (failure != null) return;
+            if (!cfg.continueOnError() || d.error instanceof DeadlineExceededException e && e.isRunDeadline()) {
+                failure = d.error instanceof DeadlineExceededException ? d.error
+                        : new IllegalStateException("Map node " + node.id + ": item " + d.index + " failed: "
+                        + d.error.getMessage(), d.error);
+                // bodies still running stop starting nodes; their results no longer matter
+                context.cancel();
+                return;
+            }
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("index", d.index);
+            error.put("error", String.valueOf(d.error.getMessage()));
+            errors.add(error);
+        }
+
+        private void finish() {
+            if (failure != null) {
+                result.completeExceptionally(failure);
+                return;
+            }
+            List<Object> gathered = Arrays.asList(results);
+            Map<String, Object> outputs = new LinkedHashMap<>();
+            outputs.put(cfg.outputVar(), gathered);
+            if (cfg.errorsVar() != null) outputs.put(cfg.errorsVar(), errors);
+            outputs.forEach(context::setVar);
+
+            StepResult r = new StepResult();
+            r.nodeId = node.id;
+            r.type = node.type;
+            r.outputs = outputs;
+            if (context.isTracing()) {
+                Map<String, Object> trace = new LinkedHashMap<>();
+                trace.put("body", body != null ? body.getFlowId() : cfg.flowId());
+                trace.put("items", items.size());
+                trace.put("concurrency", concurrency);
+                trace.put("failed", errors.size());
+                if (!errors.isEmpty()) trace.put("errors", errors);
+                r.trace = trace;
+            }
+            result.complete(r);
+        }
+
+        private void notifyItem(int index, Object value, String error) {
+            try {
+                context.listener.onItem(node.id, index, value, error);
+            } catch (RuntimeException ignored) {
+                // a failing observer must not break the run
+            }
+        }
+    }
+
+    /**
+     * Map node configuration parsed once per plan; {@code compiled} holds the inline body's plan once built.
+     */
+    public record Config(String items, String flowId, FlowGraph body, Map<String, String> inputs, String itemVar,
+                         String indexVar, String resultVar, String outputVar, String errorsVar, int concurrency,
+                         boolean continueOnError, AtomicReference<ExecutionPlan> compiled) {}
+}
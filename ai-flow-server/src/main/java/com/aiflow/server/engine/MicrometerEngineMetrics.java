@@ -0,0 +1,120 @@
+package com.aiflow.server.engine;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link EngineMetrics} on Micrometer; meters are cached per flow or node type, flows beyond the cap are
+ * recorded under {@value #OTHER}. Meter names are listed in backend.md.
+ */
+public class MicrometerEngineMetrics implements EngineMetrics {
+
+    static final String OTHER = "_other";
+
+    private final MeterRegistry registry;
+    private final int maxFlows;
+    private final Map<String, Outcomes> runs = new ConcurrentHashMap<>();
+    private final Map<String, NodeMeters> nodes = new ConcurrentHashMap<>();
+    private final Timer queueWait;
+
+    public MicrometerEngineMetrics(MeterRegistry registry, int maxFlows) {
+        this.registry = registry;
+        this.maxFlows = Math.max(1, maxFlows);
+        this.queueWait = Timer.builder("flow.node.queue.wait")
+                .description("Time a node waited for a thread of the engine's node pool")
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    @Override
+    public void runFinished(String flowId, long nanos, Throwable error) {
+        Outcomes meters = runs.get(flowId);
+        if (meters == null) meters = flowMeters(flowId);
+        meters.of(error).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void nodeFinished(String type, long nanos, Throwable error) {
+        NodeMeters meters = nodeMeters(type);
+        meters.latency.of(error).record(nanos, TimeUnit.NANOSECONDS);
+        if (error instanceof DeadlineExceededException) meters.timeouts.increment();
+        else if (error != null) meters.errors.increment();
+    }
+
+    @Override
+    public void nodeQueued(long nanos) {
+        queueWait.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void nodeCached(String type) {
+        nodeMeters(type).cacheHits.increment();
+    }
+
+    @Override
+    public void nodeSkipped(String type) {
+        nodeMeters(type).skipped.increment();
+    }
+
+    private Outcomes flowMeters(String flowId) {
+        // racing registrations of the same flow resolve to the same meters, so exceeding the cap by a few is harmless
+        String tag = runs.size() < maxFlows ? flowId : OTHER;
+        return runs.computeIfAbsent(tag, f -> new Outcomes("flow.run", "Flow run latency", "flow", f));
+    }
+
+    private NodeMeters nodeMeters(String type) {
+        if (type == null) type = "unknown";
+        NodeMeters meters = nodes.get(type);
+        return meters != null ? meters : nodes.computeIfAbsent(type, NodeMeters::new);
+    }
+
+    /**
+     * One timer per outcome, so recording never builds tags.
+     */
+    private final class Outcomes {
+        final Timer success;
+        final Timer error;
+        final Timer timeout;
+
+        Outcomes(String name, String description, String key, String value) {
+            this.success = timer(name, description, key, value, "success");
+            this.error = timer(name, description, key, value, "error");
+            this.timeout = timer(name, description, key, value, "timeout");
+        }
+
+        Timer of(Throwable t) {
+            if (t == null) return success;
+            return t instanceof DeadlineExceededException ? timeout : error;
+        }
+
+        private Timer timer(String name, String description, String key, String value, String outcome) {
+            return Timer.builder(name)
+                    .description(description)
+                    .tag(key, value)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+
+    private final class NodeMeters {
+        final Outcomes latency;
+        final Counter errors;
+        final Counter timeouts;
+        final Counter cacheHits;
+        final Counter skipped;
+
+        NodeMeters(String type) {
+            this.latency = new Outcomes("flow.node", "Node latency by node type", "type", type);
+            this.errors = Counter.builder("flow.node.errors").tag("type", type).tag("reason", "error").register(registry);
+            this.timeouts = Counter.builder("flow.node.errors").tag("type", type).tag("reason", "timeout").register(registry);
+            this.cacheHits = Counter.builder("flow.node.cache.hits").tag("type", type).register(registry);
+            this.skipped = Counter.builder("flow.node.skipped").tag("type", type).register(registry);
+        }
+    }
+}
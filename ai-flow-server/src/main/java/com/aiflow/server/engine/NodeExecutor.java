@@ -2,17 +2,105 @@ package com.aiflow.server.engine;
 
 import com.aiflow.server.dto.FlowDtos.GraphNode;
 
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
 
 public interface NodeExecutor {
-    boolean supports(String type);
+    /**
+     * Node type code handled by this executor, matching t_node_type.type_code.
+     */
+    String getType();
+
+    default boolean supports(String type) {
+        return getType().equalsIgnoreCase(type);
+    }
+
     StepResult execute(GraphNode node, ExecutionContext context);
 
+    /**
+     * Parses the node's configuration once per plan; the result is passed back on every run. Missing
+     * settings fail the node when it runs, not here, so unfinished flows can still be saved.
+     */
+    default Object prepare(GraphNode node) {
+        return null;
+    }
+
+    default StepResult execute(GraphNode node, Object prepared, ExecutionContext context) {
+        return execute(node, context);
+    }
+
+    /**
+     * Runs the blocking {@code execute} on {@code executor}; non-blocking executors override this.
+     */
+    default CompletionStage<StepResult> executeAsync(GraphNode node, Object prepared, ExecutionContext context,
+                                                     Executor executor) {
+        return CompletableFuture.supplyAsync(() -> {
+            context.markStarted();
+            return execute(node, prepared, context);
+        }, executor);
+    }
+
     class ExecutionContext {
+        /** Run inputs plus what the predecessors wrote; writes stay private until the node finishes. */
         public final Map<String, Object> variables;
-        public ExecutionContext(Map<String, Object> variables) { this.variables = variables; }
+        public final RunListener listener;
+        /** the engine driving this run; null when a node is executed outside of an engine */
+        public final Engine engine;
+        /** ids of the flows being executed, outermost first; the last one is the current flow */
+        public final List<String> callStack;
+        /** when this node must finish: the run's deadline, shortened by the node's own {@code timeout} */
+        public final Deadline deadline;
+        /** what the run records for this node; never {@link TraceLevel#SAMPLED} */
+        public final TraceLevel traceLevel;
+        private volatile boolean cancelled;
+        /** the run's trace settings, handed down to subflows; null outside of an engine */
+        TraceOptions traceOptions;
+        /** System.nanoTime() when the engine launched the node, and when a pool thread started executing it */
+        long launchedAt;
+        volatile long startedAt;
+        public ExecutionContext(Map<String, Object> variables) { this(variables, RunListener.NOOP); }
+        public ExecutionContext(Map<String, Object> variables, RunListener listener) {
+            this(variables, listener, null, List.of());
+        }
+        public ExecutionContext(Map<String, Object> variables, RunListener listener, Engine engine, List<String> callStack) {
+            this(variables, listener, engine, callStack, Deadline.NONE);
+        }
+        public ExecutionContext(Map<String, Object> variables, RunListener listener, Engine engine, List<String> callStack,
+                                Deadline deadline) {
+            this(variables, listener, engine, callStack, deadline, TraceLevel.FULL);
+        }
+        public ExecutionContext(Map<String, Object> variables, RunListener listener, Engine engine, List<String> callStack,
+                                Deadline deadline, TraceLevel traceLevel) {
+            this.variables = variables;
+            this.listener = listener != null ? listener : RunListener.NOOP;
+            this.engine = engine;
+            this.callStack = callStack != null ? List.copyOf(callStack) : List.of();
+            this.deadline = deadline != null ? deadline : Deadline.NONE;
+            this.traceLevel = traceLevel != null && traceLevel != TraceLevel.SAMPLED ? traceLevel : TraceLevel.FULL;
+        }
+        /** false when the run keeps no trace; executors then leave {@link StepResult#trace} null */
+        public boolean isTracing() { return traceLevel != TraceLevel.OFF; }
+        /** time budget left for this node; pass it on as the timeout of any blocking call */
+        public long remainingMillis() { return deadline.remainingMillis(); }
+        /** True once the node timed out or the run failed; long-running executors should check it between steps. */
+        public boolean isCancelled() { return cancelled || deadline.isExpired(); }
+        /** throws {@link DeadlineExceededException} when {@link #isCancelled()} */
+        public void checkCancelled() {
+            if (isCancelled()) throw new DeadlineExceededException("Node cancelled", null, deadline.isExpired());
+        }
+        void cancel() { cancelled = true; }
+        void markStarted() { startedAt = System.nanoTime(); }
         public Object getVar(String key) { return variables.get(key); }
-        public void setVar(String key, Object value) { variables.put(key, value); }
+        /** forwards a partial output to whoever is streaming this run */
+        public void emitToken(String nodeId, String token) { listener.onToken(nodeId, token); }
+        public void setVar(String key, Object value) {
+            if (value == null) variables.remove(key);
+            else variables.put(key, value);
+        }
     }
 
     class StepResult {
@@ -20,5 +108,7 @@ public interface NodeExecutor {
         public String type;
         public Map<String, Object> outputs; // newly produced variables
         public Map<String, Object> trace;   // trace info for this step
+        /** labels of the outgoing edges to follow; null follows every edge, unlabelled edges are always followed */
+        public Set<String> branches;
     }
 } 
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.aiflow.server.engine;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.*;
+
+/**
+ * Executors by type code, matched case-insensitively.
+ */
+@Slf4j
+public class NodeExecutorRegistry {
+
+    /** marker node types that carry no work and therefore need no executor */
+    public static final Set<String> STRUCTURAL_TYPES = Set.of("start", "end");
+
+    private final Map<String, NodeExecutor> executors;
+
+    public NodeExecutorRegistry(List<NodeExecutor> executors) {
+        Map<String, NodeExecutor> map = new HashMap<>();
+        for (NodeExecutor e : executors) {
+            String type = normalize(e.getType());
+            if (type == null) {
+                throw new IllegalStateException("Node executor " + e.getClass().getName() + " declares no type");
+            }
+            NodeExecutor previous = map.putIfAbsent(type, e);
+            if (previous != null) {
+                throw new IllegalStateException("Duplicate node executors for type '" + type + "': "
+                        + previous.getClass().getName() + ", " + e.getClass().getName());
+            }
+        }
+        this.executors = Map.copyOf(map);
+        log.info("已加载的节点执行器: {}", new TreeSet<>(this.executors.keySet()));
+    }
+
+    /**
+     * @return the executor for the type, or null if none is registered
+     */
+    public NodeExecutor find(String type) {
+        String key = normalize(type);
+        return key != null ? executors.get(key) : null;
+    }
+
+    public boolean supports(String type) {
+        return find(type) != null;
+    }
+
+    public Set<String> getTypes() {
+        return executors.keySet();
+    }
+
+    /**
+     * @return the given type codes that have no executor, structural types excluded
+     */
+    public List<String> findMissing(Collection<String> typeCodes) {
+        List<String> missing = new ArrayList<>();
+        for (String code : typeCodes) {
+            String key = normalize(code);
+            if (key != null && !STRUCTURAL_TYPES.contains(key) && !executors.containsKey(key)) {
+                missing.add(code);
+            }
+        }
+        return missing;
+    }
+
+    private static String normalize(String type) {
+        return type == null || type.isBlank() ? null : type.trim().toLowerCase(Locale.ROOT);
+    }
+}
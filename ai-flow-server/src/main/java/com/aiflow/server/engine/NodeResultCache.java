@@ -0,0 +1,196 @@
+package com.aiflow.server.engine;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Results of nodes with a {@code cache} property, grouped by node configuration and keyed by the values of the
+ * variables the node read on its last execution.
+ */
+public class NodeResultCache {
+
+    static final Duration DEFAULT_TTL = Duration.ofMinutes(5);
+    static final int DEFAULT_MAX_ENTRIES = 256;
+
+    private final int maxNodes;
+    private final Map<Object, Group> groups;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    public NodeResultCache(int maxNodes) {
+        this.maxNodes = Math.max(1, maxNodes);
+        this.groups = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Group> eldest) {
+                return size() > NodeResultCache.this.maxNodes;
+            }
+        };
+    }
+
+    /**
+     * Cache settings of one node, parsed when the plan is compiled.
+     */
+    public record Spec(long ttlNanos, int maxEntries, Object configKey) {
+
+        /**
+         * @return the node's cache settings, or null when it does not opt in
+         */
+        static Spec of(String type, Map<String, Object> properties) {
+            Object cfg = properties.get("cache");
+            if (cfg == null || Boolean.FALSE.equals(cfg)) return null;
+            Duration ttl = DEFAULT_TTL;
+            int maxEntries = DEFAULT_MAX_ENTRIES;
+            if (cfg instanceof Map<?, ?> m) {
+                if (Boolean.FALSE.equals(m.get("enabled"))) return null;
+                Object t = m.get("ttl");
+                if (t instanceof Number n) ttl = Duration.ofSeconds(n.longValue());
+                else if (t != null && !String.valueOf(t).isBlank()) ttl = DurationStyle.detectAndParse(String.valueOf(t).trim());
+                Object max = m.get("maxEntries");
+                if (max instanceof Number n) maxEntries = n.intValue();
+                else if (max != null && !String.valueOf(max).isBlank()) maxEntries = Integer.parseInt(String.valueOf(max).trim());
+            } else if (!Boolean.TRUE.equals(cfg)) {
+                throw new IllegalArgumentException("Invalid cache setting: " + cfg);
+            }
+            return new Spec(ttl.toNanos(), Math.max(1, maxEntries), Arrays.asList(type, properties));
+        }
+    }
+
+    record Hit(Map<String, Object> writes, NodeExecutor.StepResult step) {}
+
+    private record Key(List<String> names, List<Object> values) {}
+
+    private record Entry(Hit hit, long expiresAt) {}
+
+    /**
+     * @return the stored result for the variables currently visible to the node, or null on a miss
+     */
+    Hit lookup(Spec spec, Map<String, Object> variables) {
+        Group group;
+        synchronized (groups) {
+            group = groups.get(spec.configKey());
+        }
+        Hit hit = group != null ? group.get(variables) : null;
+        (hit != null ? hits : misses).incrementAndGet();
+        return hit;
+    }
+
+    /**
+     * Stores a result under the variables the execution read, in the order they were first read.
+     */
+    void store(Spec spec, Map<String, Object> reads, Hit hit) {
+        Group group;
+        synchronized (groups) {
+            group = groups.computeIfAbsent(spec.configKey(), k -> new Group(spec));
+        }
+        group.put(reads, hit);
+    }
+
+    public void clear() {
+        synchronized (groups) {
+            groups.clear();
+        }
+    }
+
+    public Stats stats() {
+        List<Group> all;
+        synchronized (groups) {
+            all = new ArrayList<>(groups.values());
+        }
+        Stats s = new Stats();
+        s.nodes = all.size();
+        s.maxNodes = maxNodes;
+        for (Group g : all) s.size += g.size();
+        s.hits = hits.get();
+        s.misses = misses.get();
+        s.evictions = evictions.get();
+        s.expirations = expirations.get();
+        long total = s.hits + s.misses;
+        s.hitRate = total == 0 ? 0.0 : (double) s.hits / total;
+        return s;
+    }
+
+    /**
+     * Entries of one node configuration.
+     */
+    private final class Group {
+        final Spec spec;
+        final Map<Key, Entry> entries;
+        /** variables read by the latest execution; lookups key on these */
+        volatile List<String> readNames;
+
+        Group(Spec spec) {
+            this.spec = spec;
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    boolean evict = size() > Group.this.spec.maxEntries();
+                    if (evict) evictions.incrementAndGet();
+                    return evict;
+                }
+            };
+        }
+
+        Hit get(Map<String, Object> variables) {
+            List<String> names = readNames;
+            if (names == null) return null;
+            List<Object> values = new ArrayList<>(names.size());
+            for (String name : names) values.add(variables.get(name));
+            Key key = new Key(names, values);
+            long now = System.nanoTime();
+            synchronized (entries) {
+                Entry e = entries.get(key);
+                if (e == null) return null;
+                if (now - e.expiresAt >= 0) {
+                    entries.remove(key);
+                    expirations.incrementAndGet();
+                    return null;
+                }
+                return e.hit;
+            }
+        }
+
+        void put(Map<String, Object> reads, Hit hit) {
+            List<String> names = List.copyOf(reads.keySet());
+            Key key = new Key(names, new ArrayList<>(reads.values()));
+            readNames = names;
+            long now = System.nanoTime();
+            synchronized (entries) {
+                // drop expired entries from the LRU end before they crowd out live ones
+                Iterator<Entry> it = entries.values().iterator();
+                while (it.hasNext()) {
+                    if (now - it.next().expiresAt < 0) break;
+                    it.remove();
+                    expirations.incrementAndGet();
+                }
+                entries.put(key, new Entry(hit, now + spec.ttlNanos()));
+            }
+        }
+
+        int size() {
+            synchronized (entries) {
+                return entries.size();
+            }
+        }
+    }
+
+    public static class Stats {
+        public int nodes;
+        public int maxNodes;
+        public int size;
+        public long hits;
+        public long misses;
+        public long evictions;
+        public long expirations;
+        public double hitRate;
+    }
+}
@@ -0,0 +1,138 @@
+package com.aiflow.server.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * LRU cache of compiled plans by flowId; a plan never replaces one compiled from a newer version. Other instances
+ * save graphs too, so a plan older than the revalidation interval is checked against the stored version before use.
+ */
+public class PlanCache {
+    private final int maxSize;
+    private final long revalidateNanos;
+    private final Map<String, Entry> plans;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong stale = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Checks the stored version on every lookup.
+     */
+    public PlanCache(int maxSize) {
+        this(maxSize, 0);
+    }
+
+    /**
+     * @param revalidateMs a cached plan is used without asking for the stored version for this long after it was
+     *                     compiled or last checked; 0 checks on every lookup
+     */
+    public PlanCache(int maxSize, long revalidateMs) {
+        this.maxSize = Math.max(1, maxSize);
+        this.revalidateNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, revalidateMs));
+        this.plans = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                boolean evict = size() > PlanCache.this.maxSize;
+                if (evict) evictions.incrementAndGet();
+                return evict;
+            }
+        };
+    }
+
+    private static final class Entry {
+        final ExecutionPlan plan;
+        /** nanoTime when the plan was compiled or last matched the stored version */
+        volatile long checkedAt;
+
+        Entry(ExecutionPlan plan) {
+            this.plan = plan;
+            this.checkedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * @param storedVersion reads the flow's current version; called only when the plan is due for a check
+     * @return the cached plan for the flow, or null on a miss; a plan compiled from another version is dropped and
+     * counts as a miss
+     */
+    public ExecutionPlan get(String flowId, LongSupplier storedVersion) {
+        Entry entry;
+        synchronized (plans) {
+            entry = plans.get(flowId);
+        }
+        if (entry != null && System.nanoTime() - entry.checkedAt >= revalidateNanos) {
+            if (storedVersion.getAsLong() == entry.plan.getVersion()) {
+                entry.checkedAt = System.nanoTime();
+            } else {
+                stale.incrementAndGet();
+                synchronized (plans) {
+                    plans.remove(flowId, entry);
+                }
+                entry = null;
+            }
+        }
+        (entry != null ? hits : misses).incrementAndGet();
+        return entry != null ? entry.plan : null;
+    }
+
+    /**
+     * @return the cached plan for the flow without checking its version or counting a lookup, or null
+     */
+    public ExecutionPlan peek(String flowId) {
+        synchronized (plans) {
+            Entry entry = plans.get(flowId);
+            return entry != null ? entry.plan : null;
+        }
+    }
+
+    public void put(ExecutionPlan plan) {
+        synchronized (plans) {
+            Entry current = plans.get(plan.getFlowId());
+            if (current == null || current.plan.getVersion() <= plan.getVersion()) {
+                plans.put(plan.getFlowId(), new Entry(plan));
+            }
+        }
+    }
+
+    public void invalidate(String flowId) {
+        synchronized (plans) {
+            plans.remove(flowId);
+        }
+    }
+
+    public void clear() {
+        synchronized (plans) {
+            plans.clear();
+        }
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        synchronized (plans) {
+            s.size = plans.size();
+        }
+        s.maxSize = maxSize;
+        s.hits = hits.get();
+        s.misses = misses.get();
+        s.stale = stale.get();
+        s.evictions = evictions.get();
+        long total = s.hits + s.misses;
+        s.hitRate = total == 0 ? 0.0 : (double) s.hits / total;
+        return s;
+    }
+
+    public static class Stats {
+        public int size;
+        public int maxSize;
+        public long hits;
+        public long misses;
+        /** misses where the cached plan was compiled from another version than the stored one */
+        public long stale;
+        public long evictions;
+        public double hitRate;
+    }
+}
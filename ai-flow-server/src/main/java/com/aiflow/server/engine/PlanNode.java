@@ -0,0 +1,61 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A node of an {@link ExecutionPlan} with its executor resolved and its properties frozen.
+ */
+public final class PlanNode {
+    public final int index;
+    public final String id;
+    public final String type;
+    public final Map<String, Object> properties;
+    /** null when no executor handles {@link #type}; such nodes are skipped */
+    public final NodeExecutor executor;
+    /** executor-specific parsed configuration, see {@link NodeExecutor#prepare} */
+    public final Object prepared;
+    /** memoization settings from the {@code cache} property; null when results are not cached */
+    public final NodeResultCache.Spec cache;
+    /** the node's own {@code timeout}; 0 when only the run's deadline applies */
+    public final long timeoutNanos;
+    /** {@code "onTimeout": "continue"}: a node that hits its own timeout finishes without outputs instead of failing the run */
+    public final boolean continueOnTimeout;
+    /** detached copy handed to executors, so shared plan state cannot be mutated by a run */
+    public final GraphNode graphNode;
+
+    PlanNode(int index, GraphNode source, NodeExecutor executor) {
+        this.index = index;
+        this.id = source.id;
+        this.type = source.type;
+        this.properties = source.properties != null
+                ? Collections.unmodifiableMap(new LinkedHashMap<>(source.properties))
+                : Map.of();
+        this.executor = executor;
+
+        GraphNode copy = new GraphNode();
+        copy.id = source.id;
+        copy.type = source.type;
+        copy.properties = this.properties;
+        this.graphNode = copy;
+        this.prepared = executor != null ? executor.prepare(copy) : null;
+        this.cache = executor != null ? NodeResultCache.Spec.of(type, this.properties) : null;
+        this.timeoutNanos = durationNanos(this.properties.get("timeout"));
+        this.continueOnTimeout = "continue".equalsIgnoreCase(String.valueOf(this.properties.get("onTimeout")));
+    }
+
+    /** Parses milliseconds or a duration such as {@code "30s"}; nanoseconds, 0 when absent. */
+    static long durationNanos(Object value) {
+        if (value == null || String.valueOf(value).isBlank()) return 0;
+        long nanos = value instanceof Number n
+                ? TimeUnit.MILLISECONDS.toNanos(n.longValue())
+                : DurationStyle.detectAndParse(String.valueOf(value).trim(), ChronoUnit.MILLIS).toNanos();
+        return Math.max(0, nanos);
+    }
+}
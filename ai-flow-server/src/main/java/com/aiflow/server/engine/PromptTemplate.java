@@ -0,0 +1,196 @@
+package com.aiflow.server.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * A {@code ${...}} template parsed once; placeholders may be dotted paths into nested maps and lists.
+ */
+public final class PromptTemplate {
+
+    /**
+     * What to do when a placeholder cannot be resolved.
+     */
+    public enum MissingPolicy {
+        /** leave {@code ${name}} in the output (the historical behaviour) */
+        KEEP,
+        /** substitute an empty string */
+        EMPTY,
+        /** fail the node */
+        ERROR;
+
+        public static MissingPolicy of(Object value) {
+            if (value == null || String.valueOf(value).isBlank()) return KEEP;
+            return valueOf(String.valueOf(value).trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private static final Object MISSING = new Object();
+    private static final PromptTemplate EMPTY_TEMPLATE = new PromptTemplate("", new String[0], new String[0][], new String[0], 0);
+
+    private final String source;
+    /** literal text, or null where the segment is a placeholder */
+    private final String[] literals;
+    /** placeholder path, or null where the segment is a literal */
+    private final String[][] paths;
+    /** the placeholder expression as written, e.g. "user.name" */
+    private final String[] keys;
+    private final int literalLength;
+
+    private PromptTemplate(String source, String[] literals, String[][] paths, String[] keys, int literalLength) {
+        this.source = source;
+        this.literals = literals;
+        this.paths = paths;
+        this.keys = keys;
+        this.literalLength = literalLength;
+    }
+
+    public static PromptTemplate parse(String template) {
+        if (template == null || template.isEmpty()) return EMPTY_TEMPLATE;
+        List<String> literals = new ArrayList<>();
+        List<String[]> paths = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        int literalLength = 0;
+        int pos = 0;
+        int len = template.length();
+        while (pos < len) {
+            int open = template.indexOf("${", pos);
+            int close = open < 0 ? -1 : template.indexOf('}', open + 2);
+            if (open < 0 || close < 0) {
+                // no further complete placeholder; an unterminated "${" stays literal
+                String tail = template.substring(pos);
+                literals.add(tail);
+                paths.add(null);
+                keys.add(null);
+                literalLength += tail.length();
+                break;
+            }
+            if (open > pos) {
+                String lit = template.substring(pos, open);
+                literals.add(lit);
+                paths.add(null);
+                keys.add(null);
+                literalLength += lit.length();
+            }
+            String expr = template.substring(open + 2, close);
+            literals.add(null);
+            paths.add(splitPath(expr));
+            keys.add(expr);
+            pos = close + 1;
+        }
+        return new PromptTemplate(template, literals.toArray(new String[0]),
+                paths.toArray(new String[0][]), keys.toArray(new String[0]), literalLength);
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public boolean hasPlaceholders() {
+        for (String[] p : paths) {
+            if (p != null) return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the dotted path of every placeholder, in template order (may repeat)
+     */
+    public List<String> getVariableNames() {
+        List<String> names = new ArrayList<>();
+        for (String k : keys) {
+            if (k != null) names.add(k);
+        }
+        return names;
+    }
+
+    public String render(Map<String, Object> vars, MissingPolicy policy) {
+        return render(vars, policy, null);
+    }
+
+    /** Renders with every substituted value passed through {@code encoder}. */
+    public String render(Map<String, Object> vars, MissingPolicy policy, UnaryOperator<String> encoder) {
+        int n = literals.length;
+        if (n == 0) return "";
+        if (n == 1 && literals[0] != null) return literals[0];
+
+        String[] values = new String[n];
+        int size = literalLength;
+        for (int i = 0; i < n; i++) {
+            if (paths[i] == null) continue;
+            Object value = value(paths[i], keys[i], vars);
+            String v;
+            if (value == MISSING) {
+                v = missing(keys[i], policy);
+            } else {
+                v = value == null ? "" : String.valueOf(value);
+                if (encoder != null && !v.isEmpty()) v = encoder.apply(v);
+            }
+            values[i] = v;
+            size += v.length();
+        }
+        StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < n; i++) {
+            sb.append(literals[i] != null ? literals[i] : values[i]);
+        }
+        return sb.toString();
+    }
+
+    /** Resolves a variable or dotted path as a placeholder would; null when it does not exist. */
+    public static Object lookup(Map<String, Object> vars, String expr) {
+        if (vars == null || expr == null || expr.isEmpty()) return null;
+        if (vars.containsKey(expr)) return vars.get(expr);
+        Object value = walk(splitPath(expr), vars);
+        return value == MISSING ? null : value;
+    }
+
+    private static Object value(String[] path, String key, Map<String, Object> vars) {
+        Object value = MISSING;
+        if (vars != null) {
+            if (path.length > 1 && vars.containsKey(key)) value = vars.get(key);
+            if (value == MISSING) value = walk(path, vars);
+        }
+        return value;
+    }
+
+    private static String missing(String key, MissingPolicy policy) {
+        return switch (policy) {
+            case EMPTY -> "";
+            case ERROR -> throw new IllegalArgumentException("Missing template variable: " + key);
+            default -> "${" + key + "}";
+        };
+    }
+
+    private static Object walk(String[] path, Map<String, Object> vars) {
+        if (!vars.containsKey(path[0])) return MISSING;
+        Object cur = vars.get(path[0]);
+        for (int i = 1; i < path.length; i++) {
+            if (cur instanceof Map<?, ?> m) {
+                if (!m.containsKey(path[i])) return MISSING;
+                cur = m.get(path[i]);
+            } else if (cur instanceof List<?> list) {
+                int idx = parseIndex(path[i]);
+                if (idx < 0 || idx >= list.size()) return MISSING;
+                cur = list.get(idx);
+            } else {
+                return MISSING;
+            }
+        }
+        return cur;
+    }
+
+    private static int parseIndex(String s) {
+        if (s.isEmpty() || s.length() > 9) return -1;
+        for (int i = 0; i < s.length(); i++) {
+            if (!Character.isDigit(s.charAt(i))) return -1;
+        }
+        return Integer.parseInt(s);
+    }
+
+    private static String[] splitPath(String expr) {
+        return expr.indexOf('.') < 0 ? new String[]{expr} : expr.split("\\.", -1);
+    }
+}
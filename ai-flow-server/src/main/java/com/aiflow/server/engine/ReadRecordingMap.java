@@ -0,0 +1,60 @@
+package com.aiflow.server.engine;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Variables of a memoized node that remembers the first value read of each variable.
+ */
+final class ReadRecordingMap extends AbstractMap<String, Object> {
+
+    private final Map<String, Object> target;
+    private final Map<String, Object> reads = Collections.synchronizedMap(new LinkedHashMap<>());
+    private volatile boolean readAll;
+
+    ReadRecordingMap(Map<String, Object> target) {
+        this.target = target;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object v = target.get(key);
+        if (key instanceof String k) reads.putIfAbsent(k, v);
+        return v;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        get(key);
+        return target.containsKey(key);
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        return target.put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return target.remove(key);
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        readAll = true;
+        return target.entrySet();
+    }
+
+    /**
+     * @return the variables read and their values, or null when the node enumerated all variables
+     */
+    Map<String, Object> reads() {
+        if (readAll) return null;
+        synchronized (reads) {
+            return new LinkedHashMap<>(reads);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.aiflow.server.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Durable progress of a run: its inputs and the writes and branches of every finished node.
+ */
+public class RunCheckpoint {
+    public String runId;
+    public String flowId;
+    /** plan version the run started on; a checkpoint only resumes on the same version */
+    public long version;
+    public Map<String, Object> inputs;
+    /** finished nodes in completion order */
+    public List<NodeState> nodes = new ArrayList<>();
+
+    public static class NodeState {
+        public String nodeId;
+        public String type;
+        /** variables written by the node; null values are removals */
+        public Map<String, Object> writes;
+        public Set<String> branches;
+        public Map<String, Object> trace;
+    }
+}
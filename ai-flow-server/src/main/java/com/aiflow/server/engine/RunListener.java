@@ -0,0 +1,26 @@
+package com.aiflow.server.engine;
+
+import java.util.Map;
+
+/**
+ * Receives progress of a single run while it executes. Callbacks arrive on engine threads and must not block.
+ */
+public interface RunListener {
+
+    RunListener NOOP = new RunListener() {};
+
+    /**
+     * A node finished; {@code step} is the same entry that will appear in the run's trace.
+     */
+    default void onStep(Map<String, Object> step) {}
+
+    /**
+     * A partial output (e.g. an LLM token chunk) produced by a node before it finishes.
+     */
+    default void onToken(String nodeId, String token) {}
+
+    /**
+     * One element of a map node finished, in completion order; {@code error} is null when it succeeded.
+     */
+    default void onItem(String nodeId, int index, Object result, String error) {}
+}
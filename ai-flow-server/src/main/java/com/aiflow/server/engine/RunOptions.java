@@ -0,0 +1,42 @@
+package com.aiflow.server.engine;
+
+/**
+ * Per-run settings beyond the plan and its inputs; the {@code with} methods return copies.
+ */
+public record RunOptions(int parallelism, RunListener listener, String runId, Checkpointer checkpointer,
+                         Deadline deadline, TraceOptions trace) {
+
+    public static final RunOptions DEFAULT = new RunOptions(0, RunListener.NOOP, null, Checkpointer.NONE, Deadline.NONE,
+            TraceOptions.FULL);
+
+    public RunOptions {
+        if (listener == null) listener = RunListener.NOOP;
+        if (checkpointer == null) checkpointer = Checkpointer.NONE;
+        if (deadline == null) deadline = Deadline.NONE;
+        if (trace == null) trace = TraceOptions.FULL;
+    }
+
+    public RunOptions withParallelism(int parallelism) {
+        return new RunOptions(parallelism, listener, runId, checkpointer, deadline, trace);
+    }
+
+    public RunOptions withListener(RunListener listener) {
+        return new RunOptions(parallelism, listener, runId, checkpointer, deadline, trace);
+    }
+
+    public RunOptions withRunId(String runId) {
+        return new RunOptions(parallelism, listener, runId, checkpointer, deadline, trace);
+    }
+
+    public RunOptions withCheckpointer(Checkpointer checkpointer) {
+        return new RunOptions(parallelism, listener, runId, checkpointer, deadline, trace);
+    }
+
+    public RunOptions withDeadline(Deadline deadline) {
+        return new RunOptions(parallelism, listener, runId, checkpointer, deadline, trace);
+    }
+
+    public RunOptions withTrace(TraceOptions trace) {
+        return new RunOptions(parallelism, listener, runId, checkpointer, deadline, trace);
+    }
+}
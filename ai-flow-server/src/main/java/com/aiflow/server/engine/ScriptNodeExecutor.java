@@ -0,0 +1,159 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.config.EngineProperties;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * script node: runs JavaScript in the {@link ScriptSandbox} on the sandbox's own threads.
+ */
+@Component
+@RequiredArgsConstructor
+public class ScriptNodeExecutor extends BaseNodeExecutor {
+
+    private static final Set<String> KEYWORDS = Set.of("break", "case", "catch", "class", "const", "continue",
+            "debugger", "default", "delete", "do", "else", "export", "extends", "false", "finally", "for", "function",
+            "if", "import", "in", "instanceof", "let", "new", "null", "return", "super", "switch", "this", "throw",
+            "true", "try", "typeof", "undefined", "var", "void", "while", "with", "yield");
+
+    private final ScriptSandbox sandbox;
+    private final EngineProperties properties;
+
+    @Override
+    public String getType() {
+        return "script";
+    }
+
+    @Override
+    public Config prepare(GraphNode node) {
+        Map<String, Object> props = node.properties != null ? node.properties : Map.of();
+        Object script = props.get("script");
+        String source = script != null && !String.valueOf(script).isBlank() ? String.valueOf(script) : null;
+        return new Config(
+                String.valueOf(props.getOrDefault("language", "javascript")).trim().toLowerCase(Locale.ROOT),
+                source,
+                source != null ? ScriptSandbox.hash(source) : null,
+                source != null ? identifiers(source) : Set.of(),
+                String.valueOf(props.getOrDefault("output", "result")),
+                new ScriptSandbox.Limits(
+                        TimeUnit.MILLISECONDS.toNanos(limit(props.get("maxCpuMs"), properties.getScriptMaxCpuMs())),
+                        limit(props.get("maxMemoryBytes"), properties.getScriptMaxMemoryBytes()))
+        );
+    }
+
+    @Override
+    public CompletionStage<StepResult> executeAsync(GraphNode node, Object prepared, ExecutionContext context,
+                                                    Executor executor) {
+        Config cfg = prepared instanceof Config c ? c : prepare(node);
+        if (cfg.source() == null) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Script node " + node.id + " has no script"));
+        }
+        if (!cfg.language().equals("javascript") && !cfg.language().equals("js")) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Script node " + node.id + ": language '" + cfg.language() + "' is not supported"));
+        }
+        return sandbox.run(cfg.hash(), cfg.source(), globals(cfg, context.variables), cfg.limits(), context::isCancelled)
+                .handle((outcome, error) -> {
+                    if (error != null) throw failure(node, error);
+                    return toStep(node, cfg, context, outcome);
+                });
+    }
+
+    private static StepResult toStep(GraphNode node, Config cfg, ExecutionContext context, ScriptSandbox.Outcome outcome) {
+        context.setVar(cfg.outputVar(), outcome.value());
+
+        StepResult r = new StepResult();
+        r.nodeId = node.id;
+        r.type = node.type;
+        Map<String, Object> outputs = new HashMap<>(2);
+        outputs.put(cfg.outputVar(), outcome.value());
+        r.outputs = outputs;
+        if (context.isTracing()) {
+            Map<String, Object> trace = new HashMap<>(8);
+            trace.put("compileMs", millis(outcome.compileNanos()));
+            trace.put("compileCached", outcome.cached());
+            trace.put("executeMs", millis(outcome.executeNanos()));
+            trace.put("cpuMs", millis(outcome.cpuNanos()));
+            trace.put("allocatedBytes", outcome.allocatedBytes());
+            trace.put("outputVar", cfg.outputVar());
+            r.trace = trace;
+        }
+        return r;
+    }
+
+    private static RuntimeException failure(GraphNode node, Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof DeadlineExceededException de) return de;
+        if (cause instanceof ScriptSandbox.LimitExceededException) {
+            return new ScriptSandbox.LimitExceededException("Script node " + node.id + ": " + cause.getMessage());
+        }
+        if (cause instanceof IllegalArgumentException) {
+            return new IllegalArgumentException("Script node " + node.id + ": " + cause.getMessage(), cause);
+        }
+        return new IllegalStateException("Script node " + node.id + " failed: " + cause.getMessage(), cause);
+    }
+
+    /** only what the script can name is read, so a memoized script node is keyed by just those variables */
+    private static Map<String, Object> globals(Config cfg, Map<String, Object> variables) {
+        Map<String, Object> globals = new HashMap<>();
+        for (String name : cfg.identifiers()) {
+            Object value = variables.get(name);
+            if (value != null) globals.put(name, value);
+        }
+        if (cfg.identifiers().contains("variables") && !globals.containsKey("variables")) {
+            globals.put("variables", new LinkedHashMap<>(variables));
+        }
+        return globals;
+    }
+
+    /** every identifier-like token, strings and comments included; names read needlessly only cost a lookup */
+    static Set<String> identifiers(String source) {
+        Set<String> names = new LinkedHashSet<>();
+        int i = 0;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < source.length() && Character.isJavaIdentifierPart(source.charAt(i))) i++;
+                String name = source.substring(start, i);
+                if (!KEYWORDS.contains(name)) names.add(name);
+            } else if (Character.isDigit(c)) {
+                while (i < source.length() && Character.isJavaIdentifierPart(source.charAt(i))) i++;
+            } else {
+                i++;
+            }
+        }
+        return Set.copyOf(names);
+    }
+
+    /** the node's value when it is set and lower than the configured one; 0 means no limit */
+    private static long limit(Object value, long configured) {
+        long own = value instanceof Number n ? n.longValue()
+                : value != null && !String.valueOf(value).isBlank() ? Long.parseLong(String.valueOf(value).trim()) : 0;
+        if (own <= 0) return configured;
+        return configured > 0 ? Math.min(own, configured) : own;
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    /**
+     * Script node configuration parsed once per plan.
+     */
+    public record Config(String language, String source, String hash, Set<String> identifiers, String outputVar,
+                         ScriptSandbox.Limits limits) {}
+}
@@ -0,0 +1,369 @@
+package com.aiflow.server.engine;
+
+import lombok.extern.slf4j.Slf4j;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.HostAccess;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * GraalJS sandbox for script nodes: one shared engine, a fresh restricted context per run and a watchdog that
+ * cancels scripts over their CPU or memory limit.
+ */
+@Slf4j
+public class ScriptSandbox {
+
+    /** builtins that only make sense in a shell */
+    private static final Source PRELUDE = Source.create("js",
+            "['load', 'loadWithNewGlobal', 'print', 'printErr', 'quit', 'Graal'].forEach(function (n) { delete globalThis[n]; })");
+    private static final long WATCH_INTERVAL_MS = 10;
+    private static final double MAX_SAFE_INTEGER = 9007199254740991d;
+
+    private final Engine engine;
+    private final int maxCached;
+    private final Map<String, Source> compiled;
+    private final BlockingQueue<Context> spare;
+    private final ExecutorService pool;
+    private final ScheduledExecutorService watchdog;
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final boolean cpuTime;
+    private final boolean allocation;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public ScriptSandbox(int poolSize, int maxCached) {
+        this.engine = Engine.newBuilder("js")
+                .option("engine.WarnInterpreterOnly", "false")
+                .build();
+        this.maxCached = Math.max(1, maxCached);
+        this.compiled = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Source> eldest) {
+                return size() > ScriptSandbox.this.maxCached;
+            }
+        };
+        int size = Math.max(1, poolSize);
+        this.spare = new ArrayBlockingQueue<>(size);
+        this.pool = Executors.newFixedThreadPool(size, new CustomizableThreadFactory("flow-script-"));
+        CustomizableThreadFactory watchdogThreads = new CustomizableThreadFactory("flow-script-watchdog-");
+        watchdogThreads.setDaemon(true);
+        this.watchdog = Executors.newSingleThreadScheduledExecutor(watchdogThreads);
+        this.cpuTime = threads.isThreadCpuTimeSupported();
+        if (cpuTime && !threads.isThreadCpuTimeEnabled()) threads.setThreadCpuTimeEnabled(true);
+        this.allocation = threads instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported();
+        if (allocation && !((com.sun.management.ThreadMXBean) threads).isThreadAllocatedMemoryEnabled()) {
+            ((com.sun.management.ThreadMXBean) threads).setThreadAllocatedMemoryEnabled(true);
+        }
+        if (!cpuTime || !allocation) {
+            log.warn("JVM 不支持按线程统计 CPU 时间或内存分配，设置了对应限制的脚本节点将直接失败");
+        }
+        for (int i = 0; i < size; i++) pool.execute(this::refill);
+    }
+
+    /**
+     * Limits of one execution; 0 disables a limit.
+     */
+    public record Limits(long maxCpuNanos, long maxAllocatedBytes) {}
+
+    /**
+     * What an execution produced and cost; {@code value} is converted to Java (objects to maps, arrays to lists).
+     */
+    public record Outcome(Object value, boolean cached, long compileNanos, long executeNanos, long cpuNanos,
+                          long allocatedBytes) {}
+
+    public static class LimitExceededException extends IllegalStateException {
+        public LimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * @return the SHA-256 of the source, the key sources are cached under
+     */
+    public static String hash(String source) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /** Runs a script with copies of {@code globals} as global variables. */
+    public CompletableFuture<Outcome> run(String hash, String source, Map<String, Object> globals, Limits limits,
+                                          BooleanSupplier cancelled) {
+        CompletableFuture<Outcome> result = new CompletableFuture<>();
+        pool.execute(() -> {
+            try {
+                result.complete(execute(hash, source, globals, limits, cancelled));
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+            refill();
+        });
+        return result;
+    }
+
+    private Outcome execute(String hash, String source, Map<String, Object> globals, Limits limits,
+                            BooleanSupplier cancelled) {
+        if (limits.maxCpuNanos() > 0 && !cpuTime || limits.maxAllocatedBytes() > 0 && !allocation) {
+            throw new LimitExceededException("Script limits cannot be enforced on this JVM");
+        }
+        Context context = spare.poll();
+        if (context == null) context = newContext();
+        try {
+            long started = System.nanoTime();
+            Source script;
+            synchronized (compiled) {
+                script = compiled.get(hash);
+            }
+            boolean cached = script != null;
+            if (cached) {
+                hits.incrementAndGet();
+            } else {
+                misses.incrementAndGet();
+                script = compile(source, context);
+                synchronized (compiled) {
+                    compiled.put(hash, script);
+                }
+            }
+            long compileNanos = cached ? 0 : System.nanoTime() - started;
+
+            bind(context, globals);
+            Watch watch = new Watch(Thread.currentThread(), context, limits, cancelled);
+            long executeStarted = System.nanoTime();
+            Object value;
+            watch.start();
+            try {
+                value = toJava(context.eval(script));
+            } catch (PolyglotException | IllegalStateException e) {
+                // closed by the watchdog: cancelled, or already closed when the conversion ran
+                if (!watch.finish() && watch.reason != null) throw watch.reason.get();
+                if (e instanceof PolyglotException pe && !pe.isHostException()) {
+                    throw new IllegalStateException(pe.getMessage(), pe);
+                }
+                throw e;
+            }
+            if (!watch.finish()) throw watch.reason.get();
+            return new Outcome(value, cached, compileNanos, System.nanoTime() - executeStarted,
+                    watch.cpuUsed, watch.allocatedUsed);
+        } finally {
+            context.close(true);
+        }
+    }
+
+    /** Parses a script, or a function body when it has a top-level {@code return}. */
+    private static Source compile(String source, Context context) {
+        Source program = Source.newBuilder("js", source, "script").cached(true).buildLiteral();
+        try {
+            context.parse(program);
+            return program;
+        } catch (PolyglotException e) {
+            if (!e.isSyntaxError()) throw e;
+            // the closing brace on its own line, so a trailing line comment cannot swallow it
+            Source body = Source.newBuilder("js", "(function () {\n" + source + "\n})()", "script").cached(true).buildLiteral();
+            try {
+                context.parse(body);
+                return body;
+            } catch (PolyglotException ignored) {
+                throw new IllegalArgumentException("Script does not compile: " + e.getMessage());
+            }
+        }
+    }
+
+    private Context newContext() {
+        Context context = Context.newBuilder("js")
+                .engine(engine)
+                .allowHostAccess(HostAccess.NONE)
+                .option("js.console", "false")
+                .build();
+        context.eval(PRELUDE);
+        return context;
+    }
+
+    /** keeps a warm context per pool thread, so a run does not pay for creating one */
+    private void refill() {
+        if (spare.remainingCapacity() == 0) return;
+        try {
+            Context context = newContext();
+            if (!spare.offer(context)) context.close();
+        } catch (RuntimeException e) {
+            log.warn("创建脚本上下文失败: {}", e.getMessage());
+        }
+    }
+
+    /** a global is skipped when a builtin already has its name */
+    private static void bind(Context context, Map<String, Object> globals) {
+        Value bindings = context.getBindings("js");
+        Value array = bindings.getMember("Array");
+        Value object = bindings.getMember("Object");
+        for (Map.Entry<String, Object> e : globals.entrySet()) {
+            if (bindings.hasMember(e.getKey())) continue;
+            bindings.putMember(e.getKey(), toScript(e.getValue(), array, object));
+        }
+    }
+
+    /**
+     * Copies lists and maps into arrays and objects of the context; other values become strings.
+     */
+    private static Object toScript(Object value, Value array, Value object) {
+        if (value == null || value instanceof String || value instanceof Boolean || value instanceof Character
+                || value instanceof Integer || value instanceof Long || value instanceof Double
+                || value instanceof Float || value instanceof Short || value instanceof Byte) {
+            return value;
+        }
+        if (value instanceof Number n) return n.doubleValue();
+        if (value instanceof List<?> list) {
+            Value a = array.newInstance();
+            for (int i = 0; i < list.size(); i++) a.setArrayElement(i, toScript(list.get(i), array, object));
+            return a;
+        }
+        if (value instanceof Map<?, ?> map) {
+            Value o = object.newInstance();
+            for (Map.Entry<?, ?> e : map.entrySet()) o.putMember(String.valueOf(e.getKey()), toScript(e.getValue(), array, object));
+            return o;
+        }
+        return String.valueOf(value);
+    }
+
+    static Object toJava(Value value) {
+        if (value == null || value.isNull()) return null;
+        if (value.isBoolean()) return value.asBoolean();
+        if (value.isString()) return value.asString();
+        if (value.isNumber()) {
+            // JavaScript has no integers; whole numbers are returned as such rather than as 2.0
+            if (value.fitsInInt()) return value.asInt();
+            if (value.fitsInLong() && Math.abs(value.asLong()) <= MAX_SAFE_INTEGER) return value.asLong();
+            return value.asDouble();
+        }
+        if (value.canExecute()) return null;
+        if (value.hasArrayElements()) {
+            List<Object> list = new ArrayList<>((int) value.getArraySize());
+            for (long i = 0; i < value.getArraySize(); i++) list.add(toJava(value.getArrayElement(i)));
+            return list;
+        }
+        if (value.hasMembers() && !value.isDate()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            for (String key : value.getMemberKeys()) map.put(key, toJava(value.getMember(key)));
+            return map;
+        }
+        return value.toString();
+    }
+
+    public void shutdown() {
+        watchdog.shutdownNow();
+        pool.shutdownNow();
+        for (Context context; (context = spare.poll()) != null; ) context.close();
+        engine.close(true);
+    }
+
+    public long cacheHits() {
+        return hits.get();
+    }
+
+    public long cacheMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Samples one run's thread and closes its context when a limit is exceeded or the node is cancelled.
+     */
+    private final class Watch implements Runnable {
+        static final int RUNNING = 0, FINISHED = 1, STOPPED = 2;
+
+        final Thread thread;
+        final Context context;
+        final Limits limits;
+        final BooleanSupplier cancelled;
+        final AtomicInteger state = new AtomicInteger(RUNNING);
+        final long cpuAtStart;
+        final long allocatedAtStart;
+        volatile long cpuUsed;
+        volatile long allocatedUsed;
+        volatile Supplier<RuntimeException> reason;
+        ScheduledFuture<?> ticks;
+
+        Watch(Thread thread, Context context, Limits limits, BooleanSupplier cancelled) {
+            this.thread = thread;
+            this.context = context;
+            this.limits = limits;
+            this.cancelled = cancelled;
+            this.cpuAtStart = cpu();
+            this.allocatedAtStart = allocated();
+        }
+
+        void start() {
+            ticks = watchdog.scheduleAtFixedRate(this, WATCH_INTERVAL_MS, WATCH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        }
+
+        /** @return false when the watchdog stopped the run first */
+        boolean finish() {
+            ticks.cancel(false);
+            sample();
+            return state.compareAndSet(RUNNING, FINISHED) || state.get() == FINISHED;
+        }
+
+        @Override
+        public void run() {
+            if (state.get() != RUNNING) return;
+            sample();
+            Supplier<RuntimeException> why = null;
+            if (limits.maxCpuNanos() > 0 && cpuUsed > limits.maxCpuNanos()) {
+                why = () -> new LimitExceededException("Script exceeded its CPU time limit of "
+                        + TimeUnit.NANOSECONDS.toMillis(limits.maxCpuNanos()) + " ms");
+            } else if (limits.maxAllocatedBytes() > 0 && allocatedUsed > limits.maxAllocatedBytes()) {
+                why = () -> new LimitExceededException("Script exceeded its memory limit of "
+                        + limits.maxAllocatedBytes() + " allocated bytes");
+            } else if (cancelled.getAsBoolean()) {
+                why = () -> new DeadlineExceededException("Script cancelled", null, false);
+            }
+            if (why == null) return;
+            reason = why;
+            if (state.compareAndSet(RUNNING, STOPPED)) {
+                try {
+                    context.close(true);
+                } catch (RuntimeException e) {
+                    log.debug("Closing a script context failed: {}", e.getMessage());
+                }
+            }
+        }
+
+        private void sample() {
+            cpuUsed = Math.max(0, cpu() - cpuAtStart);
+            allocatedUsed = Math.max(0, allocated() - allocatedAtStart);
+        }
+
+        private long cpu() {
+            return cpuTime ? threads.getThreadCpuTime(thread.getId()) : 0;
+        }
+
+        private long allocated() {
+            return allocation ? ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(thread.getId()) : 0;
+        }
+    }
+}
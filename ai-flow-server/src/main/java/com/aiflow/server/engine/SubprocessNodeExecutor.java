@@ -0,0 +1,163 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.config.EngineProperties;
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * subprocess node: runs another flow through the same engine; cycles and over-deep nesting fail the node
+ * before the child starts.
+ */
+@Component
+@RequiredArgsConstructor
+public class SubprocessNodeExecutor extends BaseNodeExecutor {
+
+    private final EngineProperties properties;
+
+    @Override
+    public String getType() {
+        return "subprocess";
+    }
+
+    @Override
+    public Config prepare(GraphNode node) {
+        Map<String, Object> props = node.properties != null ? node.properties : Map.of();
+        Object flowId = props.get("flowId");
+        return new Config(
+                flowId != null && !String.valueOf(flowId).isBlank() ? String.valueOf(flowId).trim() : null,
+                stringMap(props.get("inputs")),
+                stringMap(props.get("outputs")),
+                String.valueOf(props.getOrDefault("output", "result"))
+        );
+    }
+
+    @Override
+    public CompletionStage<StepResult> executeAsync(GraphNode node, Object prepared, ExecutionContext context,
+                                                    Executor executor) {
+        Config cfg = prepared instanceof Config c ? c : prepare(node);
+        Engine engine = context.engine;
+        if (engine == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalStateException("Subprocess node " + node.id + " must run inside an engine"));
+        }
+
+        if (cfg.flowId() == null) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("Subprocess node " + node.id + " has no flowId"));
+        }
+
+        ExecutionPlan child;
+        try {
+            child = engine.resolvePlan(cfg.flowId());
+            checkNesting(engine, child, new ArrayList<>(context.callStack), Math.max(1, properties.getMaxSubprocessDepth()));
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Map<String, Object> inputs;
+        if (cfg.inputs().isEmpty()) {
+            inputs = context.variables;
+        } else {
+            inputs = new HashMap<>();
+            cfg.inputs().forEach((childVar, parentPath) -> inputs.put(childVar, PromptTemplate.lookup(context.variables, parentPath)));
+        }
+
+        return engine.runSubflow(child, inputs, context).thenApply(result -> toStep(node, cfg, context, result));
+    }
+
+    private StepResult toStep(GraphNode node, Config cfg, ExecutionContext context, FlowRunResult result) {
+        Map<String, Object> outputs = new LinkedHashMap<>();
+        if (cfg.outputs().isEmpty()) {
+            outputs.put(cfg.outputVar(), result.outputs);
+        } else {
+            cfg.outputs().forEach((parentVar, childPath) -> outputs.put(parentVar, PromptTemplate.lookup(result.outputs, childPath)));
+        }
+        outputs.forEach(context::setVar);
+
+        StepResult r = new StepResult();
+        r.nodeId = node.id;
+        r.type = node.type;
+        r.outputs = outputs;
+        if (context.isTracing()) {
+            Map<String, Object> trace = new LinkedHashMap<>();
+            trace.put("flowId", cfg.flowId());
+            trace.put("runId", result.runId);
+            trace.put("steps", result.trace);
+            r.trace = trace;
+        }
+        return r;
+    }
+
+    /**
+     * Walks the subprocess tree rooted at {@code plan} depth-first. {@code stack} holds the flows above it.
+     */
+    private void checkNesting(Engine engine, ExecutionPlan plan, List<String> stack, int maxDepth) {
+        deepest(engine, plan, stack, new HashMap<>(), maxDepth);
+    }
+
+    /** Longest chain of flows below {@code plan}; {@code done} memoizes it per flow. */
+    private List<String> deepest(Engine engine, ExecutionPlan plan, List<String> path, Map<String, List<String>> done,
+                                 int maxDepth) {
+        String flowId = plan.getFlowId();
+        if (path.contains(flowId)) {
+            List<String> cycle = new ArrayList<>(path.subList(path.indexOf(flowId), path.size()));
+            cycle.add(flowId);
+            throw new IllegalArgumentException("Subprocess cycle: " + String.join(" -> ", cycle));
+        }
+        List<String> chain = done.get(flowId);
+        if (chain == null) {
+            path.add(flowId);
+            if (path.size() > maxDepth) throw tooDeep(path, maxDepth);
+            chain = List.of(flowId);
+            for (int i = 0; i < plan.size(); i++) {
+                if (plan.node(i).prepared instanceof Config c && c.flowId() != null) {
+                    List<String> below = deepest(engine, engine.resolvePlan(c.flowId()), path, done, maxDepth);
+                    if (below.size() + 1 > chain.size()) {
+                        chain = new ArrayList<>(below.size() + 1);
+                        chain.add(flowId);
+                        chain.addAll(below);
+                    }
+                }
+            }
+            path.remove(path.size() - 1);
+            done.put(flowId, chain);
+        }
+        if (path.size() + chain.size() > maxDepth) {
+            List<String> nesting = new ArrayList<>(path);
+            nesting.addAll(chain);
+            throw tooDeep(nesting, maxDepth);
+        }
+        return chain;
+    }
+
+    private static IllegalArgumentException tooDeep(List<String> nesting, int maxDepth) {
+        return new IllegalArgumentException("Subprocess nesting exceeds " + maxDepth + " levels: "
+                + String.join(" -> ", nesting));
+    }
+
+    private static Map<String, String> stringMap(Object value) {
+        if (!(value instanceof Map<?, ?> m)) return Map.of();
+        Map<String, String> result = new LinkedHashMap<>();
+        m.forEach((k, v) -> {
+            if (k != null && v != null) result.put(String.valueOf(k), String.valueOf(v));
+        });
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Subprocess configuration parsed once per plan.
+     */
+    public record Config(String flowId, Map<String, String> inputs, Map<String, String> outputs, String outputVar) {}
+}
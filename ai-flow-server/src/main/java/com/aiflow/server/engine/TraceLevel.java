@@ -0,0 +1,30 @@
+package com.aiflow.server.engine;
+
+import java.util.Locale;
+
+/**
+ * How much of a run is recorded in its trace (and reported to {@link RunListener#onStep}).
+ */
+public enum TraceLevel {
+    /** no trace entries; executors skip building their trace maps altogether */
+    OFF,
+    /** one entry per node with long strings truncated, e.g. resolved prompts */
+    SUMMARY,
+    /** {@link #FULL} for a percentage of runs, {@link #SUMMARY} for the rest; decided when the run starts */
+    SAMPLED,
+    /** everything the executors report */
+    FULL;
+
+    /** The level named by {@code value}, case-insensitive; null when blank. */
+    public static TraceLevel of(Object value) {
+        if (value == null) return null;
+        if (value instanceof TraceLevel level) return level;
+        String name = String.valueOf(value).trim();
+        if (name.isEmpty()) return null;
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid trace level: " + value + " (expected off, summary, sampled or full)");
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.aiflow.server.engine;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Trace settings of a run; {@code maxValueLength} 0 keeps strings whole.
+ */
+public record TraceOptions(TraceLevel level, double samplePercent, int maxValueLength) {
+
+    public static final TraceOptions FULL = new TraceOptions(TraceLevel.FULL, 100, 0);
+
+    public TraceOptions {
+        if (level == null) level = TraceLevel.FULL;
+    }
+
+    /**
+     * @return the level a new run records at: never {@link TraceLevel#SAMPLED}
+     */
+    public TraceLevel resolve() {
+        if (level != TraceLevel.SAMPLED) return level;
+        return samplePercent > 0 && ThreadLocalRandom.current().nextDouble(100) < samplePercent
+                ? TraceLevel.FULL : TraceLevel.SUMMARY;
+    }
+
+    /**
+     * @return {@code value} as it appears in a summary entry
+     */
+    public Object summarize(Object value) {
+        if (maxValueLength > 0 && value instanceof CharSequence s && s.length() > maxValueLength) {
+            return s.subSequence(0, maxValueLength) + "...(" + s.length() + " chars)";
+        }
+        return value;
+    }
+}
@@ -0,0 +1,162 @@
+package com.aiflow.server.engine;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Copy-on-write variables of one node: reads fall through to the parent scopes, writes stay in this layer.
+ * Where branches join, the write of the node latest in topological order wins.
+ */
+public final class VariableScope extends AbstractMap<String, Object> {
+
+    static final int MAX_DEPTH = 32;
+
+    /** marks a variable removed in this layer, hiding the value of an outer layer */
+    private static final Object REMOVED = new Object();
+    /** marks a run input given with a null value: contained, read as null, not listed in {@link #flatten()} */
+    private static final Object NULL_INPUT = new Object();
+    /** rank of the run inputs, below every node */
+    private static final int INPUT_RANK = -1;
+
+    private final VariableScope parent;
+    /** run inputs, read in place; only on root scopes */
+    private final Map<String, ?> inputs;
+    /** flattened ancestors with the rank of their writers; only on join and compacted scopes */
+    private final Map<String, Slot> snapshot;
+    private final Map<String, Object> local = new ConcurrentHashMap<>(4);
+    /** topological rank of the node owning this scope */
+    private final int rank;
+    private final int depth;
+
+    private record Slot(Object value, int rank) {}
+
+    private VariableScope(VariableScope parent, Map<String, ?> inputs, Map<String, Slot> snapshot, int rank) {
+        this.parent = parent;
+        this.inputs = inputs;
+        this.snapshot = snapshot;
+        this.rank = rank;
+        this.depth = parent != null ? parent.depth + 1 : 0;
+    }
+
+    /**
+     * A root scope reading {@code inputs} in place; the caller must not modify the map while the run is active.
+     */
+    public static VariableScope of(Map<String, ?> inputs) {
+        return new VariableScope(null, inputs != null ? inputs : Map.of(), null, INPUT_RANK);
+    }
+
+    /**
+     * The scope of the node at topological position {@code rank}, seeing everything visible in {@code parents}.
+     */
+    public static VariableScope derive(List<VariableScope> parents, int rank) {
+        if (parents.isEmpty()) return new VariableScope(null, Map.of(), null, rank);
+        if (parents.size() == 1) {
+            VariableScope p = parents.get(0);
+            return p.depth >= MAX_DEPTH
+                    ? new VariableScope(null, null, p.slots(), rank)
+                    : new VariableScope(p, null, null, rank);
+        }
+        Map<String, Slot> merged = new HashMap<>();
+        for (VariableScope p : parents) {
+            p.slots().forEach((k, slot) -> merged.merge(k, slot, (a, b) -> b.rank > a.rank ? b : a));
+        }
+        return new VariableScope(null, null, merged, rank);
+    }
+
+    /**
+     * Variables written in this scope itself; removals are reported as null values.
+     */
+    public Map<String, Object> localWrites() {
+        Map<String, Object> writes = new LinkedHashMap<>();
+        local.forEach((k, v) -> writes.put(k, v == REMOVED ? null : v));
+        return writes;
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object v = find(key);
+        return v == REMOVED || v == NULL_INPUT ? null : v;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        Object v = find(key);
+        return v != null && v != REMOVED;
+    }
+
+    @Override
+    public Object put(String key, Object value) {
+        Object previous = get(key);
+        local.put(key, value != null ? value : REMOVED);
+        return previous;
+    }
+
+    @Override
+    public Object remove(Object key) {
+        if (!(key instanceof String k)) return null;
+        Object previous = get(k);
+        local.put(k, REMOVED);
+        return previous;
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        return Collections.unmodifiableMap(flatten()).entrySet();
+    }
+
+    /**
+     * @return the value, {@link #REMOVED}, {@link #NULL_INPUT}, or null when no layer knows the key
+     */
+    private Object find(Object key) {
+        if (key == null) return null;
+        for (VariableScope s = this; s != null; s = s.parent) {
+            Object v = s.local.get(key);
+            if (v != null) return v;
+            if (s.snapshot != null) {
+                Slot slot = s.snapshot.get(key);
+                if (slot != null) return slot.value;
+            }
+            if (s.inputs != null) {
+                Object in = s.inputs.get(key);
+                if (in != null) return in;
+                if (s.inputs.containsKey(key)) return NULL_INPUT;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Every visible variable, removals included, with the rank of the node that wrote it.
+     */
+    private Map<String, Slot> slots() {
+        List<VariableScope> chain = new ArrayList<>(depth + 1);
+        for (VariableScope s = this; s != null; s = s.parent) chain.add(s);
+        Map<String, Slot> out = new HashMap<>();
+        for (int i = chain.size() - 1; i >= 0; i--) {
+            VariableScope s = chain.get(i);
+            if (s.inputs != null) {
+                s.inputs.forEach((k, v) -> {
+                    if (k != null) out.put(k, new Slot(v != null ? v : NULL_INPUT, INPUT_RANK));
+                });
+            }
+            if (s.snapshot != null) out.putAll(s.snapshot);
+            s.local.forEach((k, v) -> out.put(k, new Slot(v, s.rank)));
+        }
+        return out;
+    }
+
+    Map<String, Object> flatten() {
+        Map<String, Object> out = new LinkedHashMap<>();
+        slots().forEach((k, slot) -> {
+            if (slot.value != REMOVED && slot.value != NULL_INPUT) out.put(k, slot.value);
+        });
+        return out;
+    }
+}
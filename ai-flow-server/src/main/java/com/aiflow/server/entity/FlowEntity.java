@@ -21,9 +21,21 @@ public class FlowEntity {
     @TableField("description")
     private String description;
     
+    /** 旧格式的流程图 JSON，转换为 graph_data 后置空 */
     @TableField("graph_json")
     private String graphJson;
     
+    /** 流程图执行部分（Smile） */
+    @TableField("graph_data")
+    private byte[] graphData;
+    
+    /** 流程图画布布局（Smile），没有布局时为空 */
+    @TableField("layout_data")
+    private byte[] layoutData;
+    
+    @TableField("version")
+    private Integer version;
+    
     @TableField(value = "created_at", fill = FieldFill.INSERT)
     private LocalDateTime createdAt;
     
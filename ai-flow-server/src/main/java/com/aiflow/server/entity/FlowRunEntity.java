@@ -0,0 +1,44 @@
+package com.aiflow.server.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+@Data
+@TableName("t_flow_run")
+public class FlowRunEntity {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    @TableField("run_id")
+    private String runId;
+    
+    @TableField("flow_id")
+    private String flowId;
+    
+    @TableField("status")
+    private String status;
+    
+    @TableField("inputs_json")
+    private String inputsJson;
+    
+    @TableField("outputs_json")
+    private String outputsJson;
+    
+    @TableField("error_message")
+    private String errorMessage;
+    
+    @TableField("step_count")
+    private Integer stepCount;
+    
+    @TableField("started_at")
+    private LocalDateTime startedAt;
+    
+    @TableField("finished_at")
+    private LocalDateTime finishedAt;
+    
+    @TableField("duration_ms")
+    private Long durationMs;
+}
@@ -0,0 +1,27 @@
+package com.aiflow.server.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+
+@Data
+@TableName("t_flow_run_step")
+public class FlowRunStepEntity {
+    
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    
+    @TableField("run_id")
+    private String runId;
+    
+    @TableField("seq")
+    private Integer seq;
+    
+    @TableField("node_id")
+    private String nodeId;
+    
+    @TableField("node_type")
+    private String nodeType;
+    
+    @TableField("trace_json")
+    private String traceJson;
+}
@@ -0,0 +1,18 @@
+package com.aiflow.server.exception;
+
+/**
+ * 运行被准入控制拒绝，对应 HTTP 429
+ */
+public class TooManyRunsException extends RuntimeException {
+
+    private final int retryAfterSeconds;
+
+    public TooManyRunsException(String message, int retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
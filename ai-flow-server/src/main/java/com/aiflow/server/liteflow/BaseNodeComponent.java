@@ -1,17 +1,87 @@
 package com.aiflow.server.liteflow;
 
+import com.aiflow.server.engine.EngineMetrics;
+import com.aiflow.server.engine.PromptTemplate;
 import com.yomahub.liteflow.core.NodeComponent;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.util.Map;
 
 @Slf4j
 public abstract class BaseNodeComponent extends NodeComponent {
-    
+
+    /** start time of the execution on the current thread; components are shared by concurrent chains */
+    private static final ThreadLocal<long[]> STARTED_AT = ThreadLocal.withInitial(() -> new long[1]);
+
+    private EngineMetrics metrics = EngineMetrics.NONE;
+
+    @Autowired(required = false)
+    public void setMetrics(EngineMetrics metrics) {
+        this.metrics = metrics != null ? metrics : EngineMetrics.NONE;
+    }
+
+    @Override
+    public void beforeProcess() {
+        STARTED_AT.get()[0] = System.nanoTime();
+    }
+
+    @Override
+    public void onSuccess() throws Exception {
+        String type = metricType();
+        if (type != null) metrics.nodeFinished(type, System.nanoTime() - STARTED_AT.get()[0], null);
+    }
+
+    @Override
+    public void onError(Exception e) throws Exception {
+        String type = metricType();
+        if (type != null) metrics.nodeFinished(type, System.nanoTime() - STARTED_AT.get()[0], e);
+        super.onError(e);
+    }
+
+    /**
+     * Node type the execution is recorded under; null records nothing. Defaults to the component id.
+     */
+    protected String metricType() {
+        return getNodeId();
+    }
+
+    /**
+     * Variables of the running chain, see {@link FlowSlotContext}.
+     */
+    protected FlowSlotContext slotContext() {
+        return getContextBean(FlowSlotContext.class);
+    }
+
+    /**
+     * The node's settings, given in the chain as {@code llmNode.data(llmData)} with {@code llmData = '{...}'};
+     * empty when the chain sets none.
+     */
+    @SuppressWarnings("unchecked")
+    protected Map<String, Object> nodeConfig() {
+        Map<String, Object> data = getCmpData(Map.class);
+        return data != null ? data : Map.of();
+    }
+
+    /**
+     * Fills the {@code ${...}} placeholders of {@code template} from the chain's variables; unknown ones are kept.
+     */
+    protected String render(Object template) {
+        return template == null ? null
+                : PromptTemplate.parse(String.valueOf(template)).render(slotContext().getVariables(), PromptTemplate.MissingPolicy.KEEP);
+    }
+
+    protected static long millis(Object value, long fallback) {
+        if (value == null || String.valueOf(value).isBlank()) return fallback;
+        return value instanceof Number n ? n.longValue() : Long.parseLong(String.valueOf(value).trim());
+    }
+
     protected void logNodeExecution(String nodeId, String nodeType, Object input, Object output) {
-        log.info("Executing node: {} [type: {}], input: {}, output: {}", 
+        log.info("Executing node: {} [type: {}], input: {}, output: {}",
                 nodeId, nodeType, input, output);
     }
-    
+
     protected void logNodeError(String nodeId, String nodeType, Exception e) {
         log.error("Error executing node: {} [type: {}]", nodeId, nodeType, e);
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,20 @@
+package com.aiflow.server.liteflow;
+
+import com.yomahub.liteflow.annotation.LiteflowComponent;
+import com.yomahub.liteflow.core.NodeBooleanComponent;
+
+/**
+ * Condition of the {@code IF} guarding a labelled edge in a chain compiled by {@link FlowElCompiler}: true when
+ * the edge was taken. The tag is {@code "<source index>:<edge index>"}.
+ */
+@LiteflowComponent(FlowElCompiler.BRANCH)
+public class FlowBranchComponent extends NodeBooleanComponent {
+
+    @Override
+    public boolean processBoolean() throws Exception {
+        String tag = getTag();
+        int sep = tag.indexOf(':');
+        return getContextBean(FlowChainContext.class)
+                .isTaken(Integer.parseInt(tag.substring(0, sep)), Integer.parseInt(tag.substring(sep + 1)));
+    }
+}
@@ -0,0 +1,257 @@
+package com.aiflow.server.liteflow;
+
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.engine.Deadline;
+import com.aiflow.server.engine.DeadlineExceededException;
+import com.aiflow.server.engine.Engine;
+import com.aiflow.server.engine.EngineMetrics;
+import com.aiflow.server.engine.ExecutionPlan;
+import com.aiflow.server.engine.NodeExecutor;
+import com.aiflow.server.engine.PlanNode;
+import com.aiflow.server.engine.RunListener;
+import com.aiflow.server.engine.RunOptions;
+import com.aiflow.server.engine.TraceLevel;
+import com.aiflow.server.engine.TraceOptions;
+import com.aiflow.server.engine.VariableScope;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * State of one flow run on the LiteFlow runtime, passed to the chain as its context bean. It plays the part of
+ * the engine's scheduler state: the chain built by {@link FlowElCompiler} decides the order, this class
+ * executes nodes with the same variable scopes, branch selection, deadlines and trace entries as the
+ * {@code Engine}, so both runtimes produce the same {@link FlowRunResult}.
+ *
+ * The chain only starts a node once all its predecessors are resolved, and LiteFlow joins {@code WHEN}
+ * branches before moving on, so a node's state is written by one thread and read after that join.
+ */
+public class FlowChainContext {
+
+    final ExecutionPlan plan;
+    private final VariableScope root;
+    /** runs the child flows of subprocess and map nodes; those nodes fail when it is null */
+    private final Engine engine;
+    private final String runId;
+    private final RunListener listener;
+    private final Deadline deadline;
+    private final TraceOptions traceOptions;
+    private final TraceLevel traceLevel;
+    private final EngineMetrics metrics;
+    private final List<String> callStack;
+    /** variables of every executed node; null for nodes that were skipped, timed out or not reached yet */
+    private final VariableScope[] scopes;
+    /** resolved nodes whose outgoing edges are live, i.e. nodes that ran or continued after their own timeout */
+    private final boolean[] alive;
+    private final Set<String>[] branches;
+    private final Map<String, Object>[] traces;
+
+    @SuppressWarnings("unchecked")
+    public FlowChainContext(ExecutionPlan plan, Map<String, Object> inputs, Engine engine, RunOptions options,
+                            EngineMetrics metrics) {
+        this.plan = plan;
+        this.root = VariableScope.of(inputs);
+        this.engine = engine;
+        this.runId = options.runId() != null ? options.runId() : "r_" + UUID.randomUUID();
+        this.listener = options.listener();
+        this.deadline = options.deadline();
+        this.traceOptions = options.trace();
+        this.traceLevel = traceOptions.resolve();
+        this.metrics = metrics != null ? metrics : EngineMetrics.NONE;
+        this.callStack = List.of(plan.getFlowId());
+        this.scopes = new VariableScope[plan.size()];
+        this.alive = new boolean[plan.size()];
+        this.branches = new Set[plan.size()];
+        this.traces = new Map[plan.size()];
+    }
+
+    public String getRunId() {
+        return runId;
+    }
+
+    /**
+     * A node runs when it has no predecessors or at least one edge into it was taken.
+     */
+    boolean isLive(int idx) {
+        int[] preds = plan.predecessors(idx);
+        if (preds.length == 0) return true;
+        for (int p : preds) {
+            int[] succs = plan.successors(p);
+            for (int k = 0; k < succs.length; k++) {
+                if (succs[k] == idx && isTaken(p, k)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return whether node {@code source} ran and selected its {@code k}-th outgoing edge
+     */
+    boolean isTaken(int source, int k) {
+        if (!alive[source]) return false;
+        Set<String> selected = branches[source];
+        String[] labels = plan.successorLabels(source)[k];
+        if (selected == null || labels == null) return true;
+        for (String label : labels) {
+            for (String b : selected) {
+                if (label.equalsIgnoreCase(b)) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Executes a live node on the calling thread under its deadline.
+     *
+     * @throws DeadlineExceededException when the node or the run timed out, unless the node continues on timeout
+     */
+    void execute(int idx) throws Exception {
+        PlanNode node = plan.node(idx);
+        VariableScope scope = scopeFor(idx);
+        if (node.executor == null) {
+            // skip unsupported types, like the engine does
+            scopes[idx] = scope;
+            alive[idx] = true;
+            return;
+        }
+        Deadline nodeDeadline = node.timeoutNanos > 0
+                ? deadline.min(Deadline.after(Duration.ofNanos(node.timeoutNanos))) : deadline;
+        if (nodeDeadline.isExpired()) {
+            timedOut(idx, timeout(node, false));
+            return;
+        }
+        NodeExecutor.ExecutionContext ctx = new NodeExecutor.ExecutionContext(
+                scope, listener, engine, callStack, nodeDeadline, traceLevel);
+        NodeExecutor.StepResult step;
+        try {
+            // blocking executors finish on this thread; asynchronous ones are waited for until the deadline
+            CompletableFuture<NodeExecutor.StepResult> stage = node.executor
+                    .executeAsync(node.graphNode, node.prepared, ctx, Runnable::run).toCompletableFuture();
+            step = nodeDeadline.isFinite() ? stage.get(nodeDeadline.remainingMillis(), TimeUnit.MILLISECONDS) : stage.join();
+        } catch (TimeoutException e) {
+            timedOut(idx, timeout(node, true));
+            return;
+        } catch (ExecutionException | CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof DeadlineExceededException de) {
+                // an executor giving up through checkCancelled() does not know which deadline passed
+                timedOut(idx, de.getNodeId() != null ? de : timeout(node, true));
+                return;
+            }
+            if (cause instanceof Exception ex) throw ex;
+            throw e;
+        }
+        if (nodeDeadline.isExpired()) {
+            // finished too late: the engine would have stopped waiting and discarded the result
+            timedOut(idx, timeout(node, true));
+            return;
+        }
+        scopes[idx] = scope;
+        branches[idx] = step != null ? step.branches : null;
+        alive[idx] = true;
+        if (traceLevel != TraceLevel.OFF && step != null && step.trace != null) {
+            record(idx, traceEntry(step));
+        }
+    }
+
+    /**
+     * The run's result: the inputs overlaid with every executed node's writes in topological order, and one
+     * trace entry per node; nodes the chain never entered or that were dead are reported as skipped.
+     */
+    FlowRunResult toResult() {
+        List<Map<String, Object>> trace = traceLevel == TraceLevel.OFF ? List.of() : new ArrayList<>(plan.size());
+        Map<String, Object> outputs = new LinkedHashMap<>(root);
+        for (int i : plan.order()) {
+            PlanNode node = plan.node(i);
+            if (traces[i] == null && scopes[i] == null && !alive[i] && node.executor != null) {
+                metrics.nodeSkipped(node.type);
+                if (traceLevel != TraceLevel.OFF) record(i, entry(node, "skipped", true));
+            }
+            if (traces[i] != null) trace.add(traces[i]);
+            if (scopes[i] != null) {
+                scopes[i].localWrites().forEach((k, v) -> {
+                    if (v == null) outputs.remove(k);
+                    else outputs.put(k, v);
+                });
+            }
+        }
+        FlowRunResult r = new FlowRunResult();
+        r.flowId = plan.getFlowId();
+        r.runId = runId;
+        r.outputs = outputs;
+        r.trace = trace;
+        return r;
+    }
+
+    private void timedOut(int idx, DeadlineExceededException timeout) {
+        PlanNode node = plan.node(idx);
+        if (traceLevel != TraceLevel.OFF) {
+            Map<String, Object> entry = entry(node, "timedOut", true);
+            if (timeout.isRunDeadline()) entry.put("runDeadline", true);
+            else entry.put("timeoutMs", TimeUnit.NANOSECONDS.toMillis(node.timeoutNanos));
+            record(idx, entry);
+        }
+        if (node.continueOnTimeout && !timeout.isRunDeadline()) {
+            // contributes no variables, but its successors still run
+            alive[idx] = true;
+            return;
+        }
+        throw timeout;
+    }
+
+    private DeadlineExceededException timeout(PlanNode node, boolean started) {
+        boolean runDeadline = node.timeoutNanos == 0 || deadline.isExpired();
+        String message = runDeadline
+                ? "Run deadline exceeded " + (started ? "while node " + node.id + " was running" : "before node " + node.id + " started")
+                : "Node " + node.id + " timed out after " + TimeUnit.NANOSECONDS.toMillis(node.timeoutNanos) + " ms";
+        return new DeadlineExceededException(message, node.id, runDeadline);
+    }
+
+    private VariableScope scopeFor(int idx) {
+        int[] preds = plan.predecessors(idx);
+        List<VariableScope> parents = new ArrayList<>(preds.length);
+        for (int p : preds) {
+            if (scopes[p] != null) parents.add(scopes[p]);
+        }
+        return VariableScope.derive(parents.isEmpty() ? List.of(root) : parents, plan.rank(idx));
+    }
+
+    private Map<String, Object> traceEntry(NodeExecutor.StepResult step) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("nodeId", step.nodeId);
+        entry.put("type", step.type);
+        if (traceLevel == TraceLevel.SUMMARY) {
+            step.trace.forEach((k, v) -> entry.put(k, traceOptions.summarize(v)));
+        } else {
+            entry.putAll(step.trace);
+        }
+        return entry;
+    }
+
+    private static Map<String, Object> entry(PlanNode node, String flag, Object value) {
+        Map<String, Object> entry = new LinkedHashMap<>();
+        entry.put("nodeId", node.id);
+        entry.put("type", node.type);
+        entry.put(flag, value);
+        return entry;
+    }
+
+    private void record(int idx, Map<String, Object> entry) {
+        traces[idx] = entry;
+        try {
+            listener.onStep(entry);
+        } catch (RuntimeException ignored) {
+            // a failing observer must not break the run
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.aiflow.server.liteflow;
+
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.engine.Engine;
+import com.aiflow.server.engine.EngineMetrics;
+import com.aiflow.server.engine.ExecutionPlan;
+import com.aiflow.server.engine.RunOptions;
+import com.yomahub.liteflow.builder.el.LiteFlowChainELBuilder;
+import com.yomahub.liteflow.core.FlowExecutor;
+import com.yomahub.liteflow.flow.FlowBus;
+import com.yomahub.liteflow.flow.LiteflowResponse;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs compiled flows as LiteFlow chains, the alternative to the {@link Engine}'s own scheduler
+ * ({@code ai-flow.engine.runtime=liteflow}). Every flow version gets its own chain, {@code flow_<flowId>_v<version>},
+ * registered when the graph is saved (or on its first run) and replaced when a newer version is saved.
+ *
+ * LiteFlow executes a chain on the calling thread and its {@code WHEN} branches on its own pool, so every
+ * run occupies a thread of this runner until it finishes; admission control bounds how many there are.
+ * Checkpoints and the node result cache are features of the engine and are not used by chain runs.
+ */
+@Slf4j
+@Component
+public class FlowChainRunner {
+
+    private final FlowExecutor flowExecutor;
+    private final Engine engine;
+    private final EngineMetrics metrics;
+    /** newest version registered per flow; older chains are removed when a newer one replaces them */
+    private final Map<String, Long> versions = new ConcurrentHashMap<>();
+    private final ExecutorService runPool = Executors.newCachedThreadPool(new CustomizableThreadFactory("flow-chain-"));
+
+    @Autowired
+    public FlowChainRunner(FlowExecutor flowExecutor, Engine engine, EngineMetrics metrics) {
+        this.flowExecutor = flowExecutor;
+        this.engine = engine;
+        this.metrics = metrics != null ? metrics : EngineMetrics.NONE;
+    }
+
+    public static String chainId(ExecutionPlan plan) {
+        return "flow_" + plan.getFlowId() + "_v" + plan.getVersion();
+    }
+
+    /**
+     * Compiles the plan into EL and registers its chain, replacing the chain of an older version of the flow.
+     *
+     * @return the chain id; null for an empty flow, which runs without a chain
+     */
+    public String register(ExecutionPlan plan) {
+        String el = FlowElCompiler.compile(plan);
+        if (el == null) return null;
+        String chainId = chainId(plan);
+        LiteFlowChainELBuilder.createChain().setChainId(chainId).setEL(el).build();
+        long[] replaced = {-1};
+        versions.compute(plan.getFlowId(), (id, newest) -> {
+            if (newest != null && newest >= plan.getVersion()) return newest; // a run on a plan loaded before the save
+            if (newest != null) replaced[0] = newest;
+            return plan.getVersion();
+        });
+        if (replaced[0] >= 0) FlowBus.removeChain("flow_" + plan.getFlowId() + "_v" + replaced[0]);
+        log.debug("Registered chain {} ({} nodes, {} chars of EL)", chainId, plan.size(), el.length());
+        return chainId;
+    }
+
+    /**
+     * Removes the chain of a deleted flow.
+     */
+    public void remove(String flowId) {
+        Long version = versions.remove(flowId);
+        if (version != null) FlowBus.removeChain("flow_" + flowId + "_v" + version);
+    }
+
+    /**
+     * Runs the plan's chain, registering it first if needed. Uses the listener, run id, deadline and trace of
+     * {@code options}; parallelism is LiteFlow's {@code WHEN} pool and checkpointing is not supported.
+     */
+    public CompletableFuture<FlowRunResult> runAsync(ExecutionPlan plan, Map<String, Object> inputs, RunOptions options) {
+        FlowChainContext context = new FlowChainContext(plan, inputs, engine, options, metrics);
+        if (plan.size() == 0) {
+            return CompletableFuture.completedFuture(context.toResult());
+        }
+        String chainId = chainId(plan);
+        if (!FlowBus.containChain(chainId)) register(plan);
+        return CompletableFuture.supplyAsync(() -> {
+            long startedAt = System.nanoTime();
+            LiteflowResponse response = flowExecutor.execute2Resp(chainId, null, context);
+            Exception error = response.isSuccess() ? null
+                    : response.getCause() != null ? response.getCause() : new IllegalStateException("Chain " + chainId + " failed");
+            metrics.runFinished(plan.getFlowId(), System.nanoTime() - startedAt, error);
+            if (error instanceof RuntimeException re) throw re;
+            if (error != null) throw new IllegalStateException(error.getMessage(), error);
+            return context.toResult();
+        }, runPool);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runPool.shutdown();
+    }
+}
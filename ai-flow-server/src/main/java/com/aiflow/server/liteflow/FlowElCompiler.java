@@ -0,0 +1,240 @@
+package com.aiflow.server.liteflow;
+
+import com.aiflow.server.engine.ExecutionPlan;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Translates a compiled {@link ExecutionPlan} into a LiteFlow EL chain.
+ *
+ * Every plan node becomes {@code flowNode.tag("<index>")}. Series-parallel graphs are decomposed along
+ * immediate post-dominators: a node and whatever follows it up to the point where its outgoing paths join
+ * again form a {@code THEN}, the paths in between run as {@code WHEN} branches, and a path behind a labelled
+ * edge (a condition's branch) is wrapped in {@code IF(flowBranch.tag("<source>:<edge>"), ...)} so it is only
+ * entered when the branch was selected. Graphs that do not decompose, e.g. with an edge between two parallel
+ * branches, fall back to one {@code WHEN} per plan level, which is always correct but joins more often.
+ *
+ * Either way {@link FlowNodeComponent} still checks at run time that at least one edge into the node was
+ * taken, so skipping follows exactly the same rules as the {@code Engine}.
+ */
+public final class FlowElCompiler {
+
+    /** component executing one plan node, see {@link FlowNodeComponent} */
+    public static final String NODE = "flowNode";
+    /** boolean component telling whether an edge was taken, see {@link FlowBranchComponent} */
+    public static final String BRANCH = "flowBranch";
+
+    private FlowElCompiler() {}
+
+    /**
+     * @return the chain's EL; null for an empty plan, which needs no chain
+     */
+    public static String compile(ExecutionPlan plan) {
+        if (plan.size() == 0) return null;
+        // the root is always a THEN: a chain cannot start with a bare node
+        Then chain = structured(plan);
+        if (chain == null) chain = levels(plan);
+        StringBuilder el = new StringBuilder(plan.size() * 24);
+        chain.render(el);
+        return el.toString();
+    }
+
+    /**
+     * @return the series-parallel decomposition, or null when the graph is not series-parallel
+     */
+    static Then structured(ExecutionPlan plan) {
+        Structurer s = new Structurer(plan);
+        Then chain;
+        try {
+            chain = s.chain();
+        } catch (NotStructured e) {
+            return null;
+        }
+        for (int i = 0; i < plan.size(); i++) {
+            if (s.emitted[i] != 1) return null;
+        }
+        return valid(plan, chain) ? chain : null;
+    }
+
+    /**
+     * One {@code WHEN} per level: every level only depends on earlier ones.
+     */
+    static Then levels(ExecutionPlan plan) {
+        List<Part> steps = new ArrayList<>(plan.levelCount());
+        for (int l = 0; l < plan.levelCount(); l++) {
+            List<Part> nodes = new ArrayList<>();
+            for (int i : plan.level(l)) nodes.add(new Leaf(i));
+            steps.add(nodes.size() == 1 ? nodes.get(0) : new When(nodes));
+        }
+        return new Then(steps);
+    }
+
+    /**
+     * Checks that every node starts only after all its predecessors are resolved (run or skipped).
+     */
+    private static boolean valid(ExecutionPlan plan, Part chain) {
+        return chain.resolve(plan, new BitSet(plan.size()));
+    }
+
+    private static final class NotStructured extends RuntimeException {
+        NotStructured() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final class Structurer {
+        final ExecutionPlan plan;
+        /** virtual node every node without successors leads to */
+        final int sink;
+        /** immediate post-dominator of every node, {@link #sink} when paths only meet at the end */
+        final int[] ipdom;
+        final int[] emitted;
+
+        Structurer(ExecutionPlan plan) {
+            this.plan = plan;
+            this.sink = plan.size();
+            this.ipdom = new int[plan.size()];
+            this.emitted = new int[plan.size()];
+            int[] order = plan.order();
+            // post-dominators come later in topological order, so a reverse walk sees them first
+            for (int r = order.length - 1; r >= 0; r--) {
+                int v = order[r];
+                int d = -1;
+                for (int s : plan.successors(v)) d = d < 0 ? s : meet(d, s);
+                ipdom[v] = d < 0 ? sink : d;
+            }
+        }
+
+        private int rank(int v) {
+            return v == sink ? sink : plan.rank(v);
+        }
+
+        /** nearest common post-dominator of two nodes */
+        private int meet(int a, int b) {
+            while (a != b) {
+                while (rank(a) < rank(b)) a = ipdom[a];
+                while (rank(b) < rank(a)) b = ipdom[b];
+            }
+            return a;
+        }
+
+        Then chain() {
+            int[] roots = plan.roots();
+            int join = roots[0];
+            for (int r : roots) join = meet(join, r);
+            List<Part> steps = new ArrayList<>();
+            Part fork = fork(-1, roots, null, join);
+            if (fork != null) steps.add(fork);
+            if (join != sink) {
+                Part rest = sequence(join, sink);
+                if (rest instanceof Then then) steps.addAll(then.steps());
+                else steps.add(rest);
+            }
+            return new Then(steps);
+        }
+
+        /** {@code from} and everything after it, up to but excluding {@code until} */
+        private Part sequence(int from, int until) {
+            List<Part> steps = new ArrayList<>();
+            int v = from;
+            while (v != until) {
+                if (v == sink || ++emitted[v] > 1) throw new NotStructured();
+                steps.add(new Leaf(v));
+                Part fork = fork(v, plan.successors(v), plan.successorLabels(v), ipdom[v]);
+                if (fork != null) steps.add(fork);
+                v = ipdom[v];
+            }
+            return steps.size() == 1 ? steps.get(0) : new Then(steps);
+        }
+
+        /** the paths from {@code source}'s successors to {@code join}; null when they all lead there directly */
+        private Part fork(int source, int[] succs, String[][] labels, int join) {
+            List<Part> branches = new ArrayList<>(succs.length);
+            for (int k = 0; k < succs.length; k++) {
+                if (succs[k] == join) continue;
+                Part body = sequence(succs[k], join);
+                branches.add(labels != null && labels[k] != null ? new If(source + ":" + k, body) : body);
+            }
+            if (branches.isEmpty()) return null;
+            return branches.size() == 1 ? branches.get(0) : new When(branches);
+        }
+    }
+
+    sealed interface Part permits Leaf, Then, When, If {
+        void render(StringBuilder el);
+
+        /**
+         * @param done nodes resolved when this part starts; the part's own nodes are added to it
+         * @return false if a node could start before one of its predecessors is resolved
+         */
+        boolean resolve(ExecutionPlan plan, BitSet done);
+    }
+
+    record Leaf(int index) implements Part {
+        public void render(StringBuilder el) {
+            el.append(NODE).append(".tag(\"").append(index).append("\")");
+        }
+
+        public boolean resolve(ExecutionPlan plan, BitSet done) {
+            for (int p : plan.predecessors(index)) {
+                if (!done.get(p)) return false;
+            }
+            done.set(index);
+            return true;
+        }
+    }
+
+    record Then(List<Part> steps) implements Part {
+        public void render(StringBuilder el) {
+            join("THEN", steps, el);
+        }
+
+        public boolean resolve(ExecutionPlan plan, BitSet done) {
+            for (Part step : steps) {
+                if (!step.resolve(plan, done)) return false;
+            }
+            return true;
+        }
+    }
+
+    record When(List<Part> branches) implements Part {
+        public void render(StringBuilder el) {
+            join("WHEN", branches, el);
+        }
+
+        public boolean resolve(ExecutionPlan plan, BitSet done) {
+            BitSet before = (BitSet) done.clone();
+            for (Part branch : branches) {
+                // branches run concurrently: each only sees what was resolved before the fork
+                BitSet after = (BitSet) before.clone();
+                if (!branch.resolve(plan, after)) return false;
+                done.or(after);
+            }
+            return true;
+        }
+    }
+
+    /** enters {@code body} when the edge {@code tag} ("source:k") was taken; its nodes count as resolved either way */
+    record If(String tag, Part body) implements Part {
+        public void render(StringBuilder el) {
+            el.append("IF(").append(BRANCH).append(".tag(\"").append(tag).append("\"), ");
+            body.render(el);
+            el.append(')');
+        }
+
+        public boolean resolve(ExecutionPlan plan, BitSet done) {
+            return body.resolve(plan, done);
+        }
+    }
+
+    private static void join(String op, List<Part> parts, StringBuilder el) {
+        el.append(op).append('(');
+        for (int i = 0; i < parts.size(); i++) {
+            if (i > 0) el.append(", ");
+            parts.get(i).render(el);
+        }
+        el.append(')');
+    }
+}
@@ -0,0 +1,37 @@
+package com.aiflow.server.liteflow;
+
+import com.aiflow.server.engine.PlanNode;
+import com.yomahub.liteflow.annotation.LiteflowComponent;
+
+/**
+ * Executes one node of a flow compiled by {@link FlowElCompiler}; the tag is the node's index in the plan.
+ * Nodes none of whose incoming edges was taken are not accessed, so LiteFlow skips them.
+ */
+@LiteflowComponent(FlowElCompiler.NODE)
+public class FlowNodeComponent extends BaseNodeComponent {
+
+    @Override
+    public boolean isAccess() {
+        return context().isLive(index());
+    }
+
+    @Override
+    public void process() throws Exception {
+        context().execute(index());
+    }
+
+    @Override
+    protected String metricType() {
+        // recorded under the flow node's own type, like the engine; nodes without an executor are not recorded
+        PlanNode node = context().plan.node(index());
+        return node.executor != null ? node.type : null;
+    }
+
+    private FlowChainContext context() {
+        return getContextBean(FlowChainContext.class);
+    }
+
+    private int index() {
+        return Integer.parseInt(getTag());
+    }
+}
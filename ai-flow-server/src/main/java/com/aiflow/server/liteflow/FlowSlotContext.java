@@ -0,0 +1,35 @@
+package com.aiflow.server.liteflow;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Context bean of the static chains in {@code flow/basic-flow.xml}: the variables nodes read their inputs
+ * from and write their outputs to. Nodes in parallel {@code WHEN} branches share it, so the map is concurrent;
+ * null values are not stored.
+ */
+public class FlowSlotContext {
+
+    private final Map<String, Object> variables = new ConcurrentHashMap<>();
+
+    public FlowSlotContext() {
+    }
+
+    public FlowSlotContext(Map<String, ?> inputs) {
+        if (inputs != null) inputs.forEach(this::setVar);
+    }
+
+    public Map<String, Object> getVariables() {
+        return variables;
+    }
+
+    public Object getVar(String key) {
+        return variables.get(key);
+    }
+
+    public void setVar(String key, Object value) {
+        if (key == null) return;
+        if (value == null) variables.remove(key);
+        else variables.put(key, value);
+    }
+}
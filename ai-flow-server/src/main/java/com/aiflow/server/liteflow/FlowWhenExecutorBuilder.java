@@ -0,0 +1,37 @@
+package com.aiflow.server.liteflow;
+
+import com.alibaba.ttl.threadpool.TtlExecutors;
+import com.yomahub.liteflow.property.LiteflowConfig;
+import com.yomahub.liteflow.property.LiteflowConfigGetter;
+import com.yomahub.liteflow.thread.ExecutorBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of LiteFlow's {@code WHEN} branches ({@code liteflow.thread-executor-class}) running
+ * {@code liteflow.when-max-workers} branches at a time. It is a {@link ForkJoinPool}: a branch that waits for a
+ * nested {@code WHEN}, or for a model or HTTP call, blocks in {@code CompletableFuture.get()}, and the pool adds
+ * a spare thread for it meanwhile, so nested branches queued behind their parents cannot stall the chain.
+ */
+public class FlowWhenExecutorBuilder implements ExecutorBuilder {
+
+    /** spare threads the pool may add for blocked branches, on top of when-max-workers */
+    static final int MAX_SPARE_THREADS = 256;
+
+    @Override
+    public ExecutorService buildExecutor() {
+        LiteflowConfig config = LiteflowConfigGetter.get();
+        if (config == null) config = new LiteflowConfig();
+        int workers = config.getWhenMaxWorkers();
+        ForkJoinPool pool = new ForkJoinPool(workers, p -> {
+            ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            t.setName("flow-when-" + t.getPoolIndex());
+            return t;
+        }, null, true, 0, workers + MAX_SPARE_THREADS, 1, p -> true, 60, TimeUnit.SECONDS);
+        // LiteFlow hands its slot to branch threads through transmittable thread locals
+        return TtlExecutors.getTtlExecutorService(pool);
+    }
+}
@@ -1,20 +1,53 @@
 package com.aiflow.server.liteflow;
 
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import com.aiflow.server.engine.Deadline;
+import com.aiflow.server.engine.HttpRequestNodeExecutor;
+import com.aiflow.server.engine.NodeExecutor;
+import com.aiflow.server.engine.RunListener;
+import com.aiflow.server.engine.TraceLevel;
 import com.yomahub.liteflow.annotation.LiteflowComponent;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 发起 HTTP 请求，由 {@link HttpRequestNodeExecutor} 执行（共享连接池、大小限制与条件缓存），节点配置与流程图中的
+ * http_request 节点相同，例如：
+ * <pre>
+ * { "method": "POST", "url": "http://svc/api/${id}", "headers": { "Authorization": "Bearer ${token}" },
+ *   "body": "{\"q\": \"${question}\"}", "output": "response", "timeoutMs": 10000, "failOnError": true }
+ * </pre>
+ * url 未配置时取变量 url；timeoutMs 为整个节点的时限。
+ */
 @Slf4j
 @LiteflowComponent("httpRequestNode")
+@RequiredArgsConstructor
 public class HttpRequestNodeComponent extends BaseNodeComponent {
 
+    private final HttpRequestNodeExecutor httpRequestNodeExecutor;
+
     @Override
     public void process() throws Exception {
         String nodeId = this.getNodeId();
         log.info("Executing HTTP Request node: {}", nodeId);
-        
-        // TODO: 实现HTTP请求逻辑
-        // 支持GET, POST等HTTP方法
-        
-        logNodeExecution(nodeId, "http_request", "http_request", "http_response");
+
+        Map<String, Object> cfg = new HashMap<>(nodeConfig());
+        cfg.putIfAbsent("url", "${url}");
+        long timeoutMs = millis(cfg.get("timeoutMs"), 0);
+
+        GraphNode node = new GraphNode();
+        node.id = nodeId;
+        node.type = httpRequestNodeExecutor.getType();
+        node.properties = cfg;
+        NodeExecutor.ExecutionContext context = new NodeExecutor.ExecutionContext(slotContext().getVariables(),
+                RunListener.NOOP, null, List.of(), timeoutMs > 0 ? Deadline.afterMillis(timeoutMs) : Deadline.NONE,
+                TraceLevel.FULL);
+        NodeExecutor.StepResult step = httpRequestNodeExecutor.execute(node, context);
+
+        logNodeExecution(nodeId, "http_request", step.trace.get("method") + " " + step.trace.get("url"), step.trace.get("status"));
     }
-} 
\ No newline at end of file
+}
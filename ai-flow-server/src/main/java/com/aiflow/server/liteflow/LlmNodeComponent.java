@@ -1,20 +1,54 @@
 package com.aiflow.server.liteflow;
 
+import com.aiflow.aimodel.model.AiModelConfig;
+import com.aiflow.aimodel.service.AiModelService;
+import com.aiflow.server.service.ModelService;
 import com.yomahub.liteflow.annotation.LiteflowComponent;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * 调用已保存的模型生成文本。节点配置（均可省略）：
+ * <pre>
+ * { "modelId": 1, "input": "请回答：${question}", "output": "answer", "maxTokens": 512, "temperature": 0.7, "timeoutMs": 30000 }
+ * </pre>
+ * modelId 未配置时取变量 modelId，input 默认为 ${input}，output 默认为 result。
+ * 调用在当前线程上阻塞完成，放在 WHEN 中的多个模型调用由 LiteFlow 线程池并行执行。
+ */
 @Slf4j
 @LiteflowComponent("llmNode")
+@RequiredArgsConstructor
 public class LlmNodeComponent extends BaseNodeComponent {
 
+    private final AiModelService aiModelService;
+    private final ModelService modelService;
+
     @Override
     public void process() throws Exception {
         String nodeId = this.getNodeId();
         log.info("Executing LLM node: {}", nodeId);
-        
-        // TODO: 实现LLM调用逻辑
-        // 这里可以集成各种LLM服务，如OpenAI, 百度文心等
-        
-        logNodeExecution(nodeId, "llm", "llm_request", "llm_response");
+
+        Map<String, Object> cfg = nodeConfig();
+        FlowSlotContext context = slotContext();
+        Object modelId = cfg.containsKey("modelId") ? cfg.get("modelId") : context.getVar("modelId");
+        if (modelId == null || String.valueOf(modelId).isBlank()) {
+            throw new IllegalArgumentException("LLM node " + nodeId + ": modelId is not configured");
+        }
+        AiModelConfig config = modelService.getAiModelConfig(Long.valueOf(String.valueOf(modelId).trim()),
+                cfg.get("maxTokens") instanceof Number n ? n.intValue() : null,
+                cfg.get("temperature") instanceof Number t ? t.doubleValue() : null);
+        String prompt = render(cfg.getOrDefault("input", "${input}"));
+        String output = String.valueOf(cfg.getOrDefault("output", "result"));
+        long timeoutMs = millis(cfg.get("timeoutMs"), 0);
+
+        String answer = timeoutMs > 0
+                ? aiModelService.generateText(config, prompt, Duration.ofMillis(timeoutMs))
+                : aiModelService.generateText(config, prompt);
+        context.setVar(output, answer);
+
+        logNodeExecution(nodeId, "llm", prompt, answer);
     }
-} 
\ No newline at end of file
+}
@@ -1,20 +1,39 @@
 package com.aiflow.server.liteflow;
 
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import com.aiflow.server.engine.NodeExecutor;
+import com.aiflow.server.engine.ScriptNodeExecutor;
 import com.yomahub.liteflow.annotation.LiteflowComponent;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * 执行 JavaScript 脚本，由 {@link ScriptNodeExecutor} 在脚本沙箱中执行（编译缓存、上下文池、CPU 与内存限制），
+ * 节点配置与流程图中的 script 节点相同，例如：
+ * <pre>
+ * { "script": "variables.question.length", "output": "length" }
+ * </pre>
+ * 链变量既可按名称直接访问，也可通过 variables 访问；脚本只取自节点配置。
+ */
 @Slf4j
 @LiteflowComponent("scriptNode")
+@RequiredArgsConstructor
 public class ScriptNodeComponent extends BaseNodeComponent {
 
+    private final ScriptNodeExecutor scriptNodeExecutor;
+
     @Override
     public void process() throws Exception {
         String nodeId = this.getNodeId();
         log.info("Executing Script node: {}", nodeId);
-        
-        // TODO: 实现脚本执行逻辑
-        // 支持JavaScript, Python等脚本执行
-        
-        logNodeExecution(nodeId, "script", "script_input", "script_output");
+
+        GraphNode node = new GraphNode();
+        node.id = nodeId;
+        node.type = scriptNodeExecutor.getType();
+        node.properties = nodeConfig();
+        NodeExecutor.StepResult step = scriptNodeExecutor.execute(node,
+                new NodeExecutor.ExecutionContext(slotContext().getVariables()));
+
+        logNodeExecution(nodeId, "script", node.properties.get("script"), step.outputs);
     }
-} 
\ No newline at end of file
+}
@@ -3,6 +3,8 @@ package com.aiflow.server.liteflow;
 import com.yomahub.liteflow.annotation.LiteflowComponent;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.Map;
+
 @Slf4j
 @LiteflowComponent("startNode")
 public class StartNodeComponent extends BaseNodeComponent {
@@ -11,7 +13,13 @@ public class StartNodeComponent extends BaseNodeComponent {
     public void process() throws Exception {
         String nodeId = this.getNodeId();
         log.info("Starting flow execution at node: {}", nodeId);
-        
-        logNodeExecution(nodeId, "start", "flow_begin", "initialized");
+
+        // 请求参数为 Map 时作为链的初始变量
+        FlowSlotContext context = slotContext();
+        if (this.getRequestData() instanceof Map<?, ?> inputs) {
+            inputs.forEach((k, v) -> context.setVar(String.valueOf(k), v));
+        }
+
+        logNodeExecution(nodeId, "start", "flow_begin", context.getVariables().keySet());
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,9 @@
+package com.aiflow.server.mapper;
+
+import com.aiflow.server.entity.FlowRunEntity;
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import org.apache.ibatis.annotations.Mapper;
+
+@Mapper
+public interface FlowRunMapper extends BaseMapper<FlowRunEntity> {
+}
@@ -36,6 +36,9 @@ public class DatabaseInitService /* implements CommandLineRunner */ {
                     name VARCHAR(255) NOT NULL,
                     description TEXT,
                     graph_json LONGTEXT,
+                    graph_data LONGBLOB,
+                    layout_data LONGBLOB,
+                    version INT DEFAULT 0,
                     created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
                     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
                     deleted TINYINT DEFAULT 0,
@@ -83,9 +86,96 @@ public class DatabaseInitService /* implements CommandLineRunner */ {
                 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
                 """;
 
+            // Create t_flow_run / t_flow_run_step tables
+            String createFlowRunTable = """
+                CREATE TABLE IF NOT EXISTS t_flow_run (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    run_id VARCHAR(64) NOT NULL UNIQUE,
+                    flow_id VARCHAR(255) NOT NULL,
+                    status VARCHAR(20) NOT NULL,
+                    inputs_json LONGTEXT,
+                    outputs_json LONGTEXT,
+                    error_message TEXT,
+                    step_count INT DEFAULT 0,
+                    started_at DATETIME(3),
+                    finished_at DATETIME(3),
+                    duration_ms BIGINT,
+                    created_at DATETIME DEFAULT CURRENT_TIMESTAMP,
+                    INDEX idx_flow_started (flow_id, started_at)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+                """;
+
+            String createFlowRunStepTable = """
+                CREATE TABLE IF NOT EXISTS t_flow_run_step (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    run_id VARCHAR(64) NOT NULL,
+                    seq INT NOT NULL,
+                    node_id VARCHAR(255),
+                    node_type VARCHAR(100),
+                    trace_json LONGTEXT,
+                    INDEX idx_run_seq (run_id, seq)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+                """;
+
+            // Create t_flow_checkpoint / t_flow_checkpoint_node tables
+            String createCheckpointTable = """
+                CREATE TABLE IF NOT EXISTS t_flow_checkpoint (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    run_id VARCHAR(64) NOT NULL UNIQUE,
+                    flow_id VARCHAR(255) NOT NULL,
+                    flow_version INT NOT NULL,
+                    status VARCHAR(20) NOT NULL,
+                    inputs_data LONGBLOB,
+                    error_message TEXT,
+                    created_at DATETIME(3),
+                    updated_at DATETIME(3),
+                    INDEX idx_flow_id (flow_id),
+                    INDEX idx_updated (updated_at)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+                """;
+
+            String createCheckpointNodeTable = """
+                CREATE TABLE IF NOT EXISTS t_flow_checkpoint_node (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    run_id VARCHAR(64) NOT NULL,
+                    seq INT NOT NULL,
+                    node_count INT NOT NULL,
+                    data LONGBLOB NOT NULL,
+                    INDEX idx_run_seq (run_id, seq)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+                """;
+
+            String createRunQueueTable = """
+                CREATE TABLE IF NOT EXISTS t_run_queue (
+                    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+                    run_id VARCHAR(64) NOT NULL UNIQUE,
+                    flow_id VARCHAR(255) NOT NULL,
+                    status VARCHAR(20) NOT NULL,
+                    inputs_json LONGTEXT,
+                    timeout_ms BIGINT,
+                    trace VARCHAR(20),
+                    attempts INT NOT NULL DEFAULT 0,
+                    owner VARCHAR(128),
+                    lease_until DATETIME(3),
+                    result_json LONGTEXT,
+                    error_message TEXT,
+                    created_at DATETIME(3) NOT NULL,
+                    started_at DATETIME(3),
+                    finished_at DATETIME(3),
+                    INDEX idx_status_id (status, id),
+                    INDEX idx_status_lease (status, lease_until),
+                    INDEX idx_finished (finished_at)
+                ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4;
+                """;
+
             jdbcTemplate.execute(createFlowTable);
             jdbcTemplate.execute(createAppTable);
             jdbcTemplate.execute(createNodeTypeTable);
+            jdbcTemplate.execute(createFlowRunTable);
+            jdbcTemplate.execute(createFlowRunStepTable);
+            jdbcTemplate.execute(createCheckpointTable);
+            jdbcTemplate.execute(createCheckpointNodeTable);
+            jdbcTemplate.execute(createRunQueueTable);
 
             log.info("Database tables created successfully");
         } catch (Exception e) {
@@ -115,6 +205,7 @@ public class DatabaseInitService /* implements CommandLineRunner */ {
                 createNodeType("java_enhance", "Java增强", "Java代码增强节点", "coffee", "logic"),
                 createNodeType("http_request", "HTTP请求", "HTTP接口请求节点", "link", "integration"),
                 createNodeType("subprocess", "子流程", "调用子流程节点", "sitemap", "control"),
+                createNodeType("map", "并行映射", "对列表中每个元素并行执行子流程并按序汇总", "apartment", "control"),
                 createNodeType("direct_reply", "直接回复", "直接输出回复节点", "message", "output")
             );
 
@@ -0,0 +1,191 @@
+package com.aiflow.server.service;
+
+import com.aiflow.server.config.AdmissionProperties;
+import com.aiflow.server.exception.TooManyRunsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 流程运行准入控制：全局与单流程并发上限 + 有界等待队列。
+ *
+ * 等待是异步的（返回 CompletableFuture），排队中的运行不占用任何线程。
+ * 名额释放时按先来先到扫描队列，被单流程上限卡住的请求不会阻塞其他流程的请求。
+ */
+@Service
+public class FlowAdmissionService {
+
+    private final AdmissionProperties properties;
+    private final Timer waitTimer;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    private final Deque<Waiter> waiting = new ArrayDeque<>();
+    private final Map<String, Integer> runningByFlow = new HashMap<>();
+    private int running;
+
+    public FlowAdmissionService(AdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.waitTimer = Timer.builder("flow.admission.wait")
+                .description("Time a run waited for admission")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedQueueFull = Counter.builder("flow.admission.rejected")
+                .tag("reason", "queue_full")
+                .register(meterRegistry);
+        this.rejectedTimeout = Counter.builder("flow.admission.rejected")
+                .tag("reason", "timeout")
+                .register(meterRegistry);
+        Gauge.builder("flow.admission.queue.depth", this, FlowAdmissionService::queued)
+                .description("Runs waiting for admission")
+                .register(meterRegistry);
+        Gauge.builder("flow.admission.running", this, FlowAdmissionService::running)
+                .description("Admitted runs in flight")
+                .register(meterRegistry);
+    }
+
+    /**
+     * 申请一个运行名额。有空闲名额时立即完成；否则排队，队列已满或等待超时时以
+     * {@link TooManyRunsException} 失败。拿到的名额必须调用 {@link Permit#release()} 归还。
+     */
+    public CompletableFuture<Permit> acquire(String flowId) {
+        if (!properties.isEnabled()) {
+            return CompletableFuture.completedFuture(new Permit(null));
+        }
+        Waiter waiter;
+        synchronized (this) {
+            // every queued waiter is blocked by a limit (release() admits whatever fits), so a request
+            // that fits now does not overtake anyone who could have run
+            if (hasCapacity(flowId)) {
+                admit(flowId);
+                waitTimer.record(0, TimeUnit.NANOSECONDS);
+                return CompletableFuture.completedFuture(new Permit(flowId));
+            }
+            if (waiting.size() >= properties.getQueueCapacity()) {
+                rejectedQueueFull.increment();
+                return CompletableFuture.failedFuture(new TooManyRunsException(
+                        "Too many runs in progress, wait queue is full", properties.getRetryAfterSeconds()));
+            }
+            waiter = new Waiter(flowId, System.nanoTime(), new CompletableFuture<>());
+            waiting.add(waiter);
+        }
+        CompletableFuture.delayedExecutor(properties.getQueueTimeoutMs(), TimeUnit.MILLISECONDS)
+                .execute(() -> expire(waiter));
+        return waiter.future;
+    }
+
+    public synchronized Stats stats() {
+        Stats s = new Stats();
+        s.enabled = properties.isEnabled();
+        s.running = running;
+        s.queued = waiting.size();
+        s.maxConcurrentRuns = properties.getMaxConcurrentRuns();
+        s.queueCapacity = properties.getQueueCapacity();
+        s.runningByFlow = new TreeMap<>(runningByFlow);
+        s.admitted = waitTimer.count();
+        s.meanWaitMs = waitTimer.mean(TimeUnit.MILLISECONDS);
+        s.maxWaitMs = waitTimer.max(TimeUnit.MILLISECONDS);
+        s.rejectedQueueFull = (long) rejectedQueueFull.count();
+        s.rejectedTimeout = (long) rejectedTimeout.count();
+        return s;
+    }
+
+    private synchronized int queued() {
+        return waiting.size();
+    }
+
+    private synchronized int running() {
+        return running;
+    }
+
+    private void release(String flowId) {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            running--;
+            runningByFlow.computeIfPresent(flowId, (k, n) -> n > 1 ? n - 1 : null);
+            Iterator<Waiter> it = waiting.iterator();
+            while (it.hasNext() && (properties.getMaxConcurrentRuns() <= 0 || running < properties.getMaxConcurrentRuns())) {
+                Waiter w = it.next();
+                if (hasCapacity(w.flowId)) {
+                    it.remove();
+                    admit(w.flowId);
+                    granted.add(w);
+                }
+            }
+        }
+        // completing runs the caller's continuation, so do it outside the lock
+        for (Waiter w : granted) {
+            waitTimer.record(System.nanoTime() - w.enqueuedAt, TimeUnit.NANOSECONDS);
+            w.future.complete(new Permit(w.flowId));
+        }
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            if (!waiting.remove(waiter)) return; // already admitted
+        }
+        rejectedTimeout.increment();
+        waiter.future.completeExceptionally(new TooManyRunsException(
+                "Timed out waiting for a free run slot", properties.getRetryAfterSeconds()));
+    }
+
+    private boolean hasCapacity(String flowId) {
+        int global = properties.getMaxConcurrentRuns();
+        if (global > 0 && running >= global) return false;
+        int perFlow = properties.getFlowLimits().getOrDefault(flowId, properties.getMaxConcurrentRunsPerFlow());
+        return perFlow <= 0 || runningByFlow.getOrDefault(flowId, 0) < perFlow;
+    }
+
+    private void admit(String flowId) {
+        running++;
+        runningByFlow.merge(flowId, 1, Integer::sum);
+    }
+
+    private record Waiter(String flowId, long enqueuedAt, CompletableFuture<Permit> future) {}
+
+    /**
+     * 一个已获得的运行名额，释放多次只生效一次
+     */
+    public final class Permit {
+        private final String flowId;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(String flowId) {
+            this.flowId = flowId;
+        }
+
+        public void release() {
+            if (flowId != null && released.compareAndSet(false, true)) {
+                FlowAdmissionService.this.release(flowId);
+            }
+        }
+    }
+
+    public static class Stats {
+        public boolean enabled;
+        public int running;
+        public int queued;
+        public int maxConcurrentRuns;
+        public int queueCapacity;
+        public Map<String, Integer> runningByFlow;
+        public long admitted;
+        public double meanWaitMs;
+        public double maxWaitMs;
+        public long rejectedQueueFull;
+        public long rejectedTimeout;
+    }
+}
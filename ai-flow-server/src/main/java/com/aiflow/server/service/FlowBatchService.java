@@ -0,0 +1,288 @@
+package com.aiflow.server.service;
+
+import com.aiflow.server.config.AdmissionProperties;
+import com.aiflow.server.config.BatchProperties;
+import com.aiflow.server.dto.FlowDtos.FlowBatchItemResult;
+import com.aiflow.server.dto.FlowDtos.FlowBatchSummary;
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.engine.Deadline;
+import com.aiflow.server.engine.DeadlineExceededException;
+import com.aiflow.server.engine.ExecutionPlan;
+import com.aiflow.server.engine.RunListener;
+import com.aiflow.server.engine.TraceOptions;
+import com.aiflow.server.exception.TooManyRunsException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 批量运行：同一流程、同一份执行计划依次处理大量输入，结果按完成顺序逐条写出。
+ *
+ * 每个批次由一个专用线程驱动：有空闲并发名额时才读取下一条输入并提交运行，完成的结果也由该线程写出，
+ * 因此请求体按运行进度背压读取，内存中最多只有 concurrency 条输入，客户端写得慢也不会阻塞引擎线程。
+ * 单条输入失败（节点报错、超时、被准入控制拒绝）只记入该条结果，不影响其他输入。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlowBatchService {
+
+    public static final String STATUS_REJECTED = "rejected";
+
+    private final FlowService flowService;
+    private final BatchProperties properties;
+    private final AdmissionProperties admissionProperties;
+    private final ObjectMapper objectMapper;
+
+    private final Map<String, Batch> active = new ConcurrentHashMap<>();
+    private final AtomicInteger driverCount = new AtomicInteger();
+    private final ExecutorService drivers = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "flow-batch-" + driverCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 结果的写出方，只会被批次的驱动线程调用
+     */
+    public interface Sink {
+        void write(Object line) throws IOException;
+    }
+
+    /**
+     * 开始一个批次并立即返回。输入为 JSON 数组或 NDJSON（每行一个 inputs 对象）；每条结果写出一行
+     * {@link FlowBatchItemResult}，最后写出 {@link FlowBatchSummary}。
+     *
+     * @param concurrency  并发运行数，为空时取默认值，不超过 maxConcurrency
+     * @param itemTimeoutMs 每条输入的运行时限（毫秒），为空时与单次运行相同
+     * @throws TooManyRunsException 进行中的批次已达上限
+     */
+    public Batch start(String id, InputStream body, Integer concurrency, Long itemTimeoutMs, boolean includeTrace,
+                       Sink sink) {
+        ExecutionPlan plan = flowService.getPlan(id);
+        int limit = concurrency != null && concurrency > 0 ? concurrency : properties.getDefaultConcurrency();
+        Batch batch = new Batch(plan, flowService.traceOptions(plan, null),
+                Math.max(1, Math.min(limit, properties.getMaxConcurrency())));
+        synchronized (active) {
+            if (active.size() >= properties.getMaxActiveBatches()) {
+                throw new TooManyRunsException("Too many batch runs in progress", admissionProperties.getRetryAfterSeconds());
+            }
+            active.put(batch.id, batch);
+        }
+        try {
+            drivers.execute(() -> {
+                try {
+                    drive(batch, body, itemTimeoutMs, includeTrace, sink);
+                } finally {
+                    active.remove(batch.id);
+                    batch.done.complete(batch.summary());
+                }
+            });
+        } catch (RuntimeException e) {
+            active.remove(batch.id);
+            throw e;
+        }
+        return batch;
+    }
+
+    /**
+     * 进行中批次的进度
+     */
+    public List<FlowBatchSummary> stats() {
+        List<FlowBatchSummary> list = new ArrayList<>();
+        for (Batch b : active.values()) list.add(b.summary());
+        list.sort(Comparator.comparing(s -> s.startedAt));
+        return list;
+    }
+
+    public long getTimeoutMs() {
+        return properties.getTimeoutMs();
+    }
+
+    @PreDestroy
+    public void stop() {
+        active.values().forEach(b -> b.cancel("Server shutting down"));
+        drivers.shutdown();
+    }
+
+    private void drive(Batch batch, InputStream body, Long itemTimeoutMs, boolean includeTrace, Sink sink) {
+        BlockingQueue<FlowBatchItemResult> finished = new LinkedBlockingQueue<>();
+        int inFlight = 0;
+        boolean more = true;
+        try (MappingIterator<Map<String, Object>> items = objectMapper.readerForMapOf(Object.class).readValues(body)) {
+            while (true) {
+                FlowBatchItemResult r;
+                while ((r = finished.poll()) != null) {
+                    inFlight--;
+                    emit(batch, sink, r);
+                }
+                more &= batch.error == null;
+                if (more && inFlight < batch.concurrency) {
+                    Map<String, Object> inputs;
+                    try {
+                        if (!items.hasNextValue()) {
+                            more = false;
+                            continue;
+                        }
+                        inputs = items.nextValue();
+                    } catch (IOException | RuntimeException e) {
+                        // a malformed document cannot be resynchronized; finish what was submitted and stop
+                        batch.cancel("Invalid batch input after item " + batch.submitted.get() + ": " + e.getMessage());
+                        continue;
+                    }
+                    submit(batch, batch.submitted.getAndIncrement(), inputs != null ? inputs : Map.of(), itemTimeoutMs,
+                            includeTrace, finished);
+                    inFlight++;
+                    continue;
+                }
+                if (inFlight == 0) break;
+                r = finished.take();
+                inFlight--;
+                emit(batch, sink, r);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            batch.cancel("Interrupted");
+        } catch (IOException e) {
+            batch.cancel("Failed to read batch input: " + e.getMessage());
+        }
+        if (!batch.sinkClosed) {
+            try {
+                sink.write(batch.summary());
+            } catch (IOException | RuntimeException e) {
+                log.debug("批量运行 {} 的汇总未能写出: {}", batch.id, e.getMessage());
+            }
+        }
+    }
+
+    private void submit(Batch batch, long index, Map<String, Object> inputs, Long itemTimeoutMs, boolean includeTrace,
+                        BlockingQueue<FlowBatchItemResult> finished) {
+        long startedAt = System.nanoTime();
+        CompletableFuture<FlowRunResult> run;
+        try {
+            Deadline deadline = flowService.runDeadline(batch.plan, itemTimeoutMs);
+            run = flowService.runAsync(batch.plan, inputs, deadline, batch.trace, RunListener.NOOP);
+        } catch (RuntimeException e) {
+            run = CompletableFuture.failedFuture(e);
+        }
+        run.whenComplete((result, err) -> {
+            Throwable cause = err instanceof CompletionException && err.getCause() != null ? err.getCause() : err;
+            finished.add(itemResult(index, result, cause, includeTrace, (System.nanoTime() - startedAt) / 1_000_000));
+        });
+    }
+
+    private FlowBatchItemResult itemResult(long index, FlowRunResult result, Throwable error, boolean includeTrace,
+                                           long durationMs) {
+        FlowBatchItemResult r = new FlowBatchItemResult();
+        r.index = index;
+        r.durationMs = durationMs;
+        if (error == null) {
+            r.status = FlowRunHistoryService.STATUS_SUCCESS;
+            r.runId = result.runId;
+            r.outputs = result.outputs;
+            if (includeTrace) r.trace = result.trace;
+        } else {
+            if (error instanceof DeadlineExceededException timeout) {
+                r.status = FlowRunHistoryService.STATUS_TIMEOUT;
+                r.nodeId = timeout.getNodeId();
+            } else if (error instanceof TooManyRunsException) {
+                r.status = STATUS_REJECTED;
+            } else {
+                r.status = FlowRunHistoryService.STATUS_FAILED;
+            }
+            r.error = String.valueOf(error.getMessage());
+        }
+        return r;
+    }
+
+    private void emit(Batch batch, Sink sink, FlowBatchItemResult r) {
+        (FlowRunHistoryService.STATUS_SUCCESS.equals(r.status) ? batch.succeeded : batch.failed).incrementAndGet();
+        if (batch.sinkClosed) return;
+        try {
+            sink.write(r);
+        } catch (IOException | RuntimeException e) {
+            // nobody is reading any more: stop submitting, let the runs in flight finish
+            batch.sinkClosed = true;
+            batch.cancel("Client disconnected: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 一个进行中的批次
+     */
+    public static final class Batch {
+        final String id = "b_" + UUID.randomUUID();
+        final ExecutionPlan plan;
+        final TraceOptions trace;
+        final int concurrency;
+        final Instant startedAt = Instant.now();
+        final long startedNanos = System.nanoTime();
+        final AtomicLong submitted = new AtomicLong();
+        final AtomicLong succeeded = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final CompletableFuture<FlowBatchSummary> done = new CompletableFuture<>();
+        volatile String error;
+        volatile boolean sinkClosed;
+
+        Batch(ExecutionPlan plan, TraceOptions trace, int concurrency) {
+            this.plan = plan;
+            this.trace = trace;
+            this.concurrency = concurrency;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * 批次结束（所有已提交的输入都已完成）时完成
+         */
+        public CompletableFuture<FlowBatchSummary> getDone() {
+            return done;
+        }
+
+        /**
+         * 停止读取和提交新的输入，已提交的运行照常完成
+         */
+        public void cancel(String reason) {
+            if (error == null) error = reason;
+        }
+
+        FlowBatchSummary summary() {
+            FlowBatchSummary s = new FlowBatchSummary();
+            s.batchId = id;
+            s.flowId = plan.getFlowId();
+            s.version = plan.getVersion();
+            s.concurrency = concurrency;
+            s.submitted = submitted.get();
+            s.succeeded = succeeded.get();
+            s.failed = failed.get();
+            s.running = s.submitted - s.succeeded - s.failed;
+            s.startedAt = startedAt;
+            s.durationMs = (System.nanoTime() - startedNanos) / 1_000_000;
+            s.error = error;
+            return s;
+        }
+    }
+}
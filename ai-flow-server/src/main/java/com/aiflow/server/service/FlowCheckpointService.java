@@ -0,0 +1,352 @@
+package com.aiflow.server.service;
+
+import com.aiflow.server.config.CheckpointProperties;
+import com.aiflow.server.engine.Checkpointer;
+import com.aiflow.server.engine.ExecutionPlan;
+import com.aiflow.server.engine.RunCheckpoint;
+import com.aiflow.server.exception.ConflictException;
+import com.aiflow.server.exception.NotFoundException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 流程运行检查点：节点完成后追加保存其写入的变量与分支选择，失败或重启后可从检查点续跑。
+ *
+ * 写入与运行历史一样走有界队列 + 后台批量落库，序列化和压缩都在写线程完成，不占用引擎调度线程。
+ * 每次保存只追加新完成的节点（t_flow_checkpoint_node 一行），不重写整个运行状态。
+ * 队列满时该运行后续不再写检查点：已写入的部分仍是按完成顺序的前缀，续跑时只会多执行一些节点。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlowCheckpointService {
+
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_FAILED = "failed";
+
+    private static final String UPSERT_RUN = "INSERT INTO t_flow_checkpoint (run_id, flow_id, flow_version, status, "
+            + "inputs_data, created_at, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?) "
+            + "ON DUPLICATE KEY UPDATE status = VALUES(status), error_message = NULL, updated_at = VALUES(updated_at)";
+    private static final String INSERT_NODES = "INSERT INTO t_flow_checkpoint_node (run_id, seq, node_count, data) "
+            + "VALUES (?, ?, ?, ?)";
+    private static final String MARK_FAILED = "UPDATE t_flow_checkpoint SET status = ?, error_message = ?, updated_at = ? "
+            + "WHERE run_id = ?";
+    private static final String DELETE_NODES = "DELETE FROM t_flow_checkpoint_node WHERE run_id = ?";
+    private static final String DELETE_RUN = "DELETE FROM t_flow_checkpoint WHERE run_id = ?";
+    private static final long PURGE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+
+    private final CheckpointProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    /** runs executing in this process; a checkpoint cannot be resumed while its run is still going */
+    private final Set<String> active = ConcurrentHashMap.newKeySet();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private BlockingQueue<Op> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            log.info("运行检查点已关闭");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        running = true;
+        writer = new Thread(this::writeLoop, "flow-checkpoint-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 为一次新运行开启检查点；未启用或流程可执行节点过少时返回 {@link Checkpointer#NONE}
+     */
+    public Checkpointer begin(ExecutionPlan plan, String runId, Map<String, Object> inputs) {
+        if (queue == null || executableNodes(plan) < properties.getMinNodes()) {
+            return Checkpointer.NONE;
+        }
+        active.add(runId);
+        RunCheckpointer checkpointer = new RunCheckpointer(runId, 0);
+        long now = System.currentTimeMillis();
+        checkpointer.enqueue(new Op(UPSERT_RUN, () -> new Object[]{
+                runId, plan.getFlowId(), plan.getVersion(), STATUS_RUNNING, encode(inputs),
+                new Timestamp(now), new Timestamp(now)
+        }));
+        return checkpointer;
+    }
+
+    /**
+     * 为续跑重新开启检查点，追加在已有检查点之后
+     *
+     * @throws ConflictException 该运行仍在本服务中执行
+     */
+    public Checkpointer resume(RunCheckpoint checkpoint, int nextSeq) {
+        if (queue == null) {
+            return Checkpointer.NONE;
+        }
+        if (!active.add(checkpoint.runId)) {
+            throw new ConflictException("Flow run is still in progress: " + checkpoint.runId);
+        }
+        RunCheckpointer checkpointer = new RunCheckpointer(checkpoint.runId, nextSeq);
+        long now = System.currentTimeMillis();
+        checkpointer.enqueue(new Op(UPSERT_RUN, () -> new Object[]{
+                checkpoint.runId, checkpoint.flowId, checkpoint.version, STATUS_RUNNING, null,
+                new Timestamp(now), new Timestamp(now)
+        }));
+        return checkpointer;
+    }
+
+    /**
+     * 读取运行的检查点（已完成的节点按完成顺序）
+     */
+    public Loaded load(String flowId, String runId) {
+        if (active.contains(runId)) {
+            throw new ConflictException("Flow run is still in progress: " + runId);
+        }
+        List<RunCheckpoint> found = jdbcTemplate.query(
+                "SELECT run_id, flow_id, flow_version, inputs_data FROM t_flow_checkpoint WHERE run_id = ? AND flow_id = ?",
+                (rs, i) -> {
+                    RunCheckpoint cp = new RunCheckpoint();
+                    cp.runId = rs.getString("run_id");
+                    cp.flowId = rs.getString("flow_id");
+                    cp.version = rs.getLong("flow_version");
+                    cp.inputs = decode(rs.getBytes("inputs_data"), new TypeReference<Map<String, Object>>() {});
+                    return cp;
+                }, runId, flowId);
+        if (found.isEmpty()) {
+            throw new NotFoundException("No checkpoint for flow run: " + runId);
+        }
+        RunCheckpoint cp = found.get(0);
+        int[] nextSeq = {0};
+        jdbcTemplate.query("SELECT seq, data FROM t_flow_checkpoint_node WHERE run_id = ? ORDER BY seq", rs -> {
+            nextSeq[0] = Math.max(nextSeq[0], rs.getInt("seq") + 1);
+            List<RunCheckpoint.NodeState> nodes = decode(rs.getBytes("data"),
+                    new TypeReference<List<RunCheckpoint.NodeState>>() {});
+            if (nodes != null) cp.nodes.addAll(nodes);
+        }, runId);
+        return new Loaded(cp, nextSeq[0]);
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.enabled = queue != null;
+        s.active = active.size();
+        s.queued = queue != null ? queue.size() : 0;
+        s.capacity = properties.getQueueCapacity();
+        s.written = written.get();
+        s.dropped = dropped.get();
+        s.failedBatches = failedBatches.get();
+        return s;
+    }
+
+    private static int executableNodes(ExecutionPlan plan) {
+        int n = 0;
+        for (int i = 0; i < plan.size(); i++) {
+            if (plan.node(i).executor != null) n++;
+        }
+        return n;
+    }
+
+    private void writeLoop() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<Op> batch = new ArrayList<>(batchSize);
+        long nextPurge = System.currentTimeMillis();
+        while (running || !queue.isEmpty()) {
+            long deadline = System.currentTimeMillis() + properties.getFlushIntervalMs();
+            try {
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) break;
+                    Op op = queue.poll(Math.min(wait, 200), TimeUnit.MILLISECONDS);
+                    if (op != null) {
+                        batch.add(op);
+                        queue.drainTo(batch, batchSize - batch.size());
+                    } else if (!running) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+            if (running && properties.getRetentionHours() > 0 && System.currentTimeMillis() >= nextPurge) {
+                purge();
+                nextPurge = System.currentTimeMillis() + PURGE_INTERVAL_MS;
+            }
+        }
+    }
+
+    /**
+     * 按入队顺序执行，相邻的同类语句合并为一次 batchUpdate
+     */
+    private void flush(List<Op> batch) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                int i = 0;
+                while (i < batch.size()) {
+                    String sql = batch.get(i).sql;
+                    List<Object[]> rows = new ArrayList<>();
+                    while (i < batch.size() && batch.get(i).sql.equals(sql)) {
+                        rows.add(batch.get(i).args.get());
+                        i++;
+                    }
+                    jdbcTemplate.batchUpdate(sql, rows);
+                }
+            });
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            failedBatches.incrementAndGet();
+            log.error("检查点批量写入失败，丢弃 {} 条操作", batch.size(), e);
+        }
+    }
+
+    private void purge() {
+        Timestamp before = new Timestamp(System.currentTimeMillis() - TimeUnit.HOURS.toMillis(properties.getRetentionHours()));
+        try {
+            jdbcTemplate.update("DELETE n FROM t_flow_checkpoint_node n JOIN t_flow_checkpoint c ON c.run_id = n.run_id "
+                    + "WHERE c.updated_at < ?", before);
+            int runs = jdbcTemplate.update("DELETE FROM t_flow_checkpoint WHERE updated_at < ?", before);
+            if (runs > 0) {
+                log.info("已清理 {} 个过期的运行检查点", runs);
+            }
+        } catch (Exception e) {
+            log.warn("清理过期检查点失败: {}", e.getMessage());
+        }
+    }
+
+    private byte[] encode(Object value) {
+        if (value == null) return null;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream out = new GZIPOutputStream(bytes)) {
+            objectMapper.writeValue(out, value);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to serialize checkpoint", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private <T> T decode(byte[] data, TypeReference<T> type) {
+        if (data == null) return null;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(data))) {
+            return objectMapper.readValue(in, type);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to deserialize checkpoint", e);
+        }
+    }
+
+    private record Op(String sql, Supplier<Object[]> args) {}
+
+    public record Loaded(RunCheckpoint checkpoint, int nextSeq) {}
+
+    /**
+     * 单次运行的检查点写入器，由引擎调度线程按完成顺序调用
+     */
+    private final class RunCheckpointer implements Checkpointer {
+        private final String runId;
+        private int seq;
+        /** set once an operation was dropped; later saves would leave a gap, so none are written */
+        private volatile boolean broken;
+
+        RunCheckpointer(String runId, int seq) {
+            this.runId = runId;
+            this.seq = seq;
+        }
+
+        @Override
+        public int interval() {
+            return properties.getInterval();
+        }
+
+        @Override
+        public void save(String runId, List<RunCheckpoint.NodeState> nodes) {
+            int s = seq++;
+            enqueue(new Op(INSERT_NODES, () -> new Object[]{runId, s, nodes.size(), encode(nodes)}));
+        }
+
+        @Override
+        public void completed(String runId) {
+            active.remove(runId);
+            // cleanup is attempted even after a drop, otherwise the partial checkpoint lingers until purged
+            broken = false;
+            enqueue(new Op(DELETE_NODES, () -> new Object[]{runId}));
+            enqueue(new Op(DELETE_RUN, () -> new Object[]{runId}));
+        }
+
+        @Override
+        public void failed(String runId, Throwable error) {
+            active.remove(runId);
+            String message = error != null ? String.valueOf(error.getMessage()) : null;
+            enqueue(new Op(MARK_FAILED, () -> new Object[]{
+                    STATUS_FAILED, message != null && message.length() > 2000 ? message.substring(0, 2000) : message,
+                    new Timestamp(System.currentTimeMillis()), runId
+            }));
+        }
+
+        void enqueue(Op op) {
+            if (broken) return;
+            if (!queue.offer(op)) {
+                broken = true;
+                long n = dropped.incrementAndGet();
+                if (n == 1 || n % 1000 == 0) {
+                    log.warn("检查点队列已满，已有 {} 个运行停止写检查点", n);
+                }
+            }
+        }
+    }
+
+    public static class Stats {
+        public boolean enabled;
+        public int active;
+        public int queued;
+        public int capacity;
+        public long written;
+        public long dropped;
+        public long failedBatches;
+    }
+}
@@ -0,0 +1,128 @@
+package com.aiflow.server.service;
+
+import com.aiflow.server.dto.FlowDtos.FlowGraph;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流程图的存储编码，接口仍然收发 JSON。
+ *
+ * 流程图拆成两部分，各自以 Smile（二进制 JSON）存储：
+ * - t_flow.graph_data：执行所需的部分，即节点的 id、type、properties 与全部连线
+ * - t_flow.layout_data：画布布局，即节点的 x、y、text，按节点顺序一一对应
+ * 运行只加载并解码 graph_data，打开流程图时才解码布局并合并回节点。
+ * Smile 对重复出现的属性名和短字符串值只写一次，节点越多压缩越明显。
+ *
+ * 旧数据仍在 t_flow.graph_json（JSON 文本）中，由 {@link FlowGraphMigrationService} 转换。
+ */
+@Component
+public class FlowGraphCodec {
+
+    private static final TypeReference<List<NodeLayout>> LAYOUT = new TypeReference<>() {};
+
+    private final ObjectMapper json;
+    private final ObjectMapper smile;
+
+    public FlowGraphCodec(ObjectMapper objectMapper) {
+        this.json = objectMapper;
+        // 沿用应用的 ObjectMapper 配置，只换成 Smile 编码；为空的字段不写入，properties 中的 null 值照常保留
+        this.smile = objectMapper.copyWith(SmileFactory.builder()
+                        .enable(SmileGenerator.Feature.CHECK_SHARED_STRING_VALUES)
+                        .build())
+                .setDefaultPropertyInclusion(JsonInclude.Value.construct(
+                        JsonInclude.Include.NON_NULL, JsonInclude.Include.ALWAYS));
+    }
+
+    /**
+     * 编码后的流程图；没有任何布局信息时 layout 为 null
+     */
+    public record Encoded(byte[] graph, byte[] layout) {}
+
+    /**
+     * 单个节点的画布布局
+     */
+    record NodeLayout(Double x, Double y, String text) {}
+
+    public Encoded encode(FlowGraph graph) {
+        FlowGraph execution = new FlowGraph();
+        execution.edges = graph.edges;
+        List<GraphNode> nodes = graph.nodes != null ? graph.nodes : List.of();
+        execution.nodes = new ArrayList<>(nodes.size());
+        List<NodeLayout> layout = new ArrayList<>(nodes.size());
+        boolean hasLayout = false;
+        for (GraphNode node : nodes) {
+            GraphNode n = new GraphNode();
+            n.id = node.id;
+            n.type = node.type;
+            n.properties = node.properties;
+            execution.nodes.add(n);
+            layout.add(new NodeLayout(node.x, node.y, node.text));
+            hasLayout |= node.x != null || node.y != null || node.text != null;
+        }
+        try {
+            return new Encoded(smile.writeValueAsBytes(execution), hasLayout ? smile.writeValueAsBytes(layout) : null);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode graph", e);
+        }
+    }
+
+    /**
+     * 解码执行部分，节点不含 x、y、text
+     */
+    public FlowGraph decodeExecution(byte[] graph) {
+        try {
+            return normalize(smile.readValue(graph, FlowGraph.class));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to decode graph", e);
+        }
+    }
+
+    /**
+     * 解码完整的流程图；布局与节点数量不一致时忽略布局
+     */
+    public FlowGraph decode(byte[] graph, byte[] layout) {
+        FlowGraph g = decodeExecution(graph);
+        if (layout == null) return g;
+        List<NodeLayout> positions;
+        try {
+            positions = smile.readValue(layout, LAYOUT);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to decode graph layout", e);
+        }
+        if (positions.size() != g.nodes.size()) return g;
+        for (int i = 0; i < positions.size(); i++) {
+            GraphNode n = g.nodes.get(i);
+            NodeLayout l = positions.get(i);
+            n.x = l.x();
+            n.y = l.y();
+            n.text = l.text();
+        }
+        return g;
+    }
+
+    /**
+     * 解析旧格式的 graph_json
+     */
+    public FlowGraph fromJson(String graphJson) {
+        try {
+            return normalize(json.readValue(graphJson, FlowGraph.class));
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to deserialize graph", e);
+        }
+    }
+
+    private static FlowGraph normalize(FlowGraph g) {
+        if (g.nodes == null) g.nodes = new ArrayList<>();
+        if (g.edges == null) g.edges = new ArrayList<>();
+        return g;
+    }
+}
@@ -0,0 +1,85 @@
+package com.aiflow.server.service;
+
+import com.aiflow.server.config.FlowStorageProperties;
+import com.aiflow.server.dto.FlowDtos.FlowGraph;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * 把 t_flow.graph_json（JSON 文本）中的旧流程图转换为 graph_data / layout_data 二进制格式。
+ *
+ * 启动后在后台线程按主键分批处理，不阻塞启动；转换完成的行 graph_json 置空。
+ * 更新带 graph_data IS NULL 条件，与同时保存流程图的请求并发时以保存的内容为准。
+ * 无法解析的流程图保持原样并记录日志，读取时仍按 JSON 处理。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlowGraphMigrationService {
+
+    private static final String SELECT_BATCH = "SELECT id, graph_json FROM t_flow "
+            + "WHERE graph_data IS NULL AND graph_json IS NOT NULL AND id > ? ORDER BY id LIMIT ?";
+    private static final String UPDATE_ROW = "UPDATE t_flow SET graph_data = ?, layout_data = ?, graph_json = NULL "
+            + "WHERE id = ? AND graph_data IS NULL";
+
+    private final FlowStorageProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final FlowGraphCodec codec;
+
+    private record Row(long id, String graphJson) {}
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!properties.isMigrateOnStartup()) return;
+        Thread t = new Thread(() -> {
+            try {
+                migrate();
+            } catch (DataAccessException e) {
+                log.error("流程图格式转换失败，请确认已执行 schema.sql 中 graph_data / layout_data 列的迁移: {}", e.getMessage());
+            }
+        }, "flow-graph-migration");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * 转换所有仍为 JSON 格式的流程图
+     *
+     * @return 转换的流程数
+     */
+    public int migrate() {
+        int batchSize = Math.max(1, properties.getMigrationBatchSize());
+        long afterId = 0;
+        int migrated = 0;
+        int failed = 0;
+        while (true) {
+            List<Row> rows = jdbcTemplate.query(SELECT_BATCH,
+                    (rs, i) -> new Row(rs.getLong("id"), rs.getString("graph_json")), afterId, batchSize);
+            for (Row row : rows) {
+                afterId = row.id();
+                FlowGraphCodec.Encoded encoded;
+                try {
+                    FlowGraph graph = row.graphJson().isBlank() ? new FlowGraph() : codec.fromJson(row.graphJson());
+                    encoded = codec.encode(graph);
+                } catch (RuntimeException e) {
+                    failed++;
+                    log.warn("流程图 id={} 无法解析，保留 JSON 格式: {}", row.id(), e.getMessage());
+                    continue;
+                }
+                migrated += jdbcTemplate.update(UPDATE_ROW, encoded.graph(), encoded.layout(), row.id());
+            }
+            if (rows.size() < batchSize) break;
+        }
+        if (migrated > 0 || failed > 0) {
+            log.info("流程图已转换为二进制格式: {} 个，失败 {} 个", migrated, failed);
+        }
+        return migrated;
+    }
+}
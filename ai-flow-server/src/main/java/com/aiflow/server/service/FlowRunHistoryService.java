@@ -0,0 +1,309 @@
+package com.aiflow.server.service;
+
+import com.aiflow.server.config.RunHistoryProperties;
+import com.aiflow.server.dto.FlowDtos.FlowRunDetail;
+import com.aiflow.server.dto.FlowDtos.FlowRunPageResponse;
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.dto.FlowDtos.FlowRunSummary;
+import com.aiflow.server.engine.DeadlineExceededException;
+import com.aiflow.server.entity.FlowRunEntity;
+import com.aiflow.server.entity.FlowRunStepEntity;
+import com.aiflow.server.exception.NotFoundException;
+import com.aiflow.server.mapper.FlowRunMapper;
+import com.aiflow.server.mapper.FlowRunStepMapper;
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 流程运行历史：写入走有界队列 + 后台批量落库（write-behind），查询直接读库。
+ *
+ * 背压策略：队列满时丢弃新记录并计入 dropped，运行本身不受影响；
+ * 批量写入失败时记录日志并计入 failedBatches，该批记录不重试。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlowRunHistoryService {
+
+    public static final String STATUS_SUCCESS = "success";
+    public static final String STATUS_FAILED = "failed";
+    public static final String STATUS_TIMEOUT = "timeout";
+
+    private static final String INSERT_RUN = "INSERT INTO t_flow_run (run_id, flow_id, status, inputs_json, outputs_json, "
+            + "error_message, step_count, started_at, finished_at, duration_ms) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?) "
+            // a resumed run keeps its run id and replaces the record of the failed attempt
+            + "ON DUPLICATE KEY UPDATE status = VALUES(status), outputs_json = VALUES(outputs_json), "
+            + "error_message = VALUES(error_message), step_count = VALUES(step_count), started_at = VALUES(started_at), "
+            + "finished_at = VALUES(finished_at), duration_ms = VALUES(duration_ms)";
+    private static final String DELETE_STEPS = "DELETE FROM t_flow_run_step WHERE run_id = ?";
+    private static final String INSERT_STEP = "INSERT INTO t_flow_run_step (run_id, seq, node_id, node_type, trace_json) "
+            + "VALUES (?, ?, ?, ?, ?)";
+
+    private final RunHistoryProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FlowRunMapper flowRunMapper;
+    private final FlowRunStepMapper flowRunStepMapper;
+    private final ObjectMapper objectMapper;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private BlockingQueue<RunRecord> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    @PostConstruct
+    public void start() {
+        if (!properties.isEnabled()) {
+            log.info("运行历史记录已关闭");
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+        running = true;
+        writer = new Thread(this::writeLoop, "flow-run-history-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writer != null) {
+            try {
+                writer.join(TimeUnit.SECONDS.toMillis(10));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 记录一次运行，只做入队，不会阻塞调用线程
+     */
+    public void record(String runId, String flowId, Map<String, Object> inputs, FlowRunResult result, Throwable error,
+                       long startedAt) {
+        record(runId, flowId, inputs, result, error, startedAt, false);
+    }
+
+    /**
+     * 记录一次运行；{@code resumed} 为 true 时覆盖同一 runId 之前失败的记录及其节点轨迹
+     */
+    public void record(String runId, String flowId, Map<String, Object> inputs, FlowRunResult result, Throwable error,
+                       long startedAt, boolean resumed) {
+        if (queue == null) return;
+        RunRecord r = new RunRecord(
+                runId != null ? runId : result != null && result.runId != null ? result.runId : "r_" + UUID.randomUUID(),
+                flowId, inputs, result, error, startedAt, System.currentTimeMillis(), resumed);
+        if (!queue.offer(r)) {
+            long n = dropped.incrementAndGet();
+            if (n == 1 || n % 1000 == 0) {
+                log.warn("运行历史队列已满，已丢弃 {} 条运行记录", n);
+            }
+        }
+    }
+
+    /**
+     * 分页查询流程的运行历史（按开始时间倒序）
+     */
+    public FlowRunPageResponse page(String flowId, int page, int size) {
+        QueryWrapper<FlowRunEntity> wrapper = new QueryWrapper<>();
+        wrapper.select("id", "run_id", "flow_id", "status", "error_message", "step_count",
+                "started_at", "finished_at", "duration_ms");
+        wrapper.eq("flow_id", flowId);
+        wrapper.orderByDesc("started_at");
+        Page<FlowRunEntity> result = flowRunMapper.selectPage(new Page<>(page, size), wrapper);
+
+        FlowRunPageResponse response = new FlowRunPageResponse();
+        response.records = result.getRecords().stream().map(e -> fillSummary(new FlowRunSummary(), e)).toList();
+        response.total = result.getTotal();
+        response.page = page;
+        response.size = size;
+        return response;
+    }
+
+    /**
+     * 查询单次运行详情（含输入、输出与节点轨迹）
+     */
+    public FlowRunDetail get(String flowId, String runId) {
+        QueryWrapper<FlowRunEntity> wrapper = new QueryWrapper<>();
+        wrapper.eq("run_id", runId);
+        wrapper.eq("flow_id", flowId);
+        FlowRunEntity entity = flowRunMapper.selectOne(wrapper);
+        if (entity == null) {
+            throw new NotFoundException("Flow run not found: " + runId);
+        }
+        QueryWrapper<FlowRunStepEntity> stepWrapper = new QueryWrapper<>();
+        stepWrapper.eq("run_id", runId);
+        stepWrapper.orderByAsc("seq");
+
+        FlowRunDetail detail = fillSummary(new FlowRunDetail(), entity);
+        detail.inputs = readMap(entity.getInputsJson());
+        detail.outputs = readMap(entity.getOutputsJson());
+        detail.trace = flowRunStepMapper.selectList(stepWrapper).stream()
+                .map(s -> readMap(s.getTraceJson()))
+                .toList();
+        return detail;
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.enabled = queue != null;
+        s.queued = queue != null ? queue.size() : 0;
+        s.capacity = properties.getQueueCapacity();
+        s.written = written.get();
+        s.dropped = dropped.get();
+        s.failedBatches = failedBatches.get();
+        return s;
+    }
+
+    private void writeLoop() {
+        int batchSize = Math.max(1, properties.getBatchSize());
+        List<RunRecord> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            long deadline = System.currentTimeMillis() + properties.getFlushIntervalMs();
+            try {
+                while (batch.size() < batchSize) {
+                    long wait = deadline - System.currentTimeMillis();
+                    if (wait <= 0) break;
+                    RunRecord r = queue.poll(Math.min(wait, 200), TimeUnit.MILLISECONDS);
+                    if (r != null) {
+                        batch.add(r);
+                        queue.drainTo(batch, batchSize - batch.size());
+                    } else if (!running) {
+                        break;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<RunRecord> batch) {
+        List<Object[]> runRows = new ArrayList<>(batch.size());
+        List<Object[]> stepRows = new ArrayList<>();
+        List<Object[]> replacedRuns = new ArrayList<>();
+        for (RunRecord r : batch) {
+            if (r.resumed) {
+                replacedRuns.add(new Object[]{r.runId});
+                // the failed attempt may be in this same batch
+                stepRows.removeIf(row -> r.runId.equals(row[0]));
+            }
+            List<Map<String, Object>> trace = r.result != null && r.result.trace != null ? r.result.trace : List.of();
+            runRows.add(new Object[]{
+                    r.runId, r.flowId,
+                    r.error == null ? STATUS_SUCCESS
+                            : r.error instanceof DeadlineExceededException ? STATUS_TIMEOUT : STATUS_FAILED,
+                    writeJson(r.inputs),
+                    r.result != null ? writeJson(r.result.outputs) : null,
+                    r.error != null ? truncate(String.valueOf(r.error.getMessage()), 2000) : null,
+                    trace.size(),
+                    new Timestamp(r.startedAt),
+                    new Timestamp(r.finishedAt),
+                    r.finishedAt - r.startedAt
+            });
+            for (int i = 0; i < trace.size(); i++) {
+                Map<String, Object> step = trace.get(i);
+                stepRows.add(new Object[]{
+                        r.runId, i,
+                        step.get("nodeId") != null ? String.valueOf(step.get("nodeId")) : null,
+                        step.get("type") != null ? String.valueOf(step.get("type")) : null,
+                        writeJson(step)
+                });
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                if (!replacedRuns.isEmpty()) {
+                    jdbcTemplate.batchUpdate(DELETE_STEPS, replacedRuns);
+                }
+                jdbcTemplate.batchUpdate(INSERT_RUN, runRows);
+                if (!stepRows.isEmpty()) {
+                    jdbcTemplate.batchUpdate(INSERT_STEP, stepRows);
+                }
+            });
+            written.addAndGet(batch.size());
+        } catch (Exception e) {
+            failedBatches.incrementAndGet();
+            log.error("运行历史批量写入失败，丢弃 {} 条记录", batch.size(), e);
+        }
+    }
+
+    private <T extends FlowRunSummary> T fillSummary(T s, FlowRunEntity e) {
+        s.runId = e.getRunId();
+        s.flowId = e.getFlowId();
+        s.status = e.getStatus();
+        s.errorMessage = e.getErrorMessage();
+        s.stepCount = e.getStepCount();
+        s.startedAt = toInstant(e.getStartedAt());
+        s.finishedAt = toInstant(e.getFinishedAt());
+        s.durationMs = e.getDurationMs();
+        return s;
+    }
+
+    private static Instant toInstant(LocalDateTime t) {
+        return t != null ? t.atZone(ZoneId.systemDefault()).toInstant() : null;
+    }
+
+    private String writeJson(Object value) {
+        if (value == null) return null;
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            return "{\"error\":\"unserializable\"}";
+        }
+    }
+
+    private Map<String, Object> readMap(String json) {
+        if (json == null || json.isBlank()) return null;
+        try {
+            return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to deserialize run history", e);
+        }
+    }
+
+    private static String truncate(String s, int max) {
+        return s.length() <= max ? s : s.substring(0, max);
+    }
+
+    private record RunRecord(String runId, String flowId, Map<String, Object> inputs, FlowRunResult result,
+                             Throwable error, long startedAt, long finishedAt, boolean resumed) {}
+
+    public static class Stats {
+        public boolean enabled;
+        public int queued;
+        public int capacity;
+        public long written;
+        public long dropped;
+        public long failedBatches;
+    }
+}
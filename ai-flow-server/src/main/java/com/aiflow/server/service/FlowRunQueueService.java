@@ -0,0 +1,561 @@
+package com.aiflow.server.service;
+
+import com.aiflow.server.config.RunQueueProperties;
+import com.aiflow.server.dto.FlowDtos.FlowQueuedRun;
+import com.aiflow.server.dto.FlowDtos.FlowRunRequest;
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.engine.Deadline;
+import com.aiflow.server.engine.DeadlineExceededException;
+import com.aiflow.server.engine.ExecutionPlan;
+import com.aiflow.server.engine.RunListener;
+import com.aiflow.server.engine.TraceOptions;
+import com.aiflow.server.exception.ConflictException;
+import com.aiflow.server.exception.NotFoundException;
+import com.aiflow.server.exception.TooManyRunsException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 分布式运行队列：提交的运行写入 MySQL 表 t_run_queue 并立即返回 runId，由任一实例的工作线程认领执行。
+ *
+ * - 认领：SELECT ... FOR UPDATE SKIP LOCKED 取最早的 queued 行，同一事务内改为 running 并写入本实例 ID 与租约到期时间；
+ *   多个实例同时认领时跳过彼此已锁定的行，既不等待也不会重复认领
+ * - 租约：执行期间定时心跳续租；实例崩溃或失联后租约过期，任一实例的巡检把运行放回队列（认领次数达到上限时标记为失败），
+ *   重新认领时若有检查点则从检查点续跑
+ * - 结果：只有当前租约的持有者（owner 与 attempts 均一致）能写入结果，租约被收回后旧执行的结果直接丢弃；
+ *   结果写入失败时运行在租约过期后重新执行，即至少执行一次
+ * - 查询：结果写在队列表中；长轮询在本实例执行完成时立即返回，其他实例执行的运行按 resultPollIntervalMs 批量检查
+ * 租约相关的时间都取数据库的 NOW(3)，不要求各实例时钟一致。需要 MySQL 8.0 及以上（SKIP LOCKED）。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FlowRunQueueService {
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_RUNNING = "running";
+
+    private static final String INSERT = "INSERT INTO t_run_queue (run_id, flow_id, status, inputs_json, timeout_ms, trace, "
+            + "attempts, created_at) VALUES (?, ?, 'queued', ?, ?, ?, 0, NOW(3))";
+    private static final String SELECT_QUEUED = "SELECT id FROM t_run_queue WHERE status = 'queued' ORDER BY id LIMIT ? "
+            + "FOR UPDATE SKIP LOCKED";
+    private static final String CLAIM = "UPDATE t_run_queue SET status = 'running', owner = ?, attempts = attempts + 1, "
+            + "lease_until = TIMESTAMPADD(MICROSECOND, ?, NOW(3)), started_at = NOW(3) WHERE id IN (%s)";
+    private static final String SELECT_CLAIMED = "SELECT run_id, flow_id, inputs_json, timeout_ms, trace, attempts "
+            + "FROM t_run_queue WHERE id IN (%s) ORDER BY id";
+    private static final String HEARTBEAT = "UPDATE t_run_queue SET lease_until = TIMESTAMPADD(MICROSECOND, ?, NOW(3)) "
+            + "WHERE run_id = ? AND owner = ? AND attempts = ? AND status = 'running'";
+    private static final String FINISH = "UPDATE t_run_queue SET status = ?, result_json = ?, error_message = ?, "
+            + "finished_at = NOW(3), owner = NULL, lease_until = NULL "
+            + "WHERE run_id = ? AND owner = ? AND attempts = ? AND status = 'running'";
+    private static final String RELEASE = "UPDATE t_run_queue SET status = 'queued', owner = NULL, lease_until = NULL, "
+            + "started_at = NULL, attempts = attempts - 1 "
+            + "WHERE run_id = ? AND owner = ? AND attempts = ? AND status = 'running'";
+    private static final String REQUEUE_EXPIRED = "UPDATE t_run_queue SET status = 'queued', owner = NULL, lease_until = NULL "
+            + "WHERE status = 'running' AND lease_until < NOW(3) AND attempts < ?";
+    // error_message first: MySQL evaluates the assignments from left to right, and it still needs the owner
+    private static final String FAIL_EXPIRED = "UPDATE t_run_queue SET "
+            + "error_message = CONCAT('Lease expired after ', attempts, ' attempts, last owner ', owner), "
+            + "status = 'failed', owner = NULL, lease_until = NULL, finished_at = NOW(3) "
+            + "WHERE status = 'running' AND lease_until < NOW(3) AND attempts >= ?";
+    private static final String PURGE = "DELETE FROM t_run_queue WHERE status IN ('success', 'failed', 'timeout') "
+            + "AND finished_at < TIMESTAMPADD(HOUR, ?, NOW(3)) LIMIT 1000";
+    private static final String SELECT_RUN = "SELECT run_id, flow_id, status, attempts, owner, error_message, result_json, "
+            + "created_at, started_at, finished_at FROM t_run_queue WHERE run_id = ?";
+    private static final String SELECT_FINISHED = "SELECT run_id FROM t_run_queue "
+            + "WHERE status IN ('success', 'failed', 'timeout') AND run_id IN (%s)";
+    private static final String COUNT_BY_STATUS = "SELECT status, COUNT(*) AS n FROM t_run_queue GROUP BY status";
+    private static final long PURGE_INTERVAL_MS = TimeUnit.MINUTES.toMillis(10);
+    private static final int IN_CHUNK = 500;
+
+    private final RunQueueProperties properties;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FlowService flowService;
+    private final ObjectMapper objectMapper;
+
+    /** runs this instance is executing; the heartbeat renews their leases */
+    private final Map<String, Claimed> executing = new ConcurrentHashMap<>();
+    /** long-poll requests by run id */
+    private final Map<String, Set<CompletableFuture<FlowQueuedRun>>> waiters = new ConcurrentHashMap<>();
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong completed = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private final AtomicLong lostLeases = new AtomicLong();
+    private final AtomicLong expiredRequeued = new AtomicLong();
+    private final AtomicLong expiredFailed = new AtomicLong();
+    private String instanceId;
+    private Semaphore slots;
+    /** long-poll checks and timeouts, reaping expired leases */
+    private ScheduledExecutorService scheduler;
+    /** renews leases on its own thread, so slow queries elsewhere cannot let them expire */
+    private ScheduledExecutorService heartbeats;
+    /** writes results of finished runs, off the engine threads and the scheduler */
+    private ExecutorService resultWriter;
+    private Thread poller;
+    private volatile boolean running;
+    /** admission on this instance turned a run away; claim again only after a poll interval */
+    private volatile boolean saturated;
+    private volatile long lastPurge;
+
+    @PostConstruct
+    public void start() {
+        instanceId = properties.getInstanceId() != null && !properties.getInstanceId().isBlank()
+                ? properties.getInstanceId() : defaultInstanceId();
+        scheduler = Executors.newScheduledThreadPool(2, daemonThreads("flow-run-queue-"));
+        running = true;
+        long resultPoll = Math.max(50, properties.getResultPollIntervalMs());
+        scheduler.scheduleWithFixedDelay(() -> guarded("检查长轮询结果", this::checkWaiters),
+                resultPoll, resultPoll, TimeUnit.MILLISECONDS);
+        long heartbeat = Math.max(100, properties.getHeartbeatIntervalMs());
+        // every instance reaps expired leases, so runs of a crashed worker come back even if it never restarts
+        scheduler.scheduleWithFixedDelay(() -> guarded("回收过期租约", this::reap), heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+        if (properties.isWorkerEnabled()) {
+            slots = new Semaphore(Math.max(1, properties.getWorkerConcurrency()));
+            heartbeats = Executors.newSingleThreadScheduledExecutor(daemonThreads("flow-run-queue-heartbeat-"));
+            heartbeats.scheduleWithFixedDelay(() -> guarded("续租", this::heartbeat), heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+            // at most worker-concurrency runs finish at a time, one write each
+            resultWriter = Executors.newCachedThreadPool(daemonThreads("flow-run-queue-writer-"));
+            poller = new Thread(this::pollLoop, "flow-run-queue-poller");
+            poller.setDaemon(true);
+            poller.start();
+        }
+        log.info("运行队列已启动: 实例 {}，工作线程 {}", instanceId,
+                properties.isWorkerEnabled() ? properties.getWorkerConcurrency() : 0);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (poller != null) {
+            poller.interrupt();
+        }
+        // runs still executing keep their leases until they expire, then another instance picks them up
+        scheduler.shutdownNow();
+        if (heartbeats != null) {
+            heartbeats.shutdownNow();
+            resultWriter.shutdown();
+        }
+    }
+
+    /**
+     * 提交一次运行并立即返回；流程不存在或轨迹级别无法识别时直接报错，不入队
+     */
+    public FlowQueuedRun submit(String flowId, FlowRunRequest req) {
+        ExecutionPlan plan = flowService.getPlan(flowId);
+        String trace = req != null ? req.trace : null;
+        flowService.traceOptions(plan, trace);
+        Map<String, Object> inputs = req != null && req.inputs != null ? req.inputs : Map.of();
+        String runId = FlowService.newRunId();
+        jdbcTemplate.update(INSERT, runId, plan.getFlowId(), writeJson(inputs),
+                req != null && req.timeoutMs != null && req.timeoutMs > 0 ? req.timeoutMs : null, trace);
+        wake();
+        FlowQueuedRun run = new FlowQueuedRun();
+        run.runId = runId;
+        run.flowId = plan.getFlowId();
+        run.status = STATUS_QUEUED;
+        run.createdAt = Instant.now();
+        return run;
+    }
+
+    /**
+     * 查询队列中的运行；waitMs 大于 0 且运行尚未结束时长轮询，运行结束或等待超时（不超过 maxWaitMs）时返回当前状态
+     *
+     * @throws NotFoundException 运行不存在或不属于该流程（已结束的运行保留 retentionHours 小时）
+     */
+    public CompletableFuture<FlowQueuedRun> await(String flowId, String runId, long waitMs) {
+        FlowQueuedRun run = load(runId);
+        if (run == null || !run.flowId.equals(flowId)) {
+            throw new NotFoundException("Queued run not found: " + runId);
+        }
+        long wait = Math.min(waitMs, properties.getMaxWaitMs());
+        if (isFinished(run.status) || wait <= 0) {
+            return CompletableFuture.completedFuture(run);
+        }
+        CompletableFuture<FlowQueuedRun> waiter = new CompletableFuture<>();
+        waiters.computeIfAbsent(runId, k -> ConcurrentHashMap.newKeySet()).add(waiter);
+        ScheduledFuture<?> timeout = scheduler.schedule(() -> {
+            try {
+                waiter.complete(load(runId));
+            } catch (RuntimeException e) {
+                waiter.completeExceptionally(e);
+            }
+        }, wait, TimeUnit.MILLISECONDS);
+        waiter.whenComplete((r, err) -> {
+            timeout.cancel(false);
+            waiters.computeIfPresent(runId, (k, set) -> {
+                set.remove(waiter);
+                return set.isEmpty() ? null : set;
+            });
+        });
+        return waiter;
+    }
+
+    public Stats stats() {
+        Stats s = new Stats();
+        s.instanceId = instanceId;
+        s.workerEnabled = properties.isWorkerEnabled();
+        s.workerConcurrency = properties.isWorkerEnabled() ? properties.getWorkerConcurrency() : 0;
+        s.executing = executing.size();
+        s.waiting = waiters.values().stream().mapToInt(Set::size).sum();
+        s.claimed = claimed.get();
+        s.completed = completed.get();
+        s.released = released.get();
+        s.lostLeases = lostLeases.get();
+        s.expiredRequeued = expiredRequeued.get();
+        s.expiredFailed = expiredFailed.get();
+        Map<String, Long> counts = new LinkedHashMap<>();
+        jdbcTemplate.query(COUNT_BY_STATUS, rs -> {
+            counts.put(rs.getString("status"), rs.getLong("n"));
+        });
+        s.rows = counts;
+        return s;
+    }
+
+    private void pollLoop() {
+        while (running) {
+            try {
+                slots.acquire();
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (saturated) {
+                // claiming right away would only hand the run back again; wake() does not cut this short
+                saturated = false;
+                long until = System.nanoTime() + pollNanos();
+                for (long left; running && (left = until - System.nanoTime()) > 0; ) {
+                    LockSupport.parkNanos(left);
+                }
+            }
+            int wanted = 1 + slots.drainPermits();
+            List<Claimed> runs;
+            try {
+                runs = claim(wanted);
+            } catch (RuntimeException e) {
+                log.warn("认领队列中的运行失败: {}", e.getMessage());
+                runs = List.of();
+            }
+            slots.release(wanted - runs.size());
+            for (Claimed c : runs) {
+                execute(c);
+            }
+            if (runs.size() < wanted && running) {
+                // the queue is drained: sleep until the next poll or a submission on this instance
+                LockSupport.parkNanos(pollNanos());
+            }
+        }
+    }
+
+    private long pollNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(10, properties.getPollIntervalMs()));
+    }
+
+    private void wake() {
+        Thread t = poller;
+        if (t != null) LockSupport.unpark(t);
+    }
+
+    private List<Claimed> claim(int limit) {
+        long leaseMicros = TimeUnit.MILLISECONDS.toMicros(properties.getLeaseMs());
+        List<Claimed> runs = transactionTemplate.execute(status -> {
+            List<Long> ids = jdbcTemplate.queryForList(SELECT_QUEUED, Long.class, limit);
+            if (ids.isEmpty()) return List.<Claimed>of();
+            String in = placeholders(ids.size());
+            List<Object> args = new ArrayList<>(ids.size() + 2);
+            args.add(instanceId);
+            args.add(leaseMicros);
+            args.addAll(ids);
+            jdbcTemplate.update(String.format(CLAIM, in), args.toArray());
+            return jdbcTemplate.query(String.format(SELECT_CLAIMED, in), this::claimedRow, ids.toArray());
+        });
+        return runs != null ? runs : List.of();
+    }
+
+    private void execute(Claimed c) {
+        claimed.incrementAndGet();
+        executing.put(c.runId, c);
+        CompletableFuture<FlowRunResult> run;
+        try {
+            run = start(c);
+        } catch (RuntimeException e) {
+            run = CompletableFuture.failedFuture(e);
+        }
+        // written from a queue thread, not from the engine thread completing the run
+        run.whenCompleteAsync((result, err) -> {
+            executing.remove(c.runId);
+            try {
+                finish(c, result, err instanceof CompletionException && err.getCause() != null ? err.getCause() : err);
+            } catch (RuntimeException e) {
+                log.error("写入运行 {} 的结果失败，租约过期后将重新执行: {}", c.runId, e.getMessage());
+            } finally {
+                slots.release();
+            }
+        }, resultWriter);
+    }
+
+    private CompletableFuture<FlowRunResult> start(Claimed c) {
+        if (c.attempts > 1) {
+            // an earlier owner crashed or lost its lease: continue from its checkpoint when there is one
+            try {
+                return flowService.resume(c.flowId, c.runId, RunListener.NOOP);
+            } catch (NotFoundException | ConflictException e) {
+                log.info("运行 {} 第 {} 次执行，无可用检查点，从头运行: {}", c.runId, c.attempts, e.getMessage());
+            }
+        }
+        ExecutionPlan plan = flowService.getPlan(c.flowId);
+        Deadline deadline = flowService.runDeadline(plan, c.timeoutMs);
+        TraceOptions trace = flowService.traceOptions(plan, c.trace);
+        return flowService.runAsync(plan, c.runId, readMap(c.inputsJson), deadline, trace, RunListener.NOOP);
+    }
+
+    private void finish(Claimed c, FlowRunResult result, Throwable error) {
+        if (error instanceof TooManyRunsException) {
+            // admission control on this instance is saturated: hand the run back without counting the attempt
+            jdbcTemplate.update(RELEASE, c.runId, instanceId, c.attempts);
+            released.incrementAndGet();
+            saturated = true;
+            return;
+        }
+        String status = error == null ? FlowRunHistoryService.STATUS_SUCCESS
+                : error instanceof DeadlineExceededException ? FlowRunHistoryService.STATUS_TIMEOUT
+                : FlowRunHistoryService.STATUS_FAILED;
+        String message = error != null ? truncate(String.valueOf(error.getMessage()), 2000) : null;
+        int updated = jdbcTemplate.update(FINISH, status, result != null ? writeJson(result) : null, message,
+                c.runId, instanceId, c.attempts);
+        if (updated == 0) {
+            lostLeases.incrementAndGet();
+            log.warn("运行 {} 的租约已被收回（第 {} 次执行），丢弃本次结果", c.runId, c.attempts);
+            return;
+        }
+        completed.incrementAndGet();
+        wakeWaiters(c.runId);
+    }
+
+    private void heartbeat() {
+        List<Claimed> runs = new ArrayList<>(executing.values());
+        if (runs.isEmpty()) return;
+        long leaseMicros = TimeUnit.MILLISECONDS.toMicros(properties.getLeaseMs());
+        List<Object[]> args = new ArrayList<>(runs.size());
+        for (Claimed c : runs) {
+            args.add(new Object[]{leaseMicros, c.runId, instanceId, c.attempts});
+        }
+        int[] counts = jdbcTemplate.batchUpdate(HEARTBEAT, args);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] == 0 && executing.containsKey(runs.get(i).runId)) {
+                // its result will be discarded; the engine has no way to stop the run early
+                log.warn("运行 {} 续租失败，租约已过期并被收回", runs.get(i).runId);
+            }
+        }
+    }
+
+    private void reap() {
+        int maxAttempts = Math.max(1, properties.getMaxAttempts());
+        int requeued = jdbcTemplate.update(REQUEUE_EXPIRED, maxAttempts);
+        int failed = jdbcTemplate.update(FAIL_EXPIRED, maxAttempts);
+        if (requeued > 0) {
+            expiredRequeued.addAndGet(requeued);
+            log.warn("{} 个运行的租约已过期，已放回队列", requeued);
+            wake();
+        }
+        if (failed > 0) {
+            expiredFailed.addAndGet(failed);
+            log.warn("{} 个运行的租约已过期且认领次数达到 {} 次，标记为失败", failed, maxAttempts);
+        }
+        long now = System.currentTimeMillis();
+        if (properties.getRetentionHours() > 0 && now - lastPurge >= PURGE_INTERVAL_MS) {
+            lastPurge = now;
+            int purged = jdbcTemplate.update(PURGE, -properties.getRetentionHours());
+            if (purged > 0) log.info("已清理 {} 条过期的队列运行记录", purged);
+        }
+    }
+
+    private void checkWaiters() {
+        if (waiters.isEmpty()) return;
+        List<String> runIds = new ArrayList<>(waiters.keySet());
+        for (int from = 0; from < runIds.size(); from += IN_CHUNK) {
+            List<String> chunk = runIds.subList(from, Math.min(runIds.size(), from + IN_CHUNK));
+            List<String> finished = jdbcTemplate.queryForList(String.format(SELECT_FINISHED, placeholders(chunk.size())),
+                    String.class, chunk.toArray());
+            for (String runId : finished) {
+                wakeWaiters(runId);
+            }
+        }
+    }
+
+    /** completes every long poll on the run with one read of its row */
+    private void wakeWaiters(String runId) {
+        Set<CompletableFuture<FlowQueuedRun>> set = waiters.remove(runId);
+        if (set == null) return;
+        try {
+            FlowQueuedRun run = load(runId);
+            for (CompletableFuture<FlowQueuedRun> waiter : set) {
+                if (run != null) waiter.complete(run);
+                else waiter.completeExceptionally(new NotFoundException("Queued run not found: " + runId));
+            }
+        } catch (RuntimeException e) {
+            for (CompletableFuture<FlowQueuedRun> waiter : set) waiter.completeExceptionally(e);
+        }
+    }
+
+    private FlowQueuedRun load(String runId) {
+        List<FlowQueuedRun> rows = jdbcTemplate.query(SELECT_RUN, this::queuedRow, runId);
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    private FlowQueuedRun queuedRow(ResultSet rs, int i) throws SQLException {
+        FlowQueuedRun r = new FlowQueuedRun();
+        r.runId = rs.getString("run_id");
+        r.flowId = rs.getString("flow_id");
+        r.status = rs.getString("status");
+        r.attempts = rs.getInt("attempts");
+        r.owner = rs.getString("owner");
+        r.errorMessage = rs.getString("error_message");
+        r.createdAt = toInstant(rs.getTimestamp("created_at"));
+        r.startedAt = toInstant(rs.getTimestamp("started_at"));
+        r.finishedAt = toInstant(rs.getTimestamp("finished_at"));
+        String resultJson = rs.getString("result_json");
+        if (resultJson != null) {
+            FlowRunResult result = readJson(resultJson, FlowRunResult.class);
+            r.outputs = result.outputs;
+            r.trace = result.trace;
+        }
+        return r;
+    }
+
+    private Claimed claimedRow(ResultSet rs, int i) throws SQLException {
+        long timeout = rs.getLong("timeout_ms");
+        Long timeoutMs = rs.wasNull() ? null : timeout;
+        return new Claimed(rs.getString("run_id"), rs.getString("flow_id"), rs.getString("inputs_json"),
+                timeoutMs, rs.getString("trace"), rs.getInt("attempts"));
+    }
+
+    private static boolean isFinished(String status) {
+        return !STATUS_QUEUED.equals(status) && !STATUS_RUNNING.equals(status);
+    }
+
+    private static String placeholders(int n) {
+        return String.join(", ", Collections.nCopies(n, "?"));
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger threadCount = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    private void guarded(String task, Runnable r) {
+        try {
+            r.run();
+        } catch (DataAccessException e) {
+            log.warn("运行队列{}失败: {}", task, e.getMessage());
+        } catch (RuntimeException e) {
+            log.error("运行队列{}失败", task, e);
+        }
+    }
+
+    private static String defaultInstanceId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        // the random part tells a restarted process from the one whose leases are still running out
+        return host + "-" + ProcessHandle.current().pid() + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+
+    private static Instant toInstant(Timestamp t) {
+        return t != null ? t.toInstant() : null;
+    }
+
+    private String writeJson(Object value) {
+        try {
+            return objectMapper.writeValueAsString(value);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Failed to serialize run data", e);
+        }
+    }
+
+    private <T> T readJson(String json, Class<T> type) {
+        try {
+            return objectMapper.readValue(json, type);
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to deserialize run data", e);
+        }
+    }
+
+    private Map<String, Object> readMap(String json) {
+        if (json == null || json.isBlank()) return Map.of();
+        try {
+            return objectMapper.readValue(json, new TypeReference<Map<String, Object>>() {});
+        } catch (Exception e) {
+            throw new IllegalStateException("Failed to deserialize run inputs", e);
+        }
+    }
+
+    private static String truncate(String s, int max) {
+        return s.length() <= max ? s : s.substring(0, max);
+    }
+
+    /**
+     * A run claimed by this instance; {@code attempts} after the claim is the fencing token of its lease.
+     */
+    private record Claimed(String runId, String flowId, String inputsJson, Long timeoutMs, String trace, int attempts) {}
+
+    public static class Stats {
+        public String instanceId;
+        public boolean workerEnabled;
+        public int workerConcurrency;
+        /** 本实例正在执行的运行数 */
+        public int executing;
+        /** 等待结果的长轮询请求数 */
+        public int waiting;
+        public long claimed;
+        public long completed;
+        /** 因本实例准入控制已满而放回队列的次数 */
+        public long released;
+        /** 执行完成时租约已被收回、结果被丢弃的次数 */
+        public long lostLeases;
+        public long expiredRequeued;
+        public long expiredFailed;
+        /** 队列表中各状态的行数 */
+        public Map<String, Long> rows;
+    }
+}
@@ -1,42 +1,86 @@
 package com.aiflow.server.service;
 
+import com.aiflow.server.config.EngineProperties;
 import com.aiflow.server.dto.FlowDtos.FlowGraph;
+import com.aiflow.server.dto.FlowDtos.FlowRunDetail;
+import com.aiflow.server.dto.FlowDtos.FlowRunPageResponse;
 import com.aiflow.server.dto.FlowDtos.FlowRunRequest;
 import com.aiflow.server.dto.FlowDtos.FlowRunResult;
 import com.aiflow.server.dto.FlowDtos.FlowSummary;
 import com.aiflow.server.dto.FlowDtos.FlowUpsertRequest;
 import com.aiflow.server.dto.FlowDtos.FlowWithGraphResponse;
 import com.aiflow.server.entity.FlowEntity;
+import com.aiflow.server.entity.NodeTypeEntity;
+import com.aiflow.server.exception.BadRequestException;
+import com.aiflow.server.exception.ConflictException;
 import com.aiflow.server.exception.NotFoundException;
+import com.aiflow.server.engine.Checkpointer;
+import com.aiflow.server.engine.Deadline;
 import com.aiflow.server.engine.Engine;
+import com.aiflow.server.engine.ExecutionPlan;
+import com.aiflow.server.engine.PlanCache;
+import com.aiflow.server.engine.RunCheckpoint;
+import com.aiflow.server.engine.RunListener;
+import com.aiflow.server.engine.RunOptions;
+import com.aiflow.server.engine.TraceLevel;
+import com.aiflow.server.engine.TraceOptions;
+import com.aiflow.server.liteflow.FlowChainRunner;
 import com.aiflow.server.mapper.FlowMapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.baomidou.mybatisplus.core.conditions.update.UpdateWrapper;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
 import java.time.ZoneId;
 import java.util.ArrayList;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.stream.Collectors;
 
+@Slf4j
 @Service
 @RequiredArgsConstructor
 public class FlowService {
 
+    /** 列表、改名等不需要流程图的查询 */
+    private static final String[] SUMMARY_COLUMNS =
+            {"id", "flow_id", "name", "description", "version", "created_at", "updated_at"};
+    /** 运行只需流程图的执行部分，不加载画布布局 */
+    private static final String[] EXECUTION_COLUMNS = {"id", "flow_id", "version", "graph_data", "graph_json"};
+    /** 核对缓存的执行计划是否过期只需版本号 */
+    private static final String[] VERSION_COLUMNS = {"version"};
+    /** 画布上仅用于展示的 LogicFlow 内置节点，运行时跳过 */
+    private static final Set<String> CANVAS_TYPES =
+            Set.of("rect", "circle", "ellipse", "diamond", "polygon", "text", "html");
+    /** 并发保存同一流程图时的重试次数 */
+    private static final int MAX_SAVE_ATTEMPTS = 3;
+
     private final FlowMapper flowMapper;
-    private final ObjectMapper objectMapper;
+    private final FlowGraphCodec graphCodec;
+    private final PlanCache planCache;
+    private final FlowRunHistoryService runHistoryService;
+    private final FlowAdmissionService admissionService;
+    private final FlowCheckpointService checkpointService;
+    private final EngineProperties engineProperties;
+    private final FlowChainRunner chainRunner;
+    private final NodeTypeService nodeTypeService;
     private Engine engine; // lazy set via setter for simplicity
 
     public void setEngine(Engine engine) { this.engine = engine; }
 
     public List<FlowSummary> list(String nameLike) {
         QueryWrapper<FlowEntity> wrapper = new QueryWrapper<>();
+        wrapper.select(SUMMARY_COLUMNS);
         if (nameLike != null && !nameLike.isBlank()) {
             wrapper.like("name", nameLike);
         }
@@ -53,7 +97,8 @@ public class FlowService {
         entity.setFlowId(IdService.newId());
         entity.setName(req.name);
         entity.setDescription(req.description);
-        entity.setGraphJson(serializeGraph(emptyGraph()));
+        entity.setGraphData(graphCodec.encode(emptyGraph()).graph());
+        entity.setVersion(0);
         
         flowMapper.insert(entity);
         return toSummary(entity);
@@ -65,7 +110,7 @@ public class FlowService {
     }
 
     public FlowSummary update(String id, FlowUpsertRequest req) {
-        FlowEntity entity = getEntityByFlowId(id);
+        FlowEntity entity = getEntityByFlowId(id, SUMMARY_COLUMNS);
         entity.setName(req.name);
         entity.setDescription(req.description);
         
@@ -74,42 +119,304 @@ public class FlowService {
     }
 
     public void delete(String id) {
-        FlowEntity entity = getEntityByFlowId(id);
+        FlowEntity entity = getEntityByFlowId(id, SUMMARY_COLUMNS);
         flowMapper.deleteById(entity.getId());
+        planCache.invalidate(entity.getFlowId());
+        chainRunner.remove(entity.getFlowId());
     }
 
     public FlowGraph getGraph(String id) {
         FlowEntity entity = getEntityByFlowId(id);
-        return deserializeGraph(entity.getGraphJson());
+        return readGraph(entity, true);
     }
 
     public FlowGraph saveGraph(String id, FlowGraph graph) {
-        FlowEntity entity = getEntityByFlowId(id);
         FlowGraph finalGraph = graph != null ? graph : emptyGraph();
-        entity.setGraphJson(serializeGraph(finalGraph));
-        
-        flowMapper.updateById(entity);
-        return finalGraph;
+        // 只校验结构，有环、连线指向不存在的节点或未知节点类型的流程图不会覆盖已保存的版本；
+        // 节点配置的错误在运行时使该节点失败，未配置完的流程图仍可保存
+        if (engine != null) {
+            validateGraph(finalGraph);
+        }
+        FlowGraphCodec.Encoded encoded = graphCodec.encode(finalGraph);
+        for (int attempt = 1; ; attempt++) {
+            FlowEntity entity = getEntityByFlowId(id, SUMMARY_COLUMNS);
+            int version = versionOf(entity) + 1;
+            ExecutionPlan plan = null;
+            if (engine != null) {
+                try {
+                    plan = engine.compile(entity.getFlowId(), version, finalGraph);
+                } catch (IllegalArgumentException e) {
+                    // 不缓存，首次运行时重新编译并报告错误
+                    log.warn("流程 {} v{} 编译失败: {}", entity.getFlowId(), version, e.getMessage());
+                }
+            }
+            FlowEntity update = new FlowEntity();
+            update.setGraphData(encoded.graph());
+            update.setVersion(version);
+            // 布局可能为空，旧格式的 JSON 一并清除，两列需显式写入；按读到的版本号更新，并发保存时只有一个成功
+            UpdateWrapper<FlowEntity> wrapper = new UpdateWrapper<FlowEntity>()
+                    .eq("id", entity.getId())
+                    .set("layout_data", encoded.layout())
+                    .set("graph_json", null);
+            if (entity.getVersion() != null) {
+                wrapper.eq("version", entity.getVersion());
+            } else {
+                wrapper.isNull("version");
+            }
+            if (flowMapper.update(update, wrapper) == 1) {
+                cachePlan(entity.getFlowId(), plan);
+                return finalGraph;
+            }
+            if (attempt >= MAX_SAVE_ATTEMPTS) {
+                throw new ConflictException("Flow graph " + id + " is being saved concurrently, please retry");
+            }
+        }
+    }
+
+    private void validateGraph(FlowGraph graph) {
+        Set<String> editorTypes = new HashSet<>(CANVAS_TYPES);
+        for (NodeTypeEntity t : nodeTypeService.listAllNodeTypes()) {
+            editorTypes.add(t.getTypeCode().trim().toLowerCase(Locale.ROOT));
+        }
+        try {
+            engine.validate(graph, type -> editorTypes.contains(type.trim().toLowerCase(Locale.ROOT)));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Invalid flow graph: " + e.getMessage());
+        }
+    }
+
+    private void cachePlan(String flowId, ExecutionPlan plan) {
+        if (plan == null) {
+            planCache.invalidate(flowId);
+            return;
+        }
+        // replace rather than just evict: a run that compiled the old version concurrently cannot put it back
+        planCache.put(plan);
+        if (isLiteFlowRuntime()) {
+            try {
+                chainRunner.register(plan);
+            } catch (RuntimeException e) {
+                // the graph is saved either way; the first run registers the chain again and reports the error
+                log.warn("流程 {} v{} 编译为 LiteFlow 链失败: {}", plan.getFlowId(), plan.getVersion(), e.getMessage());
+            }
+        }
     }
 
     public FlowRunResult run(String id, FlowRunRequest req) {
-        FlowEntity entity = getEntityByFlowId(id);
-        FlowGraph graph = deserializeGraph(entity.getGraphJson());
-        
         if (engine == null) {
-            FlowRunResult r = new FlowRunResult();
-            r.flowId = entity.getFlowId();
-            r.runId = "r_" + UUID.randomUUID();
-            r.outputs = Map.of();
-            r.trace = List.of();
-            return r;
+            return emptyRunResult(id);
+        }
+        try {
+            return runAsync(id, req).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause() != null ? e.getCause() : e;
+            if (cause instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    /**
+     * 异步运行流程，节点等待I/O时不占用调用线程
+     */
+    public CompletableFuture<FlowRunResult> runAsync(String id, FlowRunRequest req) {
+        return runAsync(id, req, RunListener.NOOP);
+    }
+
+    /**
+     * 异步运行流程，并把每个完成的节点和中间输出实时推送给监听器
+     */
+    public CompletableFuture<FlowRunResult> runAsync(String id, FlowRunRequest req, RunListener listener) {
+        if (engine == null) {
+            return CompletableFuture.completedFuture(emptyRunResult(id));
+        }
+        ExecutionPlan plan = getPlan(id);
+        // the clock starts now, so time spent waiting for admission counts against the run
+        Deadline deadline = runDeadline(plan, req != null ? req.timeoutMs : null);
+        TraceOptions trace = traceOptions(plan, req != null ? req.trace : null);
+        return runAsync(plan, req != null ? req.inputs : Map.of(), deadline, trace, listener);
+    }
+
+    /**
+     * 在已加载的执行计划上运行一次（批量运行的各条输入共用同一计划），经过准入控制并写入运行历史
+     */
+    public CompletableFuture<FlowRunResult> runAsync(ExecutionPlan plan, Map<String, Object> inputs, Deadline deadline,
+                                                     TraceOptions trace, RunListener listener) {
+        return runAsync(plan, null, inputs, deadline, trace, listener);
+    }
+
+    /**
+     * 同上，使用指定的 runId（运行队列提交时即已分配）；为空时生成新的 runId
+     */
+    public CompletableFuture<FlowRunResult> runAsync(ExecutionPlan plan, String requestedRunId, Map<String, Object> inputs,
+                                                     Deadline deadline, TraceOptions trace, RunListener listener) {
+        if (engine == null) {
+            return CompletableFuture.completedFuture(emptyRunResult(plan.getFlowId()));
+        }
+        String runId = requestedRunId != null ? requestedRunId : newRunId();
+        // queued runs wait here without holding a thread; rejection fails the future with TooManyRunsException
+        return admissionService.acquire(plan.getFlowId()).thenCompose(permit -> {
+            long startedAt = System.currentTimeMillis();
+            CompletableFuture<FlowRunResult> run;
+            try {
+                if (isLiteFlowRuntime()) {
+                    // chain runs keep no checkpoints, so they cannot be resumed
+                    run = chainRunner.runAsync(plan, inputs, runOptions(listener, Checkpointer.NONE, deadline)
+                            .withTrace(trace)
+                            .withRunId(runId));
+                } else {
+                    Checkpointer checkpointer = checkpointService.begin(plan, runId, inputs);
+                    run = engine.runAsync(plan, inputs, runOptions(listener, checkpointer, deadline)
+                            .withTrace(trace)
+                            .withRunId(runId));
+                }
+            } catch (RuntimeException e) {
+                permit.release();
+                throw e;
+            }
+            return run.whenComplete((result, err) -> {
+                permit.release();
+                runHistoryService.record(runId, plan.getFlowId(), inputs, result,
+                        err instanceof CompletionException && err.getCause() != null ? err.getCause() : err,
+                        startedAt);
+            });
+        });
+    }
+
+    /**
+     * 从检查点续跑一次失败或因重启中断的运行，沿用原 runId；已完成的节点不再执行
+     *
+     * @throws NotFoundException 该运行没有检查点（已成功、已过期或流程过短未写检查点）
+     * @throws ConflictException 流程图在运行开始后已修改，或该运行仍在执行
+     */
+    public CompletableFuture<FlowRunResult> resume(String id, String runId, RunListener listener) {
+        if (engine == null) {
+            return CompletableFuture.completedFuture(emptyRunResult(id));
+        }
+        ExecutionPlan plan = getPlan(id);
+        FlowCheckpointService.Loaded loaded = checkpointService.load(plan.getFlowId(), runId);
+        RunCheckpoint checkpoint = loaded.checkpoint();
+        if (checkpoint.version != plan.getVersion()) {
+            throw new ConflictException("Flow graph changed since run " + runId + " started (version "
+                    + checkpoint.version + ", now " + plan.getVersion() + ")");
+        }
+        Deadline deadline = runDeadline(plan, null);
+        return admissionService.acquire(plan.getFlowId()).thenCompose(permit -> {
+            long startedAt = System.currentTimeMillis();
+            CompletableFuture<FlowRunResult> run;
+            try {
+                Checkpointer checkpointer = checkpointService.resume(checkpoint, loaded.nextSeq());
+                run = engine.resume(plan, checkpoint, runOptions(listener, checkpointer, deadline)
+                        .withTrace(traceOptions(plan, null)));
+            } catch (RuntimeException e) {
+                permit.release();
+                throw e;
+            }
+            return run.whenComplete((result, err) -> {
+                permit.release();
+                runHistoryService.record(runId, plan.getFlowId(), checkpoint.inputs, result,
+                        err instanceof CompletionException && err.getCause() != null ? err.getCause() : err,
+                        startedAt, true);
+            });
+        });
+    }
+
+    private boolean isLiteFlowRuntime() {
+        return engineProperties.getRuntime() == EngineProperties.RuntimeType.LITEFLOW;
+    }
+
+    private RunOptions runOptions(RunListener listener, Checkpointer checkpointer, Deadline deadline) {
+        return RunOptions.DEFAULT
+                .withParallelism(engine.getMaxParallelism())
+                .withListener(listener)
+                .withCheckpointer(checkpointer)
+                .withDeadline(deadline);
+    }
+
+    /**
+     * 运行时限：请求参数 timeoutMs 优先，其次开始节点的 runTimeout，最后是全局默认值；均不超过 maxRunTimeoutMs。
+     * 时限从调用时开始计算
+     */
+    public Deadline runDeadline(ExecutionPlan plan, Long requested) {
+        long timeoutMs;
+        if (requested != null && requested > 0) {
+            timeoutMs = requested;
+        } else if (plan.getRunTimeoutMillis() > 0) {
+            timeoutMs = plan.getRunTimeoutMillis();
+        } else {
+            timeoutMs = engineProperties.getRunTimeoutMs();
         }
-        Map<String, Object> inputs = req != null ? req.inputs : Map.of();
-        return engine.run(entity.getFlowId(), graph, inputs);
+        long max = engineProperties.getMaxRunTimeoutMs();
+        if (max > 0 && (timeoutMs <= 0 || timeoutMs > max)) timeoutMs = max;
+        return timeoutMs > 0 ? Deadline.afterMillis(timeoutMs) : Deadline.NONE;
+    }
+
+    /**
+     * 轨迹设置：请求参数 trace 优先，其次开始节点的 trace 属性，最后是全局默认值；
+     * sampled 的比例取开始节点的 traceSamplePercent 或全局默认值，每次运行开始时决定
+     *
+     * @throws IllegalArgumentException 轨迹级别无法识别
+     */
+    public TraceOptions traceOptions(ExecutionPlan plan, String requested) {
+        TraceLevel level = TraceLevel.of(requested);
+        if (level == null) level = plan.getTraceLevel();
+        if (level == null) level = engineProperties.getTraceLevel();
+        double samplePercent = plan.getTraceSamplePercent() >= 0
+                ? plan.getTraceSamplePercent() : engineProperties.getTraceSamplePercent();
+        return new TraceOptions(level, samplePercent, engineProperties.getTraceMaxValueLength());
+    }
+
+    /**
+     * 分页查询流程运行历史
+     */
+    public FlowRunPageResponse listRuns(String id, int page, int size) {
+        FlowEntity entity = getEntityByFlowId(id);
+        return runHistoryService.page(entity.getFlowId(), Math.max(1, page), Math.min(Math.max(1, size), 100));
+    }
+
+    /**
+     * 查询单次运行详情
+     */
+    public FlowRunDetail getRun(String id, String runId) {
+        return runHistoryService.get(id, runId);
+    }
+
+    private FlowRunResult emptyRunResult(String id) {
+        FlowEntity entity = getEntityByFlowId(id);
+        FlowRunResult r = new FlowRunResult();
+        r.flowId = entity.getFlowId();
+        r.runId = newRunId();
+        r.outputs = Map.of();
+        r.trace = List.of();
+        return r;
+    }
+
+    /**
+     * 获取流程的执行计划，缓存未命中时才加载并编译流程图；其他实例也会保存流程图，
+     * 缓存的计划到期后先查询版本号核对，版本不一致按未命中处理
+     */
+    public ExecutionPlan getPlan(String id) {
+        ExecutionPlan plan = planCache.get(id, () -> versionOf(getEntityByFlowId(id, VERSION_COLUMNS)));
+        if (plan != null) {
+            return plan;
+        }
+        FlowEntity entity = getEntityByFlowId(id, EXECUTION_COLUMNS);
+        plan = engine.compile(entity.getFlowId(), versionOf(entity), readGraph(entity, false));
+        planCache.put(plan);
+        return plan;
     }
     
     private FlowEntity getEntityByFlowId(String flowId) {
+        return getEntityByFlowId(flowId, null);
+    }
+
+    /**
+     * @param columns 只查询这些列，为空时查询全部
+     */
+    private FlowEntity getEntityByFlowId(String flowId, String[] columns) {
         QueryWrapper<FlowEntity> wrapper = new QueryWrapper<>();
+        if (columns != null) {
+            wrapper.select(columns);
+        }
         wrapper.eq("flow_id", flowId);
         FlowEntity entity = flowMapper.selectOne(wrapper);
         if (entity == null) {
@@ -118,6 +425,14 @@ public class FlowService {
         return entity;
     }
 
+    public static String newRunId() {
+        return "r_" + UUID.randomUUID();
+    }
+
+    private static int versionOf(FlowEntity entity) {
+        return entity.getVersion() != null ? entity.getVersion() : 0;
+    }
+
     private FlowSummary toSummary(FlowEntity entity) {
         FlowSummary s = new FlowSummary();
         s.id = entity.getFlowId();
@@ -135,7 +450,7 @@ public class FlowService {
         response.description = entity.getDescription();
         response.createdAt = entity.getCreatedAt().atZone(ZoneId.systemDefault()).toInstant();
         response.updatedAt = entity.getUpdatedAt().atZone(ZoneId.systemDefault()).toInstant();
-        response.graph = deserializeGraph(entity.getGraphJson());
+        response.graph = readGraph(entity, true);
         return response;
     }
 
@@ -146,22 +461,17 @@ public class FlowService {
         return g;
     }
     
-    private String serializeGraph(FlowGraph graph) {
-        try {
-            return objectMapper.writeValueAsString(graph);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to serialize graph", e);
-        }
-    }
-    
-    private FlowGraph deserializeGraph(String graphJson) {
-        try {
-            if (graphJson == null || graphJson.isBlank()) {
-                return emptyGraph();
-            }
-            return objectMapper.readValue(graphJson, FlowGraph.class);
-        } catch (Exception e) {
-            throw new RuntimeException("Failed to deserialize graph", e);
+    /**
+     * 读取实体中的流程图：二进制格式优先，尚未转换的流程按旧的 graph_json 解析
+     *
+     * @param layout 是否解码画布布局；运行时不需要
+     */
+    private FlowGraph readGraph(FlowEntity entity, boolean layout) {
+        if (entity.getGraphData() != null) {
+            return layout ? graphCodec.decode(entity.getGraphData(), entity.getLayoutData())
+                    : graphCodec.decodeExecution(entity.getGraphData());
         }
+        String graphJson = entity.getGraphJson();
+        return graphJson == null || graphJson.isBlank() ? emptyGraph() : graphCodec.fromJson(graphJson);
     }
 } 
\ No newline at end of file
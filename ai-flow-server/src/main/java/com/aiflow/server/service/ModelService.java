@@ -1,5 +1,6 @@
 package com.aiflow.server.service;
 
+import com.aiflow.aimodel.model.AiModelConfig;
 import com.aiflow.server.dto.ModelDTO;
 import com.aiflow.server.dto.ModelQueryDTO;
 import com.aiflow.server.dto.ModelTestDTO;
@@ -80,6 +81,16 @@ public interface ModelService extends IService<Model> {
      */
     String generateTextWithAiModel(Long modelId, String prompt, Integer maxTokens, Double temperature);
 
+    /**
+     * 根据已保存的模型构建调用配置
+     *
+     * @param modelId 模型ID
+     * @param maxTokens 最大token数，可为空
+     * @param temperature 温度参数，可为空
+     * @return 模型调用配置
+     */
+    AiModelConfig getAiModelConfig(Long modelId, Integer maxTokens, Double temperature);
+
     /**
      * 验证AI模型配置
      *
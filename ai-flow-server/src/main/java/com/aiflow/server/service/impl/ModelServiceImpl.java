@@ -147,18 +147,23 @@ public class ModelServiceImpl extends ServiceImpl<ModelMapper, Model> implements
 
     @Override
     public String generateTextWithAiModel(Long modelId, String prompt, Integer maxTokens, Double temperature) {
+        AiModelConfig config = getAiModelConfig(modelId, maxTokens, temperature);
+        AiModelAdapter adapter = aiModelFactory.getAdapter(config.getType());
+        
+        log.info("使用适配器 {} 生成文本", adapter.getSupportedType());
+        return adapter.generateText(config, prompt);
+    }
+
+    @Override
+    public AiModelConfig getAiModelConfig(Long modelId, Integer maxTokens, Double temperature) {
         ModelDTO modelDTO = getModelById(modelId);
         if (modelDTO == null) {
             throw new RuntimeException("模型不存在，ID: " + modelId);
         }
         
-        // 根据模型类型获取对应的适配器
-        String modelType = determineModelType(modelDTO.getApiEndpoint());
-        AiModelType aiModelType = AiModelType.fromCode(modelType);
-        AiModelAdapter adapter = aiModelFactory.getAdapter(aiModelType);
-        
-        // 创建 AiModelConfig 对象
-        AiModelConfig config = AiModelConfig.builder()
+        // 根据API地址确定模型类型
+        AiModelType aiModelType = AiModelType.fromCode(determineModelType(modelDTO.getApiEndpoint()));
+        return AiModelConfig.builder()
                 .type(aiModelType)
                 .apiEndpoint(modelDTO.getApiEndpoint())
                 .apiKey(modelDTO.getApiKey())
@@ -166,9 +171,6 @@ public class ModelServiceImpl extends ServiceImpl<ModelMapper, Model> implements
                 .maxTokens(maxTokens)
                 .temperature(temperature)
                 .build();
-        
-        log.info("使用适配器 {} 生成文本", adapter.getSupportedType());
-        return adapter.generateText(config, prompt);
     }
 
     @Override
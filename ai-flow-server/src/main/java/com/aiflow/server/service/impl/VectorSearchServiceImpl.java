@@ -2,6 +2,8 @@ package com.aiflow.server.service.impl;
 
 import com.aiflow.server.dto.VectorSearchDtos.*;
 import com.aiflow.server.service.VectorSearchService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
@@ -9,12 +11,25 @@ import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @Service
 public class VectorSearchServiceImpl implements VectorSearchService {
 
     private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+
+    private final Timer searchTimer;
+    private final Timer searchErrorTimer;
+    private final Timer embedTimer;
+    private final Timer embedErrorTimer;
+
+    public VectorSearchServiceImpl(MeterRegistry meterRegistry) {
+        this.searchTimer = timer(meterRegistry, "vector.search", "Vector similarity search latency", "success");
+        this.searchErrorTimer = timer(meterRegistry, "vector.search", "Vector similarity search latency", "error");
+        this.embedTimer = timer(meterRegistry, "vector.embed", "Document embedding latency", "success");
+        this.embedErrorTimer = timer(meterRegistry, "vector.embed", "Document embedding latency", "error");
+    }
     
     // 模拟向量模型配置
     private final Map<String, String> vectorModelConfigs = Map.of(
@@ -25,6 +40,7 @@ public class VectorSearchServiceImpl implements VectorSearchService {
 
     @Override
     public VectorEmbeddingResponse embedDocument(String content, String vectorModel) {
+        long startedAt = System.nanoTime();
         try {
             log.info("开始向量化文档，模型: {}, 内容长度: {}", vectorModel, content.length());
             
@@ -40,9 +56,11 @@ public class VectorSearchServiceImpl implements VectorSearchService {
             response.setCost(0L); // 模拟成本
             
             log.info("文档向量化完成，向量维度: {}", embedding.size());
+            embedTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
             return response;
             
         } catch (Exception e) {
+            embedErrorTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
             log.error("文档向量化失败", e);
             throw new RuntimeException("文档向量化失败: " + e.getMessage());
         }
@@ -50,6 +68,7 @@ public class VectorSearchServiceImpl implements VectorSearchService {
 
     @Override
     public VectorSearchResponse searchSimilar(String query, String kbId, int topK, double scoreThreshold) {
+        long startedAt = System.nanoTime();
         try {
             log.info("开始向量相似度搜索，查询: {}, 知识库: {}, topK: {}, 阈值: {}", 
                     query, kbId, topK, scoreThreshold);
@@ -67,9 +86,11 @@ public class VectorSearchServiceImpl implements VectorSearchService {
             response.setSearchTime(System.currentTimeMillis());
             
             log.info("向量搜索完成，找到 {} 个结果", results.size());
+            searchTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
             return response;
             
         } catch (Exception e) {
+            searchErrorTimer.record(System.nanoTime() - startedAt, TimeUnit.NANOSECONDS);
             log.error("向量搜索失败", e);
             throw new RuntimeException("向量搜索失败: " + e.getMessage());
         }
@@ -164,6 +185,14 @@ public class VectorSearchServiceImpl implements VectorSearchService {
     }
 
     // 私有辅助方法
+
+    private static Timer timer(MeterRegistry registry, String name, String description, String outcome) {
+        return Timer.builder(name)
+                .description(description)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
     
     private List<Double> generateMockEmbedding(String content, String vectorModel) {
         // 生成模拟的向量数据
@@ -10,7 +10,10 @@ CREATE TABLE IF NOT EXISTS t_flow (
     flow_id VARCHAR(255) NOT NULL UNIQUE COMMENT '流程ID',
     name VARCHAR(255) NOT NULL COMMENT '流程名称',
     description TEXT COMMENT '流程描述',
-    graph_json LONGTEXT COMMENT '流程图JSON',
+    graph_json LONGTEXT COMMENT '流程图JSON（旧格式，转换为 graph_data 后置空）',
+    graph_data LONGBLOB COMMENT '流程图执行部分（Smile）',
+    layout_data LONGBLOB COMMENT '流程图画布布局（Smile）',
+    version INT DEFAULT 0 COMMENT '流程图版本，每次保存递增',
     created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     updated_at DATETIME DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
     deleted TINYINT DEFAULT 0 COMMENT '逻辑删除标记',
@@ -18,6 +21,81 @@ CREATE TABLE IF NOT EXISTS t_flow (
     INDEX idx_deleted (deleted)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='流程表';
 
+-- 流程运行记录表
+CREATE TABLE IF NOT EXISTS t_flow_run (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    run_id VARCHAR(64) NOT NULL UNIQUE COMMENT '运行ID',
+    flow_id VARCHAR(255) NOT NULL COMMENT '流程ID',
+    status VARCHAR(20) NOT NULL COMMENT '状态：success-成功，failed-失败，timeout-超时',
+    inputs_json LONGTEXT COMMENT '运行输入JSON',
+    outputs_json LONGTEXT COMMENT '运行输出JSON',
+    error_message TEXT COMMENT '错误信息',
+    step_count INT DEFAULT 0 COMMENT '执行节点数',
+    started_at DATETIME(3) COMMENT '开始时间',
+    finished_at DATETIME(3) COMMENT '结束时间',
+    duration_ms BIGINT COMMENT '耗时（毫秒）',
+    created_at DATETIME DEFAULT CURRENT_TIMESTAMP COMMENT '写入时间',
+    INDEX idx_flow_started (flow_id, started_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='流程运行记录表';
+
+-- 流程运行节点轨迹表
+CREATE TABLE IF NOT EXISTS t_flow_run_step (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    run_id VARCHAR(64) NOT NULL COMMENT '运行ID',
+    seq INT NOT NULL COMMENT '节点执行顺序',
+    node_id VARCHAR(255) COMMENT '节点ID',
+    node_type VARCHAR(100) COMMENT '节点类型',
+    trace_json LONGTEXT COMMENT '节点轨迹JSON',
+    INDEX idx_run_seq (run_id, seq)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='流程运行节点轨迹表';
+
+-- 运行检查点表（未完成的运行，成功后删除）
+CREATE TABLE IF NOT EXISTS t_flow_checkpoint (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    run_id VARCHAR(64) NOT NULL UNIQUE COMMENT '运行ID',
+    flow_id VARCHAR(255) NOT NULL COMMENT '流程ID',
+    flow_version INT NOT NULL COMMENT '运行开始时的流程图版本',
+    status VARCHAR(20) NOT NULL COMMENT '状态：running-运行中，failed-失败',
+    inputs_data LONGBLOB COMMENT '运行输入（gzip JSON）',
+    error_message TEXT COMMENT '错误信息',
+    created_at DATETIME(3) COMMENT '创建时间',
+    updated_at DATETIME(3) COMMENT '更新时间',
+    INDEX idx_flow_id (flow_id),
+    INDEX idx_updated (updated_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='运行检查点表';
+
+-- 运行检查点节点表（每次保存追加一行）
+CREATE TABLE IF NOT EXISTS t_flow_checkpoint_node (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    run_id VARCHAR(64) NOT NULL COMMENT '运行ID',
+    seq INT NOT NULL COMMENT '保存序号',
+    node_count INT NOT NULL COMMENT '本次保存的节点数',
+    data LONGBLOB NOT NULL COMMENT '已完成节点的写入与分支（gzip JSON）',
+    INDEX idx_run_seq (run_id, seq)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='运行检查点节点表';
+
+-- 分布式运行队列表
+CREATE TABLE IF NOT EXISTS t_run_queue (
+    id BIGINT AUTO_INCREMENT PRIMARY KEY,
+    run_id VARCHAR(64) NOT NULL UNIQUE COMMENT '运行ID',
+    flow_id VARCHAR(255) NOT NULL COMMENT '流程ID',
+    status VARCHAR(20) NOT NULL COMMENT '状态：queued-排队，running-执行中，success-成功，failed-失败，timeout-超时',
+    inputs_json LONGTEXT COMMENT '运行输入JSON',
+    timeout_ms BIGINT COMMENT '运行时限（毫秒），为空取流程默认值',
+    trace VARCHAR(20) COMMENT '轨迹级别，为空取流程默认值',
+    attempts INT NOT NULL DEFAULT 0 COMMENT '已认领次数，同时作为租约的校验值',
+    owner VARCHAR(128) COMMENT '持有租约的实例ID',
+    lease_until DATETIME(3) COMMENT '租约到期时间',
+    result_json LONGTEXT COMMENT '运行结果JSON',
+    error_message TEXT COMMENT '错误信息',
+    created_at DATETIME(3) NOT NULL COMMENT '提交时间',
+    started_at DATETIME(3) COMMENT '最近一次认领时间',
+    finished_at DATETIME(3) COMMENT '结束时间',
+    INDEX idx_status_id (status, id),
+    INDEX idx_status_lease (status, lease_until),
+    INDEX idx_finished (finished_at)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='分布式运行队列表';
+
 -- 应用表
 CREATE TABLE IF NOT EXISTS t_app (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -92,6 +170,7 @@ INSERT INTO t_node_type (type_code, type_name, description, icon, category, enab
 ('java_enhance', 'Java增强', 'Java代码增强节点', 'coffee', 'logic', TRUE),
 ('http_request', 'HTTP请求', 'HTTP接口请求节点', 'link', 'integration', TRUE),
 ('subprocess', '子流程', '调用子流程节点', 'sitemap', 'control', TRUE),
+('map', '并行映射', '对列表中每个元素并行执行子流程并按序汇总', 'apartment', 'control', TRUE),
 ('direct_reply', '直接回复', '直接输出回复节点', 'message', 'output', TRUE)
 ON DUPLICATE KEY UPDATE type_name=VALUES(type_name), description=VALUES(description);
 
@@ -106,4 +185,30 @@ ON DUPLICATE KEY UPDATE model_name=VALUES(model_name), description=VALUES(descri
 USE ai_flow;
 
 -- Modify config_json column from TEXT to LONGTEXT to accommodate larger JSON data
-ALTER TABLE t_app MODIFY COLUMN config_json LONGTEXT COMMENT '应用配置JSON'; 
\ No newline at end of file
+ALTER TABLE t_app MODIFY COLUMN config_json LONGTEXT COMMENT '应用配置JSON';
+
+-- 以下迁移只为旧库补列，新建的表已包含这些列；先查 information_schema，脚本可重复执行
+
+-- Migration: graph version used to key compiled execution plans
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.COLUMNS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 't_flow' AND COLUMN_NAME = 'version') = 0,
+    'ALTER TABLE t_flow ADD COLUMN version INT DEFAULT 0 COMMENT ''流程图版本，每次保存递增'' AFTER graph_json', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+-- Migration: binary graph storage, execution data and canvas layout in separate columns
+-- existing graph_json rows are converted by the server on startup (ai-flow.flow-storage.migrate-on-startup)
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.COLUMNS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 't_flow' AND COLUMN_NAME = 'graph_data') = 0,
+    'ALTER TABLE t_flow ADD COLUMN graph_data LONGBLOB COMMENT ''流程图执行部分（Smile）'' AFTER graph_json', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
+
+SET @ddl = IF((SELECT COUNT(*) FROM information_schema.COLUMNS
+                WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 't_flow' AND COLUMN_NAME = 'layout_data') = 0,
+    'ALTER TABLE t_flow ADD COLUMN layout_data LONGBLOB COMMENT ''流程图画布布局（Smile）'' AFTER graph_data', 'DO 0');
+PREPARE stmt FROM @ddl;
+EXECUTE stmt;
+DEALLOCATE PREPARE stmt;
@@ -9,6 +9,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
@@ -74,11 +75,14 @@ public class ApiIntegrationTest {
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.nodes").isArray());
 
-        // Flows: run
+        // Flows: run (completes asynchronously)
         String runReq = "{\"inputs\":{\"question\":\"你好\"}}";
-        mockMvc.perform(post("/api/flows/" + flowId + "/run")
+        MvcResult runResult = mockMvc.perform(post("/api/flows/" + flowId + "/run")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(runReq))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mockMvc.perform(asyncDispatch(runResult))
                 .andExpect(status().isOk())
                 .andExpect(jsonPath("$.flowId").value(flowId))
                 .andExpect(jsonPath("$.trace").isArray());
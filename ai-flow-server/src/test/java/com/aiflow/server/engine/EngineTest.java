@@ -0,0 +1,318 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class EngineTest {
+
+    private final StepExecutor steps = new StepExecutor();
+    private final NodeResultCache nodeCache = new NodeResultCache(16);
+    private final Engine engine = new Engine(new NodeExecutorRegistry(List.of(steps, new ConditionNodeExecutor())),
+            Executors.newFixedThreadPool(4), 4, nodeCache);
+
+    @AfterEach
+    void shutdown() {
+        engine.shutdown();
+    }
+
+    /**
+     * "step" nodes: record their execution, optionally wait (on a shared barrier or for {@code sleepMs}),
+     * then write {@code value}, or the variable named by {@code read}, into {@code write}.
+     */
+    private static final class StepExecutor implements NodeExecutor {
+        final List<String> executed = new CopyOnWriteArrayList<>();
+        final Map<String, CyclicBarrier> barriers = new ConcurrentHashMap<>();
+        final Set<String> failOnce = ConcurrentHashMap.newKeySet();
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger peak = new AtomicInteger();
+
+        @Override
+        public String getType() {
+            return "step";
+        }
+
+        @Override
+        public StepResult execute(GraphNode node, ExecutionContext context) {
+            executed.add(node.id);
+            peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Map<String, Object> props = node.properties;
+                if (props.get("barrier") != null) {
+                    barriers.get(String.valueOf(props.get("barrier"))).await(5, TimeUnit.SECONDS);
+                }
+                long sleepUntil = System.nanoTime()
+                        + TimeUnit.MILLISECONDS.toNanos(((Number) props.getOrDefault("sleepMs", 0)).longValue());
+                while (System.nanoTime() < sleepUntil) {
+                    context.checkCancelled();
+                    Thread.sleep(5);
+                }
+                if (failOnce.remove(node.id)) throw new IllegalStateException(node.id + " failed");
+
+                StepResult r = new StepResult();
+                r.nodeId = node.id;
+                r.type = node.type;
+                r.outputs = new HashMap<>();
+                if (props.get("write") != null) {
+                    Object value = props.get("read") != null
+                            ? context.getVar(String.valueOf(props.get("read"))) : props.get("value");
+                    context.setVar(String.valueOf(props.get("write")), value);
+                    r.outputs.put(String.valueOf(props.get("write")), value);
+                }
+                r.trace = new HashMap<>();
+                return r;
+            } catch (Exception e) {
+                throw e instanceof RuntimeException re ? re : new IllegalStateException(e);
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    private static Map<String, Object> write(String var, Object value) {
+        return Map.of("write", var, "value", value);
+    }
+
+    private static Map<String, Object> copy(String from, String to) {
+        return Map.of("read", from, "write", to);
+    }
+
+    private static List<Object> nodeIds(FlowRunResult result, String flag) {
+        List<Object> ids = new ArrayList<>();
+        for (Map<String, Object> entry : result.trace) {
+            if (Boolean.TRUE.equals(entry.get(flag))) ids.add(entry.get("nodeId"));
+        }
+        return ids;
+    }
+
+    private ExecutionPlan diamond() {
+        return engine.compile("diamond", 1, TestGraphs.graph()
+                .node("a", "step", Map.of())
+                .node("b", "step", Map.of("barrier", "bc"))
+                .node("c", "step", Map.of("barrier", "bc"))
+                .node("d", "step", Map.of())
+                .chain("a", "b", "d").chain("a", "c", "d")
+                .build());
+    }
+
+    @Test
+    void testRunsIndependentNodesInParallelAfterTheirPredecessors() {
+        steps.barriers.put("bc", new CyclicBarrier(2));
+
+        engine.run(diamond(), Map.of());
+
+        // b and c only pass the barrier when they run at the same time
+        assertThat(steps.executed).hasSize(4);
+        assertThat(steps.executed.get(0)).isEqualTo("a");
+        assertThat(steps.executed.subList(1, 3)).containsExactlyInAnyOrder("b", "c");
+        assertThat(steps.executed.get(3)).isEqualTo("d");
+        assertThat(steps.peak).hasValue(2);
+    }
+
+    @Test
+    void testParallelismLimitsNodesInFlight() {
+        ExecutionPlan plan = engine.compile("fan", 1, TestGraphs.graph()
+                .node("a", "step", Map.of())
+                .node("b", "step", Map.of("sleepMs", 50))
+                .node("c", "step", Map.of("sleepMs", 50))
+                .node("d", "step", Map.of("sleepMs", 50))
+                .chain("a", "b").chain("a", "c").chain("a", "d")
+                .build());
+
+        engine.run(plan, Map.of(), 1);
+
+        assertThat(steps.executed).hasSize(4);
+        assertThat(steps.peak).hasValue(1);
+    }
+
+    @Test
+    void testSkipsNodesReachableOnlyThroughUntakenBranches() {
+        ExecutionPlan plan = engine.compile("route", 1, TestGraphs.graph()
+                .node("route", "condition", Map.of("branches", List.of(
+                        Map.of("label", "high", "expression", "score > 80"),
+                        Map.of("label", "low", "expression", "score <= 80"))))
+                .node("high", "step", write("answer", "high"))
+                .node("low", "step", write("answer", "low"))
+                .node("lowFollowUp", "step", Map.of())
+                .node("end", "step", Map.of())
+                .edge("route", "high", "high").edge("route", "low", "low")
+                .chain("low", "lowFollowUp", "end").chain("high", "end")
+                .build());
+
+        FlowRunResult result = engine.run(plan, Map.of("score", 90));
+
+        assertThat(result.outputs).containsEntry("answer", "high");
+        assertThat(steps.executed).containsExactly("high", "end");
+        assertThat(nodeIds(result, "skipped")).containsExactly("low", "lowFollowUp");
+    }
+
+    @Test
+    void testFailsConditionWithInvalidExpressionWhenItRuns() {
+        // compiles like a saved, unfinished flow; the condition fails only once the run reaches it
+        ExecutionPlan plan = engine.compile("route", 1, TestGraphs.graph()
+                .node("before", "step", Map.of())
+                .node("route", "condition", Map.of("branches", List.of(
+                        Map.of("label", "high", "expression", "score >"))))
+                .chain("before", "route")
+                .build());
+
+        assertThatThrownBy(() -> engine.run(plan, Map.of("score", 90)))
+                .hasMessageContaining("Condition node route: invalid expression 'score >'");
+        assertThat(steps.executed).containsExactly("before");
+    }
+
+    @Test
+    void testMergesBranchScopesAtJoin() {
+        ExecutionPlan plan = engine.compile("merge", 1, TestGraphs.graph()
+                .node("a", "step", write("x", 1))
+                .node("b", "step", write("x", 2))
+                .node("c", "step", copy("x", "seenByC"))
+                .node("d", "step", copy("x", "seenByD"))
+                .chain("a", "b", "d").chain("a", "c", "d")
+                .build());
+
+        FlowRunResult result = engine.run(plan, Map.of());
+
+        // c does not see its sibling's write, and inheriting x = 1 does not undo b's overwrite at the join
+        assertThat(result.outputs).containsEntry("seenByC", 1).containsEntry("seenByD", 2).containsEntry("x", 2);
+    }
+
+    @Test
+    void testReplaysMemoizedNodeWhileItsInputsAreUnchanged() {
+        ExecutionPlan plan = engine.compile("memo", 1, TestGraphs.graph()
+                .node("m", "step", Map.of("read", "q", "write", "answer", "cache", true))
+                .build());
+
+        FlowRunResult first = engine.run(plan, Map.of("q", "a", "unrelated", 1));
+        FlowRunResult second = engine.run(plan, Map.of("q", "a", "unrelated", 2));
+        FlowRunResult third = engine.run(plan, Map.of("q", "b"));
+
+        assertThat(steps.executed).containsExactly("m", "m");
+        assertThat(nodeIds(first, "cached")).isEmpty();
+        assertThat(nodeIds(second, "cached")).containsExactly("m");
+        assertThat(second.outputs).containsEntry("answer", "a");
+        assertThat(third.outputs).containsEntry("answer", "b");
+        assertThat(nodeCache.stats().hits).isEqualTo(1);
+    }
+
+    @Test
+    void testFailsNodePastItsTimeout() {
+        ExecutionPlan plan = engine.compile("slow", 1, TestGraphs.graph()
+                .node("slow", "step", Map.of("sleepMs", 5_000, "timeout", "100ms"))
+                .node("next", "step", Map.of())
+                .chain("slow", "next")
+                .build());
+
+        long started = System.nanoTime();
+        assertThatThrownBy(() -> engine.run(plan, Map.of()))
+                .isInstanceOf(DeadlineExceededException.class)
+                .hasMessage("Node slow timed out after 100 ms");
+        assertThat(System.nanoTime() - started).isLessThan(TimeUnit.SECONDS.toNanos(2));
+        assertThat(steps.executed).containsExactly("slow");
+    }
+
+    @Test
+    void testContinuesPastTimedOutNodeWhenAllowed() {
+        ExecutionPlan plan = engine.compile("slow", 1, TestGraphs.graph()
+                .node("slow", "step", Map.of("sleepMs", 5_000, "timeout", 100, "onTimeout", "continue",
+                        "write", "late", "value", true))
+                .node("next", "step", write("done", true))
+                .chain("slow", "next")
+                .build());
+
+        FlowRunResult result = engine.run(plan, Map.of());
+
+        assertThat(result.outputs).containsEntry("done", true).doesNotContainKey("late");
+        assertThat(nodeIds(result, "timedOut")).containsExactly("slow");
+    }
+
+    @Test
+    void testFailsRunPastItsDeadline() {
+        ExecutionPlan plan = engine.compile("chain", 1, TestGraphs.graph()
+                .node("a", "step", Map.of("sleepMs", 100))
+                .node("b", "step", Map.of("sleepMs", 5_000, "timeout", "10s"))
+                .node("c", "step", Map.of())
+                .chain("a", "b", "c")
+                .build());
+
+        RunOptions options = RunOptions.DEFAULT.withDeadline(Deadline.afterMillis(300));
+        assertThatThrownBy(() -> engine.runAsync(plan, Map.of(), options).join())
+                .isInstanceOf(CompletionException.class)
+                .cause()
+                .isInstanceOf(DeadlineExceededException.class)
+                .hasMessage("Run deadline exceeded while node b was running")
+                .matches(e -> ((DeadlineExceededException) e).isRunDeadline());
+        assertThat(steps.executed).containsExactly("a", "b");
+    }
+
+    @Test
+    void testResumesFromCheckpointWithoutRepeatingFinishedNodes() {
+        ExecutionPlan plan = engine.compile("resume", 3, TestGraphs.graph()
+                .node("a", "step", write("x", "from a"))
+                .node("b", "step", copy("x", "y"))
+                .node("c", "step", copy("y", "z"))
+                .chain("a", "b", "c")
+                .build());
+        List<RunCheckpoint.NodeState> saved = new CopyOnWriteArrayList<>();
+        Checkpointer checkpointer = new Checkpointer() {
+            @Override
+            public int interval() {
+                return 1;
+            }
+
+            @Override
+            public void save(String runId, List<RunCheckpoint.NodeState> nodes) {
+                saved.addAll(nodes);
+            }
+        };
+        steps.failOnce.add("b");
+
+        RunOptions options = RunOptions.DEFAULT.withRunId("r1").withCheckpointer(checkpointer);
+        assertThatThrownBy(() -> engine.runAsync(plan, Map.of("q", 1), options).join())
+                .hasRootCauseMessage("b failed");
+        assertThat(saved).extracting(n -> n.nodeId).containsExactly("a");
+
+        RunCheckpoint checkpoint = new RunCheckpoint();
+        checkpoint.runId = "r1";
+        checkpoint.flowId = "resume";
+        checkpoint.version = 3;
+        checkpoint.inputs = Map.of("q", 1);
+        checkpoint.nodes = saved;
+        FlowRunResult result = engine.resume(plan, checkpoint, RunOptions.DEFAULT).join();
+
+        assertThat(steps.executed).containsExactly("a", "b", "b", "c");
+        assertThat(result.runId).isEqualTo("r1");
+        assertThat(result.outputs).containsEntry("q", 1).containsEntry("z", "from a");
+        assertThat(nodeIds(result, "restored")).containsExactly("a");
+    }
+
+    @Test
+    void testRejectsCheckpointOfAnotherVersion() {
+        ExecutionPlan plan = engine.compile("resume", 2, TestGraphs.graph().node("a", "step", Map.of()).build());
+        RunCheckpoint checkpoint = new RunCheckpoint();
+        checkpoint.runId = "r1";
+        checkpoint.flowId = "resume";
+        checkpoint.version = 1;
+
+        assertThatThrownBy(() -> engine.resume(plan, checkpoint, RunOptions.DEFAULT))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("resume v1");
+    }
+}
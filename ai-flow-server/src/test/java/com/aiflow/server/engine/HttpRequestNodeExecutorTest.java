@@ -0,0 +1,196 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.config.HttpClientProperties;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class HttpRequestNodeExecutorTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ExecutorService serverThreads = Executors.newCachedThreadPool();
+    private final Map<String, AtomicInteger> hits = new HashMap<>();
+    private final List<String> ifNoneMatch = new CopyOnWriteArrayList<>();
+    private HttpServer server;
+    private String base;
+    private HttpRequestNodeExecutor executor;
+
+    @BeforeAll
+    void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(serverThreads);
+        server.createContext("/echo", ex -> {
+            byte[] request = ex.getRequestBody().readAllBytes();
+            Map<String, Object> echo = Map.of("path", ex.getRequestURI().getRawPath(),
+                    "body", objectMapper.readValue(request, Object.class));
+            respond(ex, 200, "application/json", objectMapper.writeValueAsBytes(echo), Map.of());
+        });
+        server.createContext("/chunked", ex -> {
+            ex.getResponseHeaders().set("Content-Type", "text/plain");
+            ex.sendResponseHeaders(200, 0);
+            try (OutputStream out = ex.getResponseBody()) {
+                for (int i = 0; i < 64; i++) out.write(new byte[1024]);
+            } catch (IOException ignored) {
+                // the client gave up reading
+            }
+        });
+        server.createContext("/large", ex -> respond(ex, 200, "text/plain", new byte[64 * 1024], Map.of()));
+        server.createContext("/slow", ex -> {
+            try {
+                Thread.sleep(3_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(ex, 200, "text/plain", "late".getBytes(StandardCharsets.UTF_8), Map.of());
+        });
+        server.createContext("/etag", ex -> {
+            count("/etag");
+            String validator = ex.getRequestHeaders().getFirst("If-None-Match");
+            if (validator != null) ifNoneMatch.add(validator);
+            if ("\"v1\"".equals(validator)) {
+                respond(ex, 304, null, null, Map.of("ETag", "\"v1\"", "Cache-Control", "no-cache"));
+            } else {
+                respond(ex, 200, "text/plain", "tagged".getBytes(StandardCharsets.UTF_8),
+                        Map.of("ETag", "\"v1\"", "Cache-Control", "no-cache"));
+            }
+        });
+        server.createContext("/fresh", ex -> {
+            int n = count("/fresh");
+            respond(ex, 200, "text/plain", ("fresh " + n).getBytes(StandardCharsets.UTF_8),
+                    Map.of("Cache-Control", "max-age=60"));
+        });
+        server.createContext("/nostore", ex -> {
+            int n = count("/nostore");
+            respond(ex, 200, "text/plain", ("nostore " + n).getBytes(StandardCharsets.UTF_8),
+                    Map.of("Cache-Control", "no-store, max-age=60"));
+        });
+        server.start();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+
+        HttpClientProperties properties = new HttpClientProperties();
+        properties.setMaxResponseBytes(16 * 1024);
+        executor = new HttpRequestNodeExecutor(HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build(),
+                properties, objectMapper);
+    }
+
+    @AfterAll
+    void stop() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+    }
+
+    private int count(String path) {
+        synchronized (hits) {
+            return hits.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet();
+        }
+    }
+
+    private static void respond(HttpExchange ex, int status, String contentType, byte[] body,
+                                Map<String, String> headers) throws IOException {
+        if (contentType != null) ex.getResponseHeaders().set("Content-Type", contentType);
+        headers.forEach(ex.getResponseHeaders()::set);
+        ex.sendResponseHeaders(status, body == null ? -1 : body.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            if (body != null) out.write(body);
+        }
+    }
+
+    private static GraphNode node(Map<String, Object> properties) {
+        GraphNode node = new GraphNode();
+        node.id = "http-1";
+        node.type = "http_request";
+        node.properties = properties;
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> call(Map<String, Object> properties, Map<String, Object> vars) {
+        NodeExecutor.StepResult r = executor.execute(node(properties), new NodeExecutor.ExecutionContext(new HashMap<>(vars)));
+        Map<String, Object> response = (Map<String, Object>) r.outputs.get("response");
+        Map<String, Object> result = new HashMap<>(response);
+        result.put("cache", r.trace.get("cache"));
+        return result;
+    }
+
+    private Object get(String path) {
+        return call(Map.of("url", base + path, "httpCache", true), Map.of()).get("body");
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void testEscapesJsonBodyAndEncodesUrl() {
+        String text = "say \"hi\"\n\\ ${not} {\"x\": 1}";
+        Map<String, Object> result = call(Map.of("method", "POST", "url", base + "/echo/${id}?q=${id}",
+                        "body", Map.of("q", "${text}", "items", List.of("${id}", 3))),
+                Map.of("id", "a b/c?d&e", "text", text));
+
+        Map<String, Object> echo = (Map<String, Object>) result.get("body");
+        assertThat(echo.get("path")).isEqualTo("/echo/a%20b%2Fc%3Fd%26e");
+        assertThat(echo.get("body")).isEqualTo(Map.of("q", text, "items", List.of("a b/c?d&e", 3)));
+    }
+
+    @Test
+    void testFailsWhenResponseExceedsLimit() {
+        assertThatThrownBy(() -> call(Map.of("url", base + "/chunked"), Map.of()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("exceeds 16384 bytes");
+        assertThatThrownBy(() -> call(Map.of("url", base + "/large"), Map.of()))
+                .hasMessageContaining("exceeds 16384 bytes");
+        assertThat(call(Map.of("url", base + "/large", "maxBytes", 65536), Map.of()).get("status")).isEqualTo(200);
+    }
+
+    @Test
+    void testTimesOut() {
+        long started = System.nanoTime();
+        assertThatThrownBy(() -> call(Map.of("url", base + "/slow", "requestTimeout", "200ms"), Map.of()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("timed out after 200 ms");
+        assertThat(System.nanoTime() - started).isLessThan(2_000_000_000L);
+    }
+
+    @Test
+    void testRevalidatesWithEtag() {
+        Map<String, Object> first = call(Map.of("url", base + "/etag", "httpCache", true), Map.of());
+        Map<String, Object> second = call(Map.of("url", base + "/etag", "httpCache", true), Map.of());
+
+        assertThat(first).containsEntry("cache", "miss").containsEntry("body", "tagged");
+        assertThat(second).containsEntry("cache", "revalidated").containsEntry("status", 200).containsEntry("body", "tagged");
+        assertThat(ifNoneMatch).containsExactly("\"v1\"");
+        assertThat(hits.get("/etag")).hasValue(2);
+    }
+
+    @Test
+    void testFollowsCacheControl() {
+        assertThat(get("/fresh")).isEqualTo("fresh 1");
+        assertThat(get("/fresh")).isEqualTo("fresh 1");
+        assertThat(hits.get("/fresh")).hasValue(1);
+
+        assertThat(get("/nostore")).isEqualTo("nostore 1");
+        assertThat(get("/nostore")).isEqualTo("nostore 2");
+
+        // only nodes that opt in use the cache
+        assertThat(call(Map.of("url", base + "/fresh"), Map.of()).get("body")).isEqualTo("fresh 2");
+    }
+}
@@ -0,0 +1,129 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.aimodel.model.AiModelConfig;
+import com.aiflow.aimodel.service.AiModelService;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import com.aiflow.server.service.ModelService;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class LlmNodeExecutorTest {
+
+    private final AiModelService aiModelService = mock(AiModelService.class);
+    private final ModelService modelService = mock(ModelService.class);
+    private final LlmNodeExecutor executor = new LlmNodeExecutor(aiModelService, modelService);
+
+    private static GraphNode node(Map<String, Object> properties) {
+        GraphNode node = new GraphNode();
+        node.id = "llm-1";
+        node.type = "llm";
+        node.properties = properties;
+        return node;
+    }
+
+    @Test
+    void testCallsTheModelWithinTheRemainingTime() {
+        AiModelConfig config = AiModelConfig.builder().build();
+        when(modelService.getAiModelConfig(7L, 256, 0.0)).thenReturn(config);
+        when(aiModelService.generateTextStream(eq(config), eq("Q: why?"), any(Duration.class)))
+                .thenReturn(Stream.of("be", "", "cause"));
+        Map<String, Object> vars = new HashMap<>(Map.of("q", "why?"));
+        List<String> tokens = new ArrayList<>();
+        RunListener listener = new RunListener() {
+            @Override
+            public void onToken(String nodeId, String token) {
+                tokens.add(token);
+            }
+        };
+
+        NodeExecutor.StepResult r = executor.execute(node(Map.of("modelId", 7, "maxTokens", 256, "temperature", 0.0,
+                        "input", "Q: ${q}", "output", "a")),
+                new NodeExecutor.ExecutionContext(vars, listener, null, List.of(), Deadline.afterMillis(5_000)));
+
+        ArgumentCaptor<Duration> budget = ArgumentCaptor.forClass(Duration.class);
+        verify(aiModelService).generateTextStream(eq(config), eq("Q: why?"), budget.capture());
+        assertThat(budget.getValue()).isPositive().isLessThanOrEqualTo(Duration.ofSeconds(5));
+        assertThat(vars).containsEntry("a", "because");
+        assertThat(r.outputs).containsEntry("a", "because");
+        assertThat(tokens).containsExactly("be", "cause");
+    }
+
+    @Test
+    void testTakesModelIdFromVariables() {
+        AiModelConfig config = AiModelConfig.builder().build();
+        when(modelService.getAiModelConfig(3L, null, null)).thenReturn(config);
+        when(aiModelService.generateTextStream(config, "hi", null)).thenReturn(Stream.of("hello"));
+        Map<String, Object> vars = new HashMap<>(Map.of("modelId", "3"));
+        executor.execute(node(Map.of("input", "hi")), new NodeExecutor.ExecutionContext(vars));
+        assertThat(vars).containsEntry("result", "hello");
+    }
+
+    @Test
+    void testAnswersWithTheSimulatedReplyWithoutAModelId() {
+        Map<String, Object> vars = new HashMap<>(Map.of("q", "why?"));
+
+        NodeExecutor.StepResult r = executor.execute(node(Map.of("model", "gpt-4o", "input", "Q: ${q}")),
+                new NodeExecutor.ExecutionContext(vars));
+
+        assertThat(r.outputs).containsEntry("result", "[gpt-4o] -> Q: why?");
+        assertThat(vars).containsEntry("result", "[gpt-4o] -> Q: why?");
+        verifyNoInteractions(aiModelService, modelService);
+    }
+
+    @Test
+    void testStopsReadingTheAnswerPastTheDeadline() {
+        AiModelConfig config = AiModelConfig.builder().build();
+        when(modelService.getAiModelConfig(7L, null, null)).thenReturn(config);
+        when(aiModelService.generateTextStream(eq(config), eq("hi"), any(Duration.class))).thenReturn(
+                Stream.generate(() -> {
+                    try {
+                        Thread.sleep(20);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return "x";
+                }));
+        List<String> tokens = new ArrayList<>();
+        RunListener listener = new RunListener() {
+            @Override
+            public void onToken(String nodeId, String token) {
+                tokens.add(token);
+            }
+        };
+
+        assertThatThrownBy(() -> executor.execute(node(Map.of("modelId", 7, "input", "hi")),
+                new NodeExecutor.ExecutionContext(new HashMap<>(), listener, null, List.of(), Deadline.afterMillis(200))))
+                .isInstanceOf(DeadlineExceededException.class);
+        assertThat(tokens).isNotEmpty().hasSizeLessThan(20);
+    }
+
+    @Test
+    void testDoesNotCallTheModelOnceCancelled() {
+        Deadline expired = Deadline.afterMillis(1);
+        try {
+            Thread.sleep(5);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        assertThatThrownBy(() -> executor.execute(node(Map.of("modelId", 1, "input", "hi")),
+                new NodeExecutor.ExecutionContext(new HashMap<>(), RunListener.NOOP, null, List.of(), expired)))
+                .isInstanceOf(DeadlineExceededException.class);
+        verifyNoInteractions(aiModelService);
+    }
+}
@@ -0,0 +1,46 @@
+package com.aiflow.server.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PromptTemplateTest {
+
+    private final PromptTemplate template = PromptTemplate.parse("Q: ${q}, user: ${user.name}, extra: ${extra}");
+
+    @Test
+    void testRendersVariablesGivenAsNullAsEmpty() {
+        Map<String, Object> user = new HashMap<>();
+        user.put("name", null);
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put("q", null);
+        inputs.put("user", user);
+
+        VariableScope root = VariableScope.of(inputs);
+        // a join snapshots its parents' variables, null inputs included
+        VariableScope joined = VariableScope.derive(List.of(VariableScope.derive(List.of(root), 0),
+                VariableScope.derive(List.of(root), 1)), 2);
+
+        for (Map<String, Object> vars : List.of(inputs, root, joined)) {
+            assertThat(template.render(vars, PromptTemplate.MissingPolicy.KEEP))
+                    .isEqualTo("Q: , user: , extra: ${extra}");
+        }
+        assertThat(joined.containsKey("q")).isTrue();
+        assertThat(joined.get("q")).isNull();
+    }
+
+    @Test
+    void testRemovedVariableIsMissing() {
+        Map<String, Object> inputs = new HashMap<>();
+        inputs.put("q", "why?");
+        VariableScope scope = VariableScope.derive(List.of(VariableScope.of(inputs)), 0);
+        scope.remove("q");
+
+        assertThat(PromptTemplate.parse("Q: ${q}").render(scope, PromptTemplate.MissingPolicy.KEEP))
+                .isEqualTo("Q: ${q}");
+    }
+}
@@ -0,0 +1,130 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.config.EngineProperties;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+public class ScriptSandboxTest {
+
+    private static final ScriptSandbox.Limits NO_LIMITS = new ScriptSandbox.Limits(0, 0);
+
+    private final ScriptSandbox sandbox = new ScriptSandbox(2, 16);
+
+    @AfterAll
+    void shutdown() {
+        sandbox.shutdown();
+    }
+
+    private ScriptSandbox.Outcome run(String source, Map<String, Object> globals, ScriptSandbox.Limits limits,
+                                      AtomicBoolean cancelled) throws Exception {
+        try {
+            return sandbox.run(ScriptSandbox.hash(source), source, globals, limits, cancelled::get).get(10, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            throw (Exception) e.getCause();
+        }
+    }
+
+    private Object eval(String source, Map<String, Object> globals) throws Exception {
+        return run(source, globals, NO_LIMITS, new AtomicBoolean()).value();
+    }
+
+    @Test
+    void testReturnsLastExpressionOrReturnValue() throws Exception {
+        assertThat(eval("var t = items.reduce(function (a, b) { return a + b }, 0); t * 2", Map.of("items", List.of(1, 2, 3))))
+                .isEqualTo(12);
+        assertThat(eval("if (n > 1) return {big: true, list: [1, 'a']}\nreturn null // trailing comment", Map.of("n", 2)))
+                .isEqualTo(Map.of("big", true, "list", List.of(1, "a")));
+        assertThat(eval("'plain'", Map.of())).isEqualTo("plain");
+        assertThat(eval("1.5", Map.of())).isEqualTo(1.5);
+    }
+
+    @Test
+    void testCachesCompiledSources() throws Exception {
+        String source = "x + 1";
+        ScriptSandbox.Outcome first = run(source, Map.of("x", 1), NO_LIMITS, new AtomicBoolean());
+        ScriptSandbox.Outcome second = run(source, Map.of("x", 2), NO_LIMITS, new AtomicBoolean());
+        assertThat(first.cached()).isFalse();
+        assertThat(second.cached()).isTrue();
+        assertThat(second.value()).isEqualTo(3);
+        assertThatThrownBy(() -> eval("var = ;", Map.of())).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void testGlobalsAreCopiesAndDoNotLeakBetweenRuns() throws Exception {
+        Map<String, Object> nested = new HashMap<>(Map.of("k", 1));
+        List<Object> list = new ArrayList<>(List.of(1));
+        eval("m.k = 2; l.push(2); leaked = 1; 0", Map.of("m", nested, "l", list));
+        assertThat(nested).containsEntry("k", 1);
+        assertThat(list).containsExactly(1);
+        assertThat(eval("typeof leaked", Map.of())).isEqualTo("undefined");
+    }
+
+    @Test
+    void testHasNoHostAccess() throws Exception {
+        assertThat(eval("typeof Java + ' ' + typeof java + ' ' + typeof load + ' ' + typeof print", Map.of()))
+                .isEqualTo("undefined undefined undefined undefined");
+    }
+
+    @Test
+    void testStopsRunawayScriptsAndKeepsWorking() throws Exception {
+        ScriptSandbox.Limits cpu = new ScriptSandbox.Limits(TimeUnit.MILLISECONDS.toNanos(200), 0);
+        // more runaway scripts than pool threads: every one must be stopped, not park its thread
+        List<CompletableFuture<ScriptSandbox.Outcome>> runs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            runs.add(sandbox.run(ScriptSandbox.hash("while (true) {}"), "while (true) {}", Map.of(), cpu, () -> false));
+        }
+        for (CompletableFuture<ScriptSandbox.Outcome> r : runs) {
+            assertThatThrownBy(() -> r.get(10, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(ScriptSandbox.LimitExceededException.class);
+        }
+
+        ScriptSandbox.Limits memory = new ScriptSandbox.Limits(0, 32L * 1024 * 1024);
+        assertThatThrownBy(() -> run("var a = []; while (true) a.push({i: a.length})", Map.of(), memory, new AtomicBoolean()))
+                .isInstanceOf(ScriptSandbox.LimitExceededException.class)
+                .hasMessageContaining("memory");
+
+        AtomicBoolean cancelled = new AtomicBoolean();
+        CompletableFuture<ScriptSandbox.Outcome> loop = sandbox.run(ScriptSandbox.hash("for (;;) {}"), "for (;;) {}",
+                Map.of(), NO_LIMITS, cancelled::get);
+        Thread.sleep(100);
+        cancelled.set(true);
+        assertThatThrownBy(() -> loop.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(DeadlineExceededException.class);
+
+        assertThat(eval("40 + 2", Map.of())).isEqualTo(42);
+    }
+
+    @Test
+    void testScriptNodeReadsOnlyReferencedVariables() {
+        ScriptNodeExecutor executor = new ScriptNodeExecutor(sandbox, new EngineProperties());
+        GraphNode node = new GraphNode();
+        node.id = "s-1";
+        node.type = "script";
+        node.properties = Map.of("script", "a + 1", "output", "b");
+        Map<String, Object> vars = new HashMap<>(Map.of("a", 1, "unrelated", "x"));
+        ReadRecordingMap recorded = new ReadRecordingMap(vars);
+        executor.execute(node, new NodeExecutor.ExecutionContext(recorded));
+        assertThat(vars).containsEntry("b", 2);
+        assertThat(recorded.reads()).containsOnlyKeys("a");
+
+        node.properties = Map.of("script", "delete variables.a; variables.a === undefined", "output", "gone");
+        recorded = new ReadRecordingMap(vars);
+        executor.execute(node, new NodeExecutor.ExecutionContext(recorded));
+        assertThat(vars).containsEntry("a", 1).containsEntry("gone", true);
+        assertThat(recorded.reads()).isNull();
+    }
+}
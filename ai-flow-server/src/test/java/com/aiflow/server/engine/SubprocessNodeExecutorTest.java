@@ -0,0 +1,88 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.config.EngineProperties;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class SubprocessNodeExecutorTest {
+
+    private final EngineProperties properties = new EngineProperties();
+    private final SubprocessNodeExecutor executor = new SubprocessNodeExecutor(properties);
+    private final Engine engine = new Engine(List.of(executor));
+    private final Map<String, ExecutionPlan> plans = new HashMap<>();
+    private final AtomicInteger resolved = new AtomicInteger();
+
+    SubprocessNodeExecutorTest() {
+        engine.setPlanResolver(flowId -> {
+            resolved.incrementAndGet();
+            return plans.get(flowId);
+        });
+    }
+
+    @AfterEach
+    void shutdown() {
+        engine.shutdown();
+    }
+
+    private static Map<String, Object> call(String flowId) {
+        return Map.of("flowId", flowId);
+    }
+
+    private GraphNode callNode(String flowId) {
+        GraphNode node = new GraphNode();
+        node.id = "call";
+        node.type = "subprocess";
+        node.properties = call(flowId);
+        return node;
+    }
+
+    private NodeExecutor.ExecutionContext context() {
+        return new NodeExecutor.ExecutionContext(new HashMap<>(), RunListener.NOOP, engine, List.of("root"));
+    }
+
+    @Test
+    void testNestingCheckVisitsEachFlowOnce() {
+        // f0 -> f1 -> ... -> f20, every flow calling the next one twice: 2^20 paths through 21 flows
+        int levels = 20;
+        plans.put("f" + levels, engine.compile("f" + levels, 1,
+                TestGraphs.graph().node("s", "start", Map.of()).build()));
+        for (int i = levels - 1; i >= 0; i--) {
+            TestGraphs g = TestGraphs.graph()
+                    .node("a", "subprocess", call("f" + (i + 1)))
+                    .node("b", "subprocess", call("f" + (i + 1)));
+            if (i == 0) g.node("c", "subprocess", call("back"));
+            plans.put("f" + i, engine.compile("f" + i, 1, g.build()));
+        }
+        plans.put("back", engine.compile("back", 1,
+                TestGraphs.graph().node("a", "subprocess", call("f0")).build()));
+        properties.setMaxSubprocessDepth(64);
+
+        assertThatThrownBy(() -> executor.execute(callNode("f0"), context()))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Subprocess cycle: f0 -> back -> f0");
+        assertThat(resolved.get()).isLessThan(4 * levels);
+    }
+
+    @Test
+    void testRejectsNestingDeeperThanTheLimit() {
+        plans.put("leaf", engine.compile("leaf", 1, TestGraphs.graph().node("s", "start", Map.of()).build()));
+        plans.put("mid", engine.compile("mid", 1, TestGraphs.graph()
+                .node("a", "subprocess", call("leaf")).node("b", "subprocess", call("leaf")).build()));
+        plans.put("top", engine.compile("top", 1, TestGraphs.graph()
+                .node("a", "subprocess", call("leaf")).node("b", "subprocess", call("mid")).build()));
+        properties.setMaxSubprocessDepth(3);
+
+        assertThatThrownBy(() -> executor.execute(callNode("top"), context()))
+                .hasMessage("Subprocess nesting exceeds 3 levels: root -> top -> mid -> leaf");
+        assertThat(executor.execute(callNode("mid"), context()).outputs).containsKey("result");
+    }
+}
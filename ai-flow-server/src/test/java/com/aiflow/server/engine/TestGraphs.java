@@ -0,0 +1,56 @@
+package com.aiflow.server.engine;
+
+import com.aiflow.server.dto.FlowDtos.FlowGraph;
+import com.aiflow.server.dto.FlowDtos.GraphEdge;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/**
+ * Builds flow graphs for tests.
+ */
+public final class TestGraphs {
+
+    private final FlowGraph graph = new FlowGraph();
+
+    private TestGraphs() {
+        graph.nodes = new ArrayList<>();
+        graph.edges = new ArrayList<>();
+    }
+
+    public static TestGraphs graph() {
+        return new TestGraphs();
+    }
+
+    public TestGraphs node(String id, String type, Map<String, Object> properties) {
+        GraphNode n = new GraphNode();
+        n.id = id;
+        n.type = type;
+        n.properties = properties;
+        graph.nodes.add(n);
+        return this;
+    }
+
+    public TestGraphs edge(String from, String to) {
+        return edge(from, to, null);
+    }
+
+    public TestGraphs edge(String from, String to, String label) {
+        GraphEdge e = new GraphEdge();
+        e.sourceNodeId = from;
+        e.targetNodeId = to;
+        e.label = label;
+        graph.edges.add(e);
+        return this;
+    }
+
+    public TestGraphs chain(String... ids) {
+        for (int i = 1; i < ids.length; i++) edge(ids[i - 1], ids[i]);
+        return this;
+    }
+
+    public FlowGraph build() {
+        return graph;
+    }
+}
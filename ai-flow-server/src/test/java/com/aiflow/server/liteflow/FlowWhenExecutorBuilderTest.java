@@ -0,0 +1,56 @@
+package com.aiflow.server.liteflow;
+
+import com.yomahub.liteflow.property.LiteflowConfig;
+import com.yomahub.liteflow.property.LiteflowConfigGetter;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FlowWhenExecutorBuilderTest {
+
+    @Test
+    void testNestedBranchesDoNotStallWhenParentsFillThePool() throws Exception {
+        int workers = 4;
+        LiteflowConfig config = new LiteflowConfig();
+        config.setWhenMaxWorkers(workers);
+        LiteflowConfigGetter.setLiteflowConfig(config);
+        ExecutorService pool = new FlowWhenExecutorBuilder().buildExecutor();
+        try {
+            // every worker runs a parent branch that waits for nested branches on the same pool,
+            // the way LiteFlow waits for a WHEN inside a WHEN
+            List<CompletableFuture<Integer>> parents = new ArrayList<>();
+            for (int i = 0; i < workers * 2; i++) {
+                parents.add(CompletableFuture.supplyAsync(() -> {
+                    CompletableFuture<Integer> a = CompletableFuture.supplyAsync(() -> sleepAndReturn(1), pool);
+                    CompletableFuture<Integer> b = CompletableFuture.supplyAsync(() -> sleepAndReturn(2), pool);
+                    try {
+                        CompletableFuture.allOf(a, b).get();
+                        return a.get() + b.get();
+                    } catch (Exception e) {
+                        throw new IllegalStateException(e);
+                    }
+                }, pool));
+            }
+            CompletableFuture.allOf(parents.toArray(new CompletableFuture[0])).get(10, TimeUnit.SECONDS);
+            assertThat(parents).allMatch(p -> p.join() == 3);
+        } finally {
+            pool.shutdownNow();
+            LiteflowConfigGetter.clean();
+        }
+    }
+
+    private static int sleepAndReturn(int value) {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return value;
+    }
+}
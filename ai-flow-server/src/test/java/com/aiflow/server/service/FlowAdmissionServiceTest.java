@@ -0,0 +1,95 @@
+package com.aiflow.server.service;
+
+import com.aiflow.server.config.AdmissionProperties;
+import com.aiflow.server.exception.ApiExceptionHandler;
+import com.aiflow.server.exception.TooManyRunsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FlowAdmissionServiceTest {
+
+    private final AdmissionProperties properties = new AdmissionProperties();
+
+    private FlowAdmissionService service() {
+        return new FlowAdmissionService(properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void testQueuesRunsOverTheLimitAndAdmitsThemOnRelease() {
+        properties.setMaxConcurrentRuns(2);
+        properties.setMaxConcurrentRunsPerFlow(1);
+        FlowAdmissionService service = service();
+
+        FlowAdmissionService.Permit a1 = service.acquire("a").join();
+        CompletableFuture<FlowAdmissionService.Permit> a2 = service.acquire("a");
+        FlowAdmissionService.Permit b1 = service.acquire("b").join();
+        CompletableFuture<FlowAdmissionService.Permit> c1 = service.acquire("c");
+
+        assertThat(a2).isNotDone();
+        assertThat(c1).isNotDone();
+        assertThat(service.stats().queued).isEqualTo(2);
+
+        // a's slot only fits the queued run of a; c still waits for the global limit
+        a1.release();
+        a1.release();
+        assertThat(a2).isDone();
+        assertThat(c1).isNotDone();
+
+        b1.release();
+        assertThat(c1).isDone();
+        assertThat(service.stats().running).isEqualTo(2);
+    }
+
+    @Test
+    void testRejectsWithRetryAfterWhenTheQueueIsFull() {
+        properties.setMaxConcurrentRuns(1);
+        properties.setQueueCapacity(1);
+        properties.setRetryAfterSeconds(7);
+        FlowAdmissionService service = service();
+        service.acquire("a").join();
+        service.acquire("a");
+
+        CompletableFuture<FlowAdmissionService.Permit> rejected = service.acquire("b");
+
+        assertThatThrownBy(rejected::get)
+                .isInstanceOf(ExecutionException.class)
+                .cause()
+                .isInstanceOf(TooManyRunsException.class)
+                .hasMessage("Too many runs in progress, wait queue is full");
+        assertThat(service.stats().rejectedQueueFull).isEqualTo(1);
+
+        TooManyRunsException e = (TooManyRunsException) rejected.handle((p, err) -> err).join();
+        ResponseEntity<Map<String, Object>> response = new ApiExceptionHandler().tooManyRuns(e);
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("7");
+        assertThat(response.getBody()).containsEntry("retryAfter", 7);
+    }
+
+    @Test
+    void testRejectsRunsThatWaitTooLong() {
+        properties.setMaxConcurrentRuns(1);
+        properties.setQueueTimeoutMs(50);
+        FlowAdmissionService service = service();
+        service.acquire("a").join();
+
+        CompletableFuture<FlowAdmissionService.Permit> waiting = service.acquire("a");
+
+        assertThatThrownBy(() -> waiting.get(2, TimeUnit.SECONDS))
+                .cause()
+                .isInstanceOf(TooManyRunsException.class)
+                .hasMessage("Timed out waiting for a free run slot");
+        assertThat(service.stats().queued).isZero();
+        assertThat(service.stats().rejectedTimeout).isEqualTo(1);
+    }
+}
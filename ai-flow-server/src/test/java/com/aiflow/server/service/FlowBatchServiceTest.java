@@ -0,0 +1,121 @@
+package com.aiflow.server.service;
+
+import com.aiflow.server.config.AdmissionProperties;
+import com.aiflow.server.config.BatchProperties;
+import com.aiflow.server.dto.FlowDtos.FlowBatchItemResult;
+import com.aiflow.server.dto.FlowDtos.FlowBatchSummary;
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.engine.Deadline;
+import com.aiflow.server.engine.Engine;
+import com.aiflow.server.engine.ExecutionPlan;
+import com.aiflow.server.engine.RunListener;
+import com.aiflow.server.engine.TestGraphs;
+import com.aiflow.server.engine.TraceOptions;
+import com.aiflow.server.exception.TooManyRunsException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class FlowBatchServiceTest {
+
+    private final FlowService flowService = mock(FlowService.class);
+    private final BatchProperties properties = new BatchProperties();
+    private final FlowBatchService service = new FlowBatchService(flowService, properties, new AdmissionProperties(),
+            new ObjectMapper());
+    /** runs submitted by the batch, completed by the test */
+    private final BlockingQueue<CompletableFuture<FlowRunResult>> runs = new LinkedBlockingQueue<>();
+    private final List<Object> written = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        ExecutionPlan plan = new Engine(List.of()).compile("f", 1, TestGraphs.graph().build());
+        when(flowService.getPlan("f")).thenReturn(plan);
+        when(flowService.traceOptions(plan, null)).thenReturn(TraceOptions.FULL);
+        when(flowService.runDeadline(eq(plan), any())).thenReturn(Deadline.NONE);
+        when(flowService.runAsync(eq(plan), anyMap(), any(), any(), eq(RunListener.NOOP))).thenAnswer(inv -> {
+            CompletableFuture<FlowRunResult> run = new CompletableFuture<>();
+            runs.add(run);
+            return run;
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.stop();
+    }
+
+    private static InputStream ndjson(int items) {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < items; i++) body.append("{\"i\":").append(i).append("}\n");
+        return new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static FlowRunResult result() {
+        FlowRunResult r = new FlowRunResult();
+        r.runId = "r";
+        r.outputs = Map.of();
+        return r;
+    }
+
+    private CompletableFuture<FlowRunResult> nextRun() throws InterruptedException {
+        CompletableFuture<FlowRunResult> run = runs.poll(2, TimeUnit.SECONDS);
+        assertThat(run).as("submitted run").isNotNull();
+        return run;
+    }
+
+    @Test
+    void testSubmitsOnlyAsManyInputsAsTheConcurrencyAllows() throws Exception {
+        FlowBatchService.Batch batch = service.start("f", ndjson(50), 2, null, false, written::add);
+
+        CompletableFuture<FlowRunResult> first = nextRun();
+        CompletableFuture<FlowRunResult> second = nextRun();
+        // the third input is not read until a run finishes
+        assertThat(runs.poll(200, TimeUnit.MILLISECONDS)).isNull();
+        assertThat(service.stats()).singleElement().satisfies(s -> assertThat(s.submitted).isEqualTo(2));
+
+        first.complete(result());
+        CompletableFuture<FlowRunResult> third = nextRun();
+        assertThat(runs).isEmpty();
+        third.completeExceptionally(new IllegalStateException("boom"));
+        second.complete(result());
+
+        for (int i = 3; i < 50; i++) nextRun().complete(result());
+        FlowBatchSummary summary = batch.getDone().get(5, TimeUnit.SECONDS);
+
+        assertThat(summary.submitted).isEqualTo(50);
+        assertThat(summary.succeeded).isEqualTo(49);
+        assertThat(summary.failed).isEqualTo(1);
+        assertThat(written).hasSize(51).last().isInstanceOf(FlowBatchSummary.class);
+        assertThat(written).filteredOn(r -> r instanceof FlowBatchItemResult i && "failed".equals(i.status))
+                .singleElement().satisfies(r -> assertThat(((FlowBatchItemResult) r).error).isEqualTo("boom"));
+    }
+
+    @Test
+    void testRejectsBatchesOverTheLimit() {
+        properties.setMaxActiveBatches(1);
+        service.start("f", ndjson(1), 1, null, false, written::add);
+
+        assertThatThrownBy(() -> service.start("f", ndjson(1), 1, null, false, written::add))
+                .isInstanceOf(TooManyRunsException.class);
+    }
+}
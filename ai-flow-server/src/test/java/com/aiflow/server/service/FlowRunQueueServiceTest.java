@@ -0,0 +1,253 @@
+package com.aiflow.server.service;
+
+import com.aiflow.server.config.RunQueueProperties;
+import com.aiflow.server.dto.FlowDtos.FlowQueuedRun;
+import com.aiflow.server.dto.FlowDtos.FlowRunRequest;
+import com.aiflow.server.dto.FlowDtos.FlowRunResult;
+import com.aiflow.server.engine.Deadline;
+import com.aiflow.server.engine.Engine;
+import com.aiflow.server.engine.ExecutionPlan;
+import com.aiflow.server.engine.RunListener;
+import com.aiflow.server.engine.TestGraphs;
+import com.aiflow.server.engine.TraceOptions;
+import com.aiflow.server.exception.TooManyRunsException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the queue against t_run_queue from schema.sql in H2's MySQL mode, so claims, leases and the fencing of late
+ * results go through real row locks and the database clock.
+ */
+public class FlowRunQueueServiceTest {
+
+    private static final AtomicInteger databases = new AtomicInteger();
+
+    private final RunQueueDatabase db = new RunQueueDatabase(new DriverManagerDataSource(
+            "jdbc:h2:mem:run_queue_" + databases.incrementAndGet() + ";MODE=MySQL;DB_CLOSE_DELAY=-1"));
+    private final TransactionTemplate transactions = new TransactionTemplate(
+            new DataSourceTransactionManager(db.getDataSource()));
+    private final ExecutionPlan plan = new Engine(List.of()).compile("f", 1, TestGraphs.graph().build());
+    private final List<FlowRunQueueService> instances = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void createTable() throws Exception {
+        String schema = new ClassPathResource("schema.sql").getContentAsString(StandardCharsets.UTF_8);
+        Matcher ddl = Pattern.compile("CREATE TABLE IF NOT EXISTS t_run_queue .*?;", Pattern.DOTALL).matcher(schema);
+        assertThat(ddl.find()).isTrue();
+        db.execute(ddl.group());
+    }
+
+    @AfterEach
+    void stop() {
+        instances.forEach(FlowRunQueueService::stop);
+        db.execute("DROP ALL OBJECTS");
+    }
+
+    /** the queue's database; heartbeats of {@code partitioned} instances never reach it */
+    private static final class RunQueueDatabase extends JdbcTemplate {
+        final Set<String> partitioned = ConcurrentHashMap.newKeySet();
+
+        RunQueueDatabase(DriverManagerDataSource dataSource) {
+            super(dataSource);
+        }
+
+        @Override
+        public int[] batchUpdate(String sql, List<Object[]> batchArgs) {
+            // heartbeats are the only batch: lease, run_id, owner, attempts
+            int[] counts = new int[batchArgs.size()];
+            for (int i = 0; i < counts.length; i++) {
+                Object[] args = batchArgs.get(i);
+                if (!partitioned.contains(args[2])) counts[i] = update(sql, args);
+            }
+            return counts;
+        }
+
+        Map<String, Object> row(String runId) {
+            return queryForMap("SELECT * FROM t_run_queue WHERE run_id = ?", runId);
+        }
+    }
+
+    private RunQueueProperties properties(String instanceId, int maxAttempts, int workerConcurrency) {
+        RunQueueProperties p = new RunQueueProperties();
+        p.setInstanceId(instanceId);
+        p.setWorkerConcurrency(workerConcurrency);
+        p.setPollIntervalMs(20);
+        p.setLeaseMs(300);
+        p.setHeartbeatIntervalMs(100);
+        p.setResultPollIntervalMs(50);
+        p.setMaxAttempts(maxAttempts);
+        p.setRetentionHours(0);
+        return p;
+    }
+
+    private FlowService flowService(CompletableFuture<FlowRunResult> run) {
+        FlowService flowService = mock(FlowService.class);
+        when(flowService.getPlan("f")).thenReturn(plan);
+        when(flowService.traceOptions(eq(plan), any())).thenReturn(TraceOptions.FULL);
+        when(flowService.runDeadline(eq(plan), any())).thenReturn(Deadline.NONE);
+        when(flowService.runAsync(eq(plan), anyString(), anyMap(), any(), any(), eq(RunListener.NOOP))).thenReturn(run);
+        return flowService;
+    }
+
+    private FlowRunQueueService instance(String instanceId, int maxAttempts, FlowService flowService) {
+        return instance(properties(instanceId, maxAttempts, 1), flowService);
+    }
+
+    private FlowRunQueueService instance(RunQueueProperties properties, FlowService flowService) {
+        FlowRunQueueService service = new FlowRunQueueService(properties, db, transactions, flowService,
+                new ObjectMapper());
+        service.start();
+        instances.add(service);
+        return service;
+    }
+
+    private static FlowRunResult result(String answer) {
+        FlowRunResult r = new FlowRunResult();
+        r.flowId = "f";
+        r.outputs = Map.of("answer", answer);
+        r.trace = List.of();
+        return r;
+    }
+
+    private static void await(String what, BooleanSupplier condition) throws InterruptedException {
+        long until = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as(what).isLessThan(until);
+            Thread.sleep(10);
+        }
+    }
+
+    private void awaitRow(String runId, Predicate<Map<String, Object>> condition) throws InterruptedException {
+        await("row " + runId, () -> condition.test(db.row(runId)));
+    }
+
+    private static FlowRunRequest request() {
+        FlowRunRequest req = new FlowRunRequest();
+        req.inputs = Map.of("q", 1);
+        return req;
+    }
+
+    @Test
+    void testClaimsEachRunOnceAcrossInstances() throws Exception {
+        Map<String, AtomicInteger> executions = new ConcurrentHashMap<>();
+        FlowService flowService = flowService(null);
+        when(flowService.runAsync(eq(plan), anyString(), anyMap(), any(), any(), eq(RunListener.NOOP))).thenAnswer(inv -> {
+            String runId = inv.getArgument(1);
+            executions.computeIfAbsent(runId, k -> new AtomicInteger()).incrementAndGet();
+            return CompletableFuture.supplyAsync(() -> result(runId),
+                    CompletableFuture.delayedExecutor(5, TimeUnit.MILLISECONDS));
+        });
+        FlowRunQueueService a = instance(properties("a", 3, 2), flowService);
+        FlowRunQueueService b = instance(properties("b", 3, 2), flowService);
+
+        for (int i = 0; i < 40; i++) a.submit("f", request());
+        await("all runs finished", () -> db.queryForObject(
+                "SELECT COUNT(*) FROM t_run_queue WHERE status = 'success' AND attempts = 1", Integer.class) == 40);
+
+        assertThat(executions).hasSize(40);
+        assertThat(executions.values()).allSatisfy(n -> assertThat(n).hasValue(1));
+        assertThat(a.stats().claimed + b.stats().claimed).isEqualTo(40);
+        assertThat(a.stats().lostLeases + b.stats().lostLeases).isZero();
+    }
+
+    @Test
+    void testRenewsTheLeaseWhileTheRunIsExecuting() throws Exception {
+        CompletableFuture<FlowRunResult> run = new CompletableFuture<>();
+        FlowRunQueueService a = instance("a", 3, flowService(run));
+
+        String runId = a.submit("f", request()).runId;
+        awaitRow(runId, r -> "running".equals(r.get("status")));
+        // more than twice the lease, with the reaper running throughout
+        Thread.sleep(700);
+        assertThat(db.row(runId)).containsEntry("owner", "a").containsEntry("attempts", 1);
+        run.complete(result("done"));
+
+        FlowQueuedRun finished = a.await("f", runId, 5_000).get(5, TimeUnit.SECONDS);
+        assertThat(finished.status).isEqualTo("success");
+        assertThat(finished.attempts).isEqualTo(1);
+        assertThat(finished.outputs).containsEntry("answer", "done");
+        assertThat(a.stats().expiredRequeued).isZero();
+    }
+
+    @Test
+    void testReclaimsExpiredLeaseAndDiscardsTheLateResult() throws Exception {
+        CompletableFuture<FlowRunResult> stuck = new CompletableFuture<>();
+        FlowRunQueueService a = instance("a", 3, flowService(stuck));
+        String runId = a.submit("f", request()).runId;
+        awaitRow(runId, r -> "a".equals(r.get("owner")));
+
+        // a keeps running but can no longer renew its lease
+        db.partitioned.add("a");
+        FlowService resumed = flowService(new CompletableFuture<>());
+        when(resumed.resume("f", runId, RunListener.NOOP)).thenReturn(CompletableFuture.completedFuture(result("resumed")));
+        FlowRunQueueService b = instance("b", 3, resumed);
+
+        FlowQueuedRun finished = b.await("f", runId, 5_000).get(5, TimeUnit.SECONDS);
+        assertThat(finished.status).isEqualTo("success");
+        assertThat(finished.attempts).isEqualTo(2);
+        assertThat(finished.outputs).containsEntry("answer", "resumed");
+
+        // attempts is the fencing token: a's lease was attempt 1, so its result no longer matches the row
+        stuck.complete(result("late"));
+        await("late result discarded", () -> a.stats().lostLeases == 1);
+        assertThat(db.row(runId).get("result_json")).asString().contains("resumed");
+    }
+
+    @Test
+    void testFailsRunWhoseLeaseExpiredTooOften() throws Exception {
+        FlowRunQueueService a = instance("a", 1, flowService(new CompletableFuture<>()));
+        db.partitioned.add("a");
+
+        String runId = a.submit("f", request()).runId;
+        awaitRow(runId, r -> "failed".equals(r.get("status")));
+
+        assertThat(db.row(runId)).containsEntry("error_message", "Lease expired after 1 attempts, last owner a");
+        // the row changes inside reap(), before it counts the failure
+        await("failure counted", () -> a.stats().expiredFailed == 1);
+    }
+
+    @Test
+    void testWaitsAPollIntervalBeforeClaimingAgainWhenAdmissionIsFull() throws Exception {
+        RunQueueProperties properties = properties("a", 3, 1);
+        properties.setPollIntervalMs(200);
+        FlowRunQueueService a = instance(properties,
+                flowService(CompletableFuture.failedFuture(new TooManyRunsException("Too many runs in progress", 2))));
+
+        String runId = a.submit("f", request()).runId;
+        Thread.sleep(1_000);
+
+        // claimed, handed back and parked for 200 ms each round instead of claiming it again at once
+        assertThat(a.stats().released).isBetween(1L, 6L);
+        assertThat(db.row(runId).get("status")).isIn("queued", "running");
+        assertThat(db.row(runId).get("attempts")).isIn(0, 1);
+    }
+}
@@ -0,0 +1,156 @@
+package com.aiflow.server.service;
+
+import com.aiflow.server.config.EngineProperties;
+import com.aiflow.server.dto.FlowDtos.FlowGraph;
+import com.aiflow.server.dto.FlowDtos.GraphNode;
+import com.aiflow.server.engine.BaseNodeExecutor;
+import com.aiflow.server.engine.Engine;
+import com.aiflow.server.engine.PlanCache;
+import com.aiflow.server.engine.TestGraphs;
+import com.aiflow.server.entity.FlowEntity;
+import com.aiflow.server.entity.NodeTypeEntity;
+import com.aiflow.server.exception.BadRequestException;
+import com.aiflow.server.exception.ConflictException;
+import com.aiflow.server.mapper.FlowMapper;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class FlowServiceTest {
+
+    private final FlowMapper flowMapper = mock(FlowMapper.class);
+    private final PlanCache planCache = new PlanCache(16);
+    private final NodeTypeService nodeTypeService = mock(NodeTypeService.class);
+    private FlowService flowService;
+
+    @BeforeEach
+    void setUp() {
+        flowService = new FlowService(flowMapper, new FlowGraphCodec(new ObjectMapper()), planCache,
+                mock(FlowRunHistoryService.class), mock(FlowAdmissionService.class), mock(FlowCheckpointService.class),
+                new EngineProperties(), null, nodeTypeService);
+        flowService.setEngine(new Engine(List.of(new BrokenSettingsExecutor())));
+    }
+
+    /** an executor whose settings never parse */
+    private static final class BrokenSettingsExecutor extends BaseNodeExecutor {
+        @Override
+        public String getType() {
+            return "broken";
+        }
+
+        @Override
+        public Object prepare(GraphNode node) {
+            throw new IllegalArgumentException("bad settings");
+        }
+
+        @Override
+        public StepResult execute(GraphNode node, Object prepared, ExecutionContext context) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static FlowEntity entity(Integer version) {
+        FlowEntity e = new FlowEntity();
+        e.setId(1L);
+        e.setFlowId("f1");
+        e.setVersion(version);
+        return e;
+    }
+
+    private static NodeTypeEntity nodeType(String code) {
+        NodeTypeEntity t = new NodeTypeEntity();
+        t.setTypeCode(code);
+        return t;
+    }
+
+    private static FlowGraph chain() {
+        return TestGraphs.graph().node("a", "rect", Map.of()).node("b", "rect", Map.of()).chain("a", "b").build();
+    }
+
+    @Test
+    void testSaveGraphRejectsInvalidGraphBeforeWriting() {
+        when(flowMapper.selectOne(any())).thenReturn(entity(3));
+        FlowGraph cycle = TestGraphs.graph().node("a", "rect", Map.of()).node("b", "rect", Map.of())
+                .chain("a", "b", "a").build();
+
+        assertThatThrownBy(() -> flowService.saveGraph("f1", cycle)).isInstanceOf(BadRequestException.class);
+        verify(flowMapper, never()).update(any(FlowEntity.class), any());
+        assertThat(planCache.peek("f1")).isNull();
+    }
+
+    @Test
+    void testSaveGraphRetriesWhenVersionChangedConcurrently() {
+        when(flowMapper.selectOne(any())).thenReturn(entity(3), entity(4));
+        when(flowMapper.update(any(FlowEntity.class), any())).thenReturn(0, 1);
+
+        flowService.saveGraph("f1", chain());
+
+        verify(flowMapper, times(2)).update(any(FlowEntity.class), any());
+        assertThat(planCache.peek("f1").getVersion()).isEqualTo(5);
+    }
+
+    @Test
+    void testSaveGraphGivesUpAfterRepeatedConflicts() {
+        when(flowMapper.selectOne(any())).thenReturn(entity(null));
+        when(flowMapper.update(any(FlowEntity.class), any())).thenReturn(0);
+
+        assertThatThrownBy(() -> flowService.saveGraph("f1", chain())).isInstanceOf(ConflictException.class);
+        assertThat(planCache.peek("f1")).isNull();
+    }
+
+    @Test
+    void testGetPlanRecompilesWhenTheStoredVersionChanged() {
+        // load v3; version check v3; version check v4 (saved elsewhere); load v4
+        when(flowMapper.selectOne(any())).thenReturn(entity(3), entity(3), entity(4), entity(4));
+
+        assertThat(flowService.getPlan("f1").getVersion()).isEqualTo(3);
+        assertThat(flowService.getPlan("f1").getVersion()).isEqualTo(3);
+        assertThat(flowService.getPlan("f1").getVersion()).isEqualTo(4);
+
+        verify(flowMapper, times(4)).selectOne(any());
+        PlanCache.Stats stats = planCache.stats();
+        assertThat(stats.hits).isEqualTo(1);
+        assertThat(stats.misses).isEqualTo(2);
+        assertThat(stats.stale).isEqualTo(1);
+    }
+
+    @Test
+    void testSaveGraphRejectsDanglingEdgesAndUnknownTypes() {
+        when(flowMapper.selectOne(any())).thenReturn(entity(3));
+        when(nodeTypeService.listAllNodeTypes()).thenReturn(List.of(nodeType("classifier")));
+        FlowGraph dangling = TestGraphs.graph().node("a", "rect", Map.of()).chain("a", "gone").build();
+        FlowGraph unknown = TestGraphs.graph().node("a", "lmm", Map.of()).build();
+
+        assertThatThrownBy(() -> flowService.saveGraph("f1", dangling))
+                .isInstanceOf(BadRequestException.class).hasMessageContaining("missing node");
+        assertThatThrownBy(() -> flowService.saveGraph("f1", unknown))
+                .isInstanceOf(BadRequestException.class).hasMessageContaining("'lmm'");
+        verify(flowMapper, never()).update(any(FlowEntity.class), any());
+    }
+
+    @Test
+    void testSaveGraphKeepsNodeSettingErrorsForRunTime() {
+        when(flowMapper.selectOne(any())).thenReturn(entity(3));
+        when(flowMapper.update(any(FlowEntity.class), any())).thenReturn(1);
+        when(nodeTypeService.listAllNodeTypes()).thenReturn(List.of(nodeType("classifier")));
+        FlowGraph graph = TestGraphs.graph().node("a", "broken", Map.of()).node("b", "classifier", Map.of())
+                .chain("a", "b").build();
+
+        flowService.saveGraph("f1", graph);
+
+        verify(flowMapper).update(any(FlowEntity.class), any());
+        assertThat(planCache.peek("f1")).isNull();
+    }
+}